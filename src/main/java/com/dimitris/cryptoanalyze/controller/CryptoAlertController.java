@@ -0,0 +1,110 @@
+package com.dimitris.cryptoanalyze.controller;
+
+import com.dimitris.cryptoanalyze.controller.dto.AlertRuleDto;
+import com.dimitris.cryptoanalyze.controller.dto.AlertRuleRequestDto;
+import com.dimitris.cryptoanalyze.controller.dto.ErrorResponseDto;
+import com.dimitris.cryptoanalyze.service.CryptoAlertManager;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoValidationException;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Controller providing REST endpoints through which alert rules on the normalized price range of cryptos are managed
+ */
+@RestController
+@RequestMapping(path = "/api/crypto/alerts")
+public class CryptoAlertController {
+
+    private static final Logger logger = LoggerFactory.getLogger(CryptoAlertController.class);
+
+    private final CryptoAlertManager cryptoAlertManager;
+
+    @Autowired
+    public CryptoAlertController(CryptoAlertManager cryptoAlertManager) {
+        this.cryptoAlertManager = cryptoAlertManager;
+    }
+
+    /**
+     * Registers an alert rule
+     *
+     * @param alertRuleRequestDto The rule
+     * @return The registered rule, with its id
+     * @throws CryptoNotFoundException Crypto of the rule is not supported, or not stored by this instance
+     * @throws CryptoValidationException The rule is missing a field, or has a non positive window
+     */
+    @Operation(summary = "Registers an alert rule, firing when the normalized price range of the crypto over a " +
+            "trailing window of windowMillis, ending at its newest value, crosses the threshold in the direction " +
+            "(ABOVE or BELOW). Rules are evaluated as values are ingested",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(content = {
+                    @Content(examples = {
+                            @ExampleObject(value = "{\"crypto\": \"btc\", \"windowMillis\": 86400000, " +
+                                    "\"threshold\": 0.05, \"direction\": \"ABOVE\"}")})
+            }
+            )
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Successfully registered alert rule",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = AlertRuleDto.class))}),
+            @ApiResponse(responseCode = "404", description = "Crypto of the rule is not supported or not stored by this instance",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))}),
+            @ApiResponse(responseCode = "400", description = "The rule is missing a field or has a non positive window",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))})
+    })
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public AlertRuleDto registerRule(
+            @RequestBody AlertRuleRequestDto alertRuleRequestDto
+    ) throws CryptoNotFoundException, CryptoValidationException {
+        logger.debug("INSIDE registerRule(). Params: {}", alertRuleRequestDto);
+        AlertRuleDto alertRuleDto = cryptoAlertManager.register(alertRuleRequestDto);
+        logger.debug("EXITING registerRule(). Returning: {}", alertRuleDto);
+        return alertRuleDto;
+    }
+
+    /**
+     * @return The registered alert rules
+     */
+    @Operation(summary = "Returns the registered alert rules, in registration order")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Registered alert rules",
+                    content = {@Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = AlertRuleDto.class)))})
+    })
+    @GetMapping
+    public List<AlertRuleDto> getRules() {
+        logger.debug("INSIDE getRules()");
+        return cryptoAlertManager.getRules();
+    }
+
+    /**
+     * Removes an alert rule
+     *
+     * @param id The id of the rule
+     * @throws CryptoNotFoundException No rule with the id is registered
+     */
+    @Operation(summary = "Removes an alert rule")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Successfully removed alert rule"),
+            @ApiResponse(responseCode = "404", description = "No rule with the id is registered",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))})
+    })
+    @DeleteMapping("/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void removeRule(@PathVariable("id") long id) throws CryptoNotFoundException {
+        logger.debug("INSIDE removeRule(). Params: {}", id);
+        cryptoAlertManager.remove(id);
+        logger.debug("EXITING removeRule()");
+    }
+}
@@ -2,8 +2,13 @@ package com.dimitris.cryptoanalyze.controller;
 
 import com.dimitris.cryptoanalyze.controller.dto.*;
 import com.dimitris.cryptoanalyze.service.CryptoAnalyzer;
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
 import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoDeadlineExceededException;
 import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.model.DataSnapshot;
+import com.dimitris.cryptoanalyze.service.model.Deadline;
+import com.dimitris.cryptoanalyze.service.impl.ShardTopology;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
@@ -12,13 +17,54 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.dimitris.cryptoanalyze.service.util.BoundedExecutor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.Callable;
 
 /**
- * Controller providing REST endpoints through which user interacts with the application
+ * Controller providing REST endpoints through which user interacts with the application.
+ * <p>
+ * Responses of queries without time restriction are served from {@link CryptoResponseCache} and carry an ETag.
+ * Although endpoints are mapped to POST, so that an optional time period can be sent as body, they never modify
+ * data, so an If-None-Match header matching the current ETag is answered with 304 (Not Modified). Responses are
+ * not cached in sharded deployments, since they depend on data of other instances, nor for composite indices, whose
+ * levels change with their definition as well as with the stored data.
+ * <p>
+ * Requests are processed asynchronously under the deadline resolved by {@link RequestDeadlineResolver}, so that the
+ * servlet thread is released while calculating. The async timeout of the container is set to the deadline, and
+ * both the timeout and an error of the connection, eg the client disconnecting, cancel the calculation in progress.
+ * Only the timeout is answered with 504 (Gateway Timeout), an error of the connection is handled as it is.
+ * Calculations run on a bounded executor, see {@link BoundedExecutor}, since they may block outside admission
+ * control, eg waiting for an identical calculation in progress. It runs at most &quot;analyze.request.threads&quot;
+ * requests at once (default 200) and queues up to &quot;analyze.request.queue&quot; more (default 100). Further
+ * requests are rejected with 429 (Too Many Requests).
+ * <p>
+ * Every response carries the {@value DataVersionResolver#VERSION_HEADER} header with the version of the data it was
+ * calculated on, and the calculation can be repeated on that version through the
+ * {@value DataVersionResolver#AS_OF_VERSION_PARAM} parameter while the version is retained, see
+ * {@link DataVersionResolver}.
+ * <p>
+ * Responses are encoded as JSON, CBOR or Smile, according to the Accept header, see {@link ResponseEncodings}
+ * <p>
+ * Rankings of a UTC day are served by GET endpoints taking the day as path variable, and calculated as rankings of
+ * the time period from the start of the day to the start of the next one, which the stored data keep ranked
  */
 @RestController
 @RequestMapping(path = "/api/crypto/analyze")
@@ -28,9 +74,38 @@ public class CryptoAnalyzerController {
 
     private final CryptoAnalyzer cryptoAnalyzer;
 
+    private final CryptoResponseCache responseCache;
+
+    private final ShardTopology shardTopology;
+
+    private final RequestDeadlineResolver deadlineResolver;
+
+    private final DataVersionResolver dataVersionResolver;
+
+    private final ResponseEncodings responseEncodings;
+
+    private final BoundedExecutor requestPool;
+
+    private final AsyncTaskExecutor requestExecutor;
+
     @Autowired
-    public CryptoAnalyzerController(CryptoAnalyzer cryptoAnalyzer) {
+    public CryptoAnalyzerController(CryptoAnalyzer cryptoAnalyzer, CryptoResponseCache responseCache,
+                                    ShardTopology shardTopology, RequestDeadlineResolver deadlineResolver,
+                                    DataVersionResolver dataVersionResolver, ResponseEncodings responseEncodings) {
         this.cryptoAnalyzer = cryptoAnalyzer;
+        this.responseCache = responseCache;
+        this.shardTopology = shardTopology;
+        this.deadlineResolver = deadlineResolver;
+        this.dataVersionResolver = dataVersionResolver;
+        this.responseEncodings = responseEncodings;
+        this.requestPool = new BoundedExecutor("analyze-request-",
+                Integer.getInteger("analyze.request.threads", 200), Integer.getInteger("analyze.request.queue", 100));
+        this.requestExecutor = new ConcurrentTaskExecutor(requestPool);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        requestPool.shutdownNow();
     }
 
     /**
@@ -40,9 +115,18 @@ public class CryptoAnalyzerController {
      *                             restriction. It contains two optional fields representing start and end time points.
      *                             If any of them is omitted, calculation will be restricted only to the
      *                             other point in time. If both are omitted, calculation has no time restriction.
+     * @param ifNoneMatch          Optional ETag of a previously returned response, considered only if no time period
+     *                             is specified
+     * @param accept               Optional media types the client accepts, choosing the encoding of the response
+     * @param headerTimeoutMillis  Optional milliseconds the client waits for the response
+     * @param paramTimeoutMillis   Optional milliseconds the client waits for the response, if not set by header
+     * @param asOfVersion          Optional retained data version calculation applies to. If omitted, calculation
+     *                             applies to the latest version
      * @return A list of mappings between crypto and its normalized range value (no mappings exist for cryptos for
      * which no values are found)
-     * @throws CryptoInternalException Internal error during crypto data loading, manipulations or calculations
+     * @throws CryptoInternalException Internal error during crypto data loading, manipulations or calculations, or
+     *                                 {@link CryptoDeadlineExceededException} if the deadline of the request is exceeded
+     * @throws CryptoNotFoundException Requested data version is not retained
      */
     @Operation(summary = "Returns a list of cryptos sorted by normalized price range in descending order. Normalized range " +
             "is also returned with each crypto. Cryptos for which data do not exist are not present in the list. An " +
@@ -60,35 +144,69 @@ public class CryptoAnalyzerController {
     )
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully calculated list of cryptos",
-                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = CryptoMetricsListDto.class))}),
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = CryptoMetricsListDto.class)),
+                            @Content(mediaType = "application/cbor", schema = @Schema(implementation = CryptoMetricsListDto.class)),
+                            @Content(mediaType = "application/x-jackson-smile", schema = @Schema(implementation = CryptoMetricsListDto.class))}),
+            @ApiResponse(responseCode = "304", description = "Data did not change since the response identified by " +
+                    "the If-None-Match header was returned", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Requested data version is not retained",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))}),
+            @ApiResponse(responseCode = "429", description = "Too many requests of the same cost class are in progress, " +
+                    "retry after the seconds of the Retry-After header",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))}),
             @ApiResponse(responseCode = "500", description = "Internal error during crypto data loading, manipulations or calculations",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))}),
+            @ApiResponse(responseCode = "504", description = "The calculation did not complete within the timeout of the " +
+                    "request, set by the X-Request-Timeout-Millis header or the timeoutMillis parameter",
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))})
     })
     @PostMapping("/sort/by/normalized/desc")
-    public CryptoMetricsListDto sortCryptosByNormalizedRangeDesc(
-            @RequestBody Optional<TimePeriodRequestDto> timePeriodRequestDto
-    ) throws CryptoInternalException {
-        logger.debug("INSIDE sortCryptosByNormalizedRangeDesc(). Params: {}, {}", timePeriodRequestDto);
-        CryptoMetricsListDto response = cryptoAnalyzer.getCryptosSortedByNormalizedRangeDesc(timePeriodRequestDto);
+    public WebAsyncTask<ResponseEntity<?>> sortCryptosByNormalizedRangeDesc(
+            @RequestBody Optional<TimePeriodRequestDto> timePeriodRequestDto,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = RequestDeadlineResolver.TIMEOUT_HEADER, required = false) Long headerTimeoutMillis,
+            @RequestParam(value = RequestDeadlineResolver.TIMEOUT_PARAM, required = false) Long paramTimeoutMillis,
+            @RequestParam(value = DataVersionResolver.AS_OF_VERSION_PARAM, required = false) Long asOfVersion
+    ) throws CryptoNotFoundException, CryptoInternalException {
+        logger.debug("INSIDE sortCryptosByNormalizedRangeDesc(). Params: {}, {}, {}, {}, {}, {}", timePeriodRequestDto,
+                ifNoneMatch, accept, headerTimeoutMillis, paramTimeoutMillis, asOfVersion);
+        WebAsyncTask<ResponseEntity<?>> response = toAsyncTask(headerTimeoutMillis, paramTimeoutMillis, asOfVersion, () -> {
+            if (isCacheable(timePeriodRequestDto)) {
+                return toCachedResponseEntity("sort/by/normalized/desc", ifNoneMatch, accept,
+                        () -> cryptoAnalyzer.getCryptosSortedByNormalizedRangeDesc(timePeriodRequestDto));
+            }
+            return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).body(cryptoAnalyzer.getCryptosSortedByNormalizedRangeDesc(timePeriodRequestDto));
+        });
         logger.debug("EXITING sortCryptosByNormalizedRangeDesc()");
         return response;
     }
 
     /**
-     * Returns a mapping of metrics to their corresponding values for the specified crypto
+     * Returns a mapping of metrics to their corresponding values for the specified crypto or composite index
      *
-     * @param crypto               The crypto for which the metric values must be found
+     * @param crypto               The crypto, or the name of the index, for which the metric values must be found
      * @param timePeriodRequestDto Optional time period calculation applies to. If omitted, calculation has no time
      *                             restriction. It contains two optional fields representing start and end time points.
      *                             If any of them is omitted, calculation will be restricted only to the
      *                             other point in time. If both are omitted, calculation has no time restriction.
+     * @param ifNoneMatch          Optional ETag of a previously returned response, considered only if no time period
+     *                             is specified
+     * @param accept               Optional media types the client accepts, choosing the encoding of the response
+     * @param headerTimeoutMillis  Optional milliseconds the client waits for the response
+     * @param paramTimeoutMillis   Optional milliseconds the client waits for the response, if not set by header
+     * @param asOfVersion          Optional retained data version calculation applies to. If omitted, calculation
+     *                             applies to the latest version
      * @return A mapping of each metric to corresponding value (empty map if no values found for crypto)
-     * @throws CryptoInternalException Internal error during crypto data loading, manipulations or calculations
-     * @throws CryptoNotFoundException Requested crypto is not supported
+     * @throws CryptoInternalException Internal error during crypto data loading, manipulations or calculations, or
+     *                                 {@link CryptoDeadlineExceededException} if the deadline of the request is exceeded
+     * @throws CryptoNotFoundException Requested crypto is not supported, or requested data version is not retained
      */
     @Operation(summary = "Returns a mapping of metrics to their corresponding values for the specified crypto. Mapping is " +
-            "empty if data do not exist for specified crypto. Metrics returned are oldest,newest,minimum,maximum and " +
-            "normalized range. An " + "optional time period can be specified to restrict results. If not provided, search is " +
+            "empty if data do not exist for specified crypto. Metrics returned are oldest,newest,minimum,maximum, " +
+            "normalized range and the estimated median, p5 and p95 prices. The name of a composite index can be " +
+            "specified instead of a crypto, returning the metrics of its levels, except for the estimated prices. An " +
+            "optional time period can be specified to restrict results. If not provided, search is " +
             "not restricted and if " + "any of its fields are not provided, searching is restricted to only the other field. " +
             "Time period fields must " + "conform to pattern \"yyyy-MM-dd HH:mm:ss\"",
             requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(content = {
@@ -102,18 +220,40 @@ public class CryptoAnalyzerController {
     )
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully calculated metrics for crypto",
-                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = CryptoMetricsDto.class))}),
-            @ApiResponse(responseCode = "404", description = "Requested crypto is not supported",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = CryptoMetricsDto.class)),
+                            @Content(mediaType = "application/cbor", schema = @Schema(implementation = CryptoMetricsDto.class)),
+                            @Content(mediaType = "application/x-jackson-smile", schema = @Schema(implementation = CryptoMetricsDto.class))}),
+            @ApiResponse(responseCode = "304", description = "Data did not change since the response identified by " +
+                    "the If-None-Match header was returned", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Requested crypto is not supported or requested data version is not retained",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))}),
+            @ApiResponse(responseCode = "429", description = "Too many requests of the same cost class are in progress, " +
+                    "retry after the seconds of the Retry-After header",
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))}),
             @ApiResponse(responseCode = "500", description = "Internal error during crypto data loading, manipulations or calculations",
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))}),
+            @ApiResponse(responseCode = "504", description = "The calculation did not complete within the timeout of the " +
+                    "request, set by the X-Request-Timeout-Millis header or the timeoutMillis parameter",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))})
     })
     @PostMapping("/metrics/{crypto}")
-    public CryptoMetricsDto getMetricsForCrypto(
-            @PathVariable("crypto") String crypto, @RequestBody Optional<TimePeriodRequestDto> timePeriodRequestDto
-    ) throws CryptoInternalException, CryptoNotFoundException {
-        logger.debug("INSIDE getMetricsForCrypto(). Params: {}, {}", timePeriodRequestDto, crypto);
-        CryptoMetricsDto response = cryptoAnalyzer.getMetricsForCrypto(timePeriodRequestDto, crypto);
+    public WebAsyncTask<ResponseEntity<?>> getMetricsForCrypto(
+            @PathVariable("crypto") String crypto, @RequestBody Optional<TimePeriodRequestDto> timePeriodRequestDto,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = RequestDeadlineResolver.TIMEOUT_HEADER, required = false) Long headerTimeoutMillis,
+            @RequestParam(value = RequestDeadlineResolver.TIMEOUT_PARAM, required = false) Long paramTimeoutMillis,
+            @RequestParam(value = DataVersionResolver.AS_OF_VERSION_PARAM, required = false) Long asOfVersion
+    ) throws CryptoNotFoundException, CryptoInternalException {
+        logger.debug("INSIDE getMetricsForCrypto(). Params: {}, {}, {}, {}, {}, {}, {}", timePeriodRequestDto, crypto,
+                ifNoneMatch, accept, headerTimeoutMillis, paramTimeoutMillis, asOfVersion);
+        WebAsyncTask<ResponseEntity<?>> response = toAsyncTask(headerTimeoutMillis, paramTimeoutMillis, asOfVersion, () -> {
+            if (isCacheable(timePeriodRequestDto) && isCrypto(crypto)) {
+                return toCachedResponseEntity("metrics/" + crypto, ifNoneMatch, accept,
+                        () -> cryptoAnalyzer.getMetricsForCrypto(timePeriodRequestDto, crypto));
+            }
+            return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).body(cryptoAnalyzer.getMetricsForCrypto(timePeriodRequestDto, crypto));
+        });
         logger.debug("EXITING getMetricsForCrypto()");
         return response;
     }
@@ -125,8 +265,17 @@ public class CryptoAnalyzerController {
      *                             restriction. It contains two optional fields representing start and end time points.
      *                             If any of them is omitted, calculation will be restricted only to the
      *                             other point in time. If both are omitted, calculation has no time restriction.
+     * @param ifNoneMatch          Optional ETag of a previously returned response, considered only if no time period
+     *                             is specified
+     * @param accept               Optional media types the client accepts, choosing the encoding of the response
+     * @param headerTimeoutMillis  Optional milliseconds the client waits for the response
+     * @param paramTimeoutMillis   Optional milliseconds the client waits for the response, if not set by header
+     * @param asOfVersion          Optional retained data version calculation applies to. If omitted, calculation
+     *                             applies to the latest version
      * @return A mapping of the crypto to its normalized range value (if no crypto data found, mapping contains null as values)
-     * @throws CryptoInternalException Internal error during crypto data loading, manipulations or calculations
+     * @throws CryptoInternalException Internal error during crypto data loading, manipulations or calculations, or
+     *                                 {@link CryptoDeadlineExceededException} if the deadline of the request is exceeded
+     * @throws CryptoNotFoundException Requested data version is not retained
      */
     @Operation(summary = "Returns the crypto with the highest normalized range. Its normalized range value is also returned. " +
             "Response contains null values if crypto data do not exist. An optional time period can be specified to restrict " +
@@ -143,17 +292,294 @@ public class CryptoAnalyzerController {
     )
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully found crypto",
-                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = CryptoMetricDto.class))}),
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = CryptoMetricDto.class)),
+                            @Content(mediaType = "application/cbor", schema = @Schema(implementation = CryptoMetricDto.class)),
+                            @Content(mediaType = "application/x-jackson-smile", schema = @Schema(implementation = CryptoMetricDto.class))}),
+            @ApiResponse(responseCode = "304", description = "Data did not change since the response identified by " +
+                    "the If-None-Match header was returned", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Requested data version is not retained",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))}),
+            @ApiResponse(responseCode = "429", description = "Too many requests of the same cost class are in progress, " +
+                    "retry after the seconds of the Retry-After header",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))}),
             @ApiResponse(responseCode = "500", description = "Internal error during crypto data loading, manipulations or calculations",
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))}),
+            @ApiResponse(responseCode = "504", description = "The calculation did not complete within the timeout of the " +
+                    "request, set by the X-Request-Timeout-Millis header or the timeoutMillis parameter",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))})
     })
     @PostMapping("/crypto/with/highest/normalized")
-    public CryptoMetricDto getCryptoWithHighestNormalizedRange(
-            @RequestBody Optional<TimePeriodRequestDto> timePeriodRequestDto
-    ) throws CryptoInternalException {
-        logger.debug("INSIDE getCryptoWithHighestNormalizedRange(). Params: {}", timePeriodRequestDto);
-        CryptoMetricDto response = cryptoAnalyzer.getCryptoWithHighestNormalizedRange(timePeriodRequestDto);
+    public WebAsyncTask<ResponseEntity<?>> getCryptoWithHighestNormalizedRange(
+            @RequestBody Optional<TimePeriodRequestDto> timePeriodRequestDto,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = RequestDeadlineResolver.TIMEOUT_HEADER, required = false) Long headerTimeoutMillis,
+            @RequestParam(value = RequestDeadlineResolver.TIMEOUT_PARAM, required = false) Long paramTimeoutMillis,
+            @RequestParam(value = DataVersionResolver.AS_OF_VERSION_PARAM, required = false) Long asOfVersion
+    ) throws CryptoNotFoundException, CryptoInternalException {
+        logger.debug("INSIDE getCryptoWithHighestNormalizedRange(). Params: {}, {}, {}, {}, {}, {}", timePeriodRequestDto,
+                ifNoneMatch, accept, headerTimeoutMillis, paramTimeoutMillis, asOfVersion);
+        WebAsyncTask<ResponseEntity<?>> response = toAsyncTask(headerTimeoutMillis, paramTimeoutMillis, asOfVersion, () -> {
+            if (isCacheable(timePeriodRequestDto)) {
+                return toCachedResponseEntity("crypto/with/highest/normalized", ifNoneMatch, accept,
+                        () -> cryptoAnalyzer.getCryptoWithHighestNormalizedRange(timePeriodRequestDto));
+            }
+            return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).body(cryptoAnalyzer.getCryptoWithHighestNormalizedRange(timePeriodRequestDto));
+        });
         logger.debug("EXITING getCryptoWithHighestNormalizedRange()");
         return response;
     }
+
+    /**
+     * Returns a list of cryptos sorted by their normalized price range in a UTC day, in descending order
+     *
+     * @param day                 The day, in the format "yyyy-MM-dd"
+     * @param accept              Optional media types the client accepts, choosing the encoding of the response
+     * @param headerTimeoutMillis Optional milliseconds the client waits for the response
+     * @param paramTimeoutMillis  Optional milliseconds the client waits for the response, if not set by header
+     * @param asOfVersion         Optional retained data version calculation applies to. If omitted, calculation
+     *                            applies to the latest version
+     * @return A list of mappings between crypto and its normalized range value (no mappings exist for cryptos for
+     * which no values are found in the day)
+     * @throws CryptoInternalException Internal error during crypto data loading, manipulations or calculations, or
+     *                                 {@link CryptoDeadlineExceededException} if the deadline of the request is exceeded
+     * @throws CryptoNotFoundException Requested data version is not retained
+     */
+    @Operation(summary = "Returns a list of cryptos sorted by their normalized price range in the specified UTC day, in " +
+            "descending order. Normalized range is also returned with each crypto. Cryptos without data in the day are " +
+            "not present in the list. The day must conform to pattern \"yyyy-MM-dd\"")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully calculated list of cryptos",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = CryptoMetricsListDto.class)),
+                            @Content(mediaType = "application/cbor", schema = @Schema(implementation = CryptoMetricsListDto.class)),
+                            @Content(mediaType = "application/x-jackson-smile", schema = @Schema(implementation = CryptoMetricsListDto.class))}),
+            @ApiResponse(responseCode = "400", description = "The day does not conform to the pattern", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Requested data version is not retained",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))}),
+            @ApiResponse(responseCode = "429", description = "Too many requests of the same cost class are in progress, " +
+                    "retry after the seconds of the Retry-After header",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))}),
+            @ApiResponse(responseCode = "500", description = "Internal error during crypto data loading, manipulations or calculations",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))}),
+            @ApiResponse(responseCode = "504", description = "The calculation did not complete within the timeout of the " +
+                    "request, set by the X-Request-Timeout-Millis header or the timeoutMillis parameter",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))})
+    })
+    @GetMapping("/sort/by/normalized/desc/on/{day}")
+    public WebAsyncTask<ResponseEntity<?>> sortCryptosByNormalizedRangeDescOnDay(
+            @PathVariable("day") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate day,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = RequestDeadlineResolver.TIMEOUT_HEADER, required = false) Long headerTimeoutMillis,
+            @RequestParam(value = RequestDeadlineResolver.TIMEOUT_PARAM, required = false) Long paramTimeoutMillis,
+            @RequestParam(value = DataVersionResolver.AS_OF_VERSION_PARAM, required = false) Long asOfVersion
+    ) throws CryptoNotFoundException, CryptoInternalException {
+        logger.debug("INSIDE sortCryptosByNormalizedRangeDescOnDay(). Params: {}, {}, {}, {}, {}", day, accept,
+                headerTimeoutMillis, paramTimeoutMillis, asOfVersion);
+        WebAsyncTask<ResponseEntity<?>> response = toAsyncTask(headerTimeoutMillis, paramTimeoutMillis, asOfVersion,
+                () -> ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT)
+                        .body(cryptoAnalyzer.getCryptosSortedByNormalizedRangeDesc(Optional.of(toTimePeriod(day)))));
+        logger.debug("EXITING sortCryptosByNormalizedRangeDescOnDay()");
+        return response;
+    }
+
+    /**
+     * Returns the crypto with the highest normalized price range in a UTC day
+     *
+     * @param day                 The day, in the format "yyyy-MM-dd"
+     * @param accept              Optional media types the client accepts, choosing the encoding of the response
+     * @param headerTimeoutMillis Optional milliseconds the client waits for the response
+     * @param paramTimeoutMillis  Optional milliseconds the client waits for the response, if not set by header
+     * @param asOfVersion         Optional retained data version calculation applies to. If omitted, calculation
+     *                            applies to the latest version
+     * @return A mapping of the crypto to its normalized range value (if no crypto data found in the day, mapping
+     * contains null as values)
+     * @throws CryptoInternalException Internal error during crypto data loading, manipulations or calculations, or
+     *                                 {@link CryptoDeadlineExceededException} if the deadline of the request is exceeded
+     * @throws CryptoNotFoundException Requested data version is not retained
+     */
+    @Operation(summary = "Returns the crypto with the highest normalized range in the specified UTC day. Its normalized " +
+            "range value is also returned. Response contains null values if crypto data do not exist in the day. The " +
+            "day must conform to pattern \"yyyy-MM-dd\"")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully found crypto",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = CryptoMetricDto.class)),
+                            @Content(mediaType = "application/cbor", schema = @Schema(implementation = CryptoMetricDto.class)),
+                            @Content(mediaType = "application/x-jackson-smile", schema = @Schema(implementation = CryptoMetricDto.class))}),
+            @ApiResponse(responseCode = "400", description = "The day does not conform to the pattern", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Requested data version is not retained",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))}),
+            @ApiResponse(responseCode = "429", description = "Too many requests of the same cost class are in progress, " +
+                    "retry after the seconds of the Retry-After header",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))}),
+            @ApiResponse(responseCode = "500", description = "Internal error during crypto data loading, manipulations or calculations",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))}),
+            @ApiResponse(responseCode = "504", description = "The calculation did not complete within the timeout of the " +
+                    "request, set by the X-Request-Timeout-Millis header or the timeoutMillis parameter",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))})
+    })
+    @GetMapping("/crypto/with/highest/normalized/on/{day}")
+    public WebAsyncTask<ResponseEntity<?>> getCryptoWithHighestNormalizedRangeOnDay(
+            @PathVariable("day") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate day,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = RequestDeadlineResolver.TIMEOUT_HEADER, required = false) Long headerTimeoutMillis,
+            @RequestParam(value = RequestDeadlineResolver.TIMEOUT_PARAM, required = false) Long paramTimeoutMillis,
+            @RequestParam(value = DataVersionResolver.AS_OF_VERSION_PARAM, required = false) Long asOfVersion
+    ) throws CryptoNotFoundException, CryptoInternalException {
+        logger.debug("INSIDE getCryptoWithHighestNormalizedRangeOnDay(). Params: {}, {}, {}, {}, {}", day, accept,
+                headerTimeoutMillis, paramTimeoutMillis, asOfVersion);
+        WebAsyncTask<ResponseEntity<?>> response = toAsyncTask(headerTimeoutMillis, paramTimeoutMillis, asOfVersion,
+                () -> ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT)
+                        .body(cryptoAnalyzer.getCryptoWithHighestNormalizedRange(Optional.of(toTimePeriod(day)))));
+        logger.debug("EXITING getCryptoWithHighestNormalizedRangeOnDay()");
+        return response;
+    }
+
+    /**
+     * @param day A UTC day
+     * @return The time period from the start of the day to the start of the next one
+     */
+    private static TimePeriodRequestDto toTimePeriod(LocalDate day) {
+        TimePeriodRequestDto timePeriodRequestDto = new TimePeriodRequestDto();
+        timePeriodRequestDto.setFromDateTime(Optional.of(day.atStartOfDay()));
+        timePeriodRequestDto.setToDateTime(Optional.of(day.plusDays(1).atStartOfDay()));
+        return timePeriodRequestDto;
+    }
+
+    /**
+     * Wraps the calculation of a response into a task run asynchronously under the deadline of the request. The
+     * deadline and the data snapshot resolved by {@link DataVersionResolver} are attached to the thread running the
+     * calculation, and the deadline is cancelled once the request times out, fails or completes. The response carries
+     * the data version it was calculated on
+     *
+     * @param headerTimeoutMillis Optional timeout set by header
+     * @param paramTimeoutMillis  Optional timeout set by parameter
+     * @param asOfVersion         Optional data version set by parameter
+     * @param responseCalculation Calculates the response
+     * @return The task
+     * @throws CryptoNotFoundException The data version is not retained
+     * @throws CryptoInternalException A data version is specified in a sharded deployment
+     */
+    private WebAsyncTask<ResponseEntity<?>> toAsyncTask(Long headerTimeoutMillis, Long paramTimeoutMillis,
+                                                        Long asOfVersion,
+                                                        Callable<ResponseEntity<?>> responseCalculation)
+            throws CryptoNotFoundException, CryptoInternalException {
+        DataSnapshot snapshot = dataVersionResolver.resolve(asOfVersion);
+        Deadline deadline = deadlineResolver.resolve(headerTimeoutMillis, paramTimeoutMillis);
+        // A timeout of zero disables the container timeout
+        long timeoutMillis = deadline.isUnbounded() ? 0 : Math.max(1, deadline.remainingMillis());
+        WebAsyncTask<ResponseEntity<?>> task = new WebAsyncTask<>(timeoutMillis, requestExecutor, () -> {
+            try (Deadline.Scope ignored = deadline.attach();
+                 DataSnapshot.Scope ignoredSnapshot = DataSnapshot.attach(snapshot)) {
+                return withDataVersion(responseCalculation.call());
+            }
+        });
+        task.onTimeout(() -> {
+            CryptoDeadlineExceededException exception = deadline.newExceededException();
+            deadline.cancel();
+            throw exception;
+        });
+        task.onError(cancellingOnError(deadline));
+        task.onCompletion(deadline::cancel);
+        return task;
+    }
+
+    /**
+     * Creates the error callback of an async task, cancelling the deadline of the request and letting the error be
+     * handled as it is, so that eg a client disconnecting is not reported as an exceeded deadline
+     *
+     * @param deadline The deadline of the request
+     * @return The callback
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Callable<ResponseEntity<?>> cancellingOnError(Deadline deadline) {
+        // RESULT_NONE is no response, but the marker to continue with the error, hence the raw type
+        Callable callback = () -> {
+            deadline.cancel();
+            return CallableProcessingInterceptor.RESULT_NONE;
+        };
+        return callback;
+    }
+
+    /**
+     * Adds the {@value DataVersionResolver#VERSION_HEADER} header to a response, set to the version of the data
+     * snapshot attached to the current thread, or to the latest version if none is attached
+     *
+     * @param response The response
+     * @return The response with the header, or the same response in sharded deployments
+     */
+    private ResponseEntity<?> withDataVersion(ResponseEntity<?> response) {
+        OptionalLong dataVersion = dataVersionResolver.currentVersion();
+        if (dataVersion.isEmpty()) {
+            return response;
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.addAll(response.getHeaders());
+        headers.set(DataVersionResolver.VERSION_HEADER, Long.toString(dataVersion.getAsLong()));
+        return new ResponseEntity<>(response.getBody(), headers, response.getStatusCode());
+    }
+
+    /**
+     * Returns whether the response of a request can be cached, ie whether the application is not sharded and the
+     * request specifies no time restriction
+     *
+     * @param timePeriodRequestDto Optional time period of the request
+     * @return True if the response can be cached
+     */
+    private boolean isCacheable(Optional<TimePeriodRequestDto> timePeriodRequestDto) {
+        return !shardTopology.isSharded() && hasNoTimeRestriction(timePeriodRequestDto);
+    }
+
+    /**
+     * Returns whether a path variable is the code of a crypto, rather than the name of a composite index
+     *
+     * @param crypto The path variable
+     * @return True if it is the code of a crypto
+     */
+    private static boolean isCrypto(String crypto) {
+        return Arrays.stream(CryptoEnum.values()).anyMatch(e -> e.getCode().equals(crypto));
+    }
+
+    /**
+     * Returns whether a request specifies no time restriction
+     *
+     * @param timePeriodRequestDto Optional time period of the request
+     * @return True if neither a start nor an end time point is specified
+     */
+    private static boolean hasNoTimeRestriction(Optional<TimePeriodRequestDto> timePeriodRequestDto) {
+        return timePeriodRequestDto.isEmpty() ||
+                ((timePeriodRequestDto.get().getFromDateTime() == null || timePeriodRequestDto.get().getFromDateTime().isEmpty()) &&
+                        (timePeriodRequestDto.get().getToDateTime() == null || timePeriodRequestDto.get().getToDateTime().isEmpty()));
+    }
+
+    /**
+     * Serves a response from {@link CryptoResponseCache}, in the encoding negotiated by the Accept header. Returns
+     * 304 (Not Modified) without body if the client already holds the current response
+     *
+     * @param key              The key identifying the query
+     * @param ifNoneMatch      Optional ETag of a previously returned response
+     * @param accept           Optional media types the client accepts
+     * @param responseSupplier Calculates the response if it is not cached
+     * @return The response entity
+     * @throws CryptoInternalException Internal error during crypto data loading, manipulations or calculations
+     * @throws CryptoNotFoundException Requested crypto is not supported
+     */
+    private ResponseEntity<?> toCachedResponseEntity(
+            String key, String ifNoneMatch, String accept, CryptoResponseCache.ResponseSupplier responseSupplier
+    ) throws CryptoInternalException, CryptoNotFoundException {
+        CryptoResponseCache.CachedResponse cachedResponse =
+                responseCache.getOrCalculate(key, responseEncodings.negotiate(accept), responseSupplier);
+        if (CryptoResponseCache.matches(ifNoneMatch, cachedResponse.getETag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(cachedResponse.getETag())
+                    .cacheControl(CacheControl.noCache())
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(cachedResponse.getETag())
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT)
+                .contentType(cachedResponse.getMediaType())
+                .body(cachedResponse.getBody());
+    }
 }
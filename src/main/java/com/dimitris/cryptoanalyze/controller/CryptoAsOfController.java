@@ -0,0 +1,182 @@
+package com.dimitris.cryptoanalyze.controller;
+
+import com.dimitris.cryptoanalyze.controller.dto.AsOfPricesDto;
+import com.dimitris.cryptoanalyze.controller.dto.ErrorResponseDto;
+import com.dimitris.cryptoanalyze.service.CryptoPriceAligner;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.model.DataSnapshot;
+import com.dimitris.cryptoanalyze.service.model.Deadline;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Controller providing REST endpoints through which the prices of cryptos are aligned in time, each crypto being
+ * represented at a point in time by its last known price. Only the cryptos stored by this instance are aligned.
+ * <p>
+ * Like the analysis endpoints, every response carries the {@value DataVersionResolver#VERSION_HEADER} header with the
+ * version of the data it was read from, and a request reads an earlier version by sending the
+ * {@value DataVersionResolver#AS_OF_VERSION_PARAM} parameter while the version is retained. Exports are streamed under
+ * the deadline resolved by {@link RequestDeadlineResolver}, through the admission control of the aligner
+ */
+@RestController
+@RequestMapping(path = "/api/crypto/asof")
+public class CryptoAsOfController {
+
+    private static final Logger logger = LoggerFactory.getLogger(CryptoAsOfController.class);
+
+    public static final MediaType TEXT_CSV = new MediaType("text", "csv", StandardCharsets.UTF_8);
+
+    private final CryptoPriceAligner cryptoPriceAligner;
+
+    private final RequestDeadlineResolver deadlineResolver;
+
+    private final DataVersionResolver dataVersionResolver;
+
+    @Autowired
+    public CryptoAsOfController(CryptoPriceAligner cryptoPriceAligner, RequestDeadlineResolver deadlineResolver,
+                                DataVersionResolver dataVersionResolver) {
+        this.cryptoPriceAligner = cryptoPriceAligner;
+        this.deadlineResolver = deadlineResolver;
+        this.dataVersionResolver = dataVersionResolver;
+    }
+
+    /**
+     * Returns the last known price of each crypto at a point in time
+     *
+     * @param timestamp   Timestamp in Epoch millis
+     * @param asOfVersion Optional retained data version prices are read from. If omitted, the latest version
+     * @return The newest price of each crypto at or before the timestamp, for the cryptos having one
+     * @throws CryptoNotFoundException The data version is not retained
+     * @throws CryptoInternalException Internal error during crypto data loading
+     */
+    @Operation(summary = "Returns the last known price of each crypto at a point in time, given in Epoch millis, " +
+            "along with the timestamp of that price. Cryptos without values at or before that point are omitted")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Prices of cryptos",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = AsOfPricesDto.class))}),
+            @ApiResponse(responseCode = "404", description = "Data version not retained",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))}),
+            @ApiResponse(responseCode = "500", description = "Internal error during crypto data loading",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))})
+    })
+    @GetMapping("/prices")
+    public ResponseEntity<AsOfPricesDto> getPricesAsOf(
+            @RequestParam("timestamp") long timestamp,
+            @RequestParam(value = DataVersionResolver.AS_OF_VERSION_PARAM, required = false) Long asOfVersion
+    ) throws CryptoNotFoundException, CryptoInternalException {
+        logger.debug("INSIDE getPricesAsOf(). Params: {}, {}", timestamp, asOfVersion);
+        DataSnapshot snapshot = dataVersionResolver.resolve(asOfVersion);
+        try (DataSnapshot.Scope ignored = DataSnapshot.attach(snapshot)) {
+            AsOfPricesDto asOfPricesDto = cryptoPriceAligner.getPricesAsOf(timestamp);
+            logger.debug("EXITING getPricesAsOf(). Returning: {}", asOfPricesDto);
+            return ResponseEntity.ok().headers(dataVersionHeaders()).body(asOfPricesDto);
+        }
+    }
+
+    /**
+     * Streams the aligned prices of cryptos in a time range as CSV
+     *
+     * @param fromTimestamp Timestamp in Epoch millis of the start of the range, inclusive
+     * @param toTimestamp   Timestamp in Epoch millis of the end of the range, exclusive
+     * @param cryptos             Optional cryptos, in the order of the columns. If omitted, every crypto
+     * @param headerTimeoutMillis Optional timeout of the request in millis, set by header
+     * @param paramTimeoutMillis  Optional timeout of the request in millis, set by parameter
+     * @param asOfVersion         Optional retained data version prices are read from. If omitted, the latest version
+     * @param response            The response the CSV is streamed to
+     * @return The CSV, written as it is read from the stored values
+     * @throws CryptoNotFoundException A crypto is not supported, or not stored by this instance, or the data version
+     *                                 is not retained
+     * @throws CryptoInternalException Internal error during crypto data loading, or the range is empty
+     */
+    @Operation(summary = "Streams as CSV the aligned prices of cryptos in a time range, given in Epoch millis, start " +
+            "inclusive and end exclusive. There is a row per timestamp at which any of the cryptos has a value, " +
+            "holding the last known price of each crypto, empty for a crypto without values at or before it")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Aligned prices",
+                    content = {@Content(mediaType = "text/csv")}),
+            @ApiResponse(responseCode = "404", description = "A crypto is not supported or not stored by this " +
+                    "instance, or the data version is not retained",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))}),
+            @ApiResponse(responseCode = "429", description = "Too many requests, retry after the seconds of the " +
+                    "Retry-After header",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))}),
+            @ApiResponse(responseCode = "500", description = "Internal error during crypto data loading, or empty range",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))}),
+            @ApiResponse(responseCode = "504", description = "Request deadline exceeded before the export started",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))})
+    })
+    @GetMapping("/matrix")
+    public ResponseEntity<StreamingResponseBody> exportAligned(
+            @RequestParam("from") long fromTimestamp,
+            @RequestParam("to") long toTimestamp,
+            @RequestParam(value = "cryptos", required = false) List<String> cryptos,
+            @RequestHeader(value = RequestDeadlineResolver.TIMEOUT_HEADER, required = false) Long headerTimeoutMillis,
+            @RequestParam(value = RequestDeadlineResolver.TIMEOUT_PARAM, required = false) Long paramTimeoutMillis,
+            @RequestParam(value = DataVersionResolver.AS_OF_VERSION_PARAM, required = false) Long asOfVersion,
+            HttpServletResponse response
+    ) throws CryptoNotFoundException, CryptoInternalException {
+        logger.debug("INSIDE exportAligned(). Params: {}, {}, {}, {}, {}, {}", fromTimestamp, toTimestamp, cryptos,
+                headerTimeoutMillis, paramTimeoutMillis, asOfVersion);
+        DataSnapshot snapshot = dataVersionResolver.resolve(asOfVersion);
+        Deadline deadline = deadlineResolver.resolve(headerTimeoutMillis, paramTimeoutMillis);
+        CryptoPriceAligner.AlignedExport export;
+        HttpHeaders headers;
+        // Prepared before the response is committed, so that invalid requests are answered with an error
+        try (DataSnapshot.Scope ignored = DataSnapshot.attach(snapshot)) {
+            export = cryptoPriceAligner.exportAligned(Optional.ofNullable(cryptos), fromTimestamp, toTimestamp);
+            headers = dataVersionHeaders();
+        }
+        StreamingResponseBody body = outputStream -> {
+            try (Deadline.Scope ignored = deadline.attach();
+                 DataSnapshot.Scope ignoredSnapshot = DataSnapshot.attach(snapshot)) {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+                export.writeTo(writer);
+                writer.flush();
+            } catch (CryptoInternalException e) {
+                // Answered through its cause by CryptoExceptionHandler, eg 429 if the export is not admitted. Nothing
+                // is sent before the first buffer fills, so the CSV headers are cleared for the error to be negotiated
+                if (!response.isCommitted()) {
+                    response.reset();
+                }
+                throw new CompletionException(e);
+            } finally {
+                deadline.cancel();
+            }
+        };
+        logger.debug("EXITING exportAligned()");
+        return ResponseEntity.ok().headers(headers).contentType(TEXT_CSV).body(body);
+    }
+
+    /**
+     * @return Headers holding the {@value DataVersionResolver#VERSION_HEADER} header, set to the version of the data
+     * snapshot attached to the current thread, or to the latest version if none is attached. Empty in sharded
+     * deployments
+     */
+    private HttpHeaders dataVersionHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        dataVersionResolver.currentVersion().ifPresent(dataVersion ->
+                headers.set(DataVersionResolver.VERSION_HEADER, Long.toString(dataVersion)));
+        return headers;
+    }
+}
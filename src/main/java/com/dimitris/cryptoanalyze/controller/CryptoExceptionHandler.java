@@ -1,16 +1,22 @@
 package com.dimitris.cryptoanalyze.controller;
 
 import com.dimitris.cryptoanalyze.controller.dto.ErrorResponseDto;
+import com.dimitris.cryptoanalyze.service.exception.CryptoDeadlineExceededException;
 import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
 import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoOverloadedException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoValidationException;
 import io.swagger.v3.oas.annotations.Hidden;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * This class handles at Controller level any checked exception thrown from lower level services
  */
@@ -35,6 +41,70 @@ public class CryptoExceptionHandler {
         return new ResponseEntity<>(errorResponseDto, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
+    /**
+     * Handles {@link CryptoOverloadedException} thrown when a request is rejected because the application has no
+     * capacity left for it. Logs exception message without stack trace, since rejections are expected under load,
+     * and returns {@link ErrorResponseDto} along with a Retry-After header
+     *
+     * @param cryptoOverloadedException Exception thrown by admission control when a request pool is saturated
+     * @return A special response for indicating error
+     */
+    @ExceptionHandler(value = {CryptoOverloadedException.class})
+    protected ResponseEntity handleOverloadedException(CryptoOverloadedException cryptoOverloadedException) {
+        logger.warn("Request rejected. {}", cryptoOverloadedException.getMessage());
+        ErrorResponseDto errorResponseDto = new ErrorResponseDto(cryptoOverloadedException.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(cryptoOverloadedException.getRetryAfterSeconds()))
+                .body(errorResponseDto);
+    }
+
+    /**
+     * Handles {@link RejectedExecutionException} thrown when a request cannot be processed asynchronously because
+     * the executor of requests is saturated. Returns {@link ErrorResponseDto} with status 429 (Too Many Requests),
+     * as for requests rejected by admission control, with a Retry-After header of one second
+     *
+     * @param rejectedExecutionException Exception thrown by the executor of requests
+     * @return A special response for indicating error
+     */
+    @ExceptionHandler(value = {RejectedExecutionException.class})
+    protected ResponseEntity handleRejectedExecutionException(RejectedExecutionException rejectedExecutionException) {
+        logger.warn("Request rejected. {}", rejectedExecutionException.getMessage());
+        ErrorResponseDto errorResponseDto = new ErrorResponseDto("Too many requests, request executor is saturated");
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(errorResponseDto);
+    }
+
+    /**
+     * Handles {@link CryptoDeadlineExceededException} thrown when a calculation is abandoned because the deadline of
+     * its request is exceeded or the request is cancelled. Logs exception message without stack trace and returns
+     * {@link ErrorResponseDto} with status 504 (Gateway Timeout)
+     *
+     * @param cryptoDeadlineExceededException Exception thrown by calculations checking the deadline of their request
+     * @return A special response for indicating error
+     */
+    @ExceptionHandler(value = {CryptoDeadlineExceededException.class})
+    protected ResponseEntity handleDeadlineExceededException(CryptoDeadlineExceededException cryptoDeadlineExceededException) {
+        logger.warn("Request abandoned. {}", cryptoDeadlineExceededException.getMessage());
+        ErrorResponseDto errorResponseDto = new ErrorResponseDto(cryptoDeadlineExceededException.getMessage());
+        return new ResponseEntity<>(errorResponseDto, HttpStatus.GATEWAY_TIMEOUT);
+    }
+
+    /**
+     * Handles {@link CryptoValidationException} thrown when a request carries invalid or missing fields. Logs
+     * exception message without stack trace, since the client is at fault, and returns {@link ErrorResponseDto} with
+     * status 400 (Bad Request)
+     *
+     * @param cryptoValidationException Exception thrown by low level services validating a request
+     * @return A special response for indicating error
+     */
+    @ExceptionHandler(value = {CryptoValidationException.class})
+    protected ResponseEntity handleValidationException(CryptoValidationException cryptoValidationException) {
+        logger.warn("Invalid request. {}", cryptoValidationException.getMessage());
+        ErrorResponseDto errorResponseDto = new ErrorResponseDto(cryptoValidationException.getMessage());
+        return new ResponseEntity<>(errorResponseDto, HttpStatus.BAD_REQUEST);
+    }
+
     /**
      * Handles {@link CryptoNotFoundException} thrown from lower level services. Logs exception message and
      * stack trace, and wraps exception into special exception dto {@link ErrorResponseDto} which returns to user
@@ -0,0 +1,114 @@
+package com.dimitris.cryptoanalyze.controller;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoIndexDto;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoIndexRequestDto;
+import com.dimitris.cryptoanalyze.controller.dto.ErrorResponseDto;
+import com.dimitris.cryptoanalyze.service.CryptoIndexManager;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoValidationException;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Controller providing REST endpoints through which composite indices, weighted baskets of cryptos, are managed.
+ * Metrics of an index are returned by the metrics endpoint of {@link CryptoAnalyzerController}, given the name of the
+ * index in place of a crypto
+ */
+@RestController
+@RequestMapping(path = "/api/crypto/indices")
+public class CryptoIndexController {
+
+    private static final Logger logger = LoggerFactory.getLogger(CryptoIndexController.class);
+
+    private final CryptoIndexManager cryptoIndexManager;
+
+    @Autowired
+    public CryptoIndexController(CryptoIndexManager cryptoIndexManager) {
+        this.cryptoIndexManager = cryptoIndexManager;
+    }
+
+    /**
+     * Defines a composite index
+     *
+     * @param cryptoIndexRequestDto The index
+     * @return The defined index, with the number of its levels
+     * @throws CryptoNotFoundException A crypto of the index is not supported, or not stored by this instance
+     * @throws CryptoValidationException The index is missing a field, has an invalid name, a non positive weight or
+     *                                    a grid shorter than a second
+     */
+    @Operation(summary = "Defines a composite index, replacing any index of the same name. Its level at each point " +
+            "of a time grid of gridMillis (default one minute) is the sum of the weighted prices of its cryptos, the " +
+            "price of each crypto being its newest price at that point. Levels are maintained as values are ingested",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(content = {
+                    @Content(examples = {
+                            @ExampleObject(value = "{\"name\": \"majors\", \"weights\": {\"btc\": 0.6, \"eth\": 8}, " +
+                                    "\"gridMillis\": 3600000}")})
+            }
+            )
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Successfully defined index",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = CryptoIndexDto.class))}),
+            @ApiResponse(responseCode = "404", description = "A crypto of the index is not supported or not stored by this instance",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))}),
+            @ApiResponse(responseCode = "400", description = "The index is missing a field, has an invalid name, a " +
+                    "non positive weight or a grid shorter than a second",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))})
+    })
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public CryptoIndexDto defineIndex(
+            @RequestBody CryptoIndexRequestDto cryptoIndexRequestDto
+    ) throws CryptoNotFoundException, CryptoValidationException {
+        logger.debug("INSIDE defineIndex(). Params: {}", cryptoIndexRequestDto);
+        CryptoIndexDto cryptoIndexDto = cryptoIndexManager.define(cryptoIndexRequestDto);
+        logger.debug("EXITING defineIndex(). Returning: {}", cryptoIndexDto);
+        return cryptoIndexDto;
+    }
+
+    /**
+     * @return The defined indices
+     */
+    @Operation(summary = "Returns the defined composite indices, in name order")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Defined indices",
+                    content = {@Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = CryptoIndexDto.class)))})
+    })
+    @GetMapping
+    public List<CryptoIndexDto> getIndices() {
+        logger.debug("INSIDE getIndices()");
+        return cryptoIndexManager.getIndices();
+    }
+
+    /**
+     * Removes a composite index
+     *
+     * @param name The name of the index
+     * @throws CryptoNotFoundException No index with the name is defined
+     */
+    @Operation(summary = "Removes a composite index")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Successfully removed index"),
+            @ApiResponse(responseCode = "404", description = "No index with the name is defined",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))})
+    })
+    @DeleteMapping("/{name}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void removeIndex(@PathVariable("name") String name) throws CryptoNotFoundException {
+        logger.debug("INSIDE removeIndex(). Params: {}", name);
+        cryptoIndexManager.remove(name);
+        logger.debug("EXITING removeIndex()");
+    }
+}
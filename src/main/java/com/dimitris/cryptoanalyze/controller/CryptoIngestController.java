@@ -0,0 +1,78 @@
+package com.dimitris.cryptoanalyze.controller;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoValueRequestDto;
+import com.dimitris.cryptoanalyze.controller.dto.ErrorResponseDto;
+import com.dimitris.cryptoanalyze.service.CryptoValuesIngestor;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoValidationException;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Controller providing REST endpoints through which crypto values are ingested while the application is running
+ */
+@RestController
+@RequestMapping(path = "/api/crypto/ingest")
+public class CryptoIngestController {
+
+    private static final Logger logger = LoggerFactory.getLogger(CryptoIngestController.class);
+
+    private final CryptoValuesIngestor cryptoValuesIngestor;
+
+    @Autowired
+    public CryptoIngestController(CryptoValuesIngestor cryptoValuesIngestor) {
+        this.cryptoValuesIngestor = cryptoValuesIngestor;
+    }
+
+    /**
+     * Ingests a batch of values for the specified crypto
+     *
+     * @param crypto The crypto the values belong to
+     * @param values The crypto values, each one consisting of a timestamp in Epoch millis and a price
+     * @throws CryptoInternalException   Internal error during logging or storing crypto data
+     * @throws CryptoNotFoundException   Requested crypto is not supported
+     * @throws CryptoValidationException Entries with missing price found
+     */
+    @Operation(summary = "Ingests a batch of values for the specified crypto. Values are durably logged before the " +
+            "response is returned and are immediately taken into account by calculations. Each value consists of a " +
+            "timestamp in Epoch millis and a price",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(content = {
+                    @Content(examples = {
+                            @ExampleObject(value = "[\n" +
+                                    "  {\"timestamp\": 1641009600000, \"price\": 46813.21},\n" +
+                                    "  {\"timestamp\": 1641020400000, \"price\": 46979.61}\n" +
+                                    "]")})
+            }
+            )
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Successfully ingested values"),
+            @ApiResponse(responseCode = "400", description = "Entries with missing price found",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))}),
+            @ApiResponse(responseCode = "404", description = "Requested crypto is not supported",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))}),
+            @ApiResponse(responseCode = "500", description = "Internal error during logging or storing crypto data",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))})
+    })
+    @PostMapping("/{crypto}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void ingestValues(
+            @PathVariable("crypto") String crypto, @RequestBody List<CryptoValueRequestDto> values
+    ) throws CryptoInternalException, CryptoNotFoundException, CryptoValidationException {
+        logger.debug("INSIDE ingestValues(). Params: {}, {} values", crypto, values.size());
+        cryptoValuesIngestor.ingest(crypto, values);
+        logger.debug("EXITING ingestValues()");
+    }
+}
@@ -0,0 +1,167 @@
+package com.dimitris.cryptoanalyze.controller;
+
+import com.dimitris.cryptoanalyze.service.CryptoValuesManager;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of serialized endpoint responses. Each cached response is tagged with the version of the stored data it was
+ * calculated on, and is served only as long as the stored data remain at that version. It keeps at most one response
+ * per key and encoding, so its size is bounded by the number of cached queries times the {@link ResponseEncodings}.
+ * <p>
+ * Every cached response carries a strong ETag derived from its data version. ETags also contain the startup time of
+ * the application, since data versions start over on every start, and the encoding of binary responses, since
+ * responses in different encodings are different representations
+ */
+@Component
+public class CryptoResponseCache {
+
+    private final CryptoValuesManager cryptoValuesManager;
+
+    private final ResponseEncodings responseEncodings;
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final Map<String, CachedResponse> responses = new ConcurrentHashMap<>();
+
+    /**
+     * @param cryptoValuesManager A crypto values manager providing the version of the stored data
+     * @param responseEncodings   The encodings responses are serialized in
+     */
+    @Autowired
+    public CryptoResponseCache(CryptoValuesManager cryptoValuesManager, ResponseEncodings responseEncodings) {
+        this.cryptoValuesManager = cryptoValuesManager;
+        this.responseEncodings = responseEncodings;
+    }
+
+    /**
+     * Returns the cached JSON response for the specified key, see {@link #getOrCalculate(String, MediaType, ResponseSupplier)}
+     *
+     * @param key              The key identifying the query
+     * @param responseSupplier Calculates the response if it is not cached
+     * @return The serialized response and its ETag
+     * @throws CryptoInternalException Internal error during crypto data loading, manipulations or calculations
+     * @throws CryptoNotFoundException Requested crypto is not supported
+     */
+    public CachedResponse getOrCalculate(String key, ResponseSupplier responseSupplier)
+            throws CryptoInternalException, CryptoNotFoundException {
+        return getOrCalculate(key, MediaType.APPLICATION_JSON, responseSupplier);
+    }
+
+    /**
+     * Returns the cached response for the specified key if it was calculated on the current version of the stored
+     * data, otherwise calculates, serializes and caches a new one
+     *
+     * @param key              The key identifying the query
+     * @param mediaType        The encoding of the response, one of {@link ResponseEncodings}
+     * @param responseSupplier Calculates the response if it is not cached
+     * @return The serialized response and its ETag
+     * @throws CryptoInternalException Internal error during crypto data loading, manipulations or calculations
+     * @throws CryptoNotFoundException Requested crypto is not supported
+     */
+    public CachedResponse getOrCalculate(String key, MediaType mediaType, ResponseSupplier responseSupplier)
+            throws CryptoInternalException, CryptoNotFoundException {
+        String encodedKey = key + " " + mediaType;
+        // Read the version before calculating, so that a response is never tagged with a newer version than the one
+        // it was calculated on
+        long dataVersion = cryptoValuesManager.getDataVersion();
+        CachedResponse cachedResponse = responses.get(encodedKey);
+        if (cachedResponse != null && cachedResponse.dataVersion == dataVersion) {
+            return cachedResponse;
+        }
+
+        byte[] body;
+        try {
+            body = responseEncodings.objectMapperFor(mediaType).writeValueAsBytes(responseSupplier.get());
+        } catch (JsonProcessingException e) {
+            throw new CryptoInternalException("Error serializing response. " + e.getMessage());
+        }
+        String eTag = "\"" + epoch + "-" + dataVersion +
+                (MediaType.APPLICATION_JSON.equals(mediaType) ? "" : "-" + mediaType.getSubtype()) + "\"";
+        CachedResponse calculatedResponse = new CachedResponse(dataVersion, eTag, mediaType, body);
+        responses.merge(encodedKey, calculatedResponse,
+                (current, calculated) -> calculated.dataVersion >= current.dataVersion ? calculated : current);
+        return calculatedResponse;
+    }
+
+    /**
+     * Returns whether an If-None-Match request header matches the specified ETag, ie whether the client already
+     * holds the current response. Weak ETags sent by the client never match, since cached responses carry strong ones
+     *
+     * @param ifNoneMatch The If-None-Match request header value, can be null
+     * @param eTag        The ETag of the current response
+     * @return True if the header matches the ETag
+     */
+    public static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*") || trimmed.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes every cached response
+     */
+    public void invalidateAll() {
+        responses.clear();
+    }
+
+    /**
+     * Calculates a response to be cached
+     */
+    @FunctionalInterface
+    public interface ResponseSupplier {
+
+        Object get() throws CryptoInternalException, CryptoNotFoundException;
+    }
+
+    /**
+     * A serialized response together with the data version it was calculated on, its ETag and its encoding
+     */
+    public static class CachedResponse {
+
+        private final long dataVersion;
+
+        private final String eTag;
+
+        private final MediaType mediaType;
+
+        private final byte[] body;
+
+        private CachedResponse(long dataVersion, String eTag, MediaType mediaType, byte[] body) {
+            this.dataVersion = dataVersion;
+            this.eTag = eTag;
+            this.mediaType = mediaType;
+            this.body = body;
+        }
+
+        public long getDataVersion() {
+            return dataVersion;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+}
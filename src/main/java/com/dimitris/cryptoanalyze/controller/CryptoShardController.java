@@ -0,0 +1,122 @@
+package com.dimitris.cryptoanalyze.controller;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricDto;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsDto;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsListDto;
+import com.dimitris.cryptoanalyze.controller.dto.ErrorResponseDto;
+import com.dimitris.cryptoanalyze.controller.dto.TimePeriodRequestDto;
+import com.dimitris.cryptoanalyze.service.CryptoAnalyzer;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.impl.ScatterGatherCryptoAnalyzer;
+import com.dimitris.cryptoanalyze.service.model.Deadline;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Controller providing REST endpoints through which the shards of a sharded deployment query each other. Unlike
+ * {@link CryptoAnalyzerController}, calculations are made only on the cryptos owned by this instance, and under the
+ * deadline of the original request, which the querying shard forwards through the
+ * {@value RequestDeadlineResolver#TIMEOUT_HEADER} header
+ */
+@RestController
+@RequestMapping(path = "/api/crypto/shard")
+public class CryptoShardController {
+
+    private static final Logger logger = LoggerFactory.getLogger(CryptoShardController.class);
+
+    private final CryptoAnalyzer localCryptoAnalyzer;
+
+    private final RequestDeadlineResolver deadlineResolver;
+
+    @Autowired
+    public CryptoShardController(@Qualifier("cryptoAnalyzerImpl") CryptoAnalyzer localCryptoAnalyzer,
+                                 RequestDeadlineResolver deadlineResolver) {
+        this.localCryptoAnalyzer = localCryptoAnalyzer;
+        this.deadlineResolver = deadlineResolver;
+    }
+
+    /**
+     * Returns the cryptos of this instance with the highest normalized price ranges, in descending order
+     *
+     * @param timePeriodRequestDto Optional time period calculation applies to
+     * @param limit                Optional maximum number of cryptos returned
+     * @param timeoutMillis        Optional milliseconds left until the deadline of the original request
+     * @return A partial list of mappings between crypto and its normalized range value
+     * @throws CryptoInternalException Internal error during crypto data loading, manipulations or calculations
+     */
+    @Operation(summary = "Internal endpoint of sharded deployments. Returns the cryptos owned by this instance with " +
+            "the highest normalized ranges, sorted in descending order")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully calculated partial list of cryptos",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = CryptoMetricsListDto.class))}),
+            @ApiResponse(responseCode = "500", description = "Internal error during crypto data loading, manipulations or calculations",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))})
+    })
+    @PostMapping("/sort/by/normalized/desc")
+    public CryptoMetricsListDto sortCryptosByNormalizedRangeDesc(
+            @RequestBody Optional<TimePeriodRequestDto> timePeriodRequestDto,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestHeader(value = RequestDeadlineResolver.TIMEOUT_HEADER, required = false) Long timeoutMillis
+    ) throws CryptoInternalException {
+        logger.debug("INSIDE sortCryptosByNormalizedRangeDesc(). Params: {}, {}, {}", timePeriodRequestDto, limit, timeoutMillis);
+        CryptoMetricsListDto cryptoMetricsListDto;
+        try (Deadline.Scope ignored = deadlineResolver.resolve(timeoutMillis, null).attach()) {
+            cryptoMetricsListDto = localCryptoAnalyzer.getCryptosSortedByNormalizedRangeDesc(timePeriodRequestDto);
+        }
+        if (limit != null && limit < cryptoMetricsListDto.getCryptos().size()) {
+            // Cryptos with equal ranges are cut in the order they are merged in, so that the merged top-K is exact
+            List<CryptoMetricDto> cryptos = new ArrayList<>(cryptoMetricsListDto.getCryptos());
+            cryptos.sort(ScatterGatherCryptoAnalyzer.NORMALIZED_RANGE_DESC);
+            cryptoMetricsListDto = new CryptoMetricsListDto(cryptos.subList(0, Math.max(limit, 0)));
+        }
+        logger.debug("EXITING sortCryptosByNormalizedRangeDesc()");
+        return cryptoMetricsListDto;
+    }
+
+    /**
+     * Returns a mapping of metrics to their corresponding values for a crypto owned by this instance
+     *
+     * @param crypto               The crypto for which the metric values must be found
+     * @param timePeriodRequestDto Optional time period calculation applies to
+     * @param timeoutMillis        Optional milliseconds left until the deadline of the original request
+     * @return A mapping of each metric to corresponding value (empty map if no values found for crypto)
+     * @throws CryptoInternalException Internal error during crypto data loading, manipulations or calculations
+     * @throws CryptoNotFoundException Requested crypto is not supported
+     */
+    @Operation(summary = "Internal endpoint of sharded deployments. Returns a mapping of metrics to their " +
+            "corresponding values for a crypto owned by this instance")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully calculated metrics for crypto",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = CryptoMetricsDto.class))}),
+            @ApiResponse(responseCode = "404", description = "Requested crypto is not supported",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))}),
+            @ApiResponse(responseCode = "500", description = "Internal error during crypto data loading, manipulations or calculations",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))})
+    })
+    @PostMapping("/metrics/{crypto}")
+    public CryptoMetricsDto getMetricsForCrypto(
+            @PathVariable("crypto") String crypto, @RequestBody Optional<TimePeriodRequestDto> timePeriodRequestDto,
+            @RequestHeader(value = RequestDeadlineResolver.TIMEOUT_HEADER, required = false) Long timeoutMillis
+    ) throws CryptoInternalException, CryptoNotFoundException {
+        logger.debug("INSIDE getMetricsForCrypto(). Params: {}, {}, {}", timePeriodRequestDto, crypto, timeoutMillis);
+        CryptoMetricsDto cryptoMetricsDto;
+        try (Deadline.Scope ignored = deadlineResolver.resolve(timeoutMillis, null).attach()) {
+            cryptoMetricsDto = localCryptoAnalyzer.getMetricsForCrypto(timePeriodRequestDto, crypto);
+        }
+        logger.debug("EXITING getMetricsForCrypto()");
+        return cryptoMetricsDto;
+    }
+}
@@ -0,0 +1,77 @@
+package com.dimitris.cryptoanalyze.controller;
+
+import com.dimitris.cryptoanalyze.controller.dto.ErrorResponseDto;
+import com.dimitris.cryptoanalyze.controller.dto.StoreReloadDto;
+import com.dimitris.cryptoanalyze.controller.dto.StoreUsageDto;
+import com.dimitris.cryptoanalyze.service.CryptoValuesManager;
+import com.dimitris.cryptoanalyze.service.DataLoader;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Controller providing REST endpoints through which the memory used by the stored crypto values of this instance is
+ * reported, and the stored values are reloaded
+ */
+@RestController
+@RequestMapping(path = "/api/crypto/store")
+public class CryptoStoreController {
+
+    private static final Logger logger = LoggerFactory.getLogger(CryptoStoreController.class);
+
+    private final CryptoValuesManager cryptoValuesManager;
+
+    private final DataLoader dataLoader;
+
+    @Autowired
+    public CryptoStoreController(CryptoValuesManager cryptoValuesManager, DataLoader dataLoader) {
+        this.cryptoValuesManager = cryptoValuesManager;
+        this.dataLoader = dataLoader;
+    }
+
+    /**
+     * @return The memory used by the stored values, per crypto
+     */
+    @Operation(summary = "Returns the estimated bytes of heap retained by the latest version of the stored values of " +
+            "this instance, in total and per crypto, with the heap budget (0 if none), the number of values evicted " +
+            "to keep within it, and the time each crypto was last queried")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Memory used by the stored values",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = StoreUsageDto.class))})
+    })
+    @GetMapping("/usage")
+    public StoreUsageDto getUsage() {
+        logger.debug("INSIDE getUsage()");
+        return cryptoValuesManager.getUsage();
+    }
+
+    /**
+     * @return The reload
+     * @throws CryptoInternalException Internal error during reloading, or invalid data
+     */
+    @Operation(summary = "Reloads the values of every crypto of this instance from the data files in the background, " +
+            "and replaces the stored values with them at once after validating them. Values ingested meanwhile are " +
+            "kept, and requests in progress finish on the replaced values. Returns the data version of the reloaded " +
+            "values, the number of values read from the files, and the milliseconds the reload took")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Values reloaded",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = StoreReloadDto.class))}),
+            @ApiResponse(responseCode = "500", description = "Error reloading values, stored values left unchanged",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))})
+    })
+    @PostMapping("/reload")
+    public StoreReloadDto reload() throws CryptoInternalException {
+        logger.debug("INSIDE reload()");
+        return dataLoader.reloadData();
+    }
+}
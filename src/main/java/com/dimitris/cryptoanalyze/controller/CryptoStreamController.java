@@ -0,0 +1,102 @@
+package com.dimitris.cryptoanalyze.controller;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsDto;
+import com.dimitris.cryptoanalyze.controller.dto.ErrorResponseDto;
+import com.dimitris.cryptoanalyze.controller.dto.TimePeriodRequestDto;
+import com.dimitris.cryptoanalyze.service.CryptoMetricsStream;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Controller providing REST endpoints through which clients receive live updates of metrics as Server-Sent Events.
+ * <p>
+ * It is configured by the system property &quot;stream.emitter.timeout.millis&quot;, the time after which an event
+ * stream is closed and the client has to reconnect (default 1800000)
+ */
+@RestController
+@RequestMapping(path = "/api/crypto/stream")
+public class CryptoStreamController {
+
+    private static final Logger logger = LoggerFactory.getLogger(CryptoStreamController.class);
+
+    public static final String METRICS_EVENT = "metrics";
+
+    private final CryptoMetricsStream cryptoMetricsStream;
+
+    private final long emitterTimeoutMillis;
+
+    @Autowired
+    public CryptoStreamController(CryptoMetricsStream cryptoMetricsStream) {
+        this(cryptoMetricsStream, Long.getLong("stream.emitter.timeout.millis", 1800000));
+    }
+
+    /**
+     * @param cryptoMetricsStream  The stream of metrics
+     * @param emitterTimeoutMillis Time after which an event stream is closed
+     */
+    public CryptoStreamController(CryptoMetricsStream cryptoMetricsStream, long emitterTimeoutMillis) {
+        this.cryptoMetricsStream = cryptoMetricsStream;
+        this.emitterTimeoutMillis = emitterTimeoutMillis;
+    }
+
+    /**
+     * Streams the metrics of the specified crypto, once on connection and again whenever ingested values change them
+     *
+     * @param crypto       The crypto
+     * @param fromDateTime Optional start of the time period calculation applies to
+     * @param toDateTime   Optional end of the time period calculation applies to
+     * @return An event stream of {@value #METRICS_EVENT} events, each carrying a {@link CryptoMetricsDto} as JSON
+     * @throws CryptoNotFoundException Requested crypto is not supported, or not stored by this instance
+     */
+    @Operation(summary = "Streams the metrics of the specified crypto as Server-Sent Events. The current metrics are " +
+            "sent on connection and again whenever ingested values change them, at most once per update interval. " +
+            "Time points are specified in the format \"yyyy-MM-dd HH:mm:ss\"")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Event stream of metrics",
+                    content = {@Content(mediaType = "text/event-stream", schema = @Schema(implementation = CryptoMetricsDto.class))}),
+            @ApiResponse(responseCode = "404", description = "Requested crypto is not supported or not stored by this instance",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponseDto.class))})
+    })
+    @GetMapping("/metrics/{crypto}")
+    public SseEmitter streamMetricsForCrypto(
+            @PathVariable("crypto") String crypto,
+            @RequestParam(value = "fromDateTime", required = false)
+            @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime fromDateTime,
+            @RequestParam(value = "toDateTime", required = false)
+            @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime toDateTime
+    ) throws CryptoNotFoundException {
+        logger.debug("INSIDE streamMetricsForCrypto(). Params: {}, {}, {}", crypto, fromDateTime, toDateTime);
+        Optional<TimePeriodRequestDto> timePeriodRequestDto = Optional.empty();
+        if (fromDateTime != null || toDateTime != null) {
+            TimePeriodRequestDto timePeriod = new TimePeriodRequestDto();
+            timePeriod.setFromDateTime(Optional.ofNullable(fromDateTime));
+            timePeriod.setToDateTime(Optional.ofNullable(toDateTime));
+            timePeriodRequestDto = Optional.of(timePeriod);
+        }
+
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+        CryptoMetricsStream.Subscription subscription = cryptoMetricsStream.subscribe(crypto, timePeriodRequestDto,
+                metrics -> emitter.send(SseEmitter.event().name(METRICS_EVENT).data(metrics, MediaType.APPLICATION_JSON)),
+                // A failed or timed out send cancels the subscription, and the stream is closed to release the client
+                emitter::complete);
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        emitter.onError(e -> subscription.cancel());
+        logger.debug("EXITING streamMetricsForCrypto()");
+        return emitter;
+    }
+}
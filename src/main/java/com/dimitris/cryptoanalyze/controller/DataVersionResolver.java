@@ -0,0 +1,75 @@
+package com.dimitris.cryptoanalyze.controller;
+
+import com.dimitris.cryptoanalyze.service.CryptoValuesManager;
+import com.dimitris.cryptoanalyze.service.DataLoader;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.impl.ShardTopology;
+import com.dimitris.cryptoanalyze.service.model.DataSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.OptionalLong;
+
+/**
+ * Component resolving the {@link DataSnapshot} a request is calculated on. A client repeats a calculation on the
+ * data of an earlier response by sending the version of its {@value #VERSION_HEADER} header as the
+ * {@value #AS_OF_VERSION_PARAM} parameter, as long as the version is retained, see
+ * {@link com.dimitris.cryptoanalyze.service.impl.CryptoValuesInMemManager}. Other requests are calculated on the
+ * latest version when they start.
+ * <p>
+ * While initial data are loaded lazily, requests without a version are not pinned to a snapshot, so that data loaded
+ * on demand by the calculation are visible to it. Versions are local to an instance, so in sharded deployments
+ * requests are never pinned and cannot specify a version
+ */
+@Component
+public class DataVersionResolver {
+
+    public static final String VERSION_HEADER = "X-Data-Version";
+
+    public static final String AS_OF_VERSION_PARAM = "asOfVersion";
+
+    private final CryptoValuesManager cryptoValuesManager;
+
+    private final DataLoader dataLoader;
+
+    private final ShardTopology shardTopology;
+
+    @Autowired
+    public DataVersionResolver(CryptoValuesManager cryptoValuesManager, DataLoader dataLoader,
+                               ShardTopology shardTopology) {
+        this.cryptoValuesManager = cryptoValuesManager;
+        this.dataLoader = dataLoader;
+        this.shardTopology = shardTopology;
+    }
+
+    /**
+     * Resolves the snapshot of a request
+     *
+     * @param asOfVersion Optional version set by the {@value #AS_OF_VERSION_PARAM} parameter
+     * @return The snapshot, null if the request is calculated on the values stored when each of them is read
+     * @throws CryptoNotFoundException The version is not retained
+     * @throws CryptoInternalException A version is specified in a sharded deployment
+     */
+    public DataSnapshot resolve(Long asOfVersion) throws CryptoNotFoundException, CryptoInternalException {
+        if (asOfVersion != null) {
+            if (shardTopology.isSharded()) {
+                throw new CryptoInternalException("Parameter " + AS_OF_VERSION_PARAM + " not supported by sharded " +
+                        "deployments.");
+            }
+            return cryptoValuesManager.getSnapshot(asOfVersion);
+        }
+        if (shardTopology.isSharded() || !dataLoader.isFullyLoaded()) {
+            return null;
+        }
+        return cryptoValuesManager.getSnapshot();
+    }
+
+    /**
+     * @return The version of the snapshot attached to the current thread, or the latest one if none is attached,
+     * empty in sharded deployments
+     */
+    public OptionalLong currentVersion() {
+        return shardTopology.isSharded() ? OptionalLong.empty() : OptionalLong.of(cryptoValuesManager.getDataVersion());
+    }
+}
@@ -0,0 +1,59 @@
+package com.dimitris.cryptoanalyze.controller;
+
+import com.dimitris.cryptoanalyze.service.model.Deadline;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Component resolving the {@link Deadline} of a request. A client sets the milliseconds it is willing to wait through
+ * the {@value #TIMEOUT_HEADER} header or the {@value #TIMEOUT_PARAM} parameter, the header taking precedence.
+ * <p>
+ * It is configured by the following system properties:
+ * <ul>
+ *     <li>&quot;request.timeout.millis&quot;: timeout of requests not setting one (default 30000, 0 for none)</li>
+ *     <li>&quot;request.timeout.max.millis&quot;: upper limit of the timeout a request may set (default 300000)</li>
+ * </ul>
+ */
+@Component
+public class RequestDeadlineResolver {
+
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout-Millis";
+
+    public static final String TIMEOUT_PARAM = "timeoutMillis";
+
+    private final long defaultTimeoutMillis;
+
+    private final long maxTimeoutMillis;
+
+    /**
+     * Creates a resolver configured by system properties
+     */
+    @Autowired
+    public RequestDeadlineResolver() {
+        this(Long.getLong("request.timeout.millis", 30000), Long.getLong("request.timeout.max.millis", 300000));
+    }
+
+    /**
+     * @param defaultTimeoutMillis Timeout of requests not setting one, 0 for none
+     * @param maxTimeoutMillis     Upper limit of the timeout a request may set
+     */
+    public RequestDeadlineResolver(long defaultTimeoutMillis, long maxTimeoutMillis) {
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+        this.maxTimeoutMillis = maxTimeoutMillis;
+    }
+
+    /**
+     * Resolves the deadline of a request, starting from now
+     *
+     * @param headerTimeoutMillis Optional timeout set by the {@value #TIMEOUT_HEADER} header
+     * @param paramTimeoutMillis  Optional timeout set by the {@value #TIMEOUT_PARAM} parameter
+     * @return The deadline, {@link Deadline#none()} if neither the request nor the configuration sets a timeout
+     */
+    public Deadline resolve(Long headerTimeoutMillis, Long paramTimeoutMillis) {
+        Long requestedMillis = headerTimeoutMillis != null ? headerTimeoutMillis : paramTimeoutMillis;
+        if (requestedMillis == null || requestedMillis <= 0) {
+            return defaultTimeoutMillis > 0 ? Deadline.afterMillis(defaultTimeoutMillis) : Deadline.none();
+        }
+        return Deadline.afterMillis(Math.min(requestedMillis, maxTimeoutMillis));
+    }
+}
@@ -0,0 +1,107 @@
+package com.dimitris.cryptoanalyze.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Component providing the encodings responses can be returned in: JSON, CBOR and Smile. Binary encodings carry the
+ * same DTOs with the same field names as JSON, but encode numbers in binary, so that high rate clients spend less
+ * time encoding and parsing responses. Clients choose an encoding through the Accept header.
+ * <p>
+ * Each encoding has its own {@link ObjectMapper}, configured like the JSON one of the application. The mappers back
+ * the message converters of the binary encodings and the serialization of {@link CryptoResponseCache}
+ */
+@Component
+public class ResponseEncodings implements WebMvcConfigurer {
+
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+
+    private final Map<MediaType, ObjectMapper> objectMappers = new LinkedHashMap<>();
+
+    /**
+     * @param objectMapperBuilders Provides builders of mappers configured like the JSON one of the application
+     */
+    @Autowired
+    public ResponseEncodings(ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilders) {
+        this((Supplier<Jackson2ObjectMapperBuilder>) objectMapperBuilders::getObject);
+    }
+
+    /**
+     * @param objectMapperBuilders Supplies a new mapper builder on each call
+     */
+    public ResponseEncodings(Supplier<Jackson2ObjectMapperBuilder> objectMapperBuilders) {
+        // JSON comes first, so that it is chosen when the client accepts any encoding
+        objectMappers.put(MediaType.APPLICATION_JSON, objectMapperBuilders.get().build());
+        objectMappers.put(MediaType.APPLICATION_CBOR, objectMapperBuilders.get().factory(new CBORFactory()).build());
+        objectMappers.put(APPLICATION_SMILE, objectMapperBuilders.get().factory(new SmileFactory()).build());
+    }
+
+    /**
+     * Chooses the encoding of a response, preferring the encodings the Accept header ranks highest
+     *
+     * @param accept The Accept request header value, can be null
+     * @return The media type of the encoding, JSON if the header is missing, invalid or accepts no encoding
+     */
+    public MediaType negotiate(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> acceptedMediaTypes;
+        try {
+            acceptedMediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (IllegalArgumentException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MediaType.sortBySpecificityAndQuality(acceptedMediaTypes);
+        for (MediaType acceptedMediaType : acceptedMediaTypes) {
+            for (MediaType mediaType : objectMappers.keySet()) {
+                if (acceptedMediaType.includes(mediaType)) {
+                    return mediaType;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    /**
+     * @param mediaType The media type of an encoding, as returned by {@link #negotiate(String)}
+     * @return The mapper of the encoding
+     */
+    public ObjectMapper objectMapperFor(MediaType mediaType) {
+        ObjectMapper objectMapper = objectMappers.get(mediaType);
+        if (objectMapper == null) {
+            throw new IllegalArgumentException("Encoding " + mediaType + " not supported");
+        }
+        return objectMapper;
+    }
+
+    /**
+     * Replaces the CBOR and Smile converters registered by default, if their formats are on the classpath, with ones
+     * using the mappers of this component. The JSON converter is left as is, since it already uses the mapper of
+     * the application
+     *
+     * @param converters The converters of Spring MVC
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter ||
+                converter instanceof MappingJackson2SmileHttpMessageConverter);
+        converters.add(new MappingJackson2CborHttpMessageConverter(objectMapperFor(MediaType.APPLICATION_CBOR)));
+        converters.add(new MappingJackson2SmileHttpMessageConverter(objectMapperFor(APPLICATION_SMILE)));
+    }
+}
@@ -0,0 +1,27 @@
+package com.dimitris.cryptoanalyze.controller;
+
+import com.dimitris.cryptoanalyze.service.util.VirtualThreads;
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Makes Tomcat handle every request in a new virtual thread if virtual threads are enabled, see
+ * {@link VirtualThreads}, so that requests blocked on slow clients or on calculations do not hold platform threads
+ * and are not bounded by the size of the Tomcat thread pool. Otherwise the Tomcat thread pool is kept
+ */
+@Component
+public class VirtualThreadsTomcatCustomizer implements TomcatProtocolHandlerCustomizer<ProtocolHandler> {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadsTomcatCustomizer.class);
+
+    @Override
+    public void customize(ProtocolHandler protocolHandler) {
+        if (VirtualThreads.isEnabled()) {
+            logger.info("Handling requests in virtual threads");
+            protocolHandler.setExecutor(VirtualThreads.newThreadPerTaskExecutor("http-"));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.dimitris.cryptoanalyze.controller.dto;
+
+import com.dimitris.cryptoanalyze.service.enums.AlertDirection;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * DTO class used for responses, representing a registered alert rule
+ */
+public class AlertRuleDto {
+
+    private final long id;
+
+    private final String crypto;
+
+    private final long windowMillis;
+
+    private final BigDecimal threshold;
+
+    private final AlertDirection direction;
+
+    public AlertRuleDto(long id, String crypto, long windowMillis, BigDecimal threshold, AlertDirection direction) {
+        this.id = id;
+        this.crypto = crypto;
+        this.windowMillis = windowMillis;
+        this.threshold = threshold;
+        this.direction = direction;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getCrypto() {
+        return crypto;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public BigDecimal getThreshold() {
+        return threshold;
+    }
+
+    public AlertDirection getDirection() {
+        return direction;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AlertRuleDto that = (AlertRuleDto) o;
+        return id == that.id && windowMillis == that.windowMillis && Objects.equals(crypto, that.crypto) &&
+                Objects.equals(threshold, that.threshold) && direction == that.direction;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, crypto, windowMillis, threshold, direction);
+    }
+
+    @Override
+    public String toString() {
+        return "AlertRuleDto{" +
+                "id=" + id +
+                ", crypto='" + crypto + '\'' +
+                ", windowMillis=" + windowMillis +
+                ", threshold=" + threshold +
+                ", direction=" + direction +
+                '}';
+    }
+}
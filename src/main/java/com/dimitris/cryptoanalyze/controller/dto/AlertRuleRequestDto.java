@@ -0,0 +1,77 @@
+package com.dimitris.cryptoanalyze.controller.dto;
+
+import com.dimitris.cryptoanalyze.service.enums.AlertDirection;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * DTO class used for end user request, representing an alert rule. The rule fires when the normalized price range of
+ * the crypto over a trailing window of windowMillis crosses the threshold in the direction (ABOVE or BELOW)
+ */
+public class AlertRuleRequestDto {
+
+    private String crypto;
+
+    private Long windowMillis;
+
+    private BigDecimal threshold;
+
+    private AlertDirection direction;
+
+    public String getCrypto() {
+        return crypto;
+    }
+
+    public void setCrypto(String crypto) {
+        this.crypto = crypto;
+    }
+
+    public Long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public void setWindowMillis(Long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    public BigDecimal getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(BigDecimal threshold) {
+        this.threshold = threshold;
+    }
+
+    public AlertDirection getDirection() {
+        return direction;
+    }
+
+    public void setDirection(AlertDirection direction) {
+        this.direction = direction;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AlertRuleRequestDto that = (AlertRuleRequestDto) o;
+        return Objects.equals(crypto, that.crypto) && Objects.equals(windowMillis, that.windowMillis) &&
+                Objects.equals(threshold, that.threshold) && direction == that.direction;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(crypto, windowMillis, threshold, direction);
+    }
+
+    @Override
+    public String toString() {
+        return "AlertRuleRequestDto{" +
+                "crypto='" + crypto + '\'' +
+                ", windowMillis=" + windowMillis +
+                ", threshold=" + threshold +
+                ", direction=" + direction +
+                '}';
+    }
+}
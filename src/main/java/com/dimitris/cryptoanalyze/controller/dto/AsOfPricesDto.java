@@ -0,0 +1,57 @@
+package com.dimitris.cryptoanalyze.controller.dto;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * DTO class used for responses, representing the last known price of each crypto at a point in time, read from a
+ * data version. Cryptos without values at or before that point are left out
+ */
+public class AsOfPricesDto {
+
+    private final long timestamp;
+
+    private final long dataVersion;
+
+    private final Map<String, CryptoPriceDto> prices;
+
+    public AsOfPricesDto(long timestamp, long dataVersion, Map<String, CryptoPriceDto> prices) {
+        this.timestamp = timestamp;
+        this.dataVersion = dataVersion;
+        this.prices = prices;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getDataVersion() {
+        return dataVersion;
+    }
+
+    public Map<String, CryptoPriceDto> getPrices() {
+        return prices;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AsOfPricesDto that = (AsOfPricesDto) o;
+        return timestamp == that.timestamp && dataVersion == that.dataVersion && Objects.equals(prices, that.prices);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(timestamp, dataVersion, prices);
+    }
+
+    @Override
+    public String toString() {
+        return "AsOfPricesDto{" +
+                "timestamp=" + timestamp +
+                ", dataVersion=" + dataVersion +
+                ", prices=" + prices +
+                '}';
+    }
+}
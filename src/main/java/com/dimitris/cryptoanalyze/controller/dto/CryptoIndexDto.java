@@ -0,0 +1,66 @@
+package com.dimitris.cryptoanalyze.controller.dto;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * DTO class used for responses, representing a defined composite index and the number of levels it holds
+ */
+public class CryptoIndexDto {
+
+    private final String name;
+
+    private final Map<String, BigDecimal> weights;
+
+    private final long gridMillis;
+
+    private final long levels;
+
+    public CryptoIndexDto(String name, Map<String, BigDecimal> weights, long gridMillis, long levels) {
+        this.name = name;
+        this.weights = weights;
+        this.gridMillis = gridMillis;
+        this.levels = levels;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<String, BigDecimal> getWeights() {
+        return weights;
+    }
+
+    public long getGridMillis() {
+        return gridMillis;
+    }
+
+    public long getLevels() {
+        return levels;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CryptoIndexDto that = (CryptoIndexDto) o;
+        return gridMillis == that.gridMillis && levels == that.levels && Objects.equals(name, that.name) &&
+                Objects.equals(weights, that.weights);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, weights, gridMillis, levels);
+    }
+
+    @Override
+    public String toString() {
+        return "CryptoIndexDto{" +
+                "name='" + name + '\'' +
+                ", weights=" + weights +
+                ", gridMillis=" + gridMillis +
+                ", levels=" + levels +
+                '}';
+    }
+}
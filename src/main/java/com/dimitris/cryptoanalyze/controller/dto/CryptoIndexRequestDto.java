@@ -0,0 +1,66 @@
+package com.dimitris.cryptoanalyze.controller.dto;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * DTO class used for end user request, representing a composite index. The level of the index at each point of a
+ * time grid of gridMillis is the sum of the weighted prices of its cryptos, the price of each crypto being its newest
+ * price at that point
+ */
+public class CryptoIndexRequestDto {
+
+    private String name;
+
+    private Map<String, BigDecimal> weights;
+
+    private Long gridMillis;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Map<String, BigDecimal> getWeights() {
+        return weights;
+    }
+
+    public void setWeights(Map<String, BigDecimal> weights) {
+        this.weights = weights;
+    }
+
+    public Long getGridMillis() {
+        return gridMillis;
+    }
+
+    public void setGridMillis(Long gridMillis) {
+        this.gridMillis = gridMillis;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CryptoIndexRequestDto that = (CryptoIndexRequestDto) o;
+        return Objects.equals(name, that.name) && Objects.equals(weights, that.weights) &&
+                Objects.equals(gridMillis, that.gridMillis);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, weights, gridMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "CryptoIndexRequestDto{" +
+                "name='" + name + '\'' +
+                ", weights=" + weights +
+                ", gridMillis=" + gridMillis +
+                '}';
+    }
+}
@@ -0,0 +1,49 @@
+package com.dimitris.cryptoanalyze.controller.dto;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * DTO class used for responses, representing the price of a crypto and the timestamp in Epoch millis it was
+ * recorded at
+ */
+public class CryptoPriceDto {
+
+    private final long timestamp;
+
+    private final BigDecimal price;
+
+    public CryptoPriceDto(long timestamp, BigDecimal price) {
+        this.timestamp = timestamp;
+        this.price = price;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CryptoPriceDto that = (CryptoPriceDto) o;
+        return timestamp == that.timestamp && Objects.equals(price, that.price);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(timestamp, price);
+    }
+
+    @Override
+    public String toString() {
+        return "CryptoPriceDto{" +
+                "timestamp=" + timestamp +
+                ", price=" + price +
+                '}';
+    }
+}
@@ -0,0 +1,82 @@
+package com.dimitris.cryptoanalyze.controller.dto;
+
+import java.util.Objects;
+
+/**
+ * DTO class used for responses, representing the values of a crypto stored in memory
+ */
+public class CryptoStoreUsageDto {
+
+    private final String crypto;
+
+    private final int values;
+
+    private final long heapBytes;
+
+    private final Long oldestTimestamp;
+
+    private final Long lastQueriedMillis;
+
+    private final long evictedValues;
+
+    public CryptoStoreUsageDto(String crypto, int values, long heapBytes, Long oldestTimestamp, Long lastQueriedMillis,
+                               long evictedValues) {
+        this.crypto = crypto;
+        this.values = values;
+        this.heapBytes = heapBytes;
+        this.oldestTimestamp = oldestTimestamp;
+        this.lastQueriedMillis = lastQueriedMillis;
+        this.evictedValues = evictedValues;
+    }
+
+    public String getCrypto() {
+        return crypto;
+    }
+
+    public int getValues() {
+        return values;
+    }
+
+    public long getHeapBytes() {
+        return heapBytes;
+    }
+
+    public Long getOldestTimestamp() {
+        return oldestTimestamp;
+    }
+
+    public Long getLastQueriedMillis() {
+        return lastQueriedMillis;
+    }
+
+    public long getEvictedValues() {
+        return evictedValues;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CryptoStoreUsageDto that = (CryptoStoreUsageDto) o;
+        return values == that.values && heapBytes == that.heapBytes && evictedValues == that.evictedValues &&
+                Objects.equals(crypto, that.crypto) && Objects.equals(oldestTimestamp, that.oldestTimestamp) &&
+                Objects.equals(lastQueriedMillis, that.lastQueriedMillis);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(crypto, values, heapBytes, oldestTimestamp, lastQueriedMillis, evictedValues);
+    }
+
+    @Override
+    public String toString() {
+        return "CryptoStoreUsageDto{" +
+                "crypto='" + crypto + '\'' +
+                ", values=" + values +
+                ", heapBytes=" + heapBytes +
+                ", oldestTimestamp=" + oldestTimestamp +
+                ", lastQueriedMillis=" + lastQueriedMillis +
+                ", evictedValues=" + evictedValues +
+                '}';
+    }
+}
@@ -0,0 +1,52 @@
+package com.dimitris.cryptoanalyze.controller.dto;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * DTO class used for end user request, representing a crypto value. It consists of a timestamp in Epoch millis
+ * and a decimal price value
+ */
+public class CryptoValueRequestDto {
+
+    private long timestamp;
+
+    private BigDecimal price;
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CryptoValueRequestDto that = (CryptoValueRequestDto) o;
+        return timestamp == that.timestamp && Objects.equals(price, that.price);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(timestamp, price);
+    }
+
+    @Override
+    public String toString() {
+        return "CryptoValueRequestDto{" +
+                "timestamp=" + timestamp +
+                ", price=" + price +
+                '}';
+    }
+}
@@ -0,0 +1,55 @@
+package com.dimitris.cryptoanalyze.controller.dto;
+
+import java.util.Objects;
+
+/**
+ * DTO class used for responses, representing a reload of the stored values of an instance
+ */
+public class StoreReloadDto {
+
+    private final long dataVersion;
+
+    private final long values;
+
+    private final long reloadMillis;
+
+    public StoreReloadDto(long dataVersion, long values, long reloadMillis) {
+        this.dataVersion = dataVersion;
+        this.values = values;
+        this.reloadMillis = reloadMillis;
+    }
+
+    public long getDataVersion() {
+        return dataVersion;
+    }
+
+    public long getValues() {
+        return values;
+    }
+
+    public long getReloadMillis() {
+        return reloadMillis;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StoreReloadDto that = (StoreReloadDto) o;
+        return dataVersion == that.dataVersion && values == that.values && reloadMillis == that.reloadMillis;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(dataVersion, values, reloadMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "StoreReloadDto{" +
+                "dataVersion=" + dataVersion +
+                ", values=" + values +
+                ", reloadMillis=" + reloadMillis +
+                '}';
+    }
+}
@@ -0,0 +1,75 @@
+package com.dimitris.cryptoanalyze.controller.dto;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * DTO class used for responses, representing the memory used by the stored values of an instance
+ */
+public class StoreUsageDto {
+
+    private final long heapBytes;
+
+    private final long retainedHeapBytes;
+
+    private final long heapBudgetBytes;
+
+    private final int retainedVersions;
+
+    private final List<CryptoStoreUsageDto> cryptos;
+
+    public StoreUsageDto(long heapBytes, long retainedHeapBytes, long heapBudgetBytes, int retainedVersions,
+                         List<CryptoStoreUsageDto> cryptos) {
+        this.heapBytes = heapBytes;
+        this.retainedHeapBytes = retainedHeapBytes;
+        this.heapBudgetBytes = heapBudgetBytes;
+        this.retainedVersions = retainedVersions;
+        this.cryptos = cryptos;
+    }
+
+    public long getHeapBytes() {
+        return heapBytes;
+    }
+
+    public long getRetainedHeapBytes() {
+        return retainedHeapBytes;
+    }
+
+    public long getHeapBudgetBytes() {
+        return heapBudgetBytes;
+    }
+
+    public int getRetainedVersions() {
+        return retainedVersions;
+    }
+
+    public List<CryptoStoreUsageDto> getCryptos() {
+        return cryptos;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StoreUsageDto that = (StoreUsageDto) o;
+        return heapBytes == that.heapBytes && retainedHeapBytes == that.retainedHeapBytes &&
+                heapBudgetBytes == that.heapBudgetBytes &&
+                retainedVersions == that.retainedVersions && Objects.equals(cryptos, that.cryptos);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(heapBytes, retainedHeapBytes, heapBudgetBytes, retainedVersions, cryptos);
+    }
+
+    @Override
+    public String toString() {
+        return "StoreUsageDto{" +
+                "heapBytes=" + heapBytes +
+                ", retainedHeapBytes=" + retainedHeapBytes +
+                ", heapBudgetBytes=" + heapBudgetBytes +
+                ", retainedVersions=" + retainedVersions +
+                ", cryptos=" + cryptos +
+                '}';
+    }
+}
@@ -0,0 +1,19 @@
+package com.dimitris.cryptoanalyze.service;
+
+import com.dimitris.cryptoanalyze.service.model.AlertFiring;
+
+import java.io.IOException;
+
+/**
+ * Service interface abstracting the destination of alert firings. A bean implementing it replaces the sink chosen by
+ * {@link CryptoAlertManager} implementations
+ */
+public interface AlertSink {
+
+    /**
+     * Delivers a firing. Firings are delivered one at a time, in the order they fire
+     * @param firing The firing
+     * @throws IOException Delivery failed, the firing is not retried
+     */
+    void deliver(AlertFiring firing) throws IOException;
+}
@@ -0,0 +1,65 @@
+package com.dimitris.cryptoanalyze.service;
+
+import com.dimitris.cryptoanalyze.service.model.ValueChunk;
+
+/**
+ * Service interface abstracting the cold tier of stored crypto values. Chunks of values older than the hot window,
+ * measured back from the newest value of their crypto, are sealed into immutable segments held off heap, while newer
+ * values stay on heap
+ */
+public interface ColdSegmentStore {
+
+    /**
+     * @return A store sealing no chunk, keeping every value on heap
+     */
+    static ColdSegmentStore disabled() {
+        return new ColdSegmentStore() {
+
+            @Override
+            public boolean isEnabled() {
+                return false;
+            }
+
+            @Override
+            public long getHotWindowMillis() {
+                return Long.MAX_VALUE;
+            }
+
+            @Override
+            public ValueChunk seal(ValueChunk chunk) {
+                return chunk;
+            }
+
+            @Override
+            public void recordRead(boolean hot) {
+            }
+        };
+    }
+
+    /**
+     * Returns whether chunks are sealed. When disabled, every value stays on heap
+     *
+     * @return True if the store is enabled
+     */
+    boolean isEnabled();
+
+    /**
+     * @return Milliseconds back from the newest value of a crypto within which its values stay on heap
+     */
+    long getHotWindowMillis();
+
+    /**
+     * Seals a chunk into an immutable segment held off heap. The segment is released once no series holds it
+     *
+     * @param chunk The chunk
+     * @return The sealed chunk, or the same chunk if it cannot be sealed
+     */
+    ValueChunk seal(ValueChunk chunk);
+
+    /**
+     * Records a read of stored values by a calculation, to report the share of reads served by each tier
+     *
+     * @param hot True if every value read is held on heap
+     */
+    void recordRead(boolean hot);
+}
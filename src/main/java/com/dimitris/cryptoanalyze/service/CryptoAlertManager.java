@@ -0,0 +1,36 @@
+package com.dimitris.cryptoanalyze.service;
+
+import com.dimitris.cryptoanalyze.controller.dto.AlertRuleDto;
+import com.dimitris.cryptoanalyze.controller.dto.AlertRuleRequestDto;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoValidationException;
+
+import java.util.List;
+
+/**
+ * Service interface abstracting alert rules, evaluated continuously as values are stored. A rule fires, through an
+ * {@link AlertSink}, when the normalized price range of a crypto over a trailing window crosses its threshold
+ */
+public interface CryptoAlertManager {
+
+    /**
+     * Registers an alert rule. The rule fires on crossings caused by values stored after its registration
+     * @param alertRuleRequestDto The rule
+     * @return The registered rule, with its id
+     * @throws CryptoNotFoundException Crypto of the rule is not supported, or not stored by this instance
+     * @throws CryptoValidationException The rule is missing a field, or has a non positive window
+     */
+    AlertRuleDto register(AlertRuleRequestDto alertRuleRequestDto) throws CryptoNotFoundException, CryptoValidationException;
+
+    /**
+     * @return The registered alert rules, in registration order
+     */
+    List<AlertRuleDto> getRules();
+
+    /**
+     * Removes an alert rule
+     * @param id The id of the rule
+     * @throws CryptoNotFoundException No rule with the id is registered
+     */
+    void remove(long id) throws CryptoNotFoundException;
+}
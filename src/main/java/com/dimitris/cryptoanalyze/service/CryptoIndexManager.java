@@ -0,0 +1,46 @@
+package com.dimitris.cryptoanalyze.service;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoIndexDto;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoIndexRequestDto;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoValidationException;
+import com.dimitris.cryptoanalyze.service.model.CryptoValueSeries;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Service interface abstracting composite indices, weighted baskets of cryptos whose levels are maintained as values
+ * are stored. The levels of an index are a series of values, so that metrics are calculated on an index as on a crypto
+ */
+public interface CryptoIndexManager {
+
+    /**
+     * Defines an index, replacing any index of the same name, and calculates its levels from the stored values
+     * @param cryptoIndexRequestDto The index
+     * @return The defined index
+     * @throws CryptoNotFoundException A crypto of the index is not supported, or not stored by this instance
+     * @throws CryptoValidationException The index is missing a field, has an invalid name, a non positive weight or
+     *                                    a grid shorter than a second
+     */
+    CryptoIndexDto define(CryptoIndexRequestDto cryptoIndexRequestDto) throws CryptoNotFoundException, CryptoValidationException;
+
+    /**
+     * @return The defined indices, in name order
+     */
+    List<CryptoIndexDto> getIndices();
+
+    /**
+     * Removes an index
+     * @param name The name of the index
+     * @throws CryptoNotFoundException No index with the name is defined
+     */
+    void remove(String name) throws CryptoNotFoundException;
+
+    /**
+     * @param name The name of the index
+     * @return The levels of the index, one value per point of its time grid from the first point at which every
+     * crypto of the index has a price, or empty if no index with the name is defined
+     */
+    Optional<CryptoValueSeries> getLevels(String name);
+}
@@ -4,12 +4,14 @@ import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
 import com.dimitris.cryptoanalyze.service.enums.CryptoMetricEnum;
 import com.dimitris.cryptoanalyze.service.enums.SortOrder;
 import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
 import com.dimitris.cryptoanalyze.service.model.TimePeriod;
 
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Service interface abstracting calculations of high level metrics on crypto values
@@ -39,6 +41,19 @@ public interface CryptoMetricsCalculator {
      */
     Map<CryptoMetricEnum, BigDecimal> calculateMetrics(CryptoEnum cryptoEnum, TimePeriod timePeriod) throws CryptoInternalException;
 
+    /**
+     * Calculates the price metrics (oldest/newest/min/max/normalized) of values other than the stored values of a
+     * crypto, eg the levels of a composite index
+     *
+     * @param values     The values
+     * @param timePeriod Time period calculation applies to. It contains two optional fields representing start and end
+     *                   time points. If any of them is omitted, calculation will be restricted only to the other point
+     *                   in time. If both are omitted, calculation has no time restriction.
+     * @return A mapping of each metric to its value
+     * @throws CryptoInternalException Internal error during calculations
+     */
+    Map<CryptoMetricEnum, BigDecimal> calculatePriceMetrics(Set<CryptoValue> values, TimePeriod timePeriod) throws CryptoInternalException;
+
     /**
      * Calculates the specified metric (oldest/newest/min/max/normalized) for the specified crypto
      *
@@ -0,0 +1,57 @@
+package com.dimitris.cryptoanalyze.service;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsDto;
+import com.dimitris.cryptoanalyze.controller.dto.TimePeriodRequestDto;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Service interface abstracting live streams of metrics. Subscribers receive the metrics of a crypto in a time period
+ * when they subscribe, and again every time stored values change them
+ */
+public interface CryptoMetricsStream {
+
+    /**
+     * Subscribes to the metrics of a crypto
+     *
+     * @param crypto               The crypto
+     * @param timePeriodRequestDto Optional time period calculation applies to. If omitted, calculation has no time
+     *                             restriction. It contains two optional fields representing start and end time points.
+     *                             If any of them is omitted, calculation will be restricted only to the
+     *                             other point in time. If both are omitted, calculation has no time restriction.
+     * @param consumer             Receives the metrics
+     * @param onDropped            Runs once if the stream cancels the subscription itself, because a delivery failed
+     *                             or did not complete in time, so that the subscriber can close its connection. It is
+     *                             not run when the subscriber cancels the subscription
+     * @return The subscription, to be cancelled once the subscriber leaves
+     * @throws CryptoNotFoundException Requested crypto is not supported, or not stored by this instance
+     */
+    Subscription subscribe(String crypto, Optional<TimePeriodRequestDto> timePeriodRequestDto, MetricsConsumer consumer,
+                           Runnable onDropped) throws CryptoNotFoundException;
+
+    /**
+     * Receives the metrics of a subscription. Metrics are never delivered concurrently to the same consumer
+     */
+    @FunctionalInterface
+    interface MetricsConsumer {
+
+        /**
+         * @param metrics The current metrics
+         * @throws IOException Delivery failed, which cancels the subscription
+         */
+        void accept(CryptoMetricsDto metrics) throws IOException;
+    }
+
+    /**
+     * A subscription to the metrics of a crypto
+     */
+    interface Subscription {
+
+        /**
+         * Stops delivering metrics to the subscriber
+         */
+        void cancel();
+    }
+}
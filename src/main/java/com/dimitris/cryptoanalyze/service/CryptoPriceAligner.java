@@ -0,0 +1,52 @@
+package com.dimitris.cryptoanalyze.service;
+
+import com.dimitris.cryptoanalyze.controller.dto.AsOfPricesDto;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Service interface abstracting the alignment of the values of several cryptos, whose timestamps differ between
+ * cryptos, on the last known price of each crypto at each point in time
+ */
+public interface CryptoPriceAligner {
+
+    /**
+     * Returns the last known price of each crypto at a point in time
+     * @param timestamp Timestamp in Epoch millis
+     * @return The newest price of each crypto at or before the timestamp, for the cryptos having one
+     * @throws CryptoInternalException Internal error during crypto data loading
+     */
+    AsOfPricesDto getPricesAsOf(long timestamp) throws CryptoInternalException;
+
+    /**
+     * Prepares the export of the aligned prices of cryptos in a time range, on the data version stored when called
+     * @param cryptos       Optional cryptos, in the order of the columns of the export. If omitted, every crypto
+     * @param fromTimestamp Timestamp in Epoch millis of the start of the range, inclusive
+     * @param toTimestamp   Timestamp in Epoch millis of the end of the range, exclusive
+     * @return The export, written as CSV with a row per timestamp at which any of the cryptos has a value
+     * @throws CryptoNotFoundException A crypto is not supported, or not stored by this instance
+     * @throws CryptoInternalException Internal error during crypto data loading, or the range is empty
+     */
+    AlignedExport exportAligned(Optional<List<String>> cryptos, long fromTimestamp, long toTimestamp)
+            throws CryptoNotFoundException, CryptoInternalException;
+
+    /**
+     * An export of aligned prices, read from the data version it was prepared on
+     */
+    @FunctionalInterface
+    interface AlignedExport {
+
+        /**
+         * Writes the export, a row at a time, under the deadline attached to the calling thread
+         * @param writer The writer
+         * @throws IOException Error writing the export
+         * @throws CryptoInternalException The export is rejected by a saturated pool, or its deadline is exceeded
+         */
+        void writeTo(Writer writer) throws IOException, CryptoInternalException;
+    }
+}
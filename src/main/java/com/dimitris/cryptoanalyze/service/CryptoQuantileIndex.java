@@ -0,0 +1,32 @@
+package com.dimitris.cryptoanalyze.service;
+
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import com.dimitris.cryptoanalyze.service.model.TimePeriod;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Service interface abstracting estimation of price quantiles (eg median) of crypto values, without sorting every
+ * value in the requested time period
+ */
+public interface CryptoQuantileIndex {
+
+    /**
+     * Estimates a price quantile of a crypto
+     *
+     * @param cryptoEnum The crypto
+     * @param values     The stored values of the crypto
+     * @param quantile   The quantile, in [0, 1]
+     * @param timePeriod Time period calculation applies to. It contains two optional fields representing start and end
+     *                   time points. If any of them is omitted, calculation will be restricted only to the other point
+     *                   in time. If both are omitted, calculation has no time restriction.
+     * @return The estimated quantile (empty if no values exist in the time period)
+     * @throws CryptoInternalException Internal error during estimation
+     */
+    Optional<BigDecimal> estimateQuantile(CryptoEnum cryptoEnum, Set<CryptoValue> values, double quantile,
+                                          TimePeriod timePeriod) throws CryptoInternalException;
+}
@@ -0,0 +1,27 @@
+package com.dimitris.cryptoanalyze.service;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoValueRequestDto;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoValidationException;
+
+import java.util.List;
+
+/**
+ * Service interface abstracting ingestion of crypto values while the application is running
+ */
+public interface CryptoValuesIngestor {
+
+    /**
+     * Ingests a batch of crypto values for the specified crypto. Values are durably logged before they become
+     * visible to calculations
+     *
+     * @param crypto The crypto
+     * @param values The crypto values
+     * @throws CryptoInternalException   Internal error during logging or storing crypto data
+     * @throws CryptoNotFoundException   Requested crypto is not supported
+     * @throws CryptoValidationException Entries with missing price found
+     */
+    void ingest(String crypto, List<CryptoValueRequestDto> values)
+            throws CryptoInternalException, CryptoNotFoundException, CryptoValidationException;
+}
@@ -0,0 +1,30 @@
+package com.dimitris.cryptoanalyze.service;
+
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+
+import java.util.Collection;
+
+/**
+ * Listener notified by {@link CryptoValuesManager} every time values are stored
+ */
+@FunctionalInterface
+public interface CryptoValuesListener {
+
+    /**
+     * Called after values are stored and visible to readers, on the thread that stored them. Implementations must
+     * return quickly, eg by scheduling any work on their own threads
+     * @param cryptoEnum The crypto
+     * @param addedValues The added values, in any order
+     */
+    void onValuesAdded(CryptoEnum cryptoEnum, Collection<CryptoValue> addedValues);
+
+    /**
+     * Called after every stored value of a crypto is replaced and the new values are visible to readers, see
+     * {@link CryptoValuesManager#beginReplacement()}, on the thread that replaced them. Implementations must return
+     * quickly. Does nothing by default
+     * @param cryptoEnum The crypto
+     */
+    default void onValuesReplaced(CryptoEnum cryptoEnum) {
+    }
+}
@@ -1,8 +1,13 @@
 package com.dimitris.cryptoanalyze.service;
 
+import com.dimitris.cryptoanalyze.controller.dto.StoreUsageDto;
 import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
 import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import com.dimitris.cryptoanalyze.service.model.DataSnapshot;
 
+import java.util.Collection;
 import java.util.Optional;
 import java.util.Set;
 
@@ -12,16 +17,117 @@ import java.util.Set;
 public interface CryptoValuesManager {
 
     /**
-     * Store a set of crypto values for a specified crypto
+     * Store crypto values for a specified crypto. Values with the timestamp of a stored value replace it
      * @param cryptoEnum The crypto
-     * @param cryptoValues The crypto values
+     * @param cryptoValues The crypto values, in any order
      */
-    void addValues(CryptoEnum cryptoEnum, Set<CryptoValue> cryptoValues);
+    void addValues(CryptoEnum cryptoEnum, Collection<CryptoValue> cryptoValues);
 
     /**
-     * Get the stored values of the specified crypto
+     * Store crypto values for a specified crypto after running an action, eg logging them, in the same order as the
+     * values stored for the crypto. Values of a crypto are stored in the order their actions ran, so that values
+     * replayed in that order replace each other as the stored ones did. Values are not stored if the action fails
+     * @param cryptoEnum The crypto
+     * @param cryptoValues The crypto values, in any order
+     * @param beforeStore The action
+     * @throws CryptoInternalException Thrown by the action
+     */
+    void addValues(CryptoEnum cryptoEnum, Collection<CryptoValue> cryptoValues, BeforeStore beforeStore)
+            throws CryptoInternalException;
+
+    /**
+     * Get the stored values of the specified crypto, as of the {@link DataSnapshot} attached to the current thread
+     * if there is one
      * @param cryptoEnum The crypto
      * @return A set of crypto values or empty if there are no values for crypto
      */
     Optional<Set<CryptoValue>> getValues(CryptoEnum cryptoEnum);
+
+    /**
+     * Get the version of the stored data, the version of the {@link DataSnapshot} attached to the current thread if
+     * there is one. The version changes every time values are added, so that results calculated on stored values
+     * can be tagged with the version they were calculated on
+     * @return The data version
+     */
+    long getDataVersion();
+
+    /**
+     * Get the snapshot of the latest version of the stored data
+     * @return The snapshot
+     */
+    DataSnapshot getSnapshot();
+
+    /**
+     * Get the snapshot of a retained version of the stored data
+     * @param version The data version
+     * @return The snapshot
+     * @throws CryptoNotFoundException The version does not exist or is no longer retained
+     */
+    DataSnapshot getSnapshot(long version) throws CryptoNotFoundException;
+
+    /**
+     * Get the memory used by the latest version of the stored data
+     * @return The memory used by the stored values, per crypto
+     */
+    StoreUsageDto getUsage();
+
+    /**
+     * Register a listener notified every time values are stored
+     * @param listener The listener
+     */
+    void addListener(CryptoValuesListener listener);
+
+    /**
+     * Begin replacing the stored values of every crypto. The replacement is built apart from the stored values, which
+     * keep being read and added to, and is published at once. Values added from now on until it is published are
+     * added to the replacement as well, so that none of them is lost
+     * @return The replacement
+     */
+    StoreReplacement beginReplacement();
+
+    /**
+     * Action run before values are stored, ordered with the values stored for the same crypto
+     */
+    @FunctionalInterface
+    interface BeforeStore {
+
+        /**
+         * @throws CryptoInternalException The action failed, and values are not stored
+         */
+        void run() throws CryptoInternalException;
+    }
+
+    /**
+     * Replacement of the stored values of every crypto, published as the next version of the stored data. Closing it
+     * unpublished discards it
+     */
+    interface StoreReplacement extends AutoCloseable {
+
+        /**
+         * Add values of a crypto to the replacement. Values with the timestamp of an added value replace it
+         * @param cryptoEnum The crypto
+         * @param cryptoValues The crypto values, in any order
+         */
+        void addValues(CryptoEnum cryptoEnum, Collection<CryptoValue> cryptoValues);
+
+        /**
+         * Get the values of a crypto added to the replacement so far
+         * @param cryptoEnum The crypto
+         * @return A set of crypto values or empty if there are no values for crypto
+         */
+        Optional<Set<CryptoValue>> getValues(CryptoEnum cryptoEnum);
+
+        /**
+         * Publish the replacement, replacing the stored values of every crypto, cryptos without added values being
+         * left without values. Calculations already holding the replaced version finish on it
+         * @return The snapshot of the published version
+         */
+        DataSnapshot publish();
+
+        /**
+         * Stop adding values to the replacement, discarding it unless it was published
+         */
+        @Override
+        void close();
+    }
 }
@@ -0,0 +1,24 @@
+package com.dimitris.cryptoanalyze.service;
+
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service interface abstracting operations of reading crypto values of several cryptos from a single file
+ */
+public interface CryptoValuesPartitioningReader {
+
+    /**
+     * Reads crypto values of every crypto from the specified file, routing each value to its crypto by the symbol
+     * it is recorded with
+     *
+     * @param filePath The file containing crypto values of several cryptos
+     * @return The crypto values per crypto, in file order. Cryptos without values in the file are omitted
+     * @throws CryptoInternalException Internal error during reading crypto data from file
+     */
+    Map<CryptoEnum, List<CryptoValue>> read(String filePath) throws CryptoInternalException;
+}
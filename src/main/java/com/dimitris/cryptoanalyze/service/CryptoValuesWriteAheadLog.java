@@ -0,0 +1,39 @@
+package com.dimitris.cryptoanalyze.service;
+
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service interface abstracting a write-ahead log of crypto values ingested at runtime, so that they survive
+ * application restarts
+ */
+public interface CryptoValuesWriteAheadLog {
+
+    /**
+     * Returns whether the log is enabled. When disabled, appends are ignored and recovery returns no values
+     *
+     * @return True if the log is enabled
+     */
+    boolean isEnabled();
+
+    /**
+     * Appends a batch of crypto values for a specified crypto. Returns only after the batch is durably stored
+     *
+     * @param cryptoEnum   The crypto
+     * @param cryptoValues The crypto values
+     * @throws CryptoInternalException Internal error during writing crypto data to the log
+     */
+    void append(CryptoEnum cryptoEnum, List<CryptoValue> cryptoValues) throws CryptoInternalException;
+
+    /**
+     * Reads back every crypto value stored in the log, in the order in which it was appended
+     *
+     * @return A mapping of each crypto to its logged values (cryptos without logged values are not present)
+     * @throws CryptoInternalException Internal error during reading crypto data from the log
+     */
+    Map<CryptoEnum, List<CryptoValue>> recover() throws CryptoInternalException;
+}
@@ -1,5 +1,7 @@
 package com.dimitris.cryptoanalyze.service;
 
+import com.dimitris.cryptoanalyze.controller.dto.StoreReloadDto;
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
 import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
 
 /**
@@ -20,4 +22,30 @@ public interface DataLoader {
      * @throws CryptoInternalException Internal error during loading crypto data from file
      */
     void loadData() throws CryptoInternalException;
+
+    /**
+     * Reloads data, replacing the stored values of every crypto at once with the reloaded ones. Aimed at being used
+     * at any point in time after initial data are loaded, while calculations keep running on the stored values
+     *
+     * @return The reload
+     * @throws CryptoInternalException Internal error during loading crypto data from file, or invalid data, in
+     *                                 which case the stored values are left unchanged
+     */
+    StoreReloadDto reloadData() throws CryptoInternalException;
+
+    /**
+     * Ensures that initial data of the specified crypto are loaded, loading them on demand if needed. Aimed at
+     * being used before any calculation on the crypto values
+     *
+     * @param cryptoEnum The crypto
+     * @throws CryptoInternalException Internal error during loading crypto data from file
+     */
+    void ensureLoaded(CryptoEnum cryptoEnum) throws CryptoInternalException;
+
+    /**
+     * Returns whether initial data of every crypto are loaded
+     *
+     * @return True if every crypto is loaded
+     */
+    boolean isFullyLoaded();
 }
@@ -0,0 +1,40 @@
+package com.dimitris.cryptoanalyze.service;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsDto;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsListDto;
+import com.dimitris.cryptoanalyze.controller.dto.TimePeriodRequestDto;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Service interface abstracting queries sent to the shards of a sharded deployment. Queries are asynchronous, so
+ * that they can be sent to every shard in parallel. A failed query completes exceptionally with a
+ * {@link com.dimitris.cryptoanalyze.service.exception.CryptoInternalException}, or with a
+ * {@link com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException} if the shard does not support the
+ * requested crypto
+ */
+public interface ShardClient {
+
+    /**
+     * Calculates the cryptos of a shard with the highest normalized ranges, sorted in descending order
+     *
+     * @param shard                The index of the shard
+     * @param timePeriodRequestDto Optional time period calculation applies to
+     * @param limit                The maximum number of cryptos returned
+     * @return The partial list of the shard
+     */
+    CompletableFuture<CryptoMetricsListDto> getCryptosSortedByNormalizedRangeDesc(
+            int shard, Optional<TimePeriodRequestDto> timePeriodRequestDto, int limit);
+
+    /**
+     * Calculates metrics for a crypto owned by a shard
+     *
+     * @param shard                The index of the shard
+     * @param timePeriodRequestDto Optional time period calculation applies to
+     * @param crypto               The crypto
+     * @return A mapping of each metric to corresponding value (empty map if no values found for crypto)
+     */
+    CompletableFuture<CryptoMetricsDto> getMetricsForCrypto(
+            int shard, Optional<TimePeriodRequestDto> timePeriodRequestDto, String crypto);
+}
@@ -0,0 +1,16 @@
+package com.dimitris.cryptoanalyze.service.enums;
+
+/**
+ * Enumeration of the directions in which a value crosses the threshold of an alert rule
+ */
+public enum AlertDirection {
+
+    /**
+     * The value rises from below the threshold to the threshold or above it
+     */
+    ABOVE,
+    /**
+     * The value falls from the threshold or above it to below the threshold
+     */
+    BELOW;
+}
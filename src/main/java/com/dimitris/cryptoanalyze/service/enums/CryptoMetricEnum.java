@@ -9,7 +9,10 @@ public enum CryptoMetricEnum {
     NEWEST_PRICE("newest"),
     MIN_PRICE("min"),
     MAX_PRICE("max"),
-    NORMALIZED_PRICE_RANGE("normalized range");
+    NORMALIZED_PRICE_RANGE("normalized range"),
+    MEDIAN_PRICE("median"),
+    P5_PRICE("p5"),
+    P95_PRICE("p95");
 
     private final String code;
 
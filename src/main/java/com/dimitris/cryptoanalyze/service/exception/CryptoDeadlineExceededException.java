@@ -0,0 +1,12 @@
+package com.dimitris.cryptoanalyze.service.exception;
+
+/**
+ * Exception class used to abandon a calculation once the deadline of its request is exceeded or the request is
+ * cancelled. It is a kind of {@link CryptoInternalException}, so that it can be thrown wherever calculations fail
+ */
+public class CryptoDeadlineExceededException extends CryptoInternalException {
+
+    public CryptoDeadlineExceededException(String msg) {
+        super(msg);
+    }
+}
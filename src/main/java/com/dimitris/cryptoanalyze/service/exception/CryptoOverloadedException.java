@@ -0,0 +1,22 @@
+package com.dimitris.cryptoanalyze.service.exception;
+
+/**
+ * Exception class used to reject requests while the application has no capacity left for them. It is a kind of
+ * {@link CryptoInternalException}, so that it can be thrown wherever calculations fail
+ */
+public class CryptoOverloadedException extends CryptoInternalException {
+
+    private final long retryAfterSeconds;
+
+    public CryptoOverloadedException(String msg, long retryAfterSeconds) {
+        super(msg);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @return Seconds after which the request is expected to be admitted
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,11 @@
+package com.dimitris.cryptoanalyze.service.exception;
+
+/**
+ * Exception class used to wrap exception occurring when a request carries invalid or missing fields
+ */
+public class CryptoValidationException extends Exception {
+
+    public CryptoValidationException(String msg) {
+        super(msg);
+    }
+}
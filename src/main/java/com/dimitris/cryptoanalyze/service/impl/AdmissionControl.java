@@ -0,0 +1,165 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.controller.dto.TimePeriodRequestDto;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoOverloadedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service admitting calculations on crypto values through two {@link Bulkhead} pools, so that expensive calculations
+ * cannot starve cheap ones. The cost of a calculation is estimated as the number of cryptos it calculates on
+ * multiplied by the days of its time period. Calculations costing more than a threshold run in the expensive pool and
+ * the rest in the cheap one. A saturated pool rejects calculations with {@link CryptoOverloadedException}, answered
+ * with 429 (Too Many Requests).
+ * <p>
+ * It is configured by the following system properties:
+ * <ul>
+ *     <li>&quot;admission.cheap.threads&quot; / &quot;admission.cheap.queue&quot;: threads and queue capacity of the
+ *     cheap pool (default twice the cores / 100)</li>
+ *     <li>&quot;admission.expensive.threads&quot; / &quot;admission.expensive.queue&quot;: threads and queue
+ *     capacity of the expensive pool (default half the cores / 10)</li>
+ *     <li>&quot;admission.expensive.cost&quot;: cost in crypto-days above which a calculation is expensive (default
+ *     400, so that a query on every crypto without time restriction is expensive and one on a single crypto is
+ *     not)</li>
+ *     <li>&quot;admission.open.range.days&quot;: days counted for a time period without start or end (default
+ *     365)</li>
+ * </ul>
+ */
+@Service
+public class AdmissionControl {
+
+    private final Bulkhead cheapPool;
+
+    private final Bulkhead expensivePool;
+
+    private final long expensiveCost;
+
+    private final long openRangeDays;
+
+    /**
+     * Creates an admission control configured by system properties
+     *
+     * @param meterRegistry A registry for the meters of the pools
+     */
+    @Autowired
+    public AdmissionControl(MeterRegistry meterRegistry) {
+        this(new Bulkhead("cheap",
+                        Integer.getInteger("admission.cheap.threads", 2 * Runtime.getRuntime().availableProcessors()),
+                        Integer.getInteger("admission.cheap.queue", 100), meterRegistry),
+                new Bulkhead("expensive",
+                        Integer.getInteger("admission.expensive.threads",
+                                Math.max(1, Runtime.getRuntime().availableProcessors() / 2)),
+                        Integer.getInteger("admission.expensive.queue", 10), meterRegistry),
+                Long.getLong("admission.expensive.cost", 400),
+                Long.getLong("admission.open.range.days", 365));
+    }
+
+    /**
+     * @param cheapPool     The pool of cheap calculations
+     * @param expensivePool The pool of expensive calculations
+     * @param expensiveCost Cost in crypto-days above which a calculation is expensive
+     * @param openRangeDays Days counted for a time period without start or end
+     */
+    public AdmissionControl(Bulkhead cheapPool, Bulkhead expensivePool, long expensiveCost, long openRangeDays) {
+        this.cheapPool = cheapPool;
+        this.expensivePool = expensivePool;
+        this.expensiveCost = expensiveCost;
+        this.openRangeDays = openRangeDays;
+    }
+
+    /**
+     * Runs a calculation in the pool matching its cost and waits for its result, see {@link Bulkhead#execute}
+     *
+     * @param cryptos              Number of cryptos the calculation calculates on
+     * @param timePeriodRequestDto Optional time period of the calculation
+     * @param calculation          The calculation
+     * @param <T>                  The result type
+     * @return The result
+     * @throws CryptoInternalException Internal error during the calculation, {@link CryptoOverloadedException} if
+     *                                 the pool is saturated, or
+     *                                 {@link com.dimitris.cryptoanalyze.service.exception.CryptoDeadlineExceededException}
+     *                                 if the deadline of the calling thread is exceeded
+     * @throws CryptoNotFoundException Thrown by the calculation
+     */
+    public <T> T execute(int cryptos, Optional<TimePeriodRequestDto> timePeriodRequestDto,
+                         Bulkhead.Calculation<T> calculation) throws CryptoInternalException, CryptoNotFoundException {
+        return poolOf(estimateCost(cryptos, timePeriodRequestDto)).execute(calculation);
+    }
+
+    /**
+     * Runs a calculation on a time range in the pool matching its cost and waits for its result, see
+     * {@link Bulkhead#execute}
+     *
+     * @param cryptos       Number of cryptos the calculation calculates on
+     * @param fromTimestamp Timestamp in Epoch millis of the start of the range, inclusive
+     * @param toTimestamp   Timestamp in Epoch millis of the end of the range, exclusive
+     * @param calculation   The calculation
+     * @param <T>           The result type
+     * @return The result
+     * @throws CryptoInternalException Internal error during the calculation, {@link CryptoOverloadedException} if
+     *                                 the pool is saturated, or
+     *                                 {@link com.dimitris.cryptoanalyze.service.exception.CryptoDeadlineExceededException}
+     *                                 if the deadline of the calling thread is exceeded
+     * @throws CryptoNotFoundException Thrown by the calculation
+     */
+    public <T> T execute(int cryptos, long fromTimestamp, long toTimestamp, Bulkhead.Calculation<T> calculation)
+            throws CryptoInternalException, CryptoNotFoundException {
+        return poolOf(estimateCost(cryptos, fromTimestamp, toTimestamp)).execute(calculation);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cheapPool.shutdown();
+        expensivePool.shutdown();
+    }
+
+    /**
+     * Estimates the cost of a calculation in crypto-days
+     *
+     * @param cryptos              Number of cryptos the calculation calculates on
+     * @param timePeriodRequestDto Optional time period of the calculation
+     * @return The estimated cost
+     */
+    long estimateCost(int cryptos, Optional<TimePeriodRequestDto> timePeriodRequestDto) {
+        Optional<LocalDateTime> fromDateTime = timePeriodRequestDto.map(TimePeriodRequestDto::getFromDateTime)
+                .orElse(Optional.empty());
+        Optional<LocalDateTime> toDateTime = timePeriodRequestDto.map(TimePeriodRequestDto::getToDateTime)
+                .orElse(Optional.empty());
+        long days = openRangeDays;
+        if (fromDateTime.isPresent() && toDateTime.isPresent()) {
+            Duration range = Duration.between(fromDateTime.get(), toDateTime.get());
+            days = range.isNegative() ? 0 : (range.toHours() + 23) / 24;
+        }
+        return cryptos * days;
+    }
+
+    /**
+     * Estimates the cost of a calculation on a time range in crypto-days
+     *
+     * @param cryptos       Number of cryptos the calculation calculates on
+     * @param fromTimestamp Timestamp in Epoch millis of the start of the range, inclusive
+     * @param toTimestamp   Timestamp in Epoch millis of the end of the range, exclusive
+     * @return The estimated cost
+     */
+    long estimateCost(int cryptos, long fromTimestamp, long toTimestamp) {
+        if (toTimestamp <= fromTimestamp) {
+            return 0;
+        }
+        // A range too long for a long, eg from Long.MIN_VALUE, counts as the longest one
+        long rangeMillis = toTimestamp - fromTimestamp < 0 ? Long.MAX_VALUE : toTimestamp - fromTimestamp;
+        return cryptos * ((TimeUnit.MILLISECONDS.toHours(rangeMillis) + 23) / 24);
+    }
+
+    private Bulkhead poolOf(long cost) {
+        return cost > expensiveCost ? expensivePool : cheapPool;
+    }
+}
@@ -0,0 +1,104 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricDto;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsDto;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsListDto;
+import com.dimitris.cryptoanalyze.controller.dto.TimePeriodRequestDto;
+import com.dimitris.cryptoanalyze.service.CryptoAnalyzer;
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/**
+ * Service admitting requests to the analyzer through the pools of {@link AdmissionControl}, so that expensive requests
+ * cannot starve cheap ones. The cost of a request is estimated from the number of cryptos it calculates on and the days
+ * of its time period. A saturated pool rejects requests, which are answered with 429 (Too Many Requests).
+ */
+@Service
+public class AdmissionControlCryptoAnalyzer implements CryptoAnalyzer {
+
+    private final CryptoAnalyzer cryptoAnalyzer;
+
+    private final AdmissionControl admissionControl;
+
+    /**
+     * @param cryptoAnalyzer   The analyzer making the calculations
+     * @param admissionControl The admission control running the calculations
+     */
+    @Autowired
+    public AdmissionControlCryptoAnalyzer(@Qualifier("scatterGatherCryptoAnalyzer") CryptoAnalyzer cryptoAnalyzer,
+                                          AdmissionControl admissionControl) {
+        this.cryptoAnalyzer = cryptoAnalyzer;
+        this.admissionControl = admissionControl;
+    }
+
+    /**
+     * Calculates cryptos list sorted by normalized range in descending order, in the pool matching its cost
+     *
+     * @param timePeriodRequestDto Optional time period calculation applies to. If omitted, calculation has no time
+     *                             restriction. It contains two optional fields representing start and end time points.
+     *                             If any of them is omitted, calculation will be restricted only to the
+     *                             other point in time. If both are omitted, calculation has no time restriction.
+     * @return A list of mappings between crypto and its normalized range value (no mappings exist for cryptos for
+     * which no values are found)
+     * @throws CryptoInternalException Internal error during crypto data loading, manipulations or calculations, or
+     *                                 the pool of the request is saturated
+     */
+    @Override
+    public CryptoMetricsListDto getCryptosSortedByNormalizedRangeDesc(Optional<TimePeriodRequestDto> timePeriodRequestDto)
+            throws CryptoInternalException {
+        try {
+            return admissionControl.execute(CryptoEnum.values().length, timePeriodRequestDto,
+                    () -> cryptoAnalyzer.getCryptosSortedByNormalizedRangeDesc(timePeriodRequestDto));
+        } catch (CryptoNotFoundException e) {
+            throw new CryptoInternalException(e.getMessage());
+        }
+    }
+
+    /**
+     * Calculates metrics for specified crypto, in the pool matching its cost
+     *
+     * @param timePeriodRequestDto Optional time period calculation applies to. If omitted, calculation has no time
+     *                             restriction. It contains two optional fields representing start and end time points.
+     *                             If any of them is omitted, calculation will be restricted only to the
+     *                             other point in time. If both are omitted, calculation has no time restriction.
+     * @param crypto               The crypto
+     * @return A mapping of each metric to corresponding value (empty map if no values found for crypto)
+     * @throws CryptoInternalException Internal error during crypto data loading, manipulations or calculations, or
+     *                                 the pool of the request is saturated
+     * @throws CryptoNotFoundException Requested crypto is not supported
+     */
+    @Override
+    public CryptoMetricsDto getMetricsForCrypto(Optional<TimePeriodRequestDto> timePeriodRequestDto, String crypto)
+            throws CryptoInternalException, CryptoNotFoundException {
+        return admissionControl.execute(1, timePeriodRequestDto,
+                () -> cryptoAnalyzer.getMetricsForCrypto(timePeriodRequestDto, crypto));
+    }
+
+    /**
+     * Finds crypto with highest normalized range, in the pool matching its cost
+     *
+     * @param timePeriodRequestDto Optional time period calculation applies to. If omitted, calculation has no time
+     *                             restriction. It contains two optional fields representing start and end time points.
+     *                             If any of them is omitted, calculation will be restricted only to the
+     *                             other point in time. If both are omitted, calculation has no time restriction.
+     * @return A mapping of the crypto to its normalized range value (if no crypto data found, mapping contains null as values)
+     * @throws CryptoInternalException Internal error during crypto data loading, manipulations or calculations, or
+     *                                 the pool of the request is saturated
+     */
+    @Override
+    public CryptoMetricDto getCryptoWithHighestNormalizedRange(Optional<TimePeriodRequestDto> timePeriodRequestDto)
+            throws CryptoInternalException {
+        try {
+            return admissionControl.execute(CryptoEnum.values().length, timePeriodRequestDto,
+                    () -> cryptoAnalyzer.getCryptoWithHighestNormalizedRange(timePeriodRequestDto));
+        } catch (CryptoNotFoundException e) {
+            throw new CryptoInternalException(e.getMessage());
+        }
+    }
+}
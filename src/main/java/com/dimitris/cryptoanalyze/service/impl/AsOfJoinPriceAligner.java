@@ -0,0 +1,185 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.controller.dto.AsOfPricesDto;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoPriceDto;
+import com.dimitris.cryptoanalyze.service.CryptoPriceAligner;
+import com.dimitris.cryptoanalyze.service.CryptoValuesManager;
+import com.dimitris.cryptoanalyze.service.DataLoader;
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.model.AsOfJoin;
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import com.dimitris.cryptoanalyze.service.model.CryptoValueSeries;
+import com.dimitris.cryptoanalyze.service.model.DataSnapshot;
+import com.dimitris.cryptoanalyze.service.model.Deadline;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Service aligning the values of cryptos on the last known price of each crypto, reading the stored series of a
+ * single {@link DataSnapshot}, so that prices of different cryptos are read from the same data version. The price of
+ * each crypto at a point in time is found by binary search in its series, and aligned prices over a time range are
+ * exported by an {@link AsOfJoin} of the series, in one pass over their values. Exports run through
+ * {@link AdmissionControl}, costed by their cryptos and the days of their range, so that long exports cannot starve
+ * other requests. Prices are read from the snapshot attached to the calling thread, if any, and from the latest one
+ * otherwise. Only the cryptos stored by this instance are aligned, see {@link ShardTopology}
+ */
+@Service
+public class AsOfJoinPriceAligner implements CryptoPriceAligner {
+
+    private final CryptoValuesManager cryptoValuesManager;
+
+    private final DataLoader dataLoader;
+
+    private final ShardTopology shardTopology;
+
+    private final AdmissionControl admissionControl;
+
+    /**
+     * @param cryptoValuesManager A crypto values manager providing the snapshots of the stored data
+     * @param dataLoader          A data loader for loading crypto values on demand, if they are not loaded yet
+     * @param shardTopology       The topology of the deployment, deciding which cryptos are stored by this instance
+     * @param admissionControl    The admission control running the exports
+     */
+    @Autowired
+    public AsOfJoinPriceAligner(CryptoValuesManager cryptoValuesManager, DataLoader dataLoader,
+                                ShardTopology shardTopology, AdmissionControl admissionControl) {
+        this.cryptoValuesManager = cryptoValuesManager;
+        this.dataLoader = dataLoader;
+        this.shardTopology = shardTopology;
+        this.admissionControl = admissionControl;
+    }
+
+    /**
+     * Returns the last known price of each crypto at a point in time
+     *
+     * @param timestamp Timestamp in Epoch millis
+     * @return The newest price of each crypto at or before the timestamp, for the cryptos having one
+     * @throws CryptoInternalException Internal error during crypto data loading
+     */
+    @Override
+    public AsOfPricesDto getPricesAsOf(long timestamp) throws CryptoInternalException {
+        List<CryptoEnum> cryptos = ownedCryptos();
+        DataSnapshot snapshot = loadedSnapshot(cryptos);
+        Map<String, CryptoPriceDto> prices = new LinkedHashMap<>();
+        for (CryptoEnum cryptoEnum : cryptos) {
+            snapshot.getValues(cryptoEnum)
+                    .flatMap(series -> series.valueAsOf(timestamp))
+                    .ifPresent(value -> prices.put(cryptoEnum.getCode(),
+                            new CryptoPriceDto(value.getTimestamp(), value.getPrice())));
+        }
+        return new AsOfPricesDto(timestamp, snapshot.getVersion(), prices);
+    }
+
+    /**
+     * Prepares the export of the aligned prices of cryptos in a time range, on the data version attached to the
+     * calling thread, or stored when called if none is attached. The export starts with the header
+     * &quot;timestamp&quot; followed by the cryptos, and each row holds a timestamp followed by the last known price of
+     * each crypto, empty for a crypto without values at or before it. It is written on a thread of
+     * {@link AdmissionControl}, under the deadline of the thread writing it
+     *
+     * @param cryptos       Optional cryptos, in the order of the columns of the export. If omitted, every crypto
+     *                      stored by this instance
+     * @param fromTimestamp Timestamp in Epoch millis of the start of the range, inclusive
+     * @param toTimestamp   Timestamp in Epoch millis of the end of the range, exclusive
+     * @return The export
+     * @throws CryptoNotFoundException A crypto is not supported, or not owned by this instance
+     * @throws CryptoInternalException Internal error during crypto data loading, or the range is empty
+     */
+    @Override
+    public AlignedExport exportAligned(Optional<List<String>> cryptos, long fromTimestamp, long toTimestamp)
+            throws CryptoNotFoundException, CryptoInternalException {
+        if (fromTimestamp >= toTimestamp) {
+            throw new CryptoInternalException("Error exporting prices. Start of range must be before its end");
+        }
+        List<CryptoEnum> cryptoEnums = new ArrayList<>();
+        if (cryptos.isEmpty() || cryptos.get().isEmpty()) {
+            cryptoEnums.addAll(ownedCryptos());
+        } else {
+            for (String crypto : cryptos.get()) {
+                if (Arrays.stream(CryptoEnum.values()).noneMatch(e -> e.getCode().equals(crypto))) {
+                    throw new CryptoNotFoundException("Crypto " + crypto + " not supported.");
+                }
+                CryptoEnum cryptoEnum = CryptoEnum.valueOf(crypto);
+                if (!shardTopology.isOwned(cryptoEnum)) {
+                    throw new CryptoNotFoundException("Crypto " + crypto + " not supported by this shard. It is owned by " +
+                            shardTopology.getNode(shardTopology.ownerOf(cryptoEnum)));
+                }
+                if (!cryptoEnums.contains(cryptoEnum)) {
+                    cryptoEnums.add(cryptoEnum);
+                }
+            }
+        }
+        DataSnapshot snapshot = loadedSnapshot(cryptoEnums);
+        List<CryptoValueSeries> series = cryptoEnums.stream()
+                .map(cryptoEnum -> snapshot.getValues(cryptoEnum).orElse(CryptoValueSeries.empty()))
+                .collect(Collectors.toList());
+        String header = cryptoEnums.stream().map(CryptoEnum::getCode).collect(Collectors.joining(",", "timestamp,", "\n"));
+
+        return writer -> {
+            try {
+                admissionControl.execute(cryptoEnums.size(), fromTimestamp, toTimestamp, () -> {
+                    writeAligned(writer, header, series, fromTimestamp, toTimestamp);
+                    return null;
+                });
+            } catch (CryptoNotFoundException e) {
+                throw new CryptoInternalException(e.getMessage());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+    }
+
+    private static void writeAligned(Writer writer, String header, List<CryptoValueSeries> series, long fromTimestamp,
+                                     long toTimestamp) throws CryptoInternalException {
+        Deadline deadline = Deadline.current();
+        try {
+            writer.write(header);
+            StringBuilder line = new StringBuilder();
+            AsOfJoin.join(series, fromTimestamp, toTimestamp, (timestamp, values) -> {
+                line.setLength(0);
+                line.append(timestamp);
+                for (CryptoValue value : values) {
+                    line.append(',');
+                    if (value != null) {
+                        line.append(value.getPrice().toPlainString());
+                    }
+                }
+                writer.append(line).append('\n');
+            });
+        } catch (Deadline.ScanAbortedException e) {
+            throw deadline.newExceededException();
+        } catch (IOException e) {
+            // Tunnelled through the pool, which only rethrows unchecked exceptions as they are
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return The snapshot attached to the current thread if any, otherwise the snapshot of the latest version of the
+     * stored data, once the specified cryptos are loaded
+     */
+    private DataSnapshot loadedSnapshot(List<CryptoEnum> cryptos) throws CryptoInternalException {
+        DataSnapshot attached = DataSnapshot.attached();
+        if (attached != null) {
+            return attached;
+        }
+        for (CryptoEnum cryptoEnum : cryptos) {
+            dataLoader.ensureLoaded(cryptoEnum);
+        }
+        return cryptoValuesManager.getSnapshot();
+    }
+
+    private List<CryptoEnum> ownedCryptos() {
+        return Arrays.stream(CryptoEnum.values())
+                .filter(shardTopology::isOwned)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,95 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.service.CryptoQuantileIndex;
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import com.dimitris.cryptoanalyze.service.model.CryptoValueSeries;
+import com.dimitris.cryptoanalyze.service.model.QuantileSketch;
+import com.dimitris.cryptoanalyze.service.model.TimePeriod;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.Set;
+
+/**
+ * Service estimating price quantiles from {@link QuantileSketch} sketches kept per bucket of values, the chunks of the
+ * stored {@link CryptoValueSeries}. A query merges the sketches of the chunks lying entirely in the requested time
+ * period, and adds the individual values of the at most two chunks only partly in it, so its cost depends on the
+ * number of chunks rather than the number of values. Chunks are immutable and shared between the versions of the
+ * stored data, so the sketch of a chunk is computed once, by the first query reading it, and values ingested
+ * afterwards only cost the sketch of the chunk they are merged into. Sketches are retained with their chunks, and
+ * counted in the heap bytes of their chunks. It is configured by the following system property:
+ * <ul>
+ *     <li>&quot;quantile.relative.accuracy&quot;: relative error bound of estimates (default 0.01)</li>
+ * </ul>
+ */
+@Service
+public class BucketedQuantileIndex implements CryptoQuantileIndex {
+
+    /**
+     * Estimates are rounded, since they are representatives of sketch bins rather than actual prices
+     */
+    private static final MathContext ESTIMATE_MATH_CONTEXT = new MathContext(8, RoundingMode.HALF_UP);
+
+    private final double relativeAccuracy;
+
+    /**
+     * Creates an index configured by system properties
+     */
+    @Autowired
+    public BucketedQuantileIndex() {
+        this(Double.parseDouble(System.getProperty("quantile.relative.accuracy", "0.01")));
+    }
+
+    /**
+     * @param relativeAccuracy Relative error bound of estimates
+     */
+    public BucketedQuantileIndex(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("Relative accuracy must be in (0, 1), found " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+    }
+
+    /**
+     * Estimates a price quantile of a crypto. The estimate is within the configured relative error of the exact
+     * quantile of the values in the time period
+     *
+     * @param cryptoEnum The crypto
+     * @param values     The stored values of the crypto. Values not held in a {@link CryptoValueSeries} are sorted
+     *                   into one first
+     * @param quantile   The quantile, in [0, 1]
+     * @param timePeriod Time period calculation applies to. It contains two optional fields representing start and end
+     *                   time points. If any of them is omitted, calculation will be restricted only to the other point
+     *                   in time. If both are omitted, calculation has no time restriction.
+     * @return The estimated quantile (empty if no values exist in the time period)
+     * @throws CryptoInternalException Internal error during estimation
+     */
+    @Override
+    public Optional<BigDecimal> estimateQuantile(CryptoEnum cryptoEnum, Set<CryptoValue> values, double quantile,
+                                                 TimePeriod timePeriod) throws CryptoInternalException {
+        CryptoValueSeries series = values instanceof CryptoValueSeries ? (CryptoValueSeries) values
+                : CryptoValueSeries.of(values);
+        long from = timePeriod.getFromDateTime().map(dateTime -> dateTime.toInstant(ZoneOffset.UTC).toEpochMilli())
+                .orElse(Long.MIN_VALUE);
+        long to = timePeriod.getToDateTime().map(dateTime -> dateTime.toInstant(ZoneOffset.UTC).toEpochMilli())
+                .orElse(Long.MAX_VALUE);
+        QuantileSketch sketch = from < to ? series.sketch(from, to, relativeAccuracy)
+                : new QuantileSketch(relativeAccuracy);
+        try {
+            OptionalDouble estimate = sketch.getQuantile(quantile);
+            return estimate.isPresent()
+                    ? Optional.of(new BigDecimal(estimate.getAsDouble(), ESTIMATE_MATH_CONTEXT))
+                    : Optional.empty();
+        } catch (IllegalArgumentException e) {
+            throw new CryptoInternalException("Error estimating quantile. " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoOverloadedException;
+import com.dimitris.cryptoanalyze.service.model.DataSnapshot;
+import com.dimitris.cryptoanalyze.service.model.Deadline;
+import com.dimitris.cryptoanalyze.service.util.BoundedExecutor;
+import com.dimitris.cryptoanalyze.service.util.VirtualThreads;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of threads running calculations of one class of requests, so that a burst of requests of one class
+ * cannot take the threads of another. Calculations wait in a bounded queue while every thread is busy, and are
+ * rejected with {@link CryptoOverloadedException} once the queue is full.
+ * <p>
+ * The {@link Deadline} and the {@link DataSnapshot} of the calling thread are attached to the thread running the
+ * calculation. The caller stops waiting once the deadline is exceeded, and a cancelled deadline interrupts the
+ * calculation.
+ * <p>
+ * If virtual threads are enabled, see {@link VirtualThreads}, every calculation runs on its own virtual thread instead,
+ * and the pool size bounds the calculations running at once, see {@link BoundedExecutor}.
+ * <p>
+ * The following meters are registered, tagged with the pool name:
+ * <ul>
+ *     <li>&quot;crypto.admission.queue.depth&quot;: calculations waiting for a thread</li>
+ *     <li>&quot;crypto.admission.active&quot;: calculations running</li>
+ *     <li>&quot;crypto.admission.rejected&quot;: calculations rejected</li>
+ *     <li>&quot;crypto.admission.wait&quot;: time calculations waited for a thread</li>
+ * </ul>
+ */
+public class Bulkhead {
+
+    /**
+     * Weight of the last calculation in the moving average of calculation times
+     */
+    private static final double SERVICE_TIME_SMOOTHING = 0.2;
+
+    private final String name;
+
+    private final int threads;
+
+    private final BoundedExecutor executor;
+
+    private final Counter rejected;
+
+    private final Timer waitTimer;
+
+    /**
+     * Moving average of calculation times, updated atomically by the threads completing calculations
+     */
+    private final AtomicLong averageServiceNanos = new AtomicLong();
+
+    /**
+     * A calculation that may fail the way calculations on crypto values do
+     *
+     * @param <T> The result type
+     */
+    @FunctionalInterface
+    public interface Calculation<T> {
+
+        T calculate() throws CryptoInternalException, CryptoNotFoundException;
+    }
+
+    /**
+     * @param name          The pool name, used in thread names and meter tags
+     * @param threads       Number of threads
+     * @param queueCapacity Number of calculations that may wait for a thread
+     * @param meterRegistry A registry for the meters of the pool
+     */
+    public Bulkhead(String name, int threads, int queueCapacity, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.threads = threads;
+        this.executor = new BoundedExecutor("admission-" + name + "-", threads, queueCapacity);
+
+        Gauge.builder("crypto.admission.queue.depth", executor, BoundedExecutor::getQueueSize)
+                .tag("pool", name).register(meterRegistry);
+        Gauge.builder("crypto.admission.active", executor, BoundedExecutor::getActiveCount)
+                .tag("pool", name).register(meterRegistry);
+        this.rejected = Counter.builder("crypto.admission.rejected").tag("pool", name).register(meterRegistry);
+        this.waitTimer = Timer.builder("crypto.admission.wait").tag("pool", name).register(meterRegistry);
+    }
+
+    /**
+     * Runs a calculation on a thread of the pool and waits for its result
+     *
+     * @param calculation The calculation
+     * @param <T>         The result type
+     * @return The result
+     * @throws CryptoInternalException Internal error during the calculation, {@link CryptoOverloadedException} if
+     *                                 the pool is saturated, or
+     *                                 {@link com.dimitris.cryptoanalyze.service.exception.CryptoDeadlineExceededException}
+     *                                 if the deadline of the calling thread is exceeded
+     * @throws CryptoNotFoundException Thrown by the calculation
+     */
+    public <T> T execute(Calculation<T> calculation) throws CryptoInternalException, CryptoNotFoundException {
+        Deadline deadline = Deadline.current();
+        deadline.check();
+        DataSnapshot snapshot = DataSnapshot.attached();
+        long submitted = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long started = System.nanoTime();
+                waitTimer.record(started - submitted, TimeUnit.NANOSECONDS);
+                try (Deadline.Scope ignored = deadline.attach();
+                     DataSnapshot.Scope ignoredSnapshot = DataSnapshot.attach(snapshot)) {
+                    deadline.check();
+                    return calculation.calculate();
+                } finally {
+                    averageServiceNanos.accumulateAndGet(System.nanoTime() - started, (average, serviceNanos) ->
+                            average == 0 ? serviceNanos
+                                    : Math.round(SERVICE_TIME_SMOOTHING * serviceNanos + (1 - SERVICE_TIME_SMOOTHING) * average));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new CryptoOverloadedException("Too many requests, " + name + " request pool is saturated",
+                    getRetryAfterSeconds());
+        }
+        deadline.onCancel(() -> future.cancel(true));
+
+        try {
+            return deadline.isUnbounded() ? future.get() : future.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | CancellationException e) {
+            future.cancel(true);
+            throw deadline.newExceededException();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CryptoInternalException("Error waiting for calculation. Interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CryptoInternalException) {
+                throw (CryptoInternalException) cause;
+            } else if (cause instanceof CryptoNotFoundException) {
+                throw (CryptoNotFoundException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CryptoInternalException("Error during calculation. " + cause.getMessage());
+        }
+    }
+
+    /**
+     * Estimates when a rejected request would be admitted, as the time the threads need to run the queued
+     * calculations at their average calculation time
+     *
+     * @return Seconds, at least one
+     */
+    public long getRetryAfterSeconds() {
+        double drainNanos = (executor.getQueueSize() + 1) * (double) averageServiceNanos.get() / threads;
+        return Math.max(1, (long) Math.ceil(drainNanos / TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Stops the threads of the pool, interrupting running calculations
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,236 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricDto;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsDto;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsListDto;
+import com.dimitris.cryptoanalyze.controller.dto.TimePeriodRequestDto;
+import com.dimitris.cryptoanalyze.service.CryptoAnalyzer;
+import com.dimitris.cryptoanalyze.service.CryptoValuesManager;
+import com.dimitris.cryptoanalyze.service.exception.CryptoDeadlineExceededException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.model.DataSnapshot;
+import com.dimitris.cryptoanalyze.service.model.Deadline;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Service coalescing identical concurrent requests to the analyzer into a single calculation. Requests are identical
+ * when they query the same method with the same crypto and time period on the same data version, a time period with
+ * omitted fields being the same as one without them. The first request of a query calculates it, on the data version
+ * it is keyed on, and requests of the same query arriving meanwhile wait for its result instead of calculating it
+ * again, so that they take no thread of the {@link Bulkhead} pools either.
+ * <p>
+ * Waiting requests receive the result, or the exception, of the calculation, except when the calculating request
+ * exceeded its own deadline or was cancelled: waiting requests whose deadline is not exceeded then calculate the
+ * query again. Each waiting request stops waiting once its own deadline is exceeded. A query is forgotten as soon as
+ * its calculation completes, so that only queries being calculated are kept.
+ * <p>
+ * The following meters are registered:
+ * <ul>
+ *     <li>&quot;crypto.coalescing.calculations&quot;: calculations run</li>
+ *     <li>&quot;crypto.coalescing.coalesced&quot;: requests answered by the calculation of another request, ie
+ *     calculations avoided</li>
+ *     <li>&quot;crypto.coalescing.in.flight&quot;: queries being calculated</li>
+ * </ul>
+ */
+@Service
+@Primary
+public class CoalescingCryptoAnalyzer implements CryptoAnalyzer {
+
+    private final CryptoAnalyzer cryptoAnalyzer;
+
+    private final CryptoValuesManager cryptoValuesManager;
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter calculations;
+
+    private final Counter coalesced;
+
+    /**
+     * @param cryptoAnalyzer      The analyzer making the calculations
+     * @param cryptoValuesManager A crypto values manager providing the version of the stored data
+     * @param meterRegistry       A registry for the meters of the analyzer
+     */
+    @Autowired
+    public CoalescingCryptoAnalyzer(@Qualifier("admissionControlCryptoAnalyzer") CryptoAnalyzer cryptoAnalyzer,
+                                    CryptoValuesManager cryptoValuesManager, MeterRegistry meterRegistry) {
+        this.cryptoAnalyzer = cryptoAnalyzer;
+        this.cryptoValuesManager = cryptoValuesManager;
+        this.calculations = Counter.builder("crypto.coalescing.calculations").register(meterRegistry);
+        this.coalesced = Counter.builder("crypto.coalescing.coalesced").register(meterRegistry);
+        Gauge.builder("crypto.coalescing.in.flight", inFlight, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Calculates cryptos list sorted by normalized range in descending order, sharing the calculation of an
+     * identical request in progress
+     *
+     * @param timePeriodRequestDto Optional time period calculation applies to. If omitted, calculation has no time
+     *                             restriction. It contains two optional fields representing start and end time points.
+     *                             If any of them is omitted, calculation will be restricted only to the
+     *                             other point in time. If both are omitted, calculation has no time restriction.
+     * @return A list of mappings between crypto and its normalized range value (no mappings exist for cryptos for
+     * which no values are found)
+     * @throws CryptoInternalException Internal error during crypto data loading, manipulations or calculations
+     */
+    @Override
+    public CryptoMetricsListDto getCryptosSortedByNormalizedRangeDesc(Optional<TimePeriodRequestDto> timePeriodRequestDto)
+            throws CryptoInternalException {
+        try {
+            return coalesce("sort/by/normalized/desc " + toKey(timePeriodRequestDto),
+                    () -> cryptoAnalyzer.getCryptosSortedByNormalizedRangeDesc(timePeriodRequestDto));
+        } catch (CryptoNotFoundException e) {
+            throw new CryptoInternalException(e.getMessage());
+        }
+    }
+
+    /**
+     * Calculates metrics for specified crypto, sharing the calculation of an identical request in progress
+     *
+     * @param timePeriodRequestDto Optional time period calculation applies to. If omitted, calculation has no time
+     *                             restriction. It contains two optional fields representing start and end time points.
+     *                             If any of them is omitted, calculation will be restricted only to the
+     *                             other point in time. If both are omitted, calculation has no time restriction.
+     * @param crypto               The crypto
+     * @return A mapping of each metric to corresponding value (empty map if no values found for crypto)
+     * @throws CryptoInternalException Internal error during crypto data loading, manipulations or calculations
+     * @throws CryptoNotFoundException Requested crypto is not supported
+     */
+    @Override
+    public CryptoMetricsDto getMetricsForCrypto(Optional<TimePeriodRequestDto> timePeriodRequestDto, String crypto)
+            throws CryptoInternalException, CryptoNotFoundException {
+        return coalesce("metrics/" + crypto + " " + toKey(timePeriodRequestDto),
+                () -> cryptoAnalyzer.getMetricsForCrypto(timePeriodRequestDto, crypto));
+    }
+
+    /**
+     * Finds crypto with highest normalized range, sharing the calculation of an identical request in progress
+     *
+     * @param timePeriodRequestDto Optional time period calculation applies to. If omitted, calculation has no time
+     *                             restriction. It contains two optional fields representing start and end time points.
+     *                             If any of them is omitted, calculation will be restricted only to the
+     *                             other point in time. If both are omitted, calculation has no time restriction.
+     * @return A mapping of the crypto to its normalized range value (if no crypto data found, mapping contains null as values)
+     * @throws CryptoInternalException Internal error during crypto data loading, manipulations or calculations
+     */
+    @Override
+    public CryptoMetricDto getCryptoWithHighestNormalizedRange(Optional<TimePeriodRequestDto> timePeriodRequestDto)
+            throws CryptoInternalException {
+        try {
+            return coalesce("crypto/with/highest/normalized " + toKey(timePeriodRequestDto),
+                    () -> cryptoAnalyzer.getCryptoWithHighestNormalizedRange(timePeriodRequestDto));
+        } catch (CryptoNotFoundException e) {
+            throw new CryptoInternalException(e.getMessage());
+        }
+    }
+
+    /**
+     * Calculates a query, unless an identical one is being calculated, in which case it waits for its result
+     *
+     * @param query       The query, without the data version
+     * @param calculation Calculates the query
+     * @param <T>         The result type
+     * @return The result
+     * @throws CryptoInternalException Thrown by the calculation, or
+     *                                 {@link CryptoDeadlineExceededException} if the deadline of the calling thread
+     *                                 is exceeded
+     * @throws CryptoNotFoundException Thrown by the calculation
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T coalesce(String query, Bulkhead.Calculation<T> calculation)
+            throws CryptoInternalException, CryptoNotFoundException {
+        Deadline deadline = Deadline.current();
+        DataSnapshot attached = DataSnapshot.attached();
+        DataSnapshot snapshot = attached != null ? attached : cryptoValuesManager.getSnapshot();
+        String key = query + " @" + snapshot.getVersion();
+        while (true) {
+            deadline.check();
+            CompletableFuture<Object> call = new CompletableFuture<>();
+            CompletableFuture<Object> existingCall = inFlight.putIfAbsent(key, call);
+            if (existingCall == null) {
+                return calculate(key, call, snapshot, calculation);
+            }
+            try {
+                T result = (T) await(existingCall, deadline);
+                coalesced.increment();
+                return result;
+            } catch (CryptoDeadlineExceededException e) {
+                if (deadline.isExceeded()) {
+                    throw e;
+                }
+                // The deadline of the calculating request was exceeded, not the one of this request
+            }
+        }
+    }
+
+    private <T> T calculate(String key, CompletableFuture<Object> call, DataSnapshot snapshot,
+                            Bulkhead.Calculation<T> calculation) throws CryptoInternalException, CryptoNotFoundException {
+        calculations.increment();
+        try (DataSnapshot.Scope ignored = DataSnapshot.attach(snapshot)) {
+            T result = calculation.calculate();
+            call.complete(result);
+            return result;
+        } catch (CryptoInternalException | CryptoNotFoundException | RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    /**
+     * Waits for the calculation of another request, as long as the deadline of the calling thread allows
+     */
+    private static Object await(CompletableFuture<Object> call, Deadline deadline)
+            throws CryptoInternalException, CryptoNotFoundException {
+        // Cancelling the wait of this request leaves the shared calculation running
+        CompletableFuture<Object> wait = call.thenApply(Function.identity());
+        deadline.onCancel(() -> wait.cancel(true));
+        try {
+            return deadline.isUnbounded() ? wait.get() : wait.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | CancellationException e) {
+            throw deadline.newExceededException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CryptoInternalException("Error waiting for calculation. Interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CryptoInternalException) {
+                throw (CryptoInternalException) cause;
+            } else if (cause instanceof CryptoNotFoundException) {
+                throw (CryptoNotFoundException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CryptoInternalException("Error during calculation. " + cause.getMessage());
+        }
+    }
+
+    /**
+     * @param timePeriodRequestDto Optional time period
+     * @return The time period as part of a key, the same for every representation of the same time period
+     */
+    private static String toKey(Optional<TimePeriodRequestDto> timePeriodRequestDto) {
+        return toDateTimeKey(timePeriodRequestDto.map(TimePeriodRequestDto::getFromDateTime)) + "/" +
+                toDateTimeKey(timePeriodRequestDto.map(TimePeriodRequestDto::getToDateTime));
+    }
+
+    private static String toDateTimeKey(Optional<Optional<LocalDateTime>> dateTime) {
+        return dateTime.flatMap(Function.identity()).map(LocalDateTime::toString).orElse("-");
+    }
+}
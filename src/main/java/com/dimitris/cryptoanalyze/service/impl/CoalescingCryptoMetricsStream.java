@@ -0,0 +1,472 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsDto;
+import com.dimitris.cryptoanalyze.controller.dto.TimePeriodRequestDto;
+import com.dimitris.cryptoanalyze.service.CryptoAnalyzer;
+import com.dimitris.cryptoanalyze.service.CryptoMetricsStream;
+import com.dimitris.cryptoanalyze.service.CryptoValuesListener;
+import com.dimitris.cryptoanalyze.service.CryptoValuesManager;
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import com.dimitris.cryptoanalyze.service.util.BoundedExecutor;
+import com.dimitris.cryptoanalyze.service.util.VirtualThreads;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Service streaming metrics to subscribers without holding a thread per subscriber. Stored values mark the
+ * subscriptions whose crypto and time period they fall into as pending. A ticker thread periodically collects the
+ * pending subscriptions that may receive an update, groups them by crypto and time period, and hands each group to a
+ * small pool of fan-out threads, which calculates the metrics of the group once and offers them to every
+ * subscriber whose last offered metrics differ. Groups not taken by the fan-out threads wait in a bounded queue, and
+ * groups finding it full are collected again on a later tick.
+ * <p>
+ * Each subscriber has an outbox holding only the latest metrics offered to it, which a sender thread writes to the
+ * subscriber, so that fan-out threads never block on a subscriber. A subscriber that does not keep up misses
+ * intermediate metrics, and one whose write has not completed within the send timeout is unsubscribed: its sender
+ * thread is interrupted and, once its write has returned, the subscriber is told it was dropped so that it can close
+ * its connection. Sender threads are taken from a bounded pool on demand and released once outboxes are empty, so
+ * there is at most one per subscriber being written to, and they are virtual if virtual threads are enabled, see
+ * {@link VirtualThreads}. Outboxes finding the pool saturated are offered again on a later tick.
+ * <p>
+ * Ticks arriving faster than a subscriber may receive updates are coalesced into a single update. Metrics are
+ * calculated on the values of this instance, so in sharded deployments clients subscribe at the shard owning the
+ * crypto.
+ * <p>
+ * It is configured by the following system properties:
+ * <ul>
+ *     <li>&quot;stream.fanout.threads&quot;: threads calculating and delivering updates (default 2)</li>
+ *     <li>&quot;stream.fanout.queue&quot;: groups of subscriptions that may wait for a fan-out thread
+ *     (default 1000)</li>
+ *     <li>&quot;stream.tick.millis&quot;: interval between collections of pending subscriptions (default 50)</li>
+ *     <li>&quot;stream.min.update.interval.millis&quot;: minimum interval between two updates delivered to the same
+ *     subscriber (default 1000)</li>
+ *     <li>&quot;stream.send.timeout.millis&quot;: time after which a subscriber whose write has not completed is
+ *     unsubscribed (default 10000)</li>
+ *     <li>&quot;stream.sender.threads&quot;: threads writing to subscribers at once (default 64)</li>
+ *     <li>&quot;stream.sender.queue&quot;: subscribers that may wait for a sender thread (default 1000)</li>
+ * </ul>
+ * The number of subscribers and of delivered updates are published as &quot;crypto.stream.subscribers&quot; and
+ * &quot;crypto.stream.updates&quot;
+ */
+@Service
+public class CoalescingCryptoMetricsStream implements CryptoMetricsStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoalescingCryptoMetricsStream.class);
+
+    private final CryptoAnalyzer cryptoAnalyzer;
+
+    private final ShardTopology shardTopology;
+
+    private final long minUpdateIntervalNanos;
+
+    private final Map<CryptoEnum, Set<StreamSubscription>> subscriptions = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService ticker;
+
+    private final BoundedExecutor fanOut;
+
+    private final BoundedExecutor sender;
+
+    private final long sendTimeoutNanos;
+
+    private final Counter updates;
+
+    /**
+     * Creates a stream configured by system properties
+     *
+     * @param cryptoAnalyzer      An analyzer calculating metrics on the values of this instance
+     * @param cryptoValuesManager The manager notifying stored values
+     * @param shardTopology       The topology of the deployment, deciding which cryptos are stored by this instance
+     * @param meterRegistry       A registry for the meters of the stream
+     */
+    @Autowired
+    public CoalescingCryptoMetricsStream(@Qualifier("cryptoAnalyzerImpl") CryptoAnalyzer cryptoAnalyzer,
+                                         CryptoValuesManager cryptoValuesManager, ShardTopology shardTopology,
+                                         MeterRegistry meterRegistry) {
+        this(cryptoAnalyzer, cryptoValuesManager, shardTopology, meterRegistry,
+                Integer.getInteger("stream.fanout.threads", 2),
+                Integer.getInteger("stream.fanout.queue", 1000),
+                Long.getLong("stream.tick.millis", 50),
+                Long.getLong("stream.min.update.interval.millis", 1000),
+                Long.getLong("stream.send.timeout.millis", 10000),
+                Integer.getInteger("stream.sender.threads", 64),
+                Integer.getInteger("stream.sender.queue", 1000));
+    }
+
+    /**
+     * @param cryptoAnalyzer          An analyzer calculating metrics on the values of this instance
+     * @param cryptoValuesManager     The manager notifying stored values
+     * @param shardTopology           The topology of the deployment, deciding which cryptos are stored by this instance
+     * @param meterRegistry           A registry for the meters of the stream
+     * @param fanOutThreads           Threads calculating and delivering updates
+     * @param fanOutQueue             Groups of subscriptions that may wait for a fan-out thread
+     * @param tickMillis              Interval between collections of pending subscriptions
+     * @param minUpdateIntervalMillis Minimum interval between two updates delivered to the same subscriber
+     * @param sendTimeoutMillis       Time after which a subscriber whose write has not completed is unsubscribed
+     * @param senderThreads           Threads writing to subscribers at once
+     * @param senderQueue             Subscribers that may wait for a sender thread
+     */
+    public CoalescingCryptoMetricsStream(CryptoAnalyzer cryptoAnalyzer, CryptoValuesManager cryptoValuesManager,
+                                         ShardTopology shardTopology, MeterRegistry meterRegistry, int fanOutThreads,
+                                         int fanOutQueue, long tickMillis, long minUpdateIntervalMillis,
+                                         long sendTimeoutMillis, int senderThreads, int senderQueue) {
+        this.cryptoAnalyzer = cryptoAnalyzer;
+        this.shardTopology = shardTopology;
+        this.minUpdateIntervalNanos = TimeUnit.MILLISECONDS.toNanos(minUpdateIntervalMillis);
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-stream-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.fanOut = new BoundedExecutor("metrics-stream-fanout-", fanOutThreads, fanOutQueue);
+        this.sender = new BoundedExecutor("metrics-stream-sender-", senderThreads, senderQueue);
+        Gauge.builder("crypto.stream.subscribers", subscriptions, s -> s.values().stream().mapToInt(Set::size).sum())
+                .register(meterRegistry);
+        this.updates = Counter.builder("crypto.stream.updates").register(meterRegistry);
+
+        cryptoValuesManager.addListener(new CryptoValuesListener() {
+
+            @Override
+            public void onValuesAdded(CryptoEnum cryptoEnum, Collection<CryptoValue> addedValues) {
+                CoalescingCryptoMetricsStream.this.onValuesAdded(cryptoEnum, addedValues);
+            }
+
+            @Override
+            public void onValuesReplaced(CryptoEnum cryptoEnum) {
+                CoalescingCryptoMetricsStream.this.onValuesReplaced(cryptoEnum);
+            }
+        });
+        ticker.scheduleWithFixedDelay(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Subscribes to the metrics of a crypto. The current metrics are delivered on the next tick
+     *
+     * @param crypto               The crypto
+     * @param timePeriodRequestDto Optional time period calculation applies to
+     * @param consumer             Receives the metrics
+     * @param onDropped            Runs once if the stream cancels the subscription
+     * @return The subscription
+     * @throws CryptoNotFoundException Requested crypto is not supported, or not owned by this instance
+     */
+    @Override
+    public Subscription subscribe(String crypto, Optional<TimePeriodRequestDto> timePeriodRequestDto,
+                                  MetricsConsumer consumer, Runnable onDropped) throws CryptoNotFoundException {
+        if (Arrays.stream(CryptoEnum.values()).noneMatch(e -> e.getCode().equals(crypto))) {
+            throw new CryptoNotFoundException("Crypto " + crypto + " not supported.");
+        }
+        CryptoEnum cryptoEnum = CryptoEnum.valueOf(crypto);
+        if (!shardTopology.isOwned(cryptoEnum)) {
+            throw new CryptoNotFoundException("Crypto " + crypto + " not supported by this shard. It is owned by " +
+                    shardTopology.getNode(shardTopology.ownerOf(cryptoEnum)));
+        }
+        StreamSubscription subscription = new StreamSubscription(cryptoEnum, timePeriodRequestDto, consumer,
+                onDropped);
+        subscriptions.computeIfAbsent(cryptoEnum, key -> ConcurrentHashMap.newKeySet()).add(subscription);
+        return subscription;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+        fanOut.shutdownNow();
+        sender.shutdownNow();
+    }
+
+    private void onValuesAdded(CryptoEnum cryptoEnum, Collection<CryptoValue> addedValues) {
+        Set<StreamSubscription> cryptoSubscriptions = subscriptions.get(cryptoEnum);
+        if (cryptoSubscriptions == null || cryptoSubscriptions.isEmpty() || addedValues.isEmpty()) {
+            return;
+        }
+        long oldest = Long.MAX_VALUE;
+        long newest = Long.MIN_VALUE;
+        for (CryptoValue addedValue : addedValues) {
+            oldest = Math.min(oldest, addedValue.getTimestamp());
+            newest = Math.max(newest, addedValue.getTimestamp());
+        }
+        for (StreamSubscription subscription : cryptoSubscriptions) {
+            if (subscription.includesAny(addedValues, oldest, newest)) {
+                subscription.pending.set(true);
+            }
+        }
+    }
+
+    private void onValuesReplaced(CryptoEnum cryptoEnum) {
+        Set<StreamSubscription> cryptoSubscriptions = subscriptions.get(cryptoEnum);
+        if (cryptoSubscriptions == null) {
+            return;
+        }
+        for (StreamSubscription subscription : cryptoSubscriptions) {
+            subscription.pending.set(true);
+        }
+    }
+
+    /**
+     * Unsubscribes the subscribers whose write exceeded the send timeout, and hands the pending subscriptions which
+     * may receive an update to the fan-out threads, one task per crypto and time period
+     */
+    private void tick() {
+        try {
+            long now = System.nanoTime();
+            for (Map.Entry<CryptoEnum, Set<StreamSubscription>> cryptoSubscriptions : subscriptions.entrySet()) {
+                Map<Optional<TimePeriodRequestDto>, List<StreamSubscription>> due = new HashMap<>();
+                for (StreamSubscription subscription : cryptoSubscriptions.getValue()) {
+                    if (subscription.writing && now - subscription.writeStartedNanos > sendTimeoutNanos) {
+                        logger.debug("Write of metrics of crypto {} timed out, cancelling subscription",
+                                cryptoSubscriptions.getKey());
+                        subscription.timeOut();
+                    } else if (subscription.pending.get() && now - subscription.nextUpdateNanos >= 0 &&
+                            subscription.inFlight.compareAndSet(false, true)) {
+                        due.computeIfAbsent(subscription.timePeriodRequestDto, key -> new ArrayList<>()).add(subscription);
+                    }
+                }
+                for (Map.Entry<Optional<TimePeriodRequestDto>, List<StreamSubscription>> group : due.entrySet()) {
+                    try {
+                        fanOut.execute(() -> publish(cryptoSubscriptions.getKey(), group.getKey(), group.getValue()));
+                    } catch (RejectedExecutionException e) {
+                        // Still pending, so collected again on a later tick
+                        group.getValue().forEach(subscription -> subscription.inFlight.set(false));
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("Error collecting pending subscriptions", e);
+        }
+    }
+
+    /**
+     * Calculates the metrics of a crypto in a time period once and offers them to the subscribers whose last
+     * offered metrics differ
+     */
+    private void publish(CryptoEnum cryptoEnum, Optional<TimePeriodRequestDto> timePeriodRequestDto,
+                         List<StreamSubscription> group) {
+        // Clear before calculating, so that values stored meanwhile trigger another update
+        group.forEach(subscription -> subscription.pending.set(false));
+        try {
+            CryptoMetricsDto metrics;
+            try {
+                metrics = cryptoAnalyzer.getMetricsForCrypto(timePeriodRequestDto, cryptoEnum.getCode());
+            } catch (Exception e) {
+                logger.warn("Error calculating metrics of crypto {} for subscribers. {}", cryptoEnum, e.getMessage());
+                long retryNanos = System.nanoTime() + minUpdateIntervalNanos;
+                group.forEach(subscription -> {
+                    subscription.nextUpdateNanos = retryNanos;
+                    subscription.pending.set(true);
+                });
+                return;
+            }
+            for (StreamSubscription subscription : group) {
+                // Metrics still in the outbox were not taken by a sender, the pool being saturated
+                if (!subscription.cancelled &&
+                        (!metrics.equals(subscription.lastOffered) || subscription.outbox.get() != null)) {
+                    subscription.offer(metrics);
+                }
+            }
+        } finally {
+            group.forEach(subscription -> subscription.inFlight.set(false));
+        }
+    }
+
+    private class StreamSubscription implements Subscription {
+
+        private final CryptoEnum cryptoEnum;
+
+        private final Optional<TimePeriodRequestDto> timePeriodRequestDto;
+
+        private final long fromMillis;
+
+        private final long toMillis;
+
+        private final MetricsConsumer consumer;
+
+        private final Runnable onDropped;
+
+        private final AtomicBoolean dropped = new AtomicBoolean();
+
+        private final AtomicBoolean pending = new AtomicBoolean(true);
+
+        private final AtomicBoolean inFlight = new AtomicBoolean();
+
+        private volatile boolean cancelled;
+
+        private volatile long nextUpdateNanos = System.nanoTime();
+
+        /**
+         * Last metrics offered, only accessed by the fan-out thread publishing to the subscription
+         */
+        private CryptoMetricsDto lastOffered;
+
+        /**
+         * Latest metrics not yet written to the subscriber
+         */
+        private final AtomicReference<CryptoMetricsDto> outbox = new AtomicReference<>();
+
+        /**
+         * Whether a sender thread is draining the outbox
+         */
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        private volatile boolean writing;
+
+        private volatile long writeStartedNanos;
+
+        /**
+         * The sender thread writing to the subscriber, if any
+         */
+        private volatile Thread writer;
+
+        private volatile boolean timedOut;
+
+        private StreamSubscription(CryptoEnum cryptoEnum, Optional<TimePeriodRequestDto> timePeriodRequestDto,
+                                   MetricsConsumer consumer, Runnable onDropped) {
+            this.cryptoEnum = cryptoEnum;
+            this.timePeriodRequestDto = timePeriodRequestDto;
+            this.fromMillis = toEpochMilli(timePeriodRequestDto.map(TimePeriodRequestDto::getFromDateTime)
+                    .orElse(Optional.empty()), Long.MIN_VALUE);
+            this.toMillis = toEpochMilli(timePeriodRequestDto.map(TimePeriodRequestDto::getToDateTime)
+                    .orElse(Optional.empty()), Long.MAX_VALUE);
+            this.consumer = consumer;
+            this.onDropped = onDropped;
+        }
+
+        /**
+         * @return True if any of the values falls into the time period, which includes its start and excludes its end
+         */
+        private boolean includesAny(Collection<CryptoValue> values, long oldest, long newest) {
+            if (oldest >= toMillis || newest < fromMillis) {
+                return false;
+            }
+            if (oldest >= fromMillis && newest < toMillis) {
+                return true;
+            }
+            return values.stream().anyMatch(value -> value.getTimestamp() >= fromMillis && value.getTimestamp() < toMillis);
+        }
+
+        /**
+         * Puts metrics in the outbox, replacing any metrics not yet written, and starts a sender if none is draining
+         * the outbox. Never blocks
+         */
+        private void offer(CryptoMetricsDto metrics) {
+            lastOffered = metrics;
+            nextUpdateNanos = System.nanoTime() + minUpdateIntervalNanos;
+            outbox.set(metrics);
+            startSending();
+        }
+
+        private void startSending() {
+            if (cancelled || !sending.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                sender.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // The outbox is kept and offered again on a later tick
+                sending.set(false);
+                nextUpdateNanos = System.nanoTime() + minUpdateIntervalNanos;
+                pending.set(true);
+            }
+        }
+
+        /**
+         * Writes the outbox to the subscriber until it is empty. Runs on a sender thread
+         */
+        private void drain() {
+            try {
+                CryptoMetricsDto metrics;
+                while (!cancelled && (metrics = outbox.getAndSet(null)) != null) {
+                    writeStartedNanos = System.nanoTime();
+                    writer = Thread.currentThread();
+                    writing = true;
+                    try {
+                        consumer.accept(metrics);
+                        updates.increment();
+                    } catch (Exception e) {
+                        logger.debug("Error delivering metrics of crypto {}, cancelling subscription. {}", cryptoEnum, e.getMessage());
+                        cancel();
+                        drop();
+                        return;
+                    } finally {
+                        writing = false;
+                        synchronized (this) {
+                            writer = null;
+                            // Clears an interrupt of a timed out write, which must not reach the next task of the thread
+                            Thread.interrupted();
+                        }
+                    }
+                }
+            } finally {
+                sending.set(false);
+                if (timedOut) {
+                    drop();
+                }
+            }
+            // Metrics offered after the outbox was found empty, but before sending was cleared
+            if (outbox.get() != null) {
+                startSending();
+            }
+        }
+
+        /**
+         * Cancels the subscription whose write exceeded the send timeout, and interrupts the write. The subscriber is
+         * told it was dropped by the sender thread once the write returns, since it cannot release its connection
+         * while a write is holding it, or right away if no write is in progress
+         */
+        private void timeOut() {
+            timedOut = true;
+            cancel();
+            synchronized (this) {
+                if (writer != null) {
+                    writer.interrupt();
+                }
+            }
+            if (!sending.get()) {
+                drop();
+            }
+        }
+
+        /**
+         * Tells the subscriber, once, that the stream cancelled its subscription
+         */
+        private void drop() {
+            if (!dropped.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                onDropped.run();
+            } catch (RuntimeException e) {
+                logger.warn("Error closing dropped subscription of crypto {}. {}", cryptoEnum, e.getMessage());
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            outbox.set(null);
+            Set<StreamSubscription> cryptoSubscriptions = subscriptions.get(cryptoEnum);
+            if (cryptoSubscriptions != null) {
+                cryptoSubscriptions.remove(this);
+            }
+        }
+
+        private long toEpochMilli(Optional<LocalDateTime> dateTime, long defaultMillis) {
+            return dateTime.map(value -> value.toInstant(ZoneOffset.UTC).toEpochMilli()).orElse(defaultMillis);
+        }
+    }
+}
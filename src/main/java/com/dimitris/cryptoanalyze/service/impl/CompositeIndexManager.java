@@ -0,0 +1,210 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoIndexDto;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoIndexRequestDto;
+import com.dimitris.cryptoanalyze.service.CryptoIndexManager;
+import com.dimitris.cryptoanalyze.service.CryptoValuesListener;
+import com.dimitris.cryptoanalyze.service.CryptoValuesManager;
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoValidationException;
+import com.dimitris.cryptoanalyze.service.model.CompositeIndex;
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import com.dimitris.cryptoanalyze.service.model.CryptoValueSeries;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Service maintaining the levels of composite indices, see {@link CompositeIndex}, incrementally on the thread storing
+ * values. Each index is updated under its own monitor, so that values of different cryptos stored concurrently update
+ * it one after the other, each update reading the values stored so far. The levels of an index follow the latest
+ * stored values, whatever the data version a calculation on them reads.
+ * <p>
+ * Indices only weigh cryptos stored by this instance, see {@link ShardTopology}, and their names, used in place of a
+ * crypto by the analyzer endpoints, are distinct from the codes of cryptos. It is configured by the system property
+ * &quot;indices.grid.millis&quot;, the interval between points of the grid of indices defined without one (default
+ * one minute). The number of indices is published as &quot;crypto.indices&quot;
+ */
+@Service
+public class CompositeIndexManager implements CryptoIndexManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompositeIndexManager.class);
+
+    /**
+     * Minimum interval between points of a grid, bounding the number of levels kept per index
+     */
+    static final long MIN_GRID_MILLIS = 1000;
+
+    private static final Pattern NAME_PATTERN = Pattern.compile("[a-z0-9_-]{1,64}");
+
+    private final CryptoValuesManager cryptoValuesManager;
+
+    private final ShardTopology shardTopology;
+
+    private final long defaultGridMillis;
+
+    private final Map<String, CompositeIndex> indices = new ConcurrentSkipListMap<>();
+
+    /**
+     * Creates a manager configured by system properties
+     *
+     * @param cryptoValuesManager The manager notifying stored values
+     * @param shardTopology       The topology of the deployment, deciding which cryptos are stored by this instance
+     * @param meterRegistry       A registry for the meters of the manager
+     */
+    @Autowired
+    public CompositeIndexManager(CryptoValuesManager cryptoValuesManager, ShardTopology shardTopology,
+                                 MeterRegistry meterRegistry) {
+        this(cryptoValuesManager, shardTopology, meterRegistry, Long.getLong("indices.grid.millis", 60000));
+    }
+
+    /**
+     * @param cryptoValuesManager The manager notifying stored values
+     * @param shardTopology       The topology of the deployment, deciding which cryptos are stored by this instance
+     * @param meterRegistry       A registry for the meters of the manager
+     * @param defaultGridMillis   Interval between points of the grid of indices defined without one
+     */
+    public CompositeIndexManager(CryptoValuesManager cryptoValuesManager, ShardTopology shardTopology,
+                                 MeterRegistry meterRegistry, long defaultGridMillis) {
+        this.cryptoValuesManager = cryptoValuesManager;
+        this.shardTopology = shardTopology;
+        this.defaultGridMillis = defaultGridMillis;
+        Gauge.builder("crypto.indices", indices, Map::size).register(meterRegistry);
+
+        cryptoValuesManager.addListener(new CryptoValuesListener() {
+
+            @Override
+            public void onValuesAdded(CryptoEnum cryptoEnum, Collection<CryptoValue> addedValues) {
+                for (CompositeIndex index : indices.values()) {
+                    if (index.contains(cryptoEnum)) {
+                        synchronized (index) {
+                            index.update(cryptoEnum, addedValues, CompositeIndexManager.this::storedValues);
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public void onValuesReplaced(CryptoEnum cryptoEnum) {
+                for (CompositeIndex index : indices.values()) {
+                    if (index.contains(cryptoEnum)) {
+                        synchronized (index) {
+                            index.rebuild(CompositeIndexManager.this::storedValues);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Defines an index, replacing any index of the same name, and calculates its levels from the stored values
+     *
+     * @param cryptoIndexRequestDto The index
+     * @return The defined index
+     * @throws CryptoNotFoundException A crypto of the index is not supported, or not owned by this instance
+     * @throws CryptoValidationException The index is missing a field, has an invalid name, a non positive weight or a
+     *                                 grid shorter than a second
+     */
+    @Override
+    public CryptoIndexDto define(CryptoIndexRequestDto cryptoIndexRequestDto) throws CryptoNotFoundException, CryptoValidationException {
+        String name = cryptoIndexRequestDto.getName();
+        if (name == null || !NAME_PATTERN.matcher(name).matches()) {
+            throw new CryptoValidationException("Error defining index. Name must be up to 64 lowercase letters, digits, " +
+                    "'-' or '_'");
+        }
+        if (Arrays.stream(CryptoEnum.values()).anyMatch(e -> e.getCode().equals(name))) {
+            throw new CryptoValidationException("Error defining index. Name " + name + " is the code of a crypto");
+        }
+        if (cryptoIndexRequestDto.getWeights() == null || cryptoIndexRequestDto.getWeights().isEmpty()) {
+            throw new CryptoValidationException("Error defining index. At least one weighted crypto is required");
+        }
+        long gridMillis = cryptoIndexRequestDto.getGridMillis() != null ? cryptoIndexRequestDto.getGridMillis() : defaultGridMillis;
+        if (gridMillis < MIN_GRID_MILLIS) {
+            throw new CryptoValidationException("Error defining index. Grid must be at least " + MIN_GRID_MILLIS + " millis");
+        }
+        Map<CryptoEnum, BigDecimal> weights = new EnumMap<>(CryptoEnum.class);
+        for (Map.Entry<String, BigDecimal> entry : cryptoIndexRequestDto.getWeights().entrySet()) {
+            String crypto = entry.getKey();
+            if (Arrays.stream(CryptoEnum.values()).noneMatch(e -> e.getCode().equals(crypto))) {
+                throw new CryptoNotFoundException("Crypto " + crypto + " not supported.");
+            }
+            CryptoEnum cryptoEnum = CryptoEnum.valueOf(crypto);
+            if (!shardTopology.isOwned(cryptoEnum)) {
+                throw new CryptoNotFoundException("Crypto " + crypto + " not supported by this shard. It is owned by " +
+                        shardTopology.getNode(shardTopology.ownerOf(cryptoEnum)));
+            }
+            if (entry.getValue() == null || entry.getValue().signum() <= 0) {
+                throw new CryptoValidationException("Error defining index. Weight of crypto " + crypto +
+                        " must be a positive number");
+            }
+            weights.put(cryptoEnum, entry.getValue());
+        }
+
+        CompositeIndex index = new CompositeIndex(name, weights, gridMillis);
+        // Registered before it is built, so that values stored meanwhile wait for the build and update it afterwards
+        synchronized (index) {
+            indices.put(name, index);
+            index.rebuild(this::storedValues);
+        }
+        logger.debug("Defined index {} with {} levels", name, index.getLevels().size());
+        return toDto(index);
+    }
+
+    /**
+     * @return The defined indices, in name order
+     */
+    @Override
+    public List<CryptoIndexDto> getIndices() {
+        return indices.values().stream().map(this::toDto).collect(Collectors.toList());
+    }
+
+    /**
+     * Removes an index
+     *
+     * @param name The name of the index
+     * @throws CryptoNotFoundException No index with the name is defined
+     */
+    @Override
+    public void remove(String name) throws CryptoNotFoundException {
+        if (indices.remove(name) == null) {
+            throw new CryptoNotFoundException("Index " + name + " not found.");
+        }
+        logger.debug("Removed index {}", name);
+    }
+
+    /**
+     * @param name The name of the index
+     * @return The levels of the index, or empty if no index with the name is defined
+     */
+    @Override
+    public Optional<CryptoValueSeries> getLevels(String name) {
+        CompositeIndex index = indices.get(name);
+        return index == null ? Optional.empty() : Optional.of(index.getLevels());
+    }
+
+    private CryptoValueSeries storedValues(CryptoEnum cryptoEnum) {
+        Optional<Set<CryptoValue>> values = cryptoValuesManager.getValues(cryptoEnum);
+        if (values.isEmpty()) {
+            return CryptoValueSeries.empty();
+        }
+        return values.get() instanceof CryptoValueSeries ? (CryptoValueSeries) values.get()
+                : CryptoValueSeries.of(values.get());
+    }
+
+    private CryptoIndexDto toDto(CompositeIndex index) {
+        Map<String, BigDecimal> weights = new LinkedHashMap<>();
+        index.getWeights().forEach((cryptoEnum, weight) -> weights.put(cryptoEnum.getCode(), weight));
+        return new CryptoIndexDto(index.getName(), weights, index.getGridMillis(), index.getLevels().size());
+    }
+}
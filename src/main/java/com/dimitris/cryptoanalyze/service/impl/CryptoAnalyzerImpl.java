@@ -5,12 +5,14 @@ import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsDto;
 import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsListDto;
 import com.dimitris.cryptoanalyze.controller.dto.TimePeriodRequestDto;
 import com.dimitris.cryptoanalyze.service.CryptoAnalyzer;
+import com.dimitris.cryptoanalyze.service.CryptoIndexManager;
 import com.dimitris.cryptoanalyze.service.CryptoMetricsCalculator;
 import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
 import com.dimitris.cryptoanalyze.service.enums.CryptoMetricEnum;
 import com.dimitris.cryptoanalyze.service.enums.SortOrder;
 import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
 import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.model.CryptoValueSeries;
 import com.dimitris.cryptoanalyze.service.model.TimePeriod;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -25,19 +27,24 @@ import java.util.stream.Collectors;
 
 /**
  * Service for calling calculations according to endpoint requests and mapping results
- * to endpoint responses
+ * to endpoint responses. Metrics are calculated for a composite index, see {@link CryptoIndexManager}, as for a
+ * crypto, on its levels
  */
 @Service
 public class CryptoAnalyzerImpl implements CryptoAnalyzer {
 
     private final CryptoMetricsCalculator cryptoMetricsCalculator;
 
+    private final CryptoIndexManager cryptoIndexManager;
+
     /**
      * @param cryptoMetricsCalculator A metrics calculator to be called for calculations
+     * @param cryptoIndexManager      A manager providing the levels of composite indices
      */
     @Autowired
-    public CryptoAnalyzerImpl(CryptoMetricsCalculator cryptoMetricsCalculator) {
+    public CryptoAnalyzerImpl(CryptoMetricsCalculator cryptoMetricsCalculator, CryptoIndexManager cryptoIndexManager) {
         this.cryptoMetricsCalculator = cryptoMetricsCalculator;
+        this.cryptoIndexManager = cryptoIndexManager;
     }
 
     /**
@@ -64,25 +71,31 @@ public class CryptoAnalyzerImpl implements CryptoAnalyzer {
     }
 
     /**
-     * Calculates metrics for specified crypto
+     * Calculates metrics for specified crypto, or the price metrics of the levels of the composite index of that name
      *
      * @param timePeriodRequestDto Optional time period calculation applies to. If omitted, calculation has no time
      *                             restriction. It contains two optional fields representing start and end time points.
      *                             If any of them is omitted, calculation will be restricted only to the
      *                             other point in time. If both are omitted, calculation has no time restriction.
-     * @param crypto               The crypto
+     * @param crypto               The crypto, or the name of an index
      * @return A mapping of each metric to corresponding value (empty map if no values found for crypto)
      * @throws CryptoInternalException Internal error during crypto data loading, manipulations or calculations
-     * @throws CryptoNotFoundException Requested crypto is not supported
+     * @throws CryptoNotFoundException Requested crypto is not supported and no index of that name is defined
      */
     @Override
     public CryptoMetricsDto getMetricsForCrypto(Optional<TimePeriodRequestDto> timePeriodRequestDto, String crypto)
             throws CryptoInternalException, CryptoNotFoundException {
-        if (Arrays.stream(CryptoEnum.values()).noneMatch(e -> e.getCode().equals(crypto))) {
-            throw new CryptoNotFoundException("Crypto " + crypto + " not supported.");
+        Map<CryptoMetricEnum, BigDecimal> metrics;
+        if (Arrays.stream(CryptoEnum.values()).anyMatch(e -> e.getCode().equals(crypto))) {
+            metrics = cryptoMetricsCalculator.calculateMetrics(
+                    CryptoEnum.valueOf(crypto), convertToTimePeriod(timePeriodRequestDto));
+        } else {
+            Optional<CryptoValueSeries> levels = cryptoIndexManager.getLevels(crypto);
+            if (levels.isEmpty()) {
+                throw new CryptoNotFoundException("Crypto " + crypto + " not supported.");
+            }
+            metrics = cryptoMetricsCalculator.calculatePriceMetrics(levels.get(), convertToTimePeriod(timePeriodRequestDto));
         }
-        Map<CryptoMetricEnum, BigDecimal> metrics = cryptoMetricsCalculator.calculateMetrics(
-                CryptoEnum.valueOf(crypto), convertToTimePeriod(timePeriodRequestDto));
         Map<String, BigDecimal> metricsMap = metrics.entrySet()
                 .stream()
                 .collect(Collectors.toMap((entry) -> entry.getKey().getCode(), Map.Entry::getValue));
@@ -1,39 +1,83 @@
 package com.dimitris.cryptoanalyze.service.impl;
 
+import com.dimitris.cryptoanalyze.service.ColdSegmentStore;
 import com.dimitris.cryptoanalyze.service.CryptoMetricsCalculator;
+import com.dimitris.cryptoanalyze.service.CryptoQuantileIndex;
 import com.dimitris.cryptoanalyze.service.CryptoValuesManager;
+import com.dimitris.cryptoanalyze.service.DataLoader;
 import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
 import com.dimitris.cryptoanalyze.service.enums.CryptoMetricEnum;
 import com.dimitris.cryptoanalyze.service.enums.SortOrder;
 import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
 import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import com.dimitris.cryptoanalyze.service.model.CryptoValueSeries;
+import com.dimitris.cryptoanalyze.service.model.DataSnapshot;
+import com.dimitris.cryptoanalyze.service.model.Deadline;
+import com.dimitris.cryptoanalyze.service.model.NormalizedRangeRanking;
+import com.dimitris.cryptoanalyze.service.model.PriceSummary;
 import com.dimitris.cryptoanalyze.service.model.TimePeriod;
 import com.dimitris.cryptoanalyze.service.util.CryptoMetricsUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
- * Service for performing calculations of high level metrics on crypto values
+ * Service for performing calculations of high level metrics on crypto values. Calculations on every crypto only
+ * consider the cryptos owned by this instance, see {@link ShardTopology}
+ * <p>
+ * Calculations check the {@link Deadline} attached to the current thread before each metric of each crypto and
+ * while scanning values, and are abandoned with
+ * {@link com.dimitris.cryptoanalyze.service.exception.CryptoDeadlineExceededException} once it is exceeded
+ * <p>
+ * Calculations read stored values from both tiers of the {@link ColdSegmentStore}, and record whether the values of
+ * each period they read were all held on heap
+ * <p>
+ * Cryptos are sorted by the normalized range of all their values, without a time restriction, or of their values in
+ * a UTC day, for a time period from the start of a day to the start of the next one, by reading the
+ * {@link NormalizedRangeRanking}s the stored data maintain as values are added, without reading any value
  */
 @Service
 public class CryptoMetricsCalculatorImpl implements CryptoMetricsCalculator {
 
+    private static final Set<CryptoMetricEnum> PRICE_METRICS = EnumSet.of(CryptoMetricEnum.OLDEST_PRICE,
+            CryptoMetricEnum.NEWEST_PRICE, CryptoMetricEnum.MIN_PRICE, CryptoMetricEnum.MAX_PRICE,
+            CryptoMetricEnum.NORMALIZED_PRICE_RANGE);
+
     private final CryptoValuesManager cryptoValuesManager;
 
+    private final DataLoader dataLoader;
+
+    private final ShardTopology shardTopology;
+
+    private final CryptoQuantileIndex quantileIndex;
+
+    private final ColdSegmentStore coldSegmentStore;
+
     /**
      * @param cryptoValuesManager A crypto values manager from which stored crypto values can be retrieved
+     * @param dataLoader          A data loader for loading crypto values on demand, if they are not loaded yet
+     * @param shardTopology       The topology of the deployment, deciding which cryptos are stored by this instance
+     * @param quantileIndex       An index estimating price quantiles
+     * @param coldSegmentStore    The store holding sealed values, recording the reads of each tier
      */
     @Autowired
-    public CryptoMetricsCalculatorImpl(CryptoValuesManager cryptoValuesManager) {
+    public CryptoMetricsCalculatorImpl(CryptoValuesManager cryptoValuesManager, DataLoader dataLoader,
+                                       ShardTopology shardTopology, CryptoQuantileIndex quantileIndex,
+                                       ColdSegmentStore coldSegmentStore) {
         this.cryptoValuesManager = cryptoValuesManager;
+        this.dataLoader = dataLoader;
+        this.shardTopology = shardTopology;
+        this.quantileIndex = quantileIndex;
+        this.coldSegmentStore = coldSegmentStore;
     }
 
     /**
-     * Calculates all metrics (oldest/newest/min/max/normalized) for each crypto
+     * Calculates all metrics (oldest/newest/min/max/normalized/median/p5/p95) for each crypto
      *
      * @param timePeriod Time period calculation applies to. It contains two optional fields representing start and end
      *                   time points. If any of them is omitted, calculation will be restricted only to the other point
@@ -44,7 +88,7 @@ public class CryptoMetricsCalculatorImpl implements CryptoMetricsCalculator {
     @Override
     public Map<CryptoEnum, Map<CryptoMetricEnum, BigDecimal>> calculateMetricsPerCrypto(TimePeriod timePeriod) throws CryptoInternalException {
         Map<CryptoEnum, Map<CryptoMetricEnum, BigDecimal>> metricsPerCrypto = new HashMap<>();
-        for (CryptoEnum cryptoEnum : CryptoEnum.values()) {
+        for (CryptoEnum cryptoEnum : ownedCryptos()) {
             Map<CryptoMetricEnum, BigDecimal> metrics = calculateMetrics(cryptoEnum, timePeriod);
             metricsPerCrypto.put(cryptoEnum, metrics);
         }
@@ -52,7 +96,7 @@ public class CryptoMetricsCalculatorImpl implements CryptoMetricsCalculator {
     }
 
     /**
-     * Calculates all metrics (oldest/newest/min/max/normalized) for the specified crypto
+     * Calculates all metrics (oldest/newest/min/max/normalized/median/p5/p95) for the specified crypto
      *
      * @param cryptoEnum The crypto
      * @param timePeriod Time period calculation applies to. It contains two optional fields representing start and end
@@ -74,7 +118,38 @@ public class CryptoMetricsCalculatorImpl implements CryptoMetricsCalculator {
     }
 
     /**
-     * Calculates the specified metric (oldest/newest/min/max/normalized) for the specified crypto
+     * Calculates the price metrics (oldest/newest/min/max/normalized) of values other than the stored values of a
+     * crypto, eg the levels of a composite index. Quantile metrics are left out, since the quantile index keeps its
+     * sketches per crypto
+     *
+     * @param values     The values
+     * @param timePeriod Time period calculation applies to. It contains two optional fields representing start and end
+     *                   time points. If any of them is omitted, calculation will be restricted only to the other point
+     *                   in time. If both are omitted, calculation has no time restriction.
+     * @return A mapping of each metric to its value
+     * @throws CryptoInternalException Internal error during calculations, or
+     *                                 {@link com.dimitris.cryptoanalyze.service.exception.CryptoDeadlineExceededException}
+     *                                 if the deadline is exceeded
+     */
+    @Override
+    public Map<CryptoMetricEnum, BigDecimal> calculatePriceMetrics(Set<CryptoValue> values, TimePeriod timePeriod)
+            throws CryptoInternalException {
+        Deadline deadline = Deadline.current();
+        Map<CryptoMetricEnum, BigDecimal> metrics = new HashMap<>();
+        for (CryptoMetricEnum cryptoMetricEnum : PRICE_METRICS) {
+            deadline.check();
+            try {
+                calculateMetricOnValues(null, cryptoMetricEnum, values, timePeriod)
+                        .ifPresent(metricValue -> metrics.put(cryptoMetricEnum, metricValue));
+            } catch (Deadline.ScanAbortedException e) {
+                throw deadline.newExceededException();
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Calculates the specified metric (oldest/newest/min/max/normalized/median/p5/p95) for the specified crypto
      *
      * @param cryptoEnum       The crypto
      * @param cryptoMetricEnum The metric
@@ -88,21 +163,45 @@ public class CryptoMetricsCalculatorImpl implements CryptoMetricsCalculator {
     public Optional<BigDecimal> calculateMetric(
             CryptoEnum cryptoEnum, CryptoMetricEnum cryptoMetricEnum, TimePeriod timePeriod
     ) throws CryptoInternalException {
+        Deadline deadline = Deadline.current();
+        deadline.check();
+        dataLoader.ensureLoaded(cryptoEnum);
         Optional<Set<CryptoValue>> cryptoValues = cryptoValuesManager.getValues(cryptoEnum);
         if (cryptoValues.isEmpty()) {
             throw new CryptoInternalException("Error calculating metric. No values found for crypto");
         }
+        if (cryptoValues.get() instanceof CryptoValueSeries) {
+            CryptoValueSeries series = (CryptoValueSeries) cryptoValues.get();
+            coldSegmentStore.recordRead(
+                    series.chunksCovering(timePeriod.getFromTimestamp(), timePeriod.getToTimestamp()).isOnHeap());
+        }
+        try {
+            return calculateMetricOnValues(cryptoEnum, cryptoMetricEnum, cryptoValues.get(), timePeriod);
+        } catch (Deadline.ScanAbortedException e) {
+            throw deadline.newExceededException();
+        }
+    }
+
+    private Optional<BigDecimal> calculateMetricOnValues(
+            CryptoEnum cryptoEnum, CryptoMetricEnum cryptoMetricEnum, Set<CryptoValue> cryptoValues, TimePeriod timePeriod
+    ) throws CryptoInternalException {
         switch (cryptoMetricEnum) {
             case OLDEST_PRICE:
-                return CryptoMetricsUtil.calculateOldestPrice(cryptoValues.get(), timePeriod);
+                return CryptoMetricsUtil.calculateOldestPrice(cryptoValues, timePeriod);
             case NEWEST_PRICE:
-                return CryptoMetricsUtil.calculateNewestPrice(cryptoValues.get(), timePeriod);
+                return CryptoMetricsUtil.calculateNewestPrice(cryptoValues, timePeriod);
             case MIN_PRICE:
-                return CryptoMetricsUtil.calculateMinPrice(cryptoValues.get(), timePeriod);
+                return CryptoMetricsUtil.calculateMinPrice(cryptoValues, timePeriod);
             case MAX_PRICE:
-                return CryptoMetricsUtil.calculateMaxPrice(cryptoValues.get(), timePeriod);
+                return CryptoMetricsUtil.calculateMaxPrice(cryptoValues, timePeriod);
             case NORMALIZED_PRICE_RANGE:
-                return CryptoMetricsUtil.calculateNormalizedPriceRange(cryptoValues.get(), timePeriod);
+                return CryptoMetricsUtil.calculateNormalizedPriceRange(cryptoValues, timePeriod);
+            case MEDIAN_PRICE:
+                return quantileIndex.estimateQuantile(cryptoEnum, cryptoValues, 0.5, timePeriod);
+            case P5_PRICE:
+                return quantileIndex.estimateQuantile(cryptoEnum, cryptoValues, 0.05, timePeriod);
+            case P95_PRICE:
+                return quantileIndex.estimateQuantile(cryptoEnum, cryptoValues, 0.95, timePeriod);
             default:
                 throw new CryptoInternalException("Error calculating non-supported metric " + cryptoMetricEnum.getCode());
         }
@@ -123,19 +222,36 @@ public class CryptoMetricsCalculatorImpl implements CryptoMetricsCalculator {
     public List<Map.Entry<CryptoEnum, BigDecimal>> sortCryptosByMetric(
             CryptoMetricEnum cryptoMetricEnum, SortOrder sortOrder, TimePeriod timePeriod
     ) throws CryptoInternalException {
+        if (cryptoMetricEnum == CryptoMetricEnum.NORMALIZED_PRICE_RANGE && timePeriod.isUnbounded()) {
+            Optional<List<Map.Entry<CryptoEnum, BigDecimal>>> rankedEntries = readNormalizedRangeRanking(
+                    sortOrder, DataSnapshot::getNormalizedRangeRanking, CryptoValueSeries::summary);
+            if (rankedEntries.isPresent()) {
+                return rankedEntries.get();
+            }
+        }
+        Optional<LocalDate> day = timePeriod.getDay();
+        if (cryptoMetricEnum == CryptoMetricEnum.NORMALIZED_PRICE_RANGE && day.isPresent()) {
+            long epochDay = day.get().toEpochDay();
+            Optional<List<Map.Entry<CryptoEnum, BigDecimal>>> rankedEntries = readNormalizedRangeRanking(sortOrder,
+                    snapshot -> snapshot.getNormalizedRangeRanking(epochDay), series -> series.summaryOfDay(epochDay));
+            if (rankedEntries.isPresent()) {
+                return rankedEntries.get();
+            }
+        }
         Map<CryptoEnum, BigDecimal> metricPerCrypto = new HashMap<>();
-        for (CryptoEnum cryptoEnum : CryptoEnum.values()) {
+        for (CryptoEnum cryptoEnum : ownedCryptos()) {
             Optional<BigDecimal> metricValue = calculateMetric(cryptoEnum, cryptoMetricEnum, timePeriod);
             if (metricValue.isPresent()) {
                 metricPerCrypto.put(cryptoEnum, metricValue.get());
             }
         }
 
+        // Sorted as a ranking and reversed for ascending order, like the entries read from a ranking
         List<Map.Entry<CryptoEnum, BigDecimal>> sortedEntries = metricPerCrypto.entrySet()
                 .stream()
-                .sorted(Map.Entry.comparingByValue())
+                .sorted(NormalizedRangeRanking.RANKING_ORDER)
                 .collect(Collectors.toList());
-        if (sortOrder == SortOrder.DESC) {
+        if (sortOrder == SortOrder.ASC) {
             Collections.reverse(sortedEntries);
         }
 
@@ -158,4 +274,59 @@ public class CryptoMetricsCalculatorImpl implements CryptoMetricsCalculator {
                 sortCryptosByMetric(CryptoMetricEnum.NORMALIZED_PRICE_RANGE, SortOrder.DESC, timePeriod);
         return cryptosSortedByNormalizedRangeDesc.isEmpty() ? Optional.empty() : Optional.of(cryptosSortedByNormalizedRangeDesc.get(0));
     }
+
+    /**
+     * Reads the owned cryptos sorted by normalized range from a ranking of the snapshot read by the calculation, in
+     * time proportional to the number of cryptos
+     *
+     * @param sortOrder The order type
+     * @param ranking   Selects the ranking of a snapshot
+     * @param summary   Selects the summary of the values of a series the ranking ranks
+     * @return A list of mappings between crypto and normalized range, or empty if the ranking does not reflect the
+     * values read, eg as values were added while reading them, or a crypto has values without a normalized range
+     * @throws CryptoInternalException Internal error during crypto data loading
+     */
+    private Optional<List<Map.Entry<CryptoEnum, BigDecimal>>> readNormalizedRangeRanking(
+            SortOrder sortOrder, Function<DataSnapshot, NormalizedRangeRanking> ranking,
+            Function<CryptoValueSeries, Optional<PriceSummary>> summary) throws CryptoInternalException {
+        Deadline.current().check();
+        List<CryptoEnum> cryptos = ownedCryptos();
+        for (CryptoEnum cryptoEnum : cryptos) {
+            dataLoader.ensureLoaded(cryptoEnum);
+        }
+        DataSnapshot attached = DataSnapshot.attached();
+        DataSnapshot snapshot = attached != null ? attached : cryptoValuesManager.getSnapshot();
+        if (snapshot == null) {
+            return Optional.empty();
+        }
+        NormalizedRangeRanking snapshotRanking = ranking.apply(snapshot);
+        for (CryptoEnum cryptoEnum : cryptos) {
+            Optional<Set<CryptoValue>> cryptoValues = cryptoValuesManager.getValues(cryptoEnum);
+            if (cryptoValues.isEmpty()) {
+                throw new CryptoInternalException("Error calculating metric. No values found for crypto");
+            }
+            Optional<CryptoValueSeries> series = snapshot.getValues(cryptoEnum);
+            if (series.isEmpty() || series.get() != cryptoValues.get() ||
+                    (summary.apply(series.get()).isPresent() && !snapshotRanking.contains(cryptoEnum))) {
+                return Optional.empty();
+            }
+        }
+
+        List<Map.Entry<CryptoEnum, BigDecimal>> sortedEntries = new ArrayList<>(cryptos.size());
+        for (Map.Entry<CryptoEnum, BigDecimal> entry : snapshotRanking.entries()) {
+            if (shardTopology.isOwned(entry.getKey())) {
+                sortedEntries.add(entry);
+            }
+        }
+        if (sortOrder == SortOrder.ASC) {
+            Collections.reverse(sortedEntries);
+        }
+        return Optional.of(sortedEntries);
+    }
+
+    private List<CryptoEnum> ownedCryptos() {
+        return Arrays.stream(CryptoEnum.values())
+                .filter(shardTopology::isOwned)
+                .collect(Collectors.toList());
+    }
 }
@@ -20,15 +20,19 @@ import java.util.List;
 @Service
 public class CryptoValuesCsvReader implements CryptoValuesFileReader {
 
+    static final String HEADER_LINE = "timestamp,symbol,price";
+
     /**
      * Reads crypto values for the specified crypto from the specified csv file.
      * Empty lines are ignored but a specific header line should exist as the first line.
-     * The header line should be &quot;timestamp,symbol,price&quot;
+     * The header line should be &quot;timestamp,symbol,price&quot; and the symbol of every entry should be the
+     * code of the crypto (case insensitive)
      *
      * @param cryptoEnum The crypto
      * @param filePath   The file containing crypto values
      * @return
-     * @throws CryptoInternalException Internal error during reading crypto data from file
+     * @throws CryptoInternalException Internal error during reading crypto data from file, or an entry of another
+     *                                 crypto
      */
     @Override
     public List<CryptoValue> read(CryptoEnum cryptoEnum, String filePath) throws CryptoInternalException {
@@ -37,7 +41,7 @@ public class CryptoValuesCsvReader implements CryptoValuesFileReader {
         try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
             String line;
 
-            if (!br.readLine().equals("timestamp,symbol,price")) {
+            if (!HEADER_LINE.equals(br.readLine())) {
                 throw new CryptoInternalException("Error reading csv file. Header line is missing");
             }
 
@@ -45,11 +49,10 @@ public class CryptoValuesCsvReader implements CryptoValuesFileReader {
                 if (line.isEmpty() || line.isBlank()) {
                     continue;
                 }
-                // split by a comma separator
-                String[] split = line.split(",");
-
-                if (split.length != 3 || Arrays.stream(split).anyMatch(s -> s.isEmpty() || s.isBlank())) {
-                    throw new CryptoInternalException("Error reading csv file. Entries with missing columns found");
+                String[] split = splitColumns(line);
+                if (!split[1].strip().equalsIgnoreCase(cryptoEnum.getCode())) {
+                    throw new CryptoInternalException("Error reading csv file. Entries with symbol " + split[1] +
+                            " found in file of crypto " + cryptoEnum.getCode());
                 }
 
                 long timestamp = Long.valueOf(split[0]);
@@ -61,4 +64,21 @@ public class CryptoValuesCsvReader implements CryptoValuesFileReader {
         }
         return cryptoValues;
     }
+
+    /**
+     * Splits a csv line into its timestamp, symbol and price columns
+     *
+     * @param line A non blank line
+     * @return The columns
+     * @throws CryptoInternalException Columns are missing or blank
+     */
+    static String[] splitColumns(String line) throws CryptoInternalException {
+        // split by a comma separator
+        String[] split = line.split(",");
+
+        if (split.length != 3 || Arrays.stream(split).anyMatch(s -> s.isEmpty() || s.isBlank())) {
+            throw new CryptoInternalException("Error reading csv file. Entries with missing columns found");
+        }
+        return split;
+    }
 }
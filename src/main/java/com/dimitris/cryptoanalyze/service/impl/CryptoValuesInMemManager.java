@@ -1,42 +1,603 @@
 package com.dimitris.cryptoanalyze.service.impl;
 
+import com.dimitris.cryptoanalyze.controller.dto.CryptoStoreUsageDto;
+import com.dimitris.cryptoanalyze.controller.dto.StoreUsageDto;
+import com.dimitris.cryptoanalyze.service.ColdSegmentStore;
 import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
 import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import com.dimitris.cryptoanalyze.service.CryptoValuesListener;
 import com.dimitris.cryptoanalyze.service.CryptoValuesManager;
+import com.dimitris.cryptoanalyze.service.model.CryptoValueSeries;
+import com.dimitris.cryptoanalyze.service.model.DataSnapshot;
+import com.dimitris.cryptoanalyze.service.model.ValueChunk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
 
 /**
- * Service for storing and manipulating crypto values in memory. Internally it uses a {@link HashMap}
- * and maps each crypto to a {@link HashSet} of {@link CryptoValue}, so that it contains no duplicates
+ * Service for storing and manipulating crypto values in memory. Stored data are kept as immutable
+ * {@link DataSnapshot}s, mapping each crypto to a {@link CryptoValueSeries}, sorted by timestamp with one value per
+ * timestamp. Adding values publishes a new snapshot with the next version, merging the added values into a new series
+ * which shares its unchanged chunks with the previous one, so that values can be added while calculations iterate
+ * over previously returned series. Registered {@link CryptoValuesListener}s are notified after each addition.
+ * <p>
+ * Superseded versions are retained, so that calculations can be repeated on the data they saw, until more than a
+ * number of newer versions exist or they were superseded longer ago than a retention period, whichever comes first.
+ * The latest version is always retained. A pruned version stays usable by calculations that already hold it.
+ * <p>
+ * Chunks of values older than the hot window of the {@link ColdSegmentStore} are sealed into segments held off heap
+ * when values are added, so that only recent values stay on heap. Series read sealed chunks transparently.
+ * <p>
+ * The bytes the latest version retains on heap are estimated per crypto, see {@link #getUsage()}. Once the bytes
+ * retained by every retained version, counting shared chunks once, exceed the heap budget after an addition, the
+ * oldest superseded versions are pruned first, then the oldest chunks of the least recently queried cryptos are
+ * evicted, keeping the newest chunk of every crypto, and the superseded versions still holding evicted chunks are
+ * pruned in turn, so that the service degrades to serving recent values instead of running out of memory. Evicted
+ * chunks are freed once no calculation holds a version holding them.
+ * <p>
+ * The values of every crypto can be replaced at once, see {@link #beginReplacement()}, by a replacement built apart
+ * and published as the next version, so that a new dataset is swapped in without mixing it with the stored values.
+ * <p>
+ * It is configured by the following system properties:
+ * <ul>
+ *     <li>&quot;data.versions.retained&quot;: maximum number of superseded versions retained (default 256)</li>
+ *     <li>&quot;data.versions.retention.millis&quot;: milliseconds a superseded version is retained (default 600000)</li>
+ *     <li>&quot;store.heap.budget.bytes&quot;: bytes of heap the retained versions may retain, 0 for no budget
+ *     (default 0)</li>
+ * </ul>
  */
 @Service
 public class CryptoValuesInMemManager implements CryptoValuesManager {
 
-    private final Map<CryptoEnum, Set<CryptoValue>> values = new HashMap<>();
+    private static final Logger logger = LoggerFactory.getLogger(CryptoValuesInMemManager.class);
+
+    private final int maxRetainedVersions;
+
+    private final long retentionMillis;
+
+    private final long heapBudgetBytes;
+
+    private final ColdSegmentStore coldSegmentStore;
 
     /**
-     * Store a set of crypto values for a specified crypto
+     * Locks serializing the merges of each crypto, so that merges of different cryptos run concurrently
+     */
+    private final Map<CryptoEnum, Object> mergeLocks = new EnumMap<>(CryptoEnum.class);
+
+    /**
+     * Lock serializing the publication of snapshots
+     */
+    private final Object publishLock = new Object();
+
+    private final ConcurrentNavigableMap<Long, DataSnapshot> retainedSnapshots = new ConcurrentSkipListMap<>();
+
+    private volatile DataSnapshot latestSnapshot;
+
+    private final List<CryptoValuesListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Replacements begun and not yet published or closed
+     */
+    private final List<InMemStoreReplacement> replacements = new CopyOnWriteArrayList<>();
+
+    /**
+     * Time in Epoch millis each crypto was last queried, by ordinal, 0 if never
+     */
+    private final AtomicLongArray lastQueriedMillis = new AtomicLongArray(CryptoEnum.values().length);
+
+    /**
+     * Number of values evicted of each crypto, by ordinal
+     */
+    private final AtomicLongArray evictedValues = new AtomicLongArray(CryptoEnum.values().length);
+
+    /**
+     * Creates a manager configured by system properties, keeping every value on heap
+     */
+    public CryptoValuesInMemManager() {
+        this(ColdSegmentStore.disabled());
+    }
+
+    /**
+     * Creates a manager configured by system properties
+     *
+     * @param coldSegmentStore The store sealing chunks of older values
+     */
+    @Autowired
+    public CryptoValuesInMemManager(ColdSegmentStore coldSegmentStore) {
+        this(Integer.getInteger("data.versions.retained", 256), Long.getLong("data.versions.retention.millis", 600000),
+                Long.getLong("store.heap.budget.bytes", 0), coldSegmentStore);
+    }
+
+    /**
+     * @param maxRetainedVersions Maximum number of superseded versions retained
+     * @param retentionMillis     Milliseconds a superseded version is retained
+     */
+    public CryptoValuesInMemManager(int maxRetainedVersions, long retentionMillis) {
+        this(maxRetainedVersions, retentionMillis, 0, ColdSegmentStore.disabled());
+    }
+
+    /**
+     * @param maxRetainedVersions Maximum number of superseded versions retained
+     * @param retentionMillis     Milliseconds a superseded version is retained
+     * @param heapBudgetBytes     Bytes of heap the retained versions may retain, 0 for no budget
+     * @param coldSegmentStore    The store sealing chunks of older values
+     */
+    public CryptoValuesInMemManager(int maxRetainedVersions, long retentionMillis, long heapBudgetBytes,
+                                    ColdSegmentStore coldSegmentStore) {
+        this.maxRetainedVersions = maxRetainedVersions;
+        this.retentionMillis = retentionMillis;
+        this.heapBudgetBytes = heapBudgetBytes;
+        this.coldSegmentStore = coldSegmentStore;
+        for (CryptoEnum cryptoEnum : CryptoEnum.values()) {
+            mergeLocks.put(cryptoEnum, new Object());
+        }
+        latestSnapshot = DataSnapshot.initial(System.currentTimeMillis());
+        retainedSnapshots.put(latestSnapshot.getVersion(), latestSnapshot);
+    }
+
+    /**
+     * Store crypto values for a specified crypto. Values with the timestamp of a stored value replace it, see
+     * {@link CryptoValueSeries#merge(Collection)}
      * @param cryptoEnum The crypto
-     * @param newValues The crypto values
+     * @param newValues The crypto values, in any order
      */
     @Override
-    public void addValues(CryptoEnum cryptoEnum, Set<CryptoValue> newValues) {
-        if (!values.containsKey(cryptoEnum)) {
-            values.put(cryptoEnum, new HashSet<>());
+    public void addValues(CryptoEnum cryptoEnum, Collection<CryptoValue> newValues) {
+        synchronized (mergeLocks.get(cryptoEnum)) {
+            store(cryptoEnum, newValues);
         }
-        Set<CryptoValue> cryptoValues = values.get(cryptoEnum);
-        cryptoValues.addAll(newValues);
+        afterStore(cryptoEnum, newValues);
     }
 
     /**
-     * Get the stored values of the specified crypto
+     * Store crypto values for a specified crypto after running an action, both while holding the merge lock of the
+     * crypto, so that values of a crypto are stored in the order their actions ran
+     * @param cryptoEnum The crypto
+     * @param newValues The crypto values, in any order
+     * @param beforeStore The action
+     * @throws CryptoInternalException Thrown by the action
+     */
+    @Override
+    public void addValues(CryptoEnum cryptoEnum, Collection<CryptoValue> newValues, BeforeStore beforeStore)
+            throws CryptoInternalException {
+        synchronized (mergeLocks.get(cryptoEnum)) {
+            beforeStore.run();
+            store(cryptoEnum, newValues);
+        }
+        afterStore(cryptoEnum, newValues);
+    }
+
+    /**
+     * Merges values into the latest series of a crypto and publishes it. Called while holding the merge lock of the
+     * crypto
+     */
+    private void store(CryptoEnum cryptoEnum, Collection<CryptoValue> newValues) {
+        // Only holders of the merge lock of the crypto change its series, so the merged one stays the latest
+        publish(cryptoEnum, merge(latestSnapshot, cryptoEnum, newValues));
+        for (InMemStoreReplacement replacement : replacements) {
+            replacement.pending.add(new AbstractMap.SimpleImmutableEntry<>(cryptoEnum, newValues));
+        }
+    }
+
+    /**
+     * Enforces the heap budget and notifies listeners of stored values
+     */
+    private void afterStore(CryptoEnum cryptoEnum, Collection<CryptoValue> newValues) {
+        if (heapBudgetBytes > 0) {
+            enforceHeapBudget();
+        }
+        for (CryptoValuesListener listener : listeners) {
+            listener.onValuesAdded(cryptoEnum, newValues);
+        }
+    }
+
+    /**
+     * Merges values into the series of a crypto in a snapshot, sealing the chunks older than the hot window
+     */
+    private CryptoValueSeries merge(DataSnapshot snapshot, CryptoEnum cryptoEnum, Collection<CryptoValue> newValues) {
+        CryptoValueSeries mergedSeries = snapshot.getValues(cryptoEnum)
+                .orElse(CryptoValueSeries.empty())
+                .merge(newValues);
+        if (coldSegmentStore.isEnabled() && !mergedSeries.isEmpty()) {
+            mergedSeries = mergedSeries.seal(
+                    mergedSeries.last().getTimestamp() - coldSegmentStore.getHotWindowMillis(),
+                    coldSegmentStore::seal);
+        }
+        return mergedSeries;
+    }
+
+    /**
+     * Publishes a snapshot with the specified series of a crypto. Called while holding the merge lock of the crypto
+     */
+    private void publish(CryptoEnum cryptoEnum, CryptoValueSeries series) {
+        synchronized (publishLock) {
+            DataSnapshot snapshot = latestSnapshot.with(cryptoEnum, series, System.currentTimeMillis());
+            retainedSnapshots.put(snapshot.getVersion(), snapshot);
+            latestSnapshot = snapshot;
+            pruneSnapshots(snapshot.getCreatedMillis());
+        }
+    }
+
+    /**
+     * Prunes the superseded versions retaining bytes beyond the heap budget, and evicts the oldest chunks of the least
+     * recently queried cryptos, until the retained versions retain no more bytes than the heap budget or every crypto
+     * is left with its newest chunk only. Merge locks are taken one at a time, so that concurrent additions of
+     * different cryptos do not deadlock
+     */
+    private void enforceHeapBudget() {
+        Set<CryptoEnum> exhausted = EnumSet.noneOf(CryptoEnum.class);
+        long excessBytes;
+        // Evicted chunks stay on heap while a superseded version holds them, so those versions are pruned after
+        // every eviction
+        while (pruneSnapshotsOverBudget() && (excessBytes = heapBytes(latestSnapshot) - heapBudgetBytes) > 0) {
+            CryptoEnum victim = leastRecentlyQueried(latestSnapshot, exhausted);
+            if (victim == null) {
+                logger.warn("Stored values retain {} bytes of heap, exceeding the budget of {} bytes, with only the " +
+                        "newest values of every crypto left", heapBudgetBytes + excessBytes, heapBudgetBytes);
+                return;
+            }
+            synchronized (mergeLocks.get(victim)) {
+                CryptoValueSeries series = latestSnapshot.getValues(victim).orElseThrow();
+                CryptoValueSeries evictedSeries = series.evictOldest(excessBytes);
+                if (evictedSeries == series) {
+                    exhausted.add(victim);
+                    continue;
+                }
+                publish(victim, evictedSeries);
+                evictedValues.addAndGet(victim.ordinal(), series.size() - evictedSeries.size());
+                logger.info("Evicted {} values of {} older than {} to keep within the heap budget",
+                        series.size() - evictedSeries.size(), victim.getCode(), evictedSeries.first().getTimestamp());
+            }
+        }
+    }
+
+    /**
+     * @return The least recently queried crypto holding values in a snapshot, out of the not exhausted ones, null if
+     * there is none
+     */
+    private CryptoEnum leastRecentlyQueried(DataSnapshot snapshot, Set<CryptoEnum> exhausted) {
+        CryptoEnum victim = null;
+        for (CryptoEnum cryptoEnum : CryptoEnum.values()) {
+            if (!exhausted.contains(cryptoEnum) && snapshot.getValues(cryptoEnum).isPresent() &&
+                    (victim == null || lastQueriedMillis.get(cryptoEnum.ordinal()) <
+                            lastQueriedMillis.get(victim.ordinal()))) {
+                victim = cryptoEnum;
+            }
+        }
+        return victim;
+    }
+
+    private static long heapBytes(DataSnapshot snapshot) {
+        long bytes = 0;
+        for (CryptoEnum cryptoEnum : CryptoEnum.values()) {
+            bytes += snapshot.getValues(cryptoEnum).map(CryptoValueSeries::heapBytes).orElse(0L);
+        }
+        return bytes;
+    }
+
+    /**
+     * Prunes the superseded versions from the newest one whose chunks not held by newer versions bring the bytes
+     * retained beyond the heap budget, older versions included
+     *
+     * @return True if the latest version alone retains more bytes than the heap budget
+     */
+    private boolean pruneSnapshotsOverBudget() {
+        synchronized (publishLock) {
+            Set<ValueChunk> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+            Set<CryptoValueSeries> countedSeries = Collections.newSetFromMap(new IdentityHashMap<>());
+            long latestBytes = heapBytesNotIn(latestSnapshot, countedSeries, counted);
+            long bytes = latestBytes;
+            for (Map.Entry<Long, DataSnapshot> superseded : retainedSnapshots.headMap(latestSnapshot.getVersion())
+                    .descendingMap().entrySet()) {
+                bytes += heapBytesNotIn(superseded.getValue(), countedSeries, counted);
+                if (bytes > heapBudgetBytes) {
+                    NavigableMap<Long, DataSnapshot> pruned = retainedSnapshots.headMap(superseded.getKey(), true);
+                    logger.info("Pruned {} superseded versions up to version {} to keep within the heap budget",
+                            pruned.size(), superseded.getKey());
+                    pruned.clear();
+                    break;
+                }
+            }
+            return latestBytes > heapBudgetBytes;
+        }
+    }
+
+    /**
+     * @return The bytes retained on heap by the chunks of a snapshot not already counted, adding its series and
+     * chunks to the counted ones
+     */
+    private static long heapBytesNotIn(DataSnapshot snapshot, Set<CryptoValueSeries> countedSeries,
+                                       Set<ValueChunk> counted) {
+        long bytes = 0;
+        for (CryptoEnum cryptoEnum : CryptoEnum.values()) {
+            Optional<CryptoValueSeries> series = snapshot.getValues(cryptoEnum);
+            // Series unchanged between versions are the same instance, so their chunks are only visited once
+            if (series.isPresent() && countedSeries.add(series.get())) {
+                bytes += series.get().heapBytesNotIn(counted);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Drops the superseded versions exceeding the retained number or superseded before the retention period.
+     * Called while holding the publish lock
+     */
+    private void pruneSnapshots(long nowMillis) {
+        while (retainedSnapshots.size() > maxRetainedVersions + 1) {
+            retainedSnapshots.pollFirstEntry();
+        }
+        Map.Entry<Long, DataSnapshot> oldest = retainedSnapshots.firstEntry();
+        while (oldest.getValue() != latestSnapshot) {
+            DataSnapshot successor = retainedSnapshots.higherEntry(oldest.getKey()).getValue();
+            if (successor.getCreatedMillis() > nowMillis - retentionMillis) {
+                break;
+            }
+            retainedSnapshots.pollFirstEntry();
+            oldest = retainedSnapshots.firstEntry();
+        }
+    }
+
+    /**
+     * Get the stored values of the specified crypto, as of the {@link DataSnapshot} attached to the current thread
+     * if there is one
      * @param cryptoEnum The crypto
      * @return A set of crypto values or empty if there are no values for crypto
      */
     @Override
     public Optional<Set<CryptoValue>> getValues(CryptoEnum cryptoEnum) {
-        return values.get(cryptoEnum) != null ? Optional.of(values.get(cryptoEnum)) : Optional.empty();
+        long nowMillis = System.currentTimeMillis();
+        // Written only when it changes, so that concurrent queries of a crypto rarely write to the same field
+        if (lastQueriedMillis.get(cryptoEnum.ordinal()) != nowMillis) {
+            lastQueriedMillis.set(cryptoEnum.ordinal(), nowMillis);
+        }
+        return currentSnapshot().getValues(cryptoEnum).map(series -> series);
+    }
+
+    /**
+     * Get the version of the stored data, the version of the {@link DataSnapshot} attached to the current thread if
+     * there is one. The version is incremented after every addition of values, once the added values are visible to
+     * readers
+     * @return The data version
+     */
+    @Override
+    public long getDataVersion() {
+        return currentSnapshot().getVersion();
+    }
+
+    /**
+     * Get the snapshot of the latest version of the stored data
+     * @return The snapshot
+     */
+    @Override
+    public DataSnapshot getSnapshot() {
+        return latestSnapshot;
+    }
+
+    /**
+     * Get the snapshot of a retained version of the stored data
+     * @param version The data version
+     * @return The snapshot
+     * @throws CryptoNotFoundException The version does not exist or is no longer retained
+     */
+    @Override
+    public DataSnapshot getSnapshot(long version) throws CryptoNotFoundException {
+        DataSnapshot snapshot = retainedSnapshots.get(version);
+        if (snapshot == null) {
+            throw new CryptoNotFoundException("Data version " + version + " not retained. Retained versions are " +
+                    retainedSnapshots.firstKey() + " to " + latestSnapshot.getVersion() + ".");
+        }
+        return snapshot;
+    }
+
+    /**
+     * Get the memory used by the latest version of the stored data, and by every retained version. Bytes are
+     * estimated, assuming compressed object pointers, and count the chunks shared between versions once
+     * @return The memory used by the stored values, per crypto
+     */
+    @Override
+    public StoreUsageDto getUsage() {
+        DataSnapshot snapshot = latestSnapshot;
+        List<CryptoStoreUsageDto> cryptos = new ArrayList<>();
+        long heapBytes = 0;
+        for (CryptoEnum cryptoEnum : CryptoEnum.values()) {
+            CryptoValueSeries series = snapshot.getValues(cryptoEnum).orElse(CryptoValueSeries.empty());
+            long lastQueried = lastQueriedMillis.get(cryptoEnum.ordinal());
+            cryptos.add(new CryptoStoreUsageDto(cryptoEnum.getCode(), series.size(), series.heapBytes(),
+                    series.isEmpty() ? null : series.first().getTimestamp(), lastQueried == 0 ? null : lastQueried,
+                    evictedValues.get(cryptoEnum.ordinal())));
+            heapBytes += series.heapBytes();
+        }
+        long retainedHeapBytes = 0;
+        Set<ValueChunk> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<CryptoValueSeries> countedSeries = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (DataSnapshot retained : retainedSnapshots.values()) {
+            retainedHeapBytes += heapBytesNotIn(retained, countedSeries, counted);
+        }
+        return new StoreUsageDto(heapBytes, retainedHeapBytes, heapBudgetBytes, retainedSnapshots.size(), cryptos);
+    }
+
+    /**
+     * Register a listener notified every time values are stored
+     * @param listener The listener
+     */
+    @Override
+    public void addListener(CryptoValuesListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Begin replacing the stored values of every crypto. Values added to the replacement are merged into series and
+     * rankings apart from the stored values, by the thread adding them, and values added to this manager until the
+     * replacement is published are added to it as well. Publishing takes the merge lock of every crypto, in
+     * declaration order, so that it only waits for merges in progress, and publishes the replacement as the next
+     * version without copying it, so that the stored values are replaced at once without delaying calculations.
+     * Superseded versions are retained as usual, and are freed once they are pruned and no calculation holds them.
+     * <p>
+     * The replacement is registered while holding the merge lock of every crypto, so that an addition either
+     * completes before it begins or is added to it. With a heap budget, the oldest chunks of the least recently
+     * queried cryptos are evicted from the replacement as values are added to it, so that it retains no more bytes
+     * than the budget, and the heap holds up to twice the budget until it is published or closed
+     * @return The replacement
+     */
+    @Override
+    public StoreReplacement beginReplacement() {
+        InMemStoreReplacement replacement = new InMemStoreReplacement();
+        return holdingMergeLocks(0, () -> {
+            replacements.add(replacement);
+            return replacement;
+        });
+    }
+
+    /**
+     * Publishes a replacement
+     */
+    private DataSnapshot publishReplacement(InMemStoreReplacement replacement) {
+        return holdingMergeLocks(0, () -> {
+            // Holding every merge lock, no value can be added to this manager before the replacement is published
+            replacements.remove(replacement);
+            replacement.mergePending();
+            synchronized (publishLock) {
+                DataSnapshot snapshot = latestSnapshot.replacedBy(replacement.staged, System.currentTimeMillis());
+                retainedSnapshots.put(snapshot.getVersion(), snapshot);
+                latestSnapshot = snapshot;
+                pruneSnapshots(snapshot.getCreatedMillis());
+                return snapshot;
+            }
+        });
+    }
+
+    /**
+     * Runs an action while holding the merge locks of the cryptos from the specified one on, taking them in
+     * declaration order
+     */
+    private <T> T holdingMergeLocks(int ordinal, Supplier<T> action) {
+        if (ordinal < CryptoEnum.values().length) {
+            synchronized (mergeLocks.get(CryptoEnum.values()[ordinal])) {
+                return holdingMergeLocks(ordinal + 1, action);
+            }
+        }
+        return action.get();
+    }
+
+    private DataSnapshot currentSnapshot() {
+        DataSnapshot attached = DataSnapshot.attached();
+        return attached != null ? attached : latestSnapshot;
+    }
+
+    /**
+     * Replacement staging its values in a snapshot of its own. Values added to this manager are queued, and merged
+     * after the values added to the replacement, so that they replace values of the same timestamp, and so that
+     * adding values to this manager never waits for a merge into the replacement
+     */
+    private class InMemStoreReplacement implements StoreReplacement {
+
+        private final Queue<Map.Entry<CryptoEnum, Collection<CryptoValue>>> pending = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Snapshot holding the values added so far. Guarded by the monitor of the replacement
+         */
+        private DataSnapshot staged = DataSnapshot.initial(System.currentTimeMillis());
+
+        private boolean published;
+
+        /**
+         * Number of values evicted from the replacement, by ordinal. Guarded by the monitor of the replacement
+         */
+        private final long[] stagedEvictedValues = new long[CryptoEnum.values().length];
+
+        @Override
+        public synchronized void addValues(CryptoEnum cryptoEnum, Collection<CryptoValue> cryptoValues) {
+            if (published) {
+                throw new IllegalStateException("Replacement already published");
+            }
+            staged = staged.with(cryptoEnum, merge(staged, cryptoEnum, cryptoValues), staged.getCreatedMillis());
+            if (heapBudgetBytes > 0) {
+                evictOverBudget();
+            }
+        }
+
+        @Override
+        public synchronized Optional<Set<CryptoValue>> getValues(CryptoEnum cryptoEnum) {
+            return staged.getValues(cryptoEnum).map(series -> series);
+        }
+
+        @Override
+        public synchronized DataSnapshot publish() {
+            if (published || !replacements.contains(this)) {
+                throw new IllegalStateException("Replacement already published or closed");
+            }
+            published = true;
+            // Values queued so far are merged before taking the merge locks, leaving the ones queued meanwhile
+            mergePending();
+            DataSnapshot snapshot = publishReplacement(this);
+            for (CryptoEnum cryptoEnum : CryptoEnum.values()) {
+                evictedValues.addAndGet(cryptoEnum.ordinal(), stagedEvictedValues[cryptoEnum.ordinal()]);
+            }
+            logger.info("Replaced stored values with version {}", snapshot.getVersion());
+            if (heapBudgetBytes > 0) {
+                enforceHeapBudget();
+            }
+            for (CryptoEnum cryptoEnum : CryptoEnum.values()) {
+                for (CryptoValuesListener listener : listeners) {
+                    listener.onValuesReplaced(cryptoEnum);
+                }
+            }
+            return snapshot;
+        }
+
+        @Override
+        public void close() {
+            replacements.remove(this);
+        }
+
+        /**
+         * Merges the values queued so far. Called while holding the monitor of the replacement
+         */
+        private void mergePending() {
+            Map.Entry<CryptoEnum, Collection<CryptoValue>> batch;
+            while ((batch = pending.poll()) != null) {
+                staged = staged.with(batch.getKey(), merge(staged, batch.getKey(), batch.getValue()),
+                        staged.getCreatedMillis());
+            }
+            if (heapBudgetBytes > 0) {
+                evictOverBudget();
+            }
+        }
+
+        /**
+         * Evicts the oldest chunks of the least recently queried cryptos from the replacement, until it retains no
+         * more bytes than the heap budget or every crypto is left with its newest chunk only. Called while holding
+         * the monitor of the replacement
+         */
+        private void evictOverBudget() {
+            Set<CryptoEnum> exhausted = EnumSet.noneOf(CryptoEnum.class);
+            long excessBytes;
+            while ((excessBytes = heapBytes(staged) - heapBudgetBytes) > 0) {
+                CryptoEnum victim = leastRecentlyQueried(staged, exhausted);
+                if (victim == null) {
+                    return;
+                }
+                CryptoValueSeries series = staged.getValues(victim).orElseThrow();
+                CryptoValueSeries evictedSeries = series.evictOldest(excessBytes);
+                if (evictedSeries == series) {
+                    exhausted.add(victim);
+                    continue;
+                }
+                staged = staged.with(victim, evictedSeries, staged.getCreatedMillis());
+                stagedEvictedValues[victim.ordinal()] += series.size() - evictedSeries.size();
+            }
+        }
     }
 }
@@ -0,0 +1,78 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoValueRequestDto;
+import com.dimitris.cryptoanalyze.service.CryptoValuesIngestor;
+import com.dimitris.cryptoanalyze.service.CryptoValuesManager;
+import com.dimitris.cryptoanalyze.service.CryptoValuesWriteAheadLog;
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoValidationException;
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Service for ingesting crypto values while the application is running. Values are first appended to the
+ * write-ahead log and then stored, both in the order values of the crypto are stored, so that they are recovered on
+ * the next application start and replace each other as the stored ones did
+ */
+@Service
+public class CryptoValuesIngestorImpl implements CryptoValuesIngestor {
+
+    private final CryptoValuesWriteAheadLog writeAheadLog;
+
+    private final CryptoValuesManager cryptoValuesManager;
+
+    private final ShardTopology shardTopology;
+
+    /**
+     * @param writeAheadLog       A log for making ingested crypto values durable
+     * @param cryptoValuesManager A manager for storing and manipulating crypto values data
+     * @param shardTopology       The topology of the deployment, values are ingested only for cryptos owned by this
+     *                            instance
+     */
+    @Autowired
+    public CryptoValuesIngestorImpl(CryptoValuesWriteAheadLog writeAheadLog, CryptoValuesManager cryptoValuesManager,
+                                    ShardTopology shardTopology) {
+        this.writeAheadLog = writeAheadLog;
+        this.cryptoValuesManager = cryptoValuesManager;
+        this.shardTopology = shardTopology;
+    }
+
+    /**
+     * Ingests a batch of crypto values for the specified crypto. Values are durably logged before they become
+     * visible to calculations
+     *
+     * @param crypto The crypto
+     * @param values The crypto values
+     * @throws CryptoInternalException   Internal error during logging or storing crypto data
+     * @throws CryptoNotFoundException   Requested crypto is not supported, or is owned by another shard
+     * @throws CryptoValidationException Entries with missing price found
+     */
+    @Override
+    public void ingest(String crypto, List<CryptoValueRequestDto> values)
+            throws CryptoInternalException, CryptoNotFoundException, CryptoValidationException {
+        if (Arrays.stream(CryptoEnum.values()).noneMatch(e -> e.getCode().equals(crypto))) {
+            throw new CryptoNotFoundException("Crypto " + crypto + " not supported.");
+        }
+        if (values.stream().anyMatch(value -> value.getPrice() == null)) {
+            throw new CryptoValidationException("Error ingesting crypto values. Entries with missing price found");
+        }
+        CryptoEnum cryptoEnum = CryptoEnum.valueOf(crypto);
+        if (!shardTopology.isOwned(cryptoEnum)) {
+            throw new CryptoNotFoundException("Crypto " + crypto + " not supported by this shard. It is owned by " +
+                    shardTopology.getNode(shardTopology.ownerOf(cryptoEnum)));
+        }
+        List<CryptoValue> cryptoValues = values
+                .stream()
+                .map(value -> new CryptoValue(value.getTimestamp(), value.getPrice()))
+                .collect(Collectors.toList());
+        // Logged in the order values of the crypto are stored, so that they are recovered in that order
+        cryptoValuesManager.addValues(cryptoEnum, cryptoValues, () -> writeAheadLog.append(cryptoEnum, cryptoValues));
+    }
+}
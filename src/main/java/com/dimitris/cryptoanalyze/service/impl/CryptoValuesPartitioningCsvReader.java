@@ -0,0 +1,245 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.service.CryptoValuesPartitioningReader;
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Service for reading crypto values of several cryptos from a single CSV file, in which rows of different cryptos
+ * are interleaved. The file is split into byte ranges aligned to line boundaries, which are parsed in parallel, and
+ * each row is routed by its symbol column (matched case insensitively against crypto codes) to the values of its
+ * crypto. It is configured by the following system properties:
+ * <ul>
+ *     <li>&quot;data.file.parse.threads&quot;: threads parsing a file in parallel (defaults to cores)</li>
+ *     <li>&quot;data.file.parse.min.chunk.bytes&quot;: minimum size of a byte range parsed by one thread (default
+ *     1MB), so that small files are not split</li>
+ * </ul>
+ */
+@Service
+public class CryptoValuesPartitioningCsvReader implements CryptoValuesPartitioningReader {
+
+    /**
+     * Byte ranges are memory mapped, which is limited to 2GB per mapping
+     */
+    private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+    private static final Map<String, CryptoEnum> CRYPTOS_BY_SYMBOL = new HashMap<>();
+
+    static {
+        for (CryptoEnum cryptoEnum : CryptoEnum.values()) {
+            CRYPTOS_BY_SYMBOL.put(cryptoEnum.getCode().toUpperCase(Locale.ROOT), cryptoEnum);
+        }
+    }
+
+    private final int parseThreads;
+
+    private final long minChunkBytes;
+
+    /**
+     * Creates a reader configured by system properties
+     */
+    @Autowired
+    public CryptoValuesPartitioningCsvReader() {
+        this(Integer.getInteger("data.file.parse.threads", Runtime.getRuntime().availableProcessors()),
+                Long.getLong("data.file.parse.min.chunk.bytes", 1L << 20));
+    }
+
+    /**
+     * @param parseThreads  Threads parsing a file in parallel
+     * @param minChunkBytes Minimum size of a byte range parsed by one thread
+     */
+    public CryptoValuesPartitioningCsvReader(int parseThreads, long minChunkBytes) {
+        if (parseThreads <= 0 || minChunkBytes <= 0) {
+            throw new IllegalArgumentException("Parse threads and minimum chunk size must be positive, found " +
+                    parseThreads + " and " + minChunkBytes);
+        }
+        this.parseThreads = parseThreads;
+        this.minChunkBytes = minChunkBytes;
+    }
+
+    /**
+     * Reads crypto values of every crypto from the specified csv file.
+     * Empty lines are ignored but a specific header line should exist as the first line.
+     * The header line should be &quot;timestamp,symbol,price&quot;
+     *
+     * @param filePath The file containing crypto values of several cryptos
+     * @return The crypto values per crypto, in file order. Cryptos without values in the file are omitted
+     * @throws CryptoInternalException Internal error during reading crypto data from file, or a row with a
+     *                                 non-supported symbol
+     */
+    @Override
+    public Map<CryptoEnum, List<CryptoValue>> read(String filePath) throws CryptoInternalException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            long dataStart = skipHeader(channel);
+            long[] boundaries = chunkBoundaries(channel, dataStart);
+            int chunks = boundaries.length - 1;
+
+            List<Map<CryptoEnum, List<CryptoValue>>> chunkValues = new ArrayList<>();
+            if (chunks == 1) {
+                chunkValues.add(parseChunk(channel, boundaries[0], boundaries[1]));
+            } else {
+                chunkValues.addAll(parseChunksInParallel(channel, boundaries));
+            }
+
+            // Chunks are concatenated in order, so that values of every crypto keep their file order
+            Map<CryptoEnum, List<CryptoValue>> cryptoValues = new EnumMap<>(CryptoEnum.class);
+            for (Map<CryptoEnum, List<CryptoValue>> values : chunkValues) {
+                for (Map.Entry<CryptoEnum, List<CryptoValue>> entry : values.entrySet()) {
+                    cryptoValues.computeIfAbsent(entry.getKey(), cryptoEnum -> new ArrayList<>())
+                            .addAll(entry.getValue());
+                }
+            }
+            return cryptoValues;
+        } catch (IOException e) {
+            throw new CryptoInternalException(e.getMessage());
+        }
+    }
+
+    private List<Map<CryptoEnum, List<CryptoValue>>> parseChunksInParallel(FileChannel channel, long[] boundaries)
+            throws CryptoInternalException {
+        int chunks = boundaries.length - 1;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parseThreads, chunks), runnable -> {
+            Thread thread = new Thread(runnable, "csv-parser");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Map<CryptoEnum, List<CryptoValue>>>> futures = new ArrayList<>();
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                long start = boundaries[chunk];
+                long end = boundaries[chunk + 1];
+                futures.add(executor.submit(() -> parseChunk(channel, start, end)));
+            }
+            List<Map<CryptoEnum, List<CryptoValue>>> chunkValues = new ArrayList<>();
+            for (Future<Map<CryptoEnum, List<CryptoValue>>> future : futures) {
+                chunkValues.add(future.get());
+            }
+            return chunkValues;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CryptoInternalException("Error reading csv file. Interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CryptoInternalException) {
+                throw (CryptoInternalException) e.getCause();
+            }
+            throw new CryptoInternalException("Error reading csv file. " + e.getCause().getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Parses the lines in [start, end) of the file, routing values to their cryptos
+     */
+    private static Map<CryptoEnum, List<CryptoValue>> parseChunk(FileChannel channel, long start, long end)
+            throws IOException, CryptoInternalException {
+        Map<CryptoEnum, List<CryptoValue>> cryptoValues = new EnumMap<>(CryptoEnum.class);
+        if (start == end) {
+            return cryptoValues;
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        byte[] line = new byte[256];
+        int length = 0;
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get();
+            if (b != '\n') {
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, line.length * 2);
+                }
+                line[length++] = b;
+                if (buffer.hasRemaining()) {
+                    continue;
+                }
+            }
+            parseLine(new String(line, 0, length, StandardCharsets.ISO_8859_1), cryptoValues);
+            length = 0;
+        }
+        return cryptoValues;
+    }
+
+    private static void parseLine(String line, Map<CryptoEnum, List<CryptoValue>> cryptoValues)
+            throws CryptoInternalException {
+        if (line.isBlank()) {
+            return;
+        }
+        String[] split = CryptoValuesCsvReader.splitColumns(line.strip());
+        CryptoEnum cryptoEnum = CRYPTOS_BY_SYMBOL.get(split[1].strip().toUpperCase(Locale.ROOT));
+        if (cryptoEnum == null) {
+            throw new CryptoInternalException("Error reading csv file. Entries with non-supported symbol " +
+                    split[1] + " found");
+        }
+        long timestamp = Long.valueOf(split[0]);
+        BigDecimal price = new BigDecimal(split[2]);
+        cryptoValues.computeIfAbsent(cryptoEnum, e -> new ArrayList<>()).add(new CryptoValue(timestamp, price));
+    }
+
+    /**
+     * Checks the header line
+     *
+     * @return The position of the first line after the header
+     */
+    private static long skipHeader(FileChannel channel) throws IOException, CryptoInternalException {
+        long headerEnd = nextLineStart(channel, 0);
+        ByteBuffer header = ByteBuffer.allocate((int) Math.min(headerEnd, 64));
+        channel.read(header, 0);
+        String headerLine = new String(header.array(), 0, header.position(), StandardCharsets.ISO_8859_1).strip();
+        if (!headerLine.equals(CryptoValuesCsvReader.HEADER_LINE)) {
+            throw new CryptoInternalException("Error reading csv file. Header line is missing");
+        }
+        return headerEnd;
+    }
+
+    /**
+     * Splits the data of the file into byte ranges of similar size, moving every split point forward to the start
+     * of the next line
+     *
+     * @return The boundaries of the ranges, starting at dataStart and ending at the file size
+     */
+    private long[] chunkBoundaries(FileChannel channel, long dataStart) throws IOException {
+        long size = channel.size() - dataStart;
+        long chunks = Math.max(1, Math.max(Math.min(parseThreads, size / minChunkBytes),
+                (size + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES));
+        long[] boundaries = new long[(int) chunks + 1];
+        boundaries[0] = dataStart;
+        for (int chunk = 1; chunk < chunks; chunk++) {
+            long splitPoint = dataStart + size * chunk / chunks;
+            boundaries[chunk] = Math.max(boundaries[chunk - 1], nextLineStart(channel, splitPoint - 1));
+        }
+        boundaries[(int) chunks] = channel.size();
+        return boundaries;
+    }
+
+    /**
+     * @return The position following the first line feed at or after the specified one, or the file size if there
+     * is none
+     */
+    private static long nextLineStart(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long offset = position;
+        while (offset < channel.size()) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+        return channel.size();
+    }
+}
@@ -1,25 +1,61 @@
 package com.dimitris.cryptoanalyze.service.impl;
 
+import com.dimitris.cryptoanalyze.controller.dto.StoreReloadDto;
 import com.dimitris.cryptoanalyze.service.CryptoValuesFileReader;
 import com.dimitris.cryptoanalyze.service.CryptoValuesManager;
+import com.dimitris.cryptoanalyze.service.CryptoValuesPartitioningReader;
+import com.dimitris.cryptoanalyze.service.CryptoValuesWriteAheadLog;
 import com.dimitris.cryptoanalyze.service.DataLoader;
 import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
 import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
 import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import com.dimitris.cryptoanalyze.service.model.DataSnapshot;
+import com.dimitris.cryptoanalyze.service.util.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
-import java.util.List;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 /**
- * Service for loading of crypto values data from filesystem into the application
+ * Service for loading of crypto values data from filesystem into the application.
+ * <p>
+ * Initial data are loaded in one of two modes, selected by the system property &quot;data.load.mode&quot;:
+ * <ul>
+ *     <li>&quot;eager&quot; (default): every file is loaded before application startup completes</li>
+ *     <li>&quot;lazy&quot;: application startup completes immediately and files are loaded by a background thread,
+ *     first the cryptos listed in the comma separated system property &quot;data.load.priority&quot; and then the
+ *     rest. A calculation on a crypto that is not loaded yet loads it on demand. Application readiness is reported
+ *     as refusing traffic until every crypto is loaded</li>
+ * </ul>
+ * Values are read either from one file per crypto, or from the files listed in the comma separated system property
+ * &quot;data.mixed.file.paths&quot;, each one containing values of every crypto (eg one file per day). Mixed files
+ * are read once and their rows are routed to cryptos by symbol.
+ * <p>
+ * In sharded deployments only the cryptos owned by this instance are loaded, see {@link ShardTopology}
+ * <p>
+ * If virtual threads are enabled, see {@link VirtualThreads}, the files of the cryptos are read concurrently, each
+ * one by its own virtual thread, and the background loader is a virtual thread
+ * <p>
+ * Once initial data are loaded, data can be reloaded, see {@link #reloadData()}, on demand or every number of
+ * milliseconds set by the system property &quot;data.reload.interval.millis&quot; (default 0, no scheduled reloads).
+ * The files are read again by a low priority background thread into a replacement of the stored values, which is
+ * published at once after it is validated, so that operators can replace the files without restarting the service
  */
 @Service
 public class FileDataLoader implements DataLoader {
 
+    private static final Logger logger = LoggerFactory.getLogger(FileDataLoader.class);
+
     /**
      * System property specifying the format of file paths system properties used to load data for cryptos
      */
@@ -27,46 +63,351 @@ public class FileDataLoader implements DataLoader {
 
     private final CryptoValuesFileReader cryptoValuesReader;
 
+    private final CryptoValuesPartitioningReader partitioningReader;
+
     private final CryptoValuesManager cryptoValuesManager;
 
+    private final CryptoValuesWriteAheadLog writeAheadLog;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ShardTopology shardTopology;
+
+    private final boolean lazyLoading;
+
+    private final List<CryptoEnum> loadingOrder;
+
+    private final List<String> mixedFilePaths;
+
+    /**
+     * Loads of initial data per crypto, completed once values of the crypto are stored
+     */
+    private final Map<CryptoEnum, CompletableFuture<Void>> initialLoads = new ConcurrentHashMap<>();
+
+    /**
+     * Guards readiness state changes, so that readiness is never reported as refusing traffic after every crypto
+     * got loaded
+     */
+    private final Object readinessLock = new Object();
+
+    private volatile boolean fullyLoaded;
+
+    /**
+     * Values recovered from the write-ahead log for owned cryptos that are not loaded yet
+     */
+    private Map<CryptoEnum, List<CryptoValue>> loggedValues;
+
+    /**
+     * Values read from mixed files that are not loaded yet
+     */
+    private Map<CryptoEnum, List<CryptoValue>> mixedFileValues;
+
+    private ExecutorService backgroundLoader;
+
+    /**
+     * Runs reloads one at a time
+     */
+    private final ScheduledExecutorService reloader;
+
+    private final long reloadIntervalMillis;
+
     /**
      * @param cryptoValuesReader  A reader for reading crypto values from filesystem
      * @param cryptoValuesManager A manager for storing and manipulating crypto values data
+     * @param writeAheadLog       A log of crypto values ingested while the application was running
+     * @param eventPublisher      A publisher for reporting application readiness while data are loaded lazily
+     * @param shardTopology       The topology of the deployment, deciding which cryptos are loaded
+     * @param partitioningReader  A reader for reading crypto values of every crypto from mixed files
      */
     @Autowired
-    public FileDataLoader(CryptoValuesFileReader cryptoValuesReader, CryptoValuesManager cryptoValuesManager) {
+    public FileDataLoader(CryptoValuesFileReader cryptoValuesReader, CryptoValuesManager cryptoValuesManager,
+                          CryptoValuesWriteAheadLog writeAheadLog, ApplicationEventPublisher eventPublisher,
+                          ShardTopology shardTopology, CryptoValuesPartitioningReader partitioningReader) {
         this.cryptoValuesReader = cryptoValuesReader;
+        this.partitioningReader = partitioningReader;
         this.cryptoValuesManager = cryptoValuesManager;
+        this.writeAheadLog = writeAheadLog;
+        this.eventPublisher = eventPublisher;
+        this.shardTopology = shardTopology;
         DATA_FILE_PATH_PROPERTY_FORMAT = System.getProperty("data.file.path.property.format");
+        this.lazyLoading = "lazy".equalsIgnoreCase(System.getProperty("data.load.mode"));
+        this.loadingOrder = toLoadingOrder(System.getProperty("data.load.priority"));
+        this.loadingOrder.removeIf(cryptoEnum -> !shardTopology.isOwned(cryptoEnum));
+        this.mixedFilePaths = toFilePaths(System.getProperty("data.mixed.file.paths"));
+        this.reloadIntervalMillis = Long.getLong("data.reload.interval.millis", 0);
+        this.reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "data-reloader");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
     }
 
     /**
-     * Loads initial data. Aimed at being used at some starting point in application execution
+     * Loads initial data. Aimed at being used at some starting point in application execution.
+     * Values recovered from the write-ahead log are replayed after the files are loaded, so that values ingested
+     * during previous executions are not lost. In lazy mode, it only starts loading in the background
      *
-     * @throws CryptoInternalException Internal error during loading crypto data from file
+     * @throws CryptoInternalException Internal error during loading crypto data from file or write-ahead log
      */
     @PostConstruct
     @Override
     public void loadInitialData() throws CryptoInternalException {
+        if (reloadIntervalMillis > 0) {
+            reloader.scheduleWithFixedDelay(this::reloadOnSchedule, reloadIntervalMillis, reloadIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+        if (lazyLoading) {
+            logger.info("Loading data lazily in order {}", loadingOrder);
+            backgroundLoader = Executors.newSingleThreadExecutor(VirtualThreads.isEnabled()
+                    ? VirtualThreads.factory("data-loader-") : runnable -> {
+                Thread thread = new Thread(runnable, "data-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            backgroundLoader.submit(this::loadAllInBackground);
+            return;
+        }
+
         loadData();
+        for (Map.Entry<CryptoEnum, List<CryptoValue>> entry : writeAheadLog.recover().entrySet()) {
+            if (!shardTopology.isOwned(entry.getKey())) {
+                continue;
+            }
+            cryptoValuesManager.addValues(entry.getKey(), entry.getValue());
+        }
+        for (CryptoEnum cryptoEnum : CryptoEnum.values()) {
+            initialLoads.put(cryptoEnum, CompletableFuture.completedFuture(null));
+        }
+        fullyLoaded = true;
+    }
+
+    /**
+     * Ensures that initial data of the specified crypto are loaded. If they are not, loads them in the calling
+     * thread, or waits for a load already in progress
+     *
+     * @param cryptoEnum The crypto
+     * @throws CryptoInternalException Internal error during loading crypto data from file or write-ahead log
+     */
+    @Override
+    public void ensureLoaded(CryptoEnum cryptoEnum) throws CryptoInternalException {
+        if (fullyLoaded || !shardTopology.isOwned(cryptoEnum)) {
+            return;
+        }
+        CompletableFuture<Void> load = new CompletableFuture<>();
+        CompletableFuture<Void> existingLoad = initialLoads.putIfAbsent(cryptoEnum, load);
+        if (existingLoad == null) {
+            try {
+                loadInitialData(cryptoEnum);
+                load.complete(null);
+            } catch (CryptoInternalException | RuntimeException e) {
+                // Let the next calculation on this crypto retry the load
+                initialLoads.remove(cryptoEnum, load);
+                load.completeExceptionally(e);
+                throw e;
+            }
+            return;
+        }
+        try {
+            existingLoad.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CryptoInternalException("Error loading data for crypto " + cryptoEnum.getCode() + ". Interrupted");
+        } catch (ExecutionException e) {
+            throw new CryptoInternalException("Error loading data for crypto " + cryptoEnum.getCode() + ". " +
+                    e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Returns whether initial data of every crypto are loaded
+     *
+     * @return True if every crypto is loaded
+     */
+    @Override
+    public boolean isFullyLoaded() {
+        return fullyLoaded;
+    }
+
+    /**
+     * Keeps readiness as refusing traffic while data are loaded lazily. Spring Boot reports the application as
+     * accepting traffic as soon as startup completes, which may happen before every crypto is loaded
+     *
+     * @param event The readiness state change
+     */
+    @EventListener
+    public void onReadinessStateChange(AvailabilityChangeEvent<ReadinessState> event) {
+        synchronized (readinessLock) {
+            if (event.getState() == ReadinessState.ACCEPTING_TRAFFIC && !fullyLoaded) {
+                AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stopBackgroundLoading() {
+        if (backgroundLoader != null) {
+            backgroundLoader.shutdownNow();
+        }
+        reloader.shutdownNow();
+    }
+
+    /**
+     * Reloads data, replacing the stored values of every crypto at once with the reloaded ones. Files are read as by
+     * {@link #loadData()}, by the reloader thread, followed by the values recovered from the write-ahead log, and
+     * values ingested during the reload are kept too. Every owned crypto must have values in the files, or the
+     * reload fails leaving the stored values unchanged. Calculations started before the reloaded values are
+     * published finish on the replaced ones
+     *
+     * @return The reload
+     * @throws CryptoInternalException Internal error during loading crypto data from file or write-ahead log, a
+     *                                 crypto without values, or initial data not loaded yet
+     */
+    @Override
+    public StoreReloadDto reloadData() throws CryptoInternalException {
+        if (!fullyLoaded) {
+            throw new CryptoInternalException("Error reloading data. Initial data are not loaded yet");
+        }
+        Future<StoreReloadDto> reload;
+        try {
+            reload = reloader.submit(this::reload);
+        } catch (RejectedExecutionException e) {
+            throw new CryptoInternalException("Error reloading data. Reloader is shut down");
+        }
+        try {
+            return reload.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CryptoInternalException("Error reloading data. Interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CryptoInternalException) {
+                throw (CryptoInternalException) e.getCause();
+            }
+            throw new CryptoInternalException("Error reloading data. " + e.getCause().getMessage());
+        }
+    }
+
+    private void reloadOnSchedule() {
+        if (!fullyLoaded) {
+            return;
+        }
+        try {
+            reload();
+        } catch (CryptoInternalException | RuntimeException e) {
+            logger.error("Error reloading data on schedule, stored values left unchanged", e);
+        }
+    }
+
+    /**
+     * Reads every owned crypto into a replacement of the stored values and publishes it. Runs on the reloader thread
+     */
+    private StoreReloadDto reload() throws CryptoInternalException {
+        long start = System.nanoTime();
+        try (CryptoValuesManager.StoreReplacement replacement = cryptoValuesManager.beginReplacement()) {
+            if (!mixedFilePaths.isEmpty()) {
+                for (Map.Entry<CryptoEnum, List<CryptoValue>> entry : readMixedFiles().entrySet()) {
+                    replacement.addValues(entry.getKey(), entry.getValue());
+                }
+            } else {
+                for (CryptoEnum cryptoEnum : CryptoEnum.values()) {
+                    if (shardTopology.isOwned(cryptoEnum)) {
+                        replacement.addValues(cryptoEnum, cryptoValuesReader.read(cryptoEnum, getFilePath(cryptoEnum)));
+                    }
+                }
+            }
+            long values = 0;
+            for (CryptoEnum cryptoEnum : CryptoEnum.values()) {
+                if (!shardTopology.isOwned(cryptoEnum)) {
+                    continue;
+                }
+                int cryptoValues = replacement.getValues(cryptoEnum).map(Set::size).orElse(0);
+                if (cryptoValues == 0) {
+                    throw new CryptoInternalException("Error reloading data. No values read for crypto " +
+                            cryptoEnum.getCode());
+                }
+                values += cryptoValues;
+            }
+            for (Map.Entry<CryptoEnum, List<CryptoValue>> entry : writeAheadLog.recover().entrySet()) {
+                if (shardTopology.isOwned(entry.getKey())) {
+                    replacement.addValues(entry.getKey(), entry.getValue());
+                }
+            }
+
+            DataSnapshot snapshot = replacement.publish();
+            long reloadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            logger.info("Reloaded {} values from files as data version {} in {} ms", values, snapshot.getVersion(),
+                    reloadMillis);
+            return new StoreReloadDto(snapshot.getVersion(), values, reloadMillis);
+        }
     }
 
     /**
      * Loads data. Aimed at being used at any point in time during application execution.
      * It retrieves file paths as system properties of the form &quot;[DATA_FILE_PATH_PROPERTY_FORMAT].crypto&quot;,
-     * where 'crypto' stands for the crypto code
+     * where 'crypto' stands for the crypto code, unless mixed files are configured. Only cryptos owned by this
+     * instance are loaded
      *
      * @throws CryptoInternalException Internal error during loading crypto data from file
      */
     @Override
     public void loadData() throws CryptoInternalException {
+        if (!mixedFilePaths.isEmpty()) {
+            for (Map.Entry<CryptoEnum, List<CryptoValue>> entry : readMixedFiles().entrySet()) {
+                cryptoValuesManager.addValues(entry.getKey(), entry.getValue());
+            }
+            return;
+        }
+        if (VirtualThreads.isEnabled()) {
+            loadDataConcurrently();
+            return;
+        }
         for (CryptoEnum cryptoEnum : CryptoEnum.values()) {
-            String filePath = System.getProperty(DATA_FILE_PATH_PROPERTY_FORMAT + "." + cryptoEnum.getCode());
-            if (filePath == null || filePath.isBlank() || filePath.isEmpty()) {
-                throw new CryptoInternalException("Error retrieving file path parameter for crypto " + cryptoEnum.getCode());
+            if (!shardTopology.isOwned(cryptoEnum)) {
+                continue;
             }
+            String filePath = getFilePath(cryptoEnum);
             List<CryptoValue> cryptoValues = cryptoValuesReader.read(cryptoEnum, filePath);
-            cryptoValuesManager.addValues(cryptoEnum, cryptoValues.stream().collect(Collectors.toSet()));
+            cryptoValuesManager.addValues(cryptoEnum, cryptoValues);
+        }
+    }
+
+    /**
+     * Reads the file of each owned crypto in its own virtual thread, storing the values of each crypto as soon as its
+     * file is read
+     *
+     * @throws CryptoInternalException Internal error during loading crypto data from file
+     */
+    private void loadDataConcurrently() throws CryptoInternalException {
+        ExecutorService readers = VirtualThreads.newThreadPerTaskExecutor("data-reader-");
+        try {
+            Map<CryptoEnum, Future<Void>> loads = new EnumMap<>(CryptoEnum.class);
+            for (CryptoEnum cryptoEnum : CryptoEnum.values()) {
+                if (!shardTopology.isOwned(cryptoEnum)) {
+                    continue;
+                }
+                String filePath = getFilePath(cryptoEnum);
+                loads.put(cryptoEnum, readers.submit(() -> {
+                    cryptoValuesManager.addValues(cryptoEnum, cryptoValuesReader.read(cryptoEnum, filePath));
+                    return null;
+                }));
+            }
+            for (Map.Entry<CryptoEnum, Future<Void>> load : loads.entrySet()) {
+                try {
+                    load.getValue().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CryptoInternalException("Error loading data for crypto " + load.getKey().getCode() +
+                            ". Interrupted");
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof CryptoInternalException) {
+                        throw (CryptoInternalException) e.getCause();
+                    }
+                    throw new CryptoInternalException("Error loading data for crypto " + load.getKey().getCode() +
+                            ". " + e.getCause().getMessage());
+                }
+            }
+        } finally {
+            readers.shutdownNow();
         }
     }
 
@@ -84,6 +425,159 @@ public class FileDataLoader implements DataLoader {
                     cryptoEnum.getCode() + " is null");
         }
         List<CryptoValue> cryptoValues = cryptoValuesReader.read(cryptoEnum, filePath);
-        cryptoValuesManager.addValues(cryptoEnum, cryptoValues.stream().collect(Collectors.toSet()));
+        cryptoValuesManager.addValues(cryptoEnum, cryptoValues);
+    }
+
+    /**
+     * Loads every crypto in loading order, skipping the ones already loaded on demand, and then reports the
+     * application as ready. A failed crypto is retried on demand by the next calculation on it
+     */
+    private void loadAllInBackground() {
+        long start = System.nanoTime();
+        boolean failed = false;
+        for (CryptoEnum cryptoEnum : loadingOrder) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            try {
+                ensureLoaded(cryptoEnum);
+            } catch (CryptoInternalException | RuntimeException e) {
+                logger.error("Error loading data for crypto " + cryptoEnum.getCode() + " in the background", e);
+                failed = true;
+            }
+        }
+        if (failed) {
+            logger.error("Background loading completed with errors, readiness stays refusing traffic");
+            return;
+        }
+        releaseLoadingState();
+        synchronized (readinessLock) {
+            fullyLoaded = true;
+            AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.ACCEPTING_TRAFFIC);
+        }
+        logger.info("Loaded data of every crypto in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Loads the file of a crypto and then replays its values recovered from the write-ahead log
+     */
+    private void loadInitialData(CryptoEnum cryptoEnum) throws CryptoInternalException {
+        long start = System.nanoTime();
+        List<CryptoValue> cryptoValues = mixedFilePaths.isEmpty()
+                ? cryptoValuesReader.read(cryptoEnum, getFilePath(cryptoEnum))
+                : takeMixedFileValues(cryptoEnum);
+        cryptoValuesManager.addValues(cryptoEnum, cryptoValues);
+        List<CryptoValue> cryptoLoggedValues = takeLoggedValues(cryptoEnum);
+        if (cryptoLoggedValues != null) {
+            cryptoValuesManager.addValues(cryptoEnum, cryptoLoggedValues);
+        }
+        logger.info("Loaded data for crypto {} in {} ms", cryptoEnum.getCode(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Recovers the write-ahead log once and hands out the values of each crypto only once, so that they are not kept
+     * in memory after being stored
+     *
+     * @return The logged values of the crypto, or null if it has none
+     */
+    private synchronized List<CryptoValue> takeLoggedValues(CryptoEnum cryptoEnum) throws CryptoInternalException {
+        if (loggedValues == null) {
+            loggedValues = new EnumMap<>(CryptoEnum.class);
+            for (Map.Entry<CryptoEnum, List<CryptoValue>> entry : writeAheadLog.recover().entrySet()) {
+                if (shardTopology.isOwned(entry.getKey())) {
+                    loggedValues.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return loggedValues.remove(cryptoEnum);
+    }
+
+    /**
+     * Drops the values kept for cryptos not loaded yet, once every crypto is loaded
+     */
+    private synchronized void releaseLoadingState() {
+        loggedValues = null;
+        mixedFileValues = null;
+    }
+
+    /**
+     * @return Number of cryptos whose values recovered from the write-ahead log are kept until they are loaded
+     */
+    synchronized int pendingLoggedCryptos() {
+        return loggedValues == null ? 0 : loggedValues.size();
+    }
+
+    /**
+     * Reads the mixed files once and hands out the values of each crypto only once, so that they are not kept in
+     * memory after being stored
+     */
+    private synchronized List<CryptoValue> takeMixedFileValues(CryptoEnum cryptoEnum) throws CryptoInternalException {
+        if (mixedFileValues == null) {
+            mixedFileValues = readMixedFiles();
+        }
+        List<CryptoValue> cryptoValues = mixedFileValues.remove(cryptoEnum);
+        return cryptoValues == null ? List.of() : cryptoValues;
+    }
+
+    /**
+     * Reads every mixed file, keeping the values of owned cryptos
+     */
+    private Map<CryptoEnum, List<CryptoValue>> readMixedFiles() throws CryptoInternalException {
+        Map<CryptoEnum, List<CryptoValue>> cryptoValues = new EnumMap<>(CryptoEnum.class);
+        for (String filePath : mixedFilePaths) {
+            for (Map.Entry<CryptoEnum, List<CryptoValue>> entry : partitioningReader.read(filePath).entrySet()) {
+                if (shardTopology.isOwned(entry.getKey())) {
+                    cryptoValues.computeIfAbsent(entry.getKey(), e -> new ArrayList<>()).addAll(entry.getValue());
+                }
+            }
+        }
+        return cryptoValues;
+    }
+
+    private static String getFilePath(CryptoEnum cryptoEnum) throws CryptoInternalException {
+        String filePath = System.getProperty(DATA_FILE_PATH_PROPERTY_FORMAT + "." + cryptoEnum.getCode());
+        if (filePath == null || filePath.isBlank() || filePath.isEmpty()) {
+            throw new CryptoInternalException("Error retrieving file path parameter for crypto " + cryptoEnum.getCode());
+        }
+        return filePath;
+    }
+
+    /**
+     * @param filePaths Comma separated file paths, can be null
+     * @return The non blank file paths
+     */
+    private static List<String> toFilePaths(String filePaths) {
+        if (filePaths == null) {
+            return List.of();
+        }
+        return Arrays.stream(filePaths.split(","))
+                .map(String::trim)
+                .filter(filePath -> !filePath.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Orders cryptos by the specified priority, followed by every other crypto in declaration order
+     *
+     * @param priority Comma separated crypto codes, can be null
+     * @return Every crypto in loading order
+     */
+    private static List<CryptoEnum> toLoadingOrder(String priority) {
+        Set<CryptoEnum> order = new LinkedHashSet<>();
+        if (priority != null) {
+            for (String code : priority.split(",")) {
+                Optional<CryptoEnum> cryptoEnum = Arrays.stream(CryptoEnum.values())
+                        .filter(e -> e.getCode().equals(code.trim()))
+                        .findFirst();
+                if (cryptoEnum.isPresent()) {
+                    order.add(cryptoEnum.get());
+                } else if (!code.isBlank()) {
+                    logger.warn("Ignoring non-supported crypto {} in loading priority", code);
+                }
+            }
+        }
+        order.addAll(Arrays.asList(CryptoEnum.values()));
+        return new ArrayList<>(order);
     }
 }
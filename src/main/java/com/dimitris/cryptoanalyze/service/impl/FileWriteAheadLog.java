@@ -0,0 +1,630 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.service.CryptoValuesWriteAheadLog;
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Service for logging ingested crypto values into an append-only, segmented binary file log.
+ * <p>
+ * Each append is encoded into a single checksummed record. Records of concurrent appends are written and fsync'ed
+ * together by a background flusher at a configurable interval (group commit), so that the cost of a fsync is shared
+ * by every append waiting on it. A new segment file is started on startup and whenever the current one exceeds
+ * the configured size. On recovery segments are read through a bounded buffer and decoded in parallel.
+ * <p>
+ * A crash in the middle of a write leaves a torn record at the tail of the segment being written, the last one. It was
+ * never acknowledged, so it is ignored on recovery, and cut off the segment before the log starts a new segment, so
+ * that only the last segment may end in a torn record. A torn record at the tail of an earlier segment, left by a
+ * failed write whose segment could not be truncated, is ignored too but logged as an error. A corrupted record
+ * followed by further records fails recovery, naming the segment and offset, since the acknowledged records after
+ * it would otherwise be silently lost.
+ * <p>
+ * The log is configured through the following system properties:
+ * <ul>
+ *     <li>&quot;wal.dir&quot;: Directory holding the segment files. If omitted, the log is disabled</li>
+ *     <li>&quot;wal.fsync.interval.millis&quot;: Interval between group commits. If 0, every append is fsync'ed
+ *     on its own. Default is 5</li>
+ *     <li>&quot;wal.segment.max.bytes&quot;: Size after which a new segment is started. Default is 64MB</li>
+ *     <li>&quot;wal.recovery.threads&quot;: Number of threads decoding segments on recovery. Default is the
+ *     number of available processors</li>
+ * </ul>
+ */
+@Service
+public class FileWriteAheadLog implements CryptoValuesWriteAheadLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileWriteAheadLog.class);
+
+    private static final int SEGMENT_MAGIC = 0x43574c31;
+
+    private static final String SEGMENT_PREFIX = "wal-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+     * Every record starts with its payload length and the CRC32 of its payload
+     */
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    /**
+     * Initial size of the buffer segments are read through, grown only for larger records
+     */
+    private static final int READ_BUFFER_BYTES = 1024 * 1024;
+
+    private final Path directory;
+
+    private final long fsyncIntervalMillis;
+
+    private final long segmentMaxBytes;
+
+    private final int recoveryThreads;
+
+    /**
+     * Guards the batches waiting for the next group commit
+     */
+    private final Object pendingLock = new Object();
+
+    /**
+     * Guards the segment file. Never acquired while holding {@link #pendingLock}
+     */
+    private final Object writeLock = new Object();
+
+    private List<PendingBatch> pendingBatches = new ArrayList<>();
+
+    private ScheduledExecutorService flusher;
+
+    private boolean closed;
+
+    private FileChannel segmentChannel;
+
+    private long segmentSize;
+
+    private long segmentIndex;
+
+    /**
+     * Whether the torn tail of the last segment of a previous run was cut off
+     */
+    private boolean tailRepaired;
+
+    @Autowired
+    public FileWriteAheadLog() {
+        this(System.getProperty("wal.dir") != null && !System.getProperty("wal.dir").isBlank() ?
+                        Paths.get(System.getProperty("wal.dir")) : null,
+                Long.getLong("wal.fsync.interval.millis", 5L),
+                Long.getLong("wal.segment.max.bytes", 64L * 1024 * 1024),
+                Integer.getInteger("wal.recovery.threads", Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @param directory           Directory holding the segment files, null to disable the log
+     * @param fsyncIntervalMillis Interval between group commits, 0 to fsync every append on its own
+     * @param segmentMaxBytes     Size after which a new segment is started
+     * @param recoveryThreads     Number of threads decoding segments on recovery
+     */
+    public FileWriteAheadLog(Path directory, long fsyncIntervalMillis, long segmentMaxBytes, int recoveryThreads) {
+        this.directory = directory;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.segmentMaxBytes = segmentMaxBytes;
+        this.recoveryThreads = Math.max(1, recoveryThreads);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Appends a batch of crypto values for a specified crypto. The batch is encoded as a single record, so it is
+     * either recovered as a whole or not at all. Returns only after the group commit including the batch is fsync'ed
+     *
+     * @param cryptoEnum   The crypto
+     * @param cryptoValues The crypto values
+     * @throws CryptoInternalException Internal error during writing crypto data to the log
+     */
+    @Override
+    public void append(CryptoEnum cryptoEnum, List<CryptoValue> cryptoValues) throws CryptoInternalException {
+        if (!isEnabled() || cryptoValues.isEmpty()) {
+            return;
+        }
+        PendingBatch batch = new PendingBatch(encode(cryptoEnum, cryptoValues));
+        synchronized (pendingLock) {
+            if (closed) {
+                throw new CryptoInternalException("Error appending to write-ahead log. Log is closed");
+            }
+            pendingBatches.add(batch);
+            if (fsyncIntervalMillis > 0 && flusher == null) {
+                flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "wal-flusher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                flusher.scheduleWithFixedDelay(this::flush, fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (fsyncIntervalMillis <= 0) {
+            flush();
+        }
+        try {
+            batch.committed.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CryptoInternalException("Error appending to write-ahead log. Interrupted while waiting for commit");
+        } catch (ExecutionException e) {
+            throw new CryptoInternalException("Error appending to write-ahead log. " + e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Reads back every crypto value stored in the log. Segments are decoded in parallel and their values are
+     * concatenated in segment order, so that values of each crypto are returned in the order they were appended
+     *
+     * @return A mapping of each crypto to its logged values (cryptos without logged values are not present)
+     * @throws CryptoInternalException Internal error during reading crypto data from the log, or a corrupted record
+     *                                 followed by further records
+     */
+    @Override
+    public Map<CryptoEnum, List<CryptoValue>> recover() throws CryptoInternalException {
+        Map<CryptoEnum, List<CryptoValue>> recovered = new EnumMap<>(CryptoEnum.class);
+        if (!isEnabled() || !Files.isDirectory(directory)) {
+            return recovered;
+        }
+        List<Path> segments;
+        try {
+            segments = listSegments();
+        } catch (IOException e) {
+            throw new CryptoInternalException("Error recovering write-ahead log. " + e.getMessage());
+        }
+        if (segments.isEmpty()) {
+            return recovered;
+        }
+
+        long start = System.nanoTime();
+        ExecutorService decoders = Executors.newFixedThreadPool(Math.min(recoveryThreads, segments.size()));
+        try {
+            List<Future<Map<CryptoEnum, List<CryptoValue>>>> decoded = new ArrayList<>();
+            for (int i = 0; i < segments.size(); i++) {
+                Path segment = segments.get(i);
+                boolean last = i == segments.size() - 1;
+                decoded.add(decoders.submit(() -> decodeSegment(segment, last)));
+            }
+            for (Future<Map<CryptoEnum, List<CryptoValue>>> segmentValues : decoded) {
+                for (Map.Entry<CryptoEnum, List<CryptoValue>> entry : segmentValues.get().entrySet()) {
+                    recovered.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).addAll(entry.getValue());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CryptoInternalException("Error recovering write-ahead log. Interrupted while decoding segments");
+        } catch (ExecutionException e) {
+            throw new CryptoInternalException("Error recovering write-ahead log. " + e.getCause().getMessage());
+        } finally {
+            decoders.shutdownNow();
+        }
+
+        long count = recovered.values().stream().mapToLong(List::size).sum();
+        logger.info("Recovered {} crypto values from {} write-ahead log segments in {} ms",
+                count, segments.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return recovered;
+    }
+
+    /**
+     * Commits any pending batches and closes the current segment
+     */
+    @PreDestroy
+    public void close() {
+        synchronized (pendingLock) {
+            closed = true;
+            if (flusher != null) {
+                flusher.shutdown();
+            }
+        }
+        flush();
+        synchronized (writeLock) {
+            if (segmentChannel != null) {
+                try {
+                    segmentChannel.close();
+                } catch (IOException e) {
+                    logger.error("Error closing write-ahead log segment", e);
+                }
+                segmentChannel = null;
+            }
+        }
+    }
+
+    /**
+     * Writes every pending batch to the current segment and fsyncs it once, then releases the appenders waiting on
+     * these batches. If the write fails, the batches are failed and the segment is truncated back to its last
+     * committed record and abandoned, so that records of later batches are never written after a torn one, which
+     * would end decoding of the segment before them. Failures never propagate, so that the flusher keeps running
+     */
+    private void flush() {
+        synchronized (writeLock) {
+            List<PendingBatch> batches;
+            synchronized (pendingLock) {
+                if (pendingBatches.isEmpty()) {
+                    return;
+                }
+                batches = pendingBatches;
+                pendingBatches = new ArrayList<>();
+            }
+            long committedSize = segmentSize;
+            try {
+                if (segmentChannel == null || segmentSize >= segmentMaxBytes) {
+                    openNextSegment();
+                    committedSize = segmentSize;
+                }
+                for (PendingBatch batch : batches) {
+                    ByteBuffer buffer = ByteBuffer.wrap(batch.record);
+                    while (buffer.hasRemaining()) {
+                        segmentChannel.write(buffer);
+                    }
+                    segmentSize += batch.record.length;
+                }
+                segmentChannel.force(false);
+                batches.forEach(batch -> batch.committed.complete(null));
+            } catch (Throwable e) {
+                logger.error("Error writing write-ahead log segment", e);
+                batches.forEach(batch -> batch.committed.completeExceptionally(e));
+                abandonSegment(committedSize);
+            }
+        }
+    }
+
+    /**
+     * Truncates the current segment to the specified size and closes it, so that the next flush starts a new
+     * segment. A segment that cannot be truncated keeps its torn tail, which only ends decoding of that segment
+     */
+    private void abandonSegment(long committedSize) {
+        if (segmentChannel == null) {
+            return;
+        }
+        try {
+            segmentChannel.truncate(committedSize);
+            segmentChannel.force(false);
+        } catch (Throwable e) {
+            logger.error("Error truncating write-ahead log segment", e);
+        }
+        try {
+            segmentChannel.close();
+        } catch (Throwable e) {
+            logger.error("Error closing write-ahead log segment", e);
+        }
+        segmentChannel = null;
+    }
+
+    private void openNextSegment() throws IOException {
+        if (segmentChannel != null) {
+            FileChannel previous = segmentChannel;
+            segmentChannel = null;
+            previous.close();
+        } else {
+            Files.createDirectories(directory);
+            List<Path> segments = listSegments();
+            if (!tailRepaired && !segments.isEmpty()) {
+                repairTail(segments.get(segments.size() - 1));
+            }
+            tailRepaired = true;
+            segmentIndex = segments.stream().mapToLong(FileWriteAheadLog::segmentIndexOf).max().orElse(0);
+        }
+        segmentIndex++;
+        Path segment = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segmentIndex, SEGMENT_SUFFIX));
+        segmentChannel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES).putInt(SEGMENT_MAGIC).flip();
+        while (header.hasRemaining()) {
+            segmentChannel.write(header);
+        }
+        segmentSize = Integer.BYTES;
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted(Comparator.comparingLong(FileWriteAheadLog::segmentIndexOf))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long segmentIndexOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Encodes a batch as a record. Layout is: payload length (int), payload CRC32 (int), crypto code length (byte),
+     * crypto code (ASCII), values count (int) and for each value: timestamp (long), price scale (int), price unscaled
+     * value length (byte) and price unscaled value (two's complement, big-endian)
+     */
+    private static byte[] encode(CryptoEnum cryptoEnum, List<CryptoValue> cryptoValues) throws CryptoInternalException {
+        byte[] code = cryptoEnum.getCode().getBytes(StandardCharsets.US_ASCII);
+        byte[][] unscaledValues = new byte[cryptoValues.size()][];
+        int payloadLength = 1 + code.length + Integer.BYTES;
+        for (int i = 0; i < cryptoValues.size(); i++) {
+            BigDecimal price = cryptoValues.get(i).getPrice();
+            unscaledValues[i] = price.unscaledValue().toByteArray();
+            if (unscaledValues[i].length > 0xff) {
+                throw new CryptoInternalException("Error appending to write-ahead log. Price " + price + " is too large");
+            }
+            payloadLength += Long.BYTES + Integer.BYTES + 1 + unscaledValues[i].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + payloadLength);
+        buffer.putInt(payloadLength);
+        buffer.putInt(0);
+        buffer.put((byte) code.length);
+        buffer.put(code);
+        buffer.putInt(cryptoValues.size());
+        for (int i = 0; i < cryptoValues.size(); i++) {
+            CryptoValue cryptoValue = cryptoValues.get(i);
+            buffer.putLong(cryptoValue.getTimestamp());
+            buffer.putInt(cryptoValue.getPrice().scale());
+            buffer.put((byte) unscaledValues[i].length);
+            buffer.put(unscaledValues[i]);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), RECORD_HEADER_BYTES, payloadLength);
+        buffer.putInt(Integer.BYTES, (int) crc.getValue());
+        return buffer.array();
+    }
+
+    /**
+     * Cuts off the torn record at the tail of the last segment of a previous run, before a new segment follows it. A
+     * segment without any complete record is deleted, and a corrupted one is left for recovery to report
+     */
+    private static void repairTail(Path segment) throws IOException {
+        SegmentEnd end = readSegment(segment, payload -> {
+        });
+        if (end.isComplete() || end.corrupted) {
+            return;
+        }
+        logger.warn("Cutting off {} at offset {} of write-ahead log segment {}, left by an interrupted write",
+                end.problem, end.validBytes, segment);
+        if (end.validBytes <= Integer.BYTES) {
+            Files.delete(segment);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(end.validBytes);
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Decodes every complete record of a segment. A torn record at its tail ends decoding, and a corrupted record
+     * followed by further records fails it
+     */
+    private static Map<CryptoEnum, List<CryptoValue>> decodeSegment(Path segment, boolean last)
+            throws IOException, CryptoInternalException {
+        Map<CryptoEnum, List<CryptoValue>> values = new EnumMap<>(CryptoEnum.class);
+        SegmentEnd end = readSegment(segment, payload -> decodeRecord(payload, values));
+        if (end.isComplete()) {
+            return values;
+        }
+        if (end.corrupted) {
+            logger.error("Found {} at offset {} of write-ahead log segment {}, followed by further records",
+                    end.problem, end.validBytes, segment);
+            throw new CryptoInternalException("Error recovering write-ahead log. Found " + end.problem + " at offset " +
+                    end.validBytes + " of segment " + segment + ", followed by further records");
+        }
+        if (last) {
+            logger.warn("Ignoring {} at tail of write-ahead log segment {}, offset {}, left by an interrupted write",
+                    end.problem, segment, end.validBytes);
+        } else {
+            logger.error("Ignoring {} at tail of write-ahead log segment {}, offset {}, which is not the last " +
+                    "segment. It was left by a failed write whose segment could not be truncated", end.problem,
+                    segment, end.validBytes);
+        }
+        return values;
+    }
+
+    /**
+     * Reads the records of a segment through a bounded buffer, handing each checksummed payload to a consumer, until
+     * the end of the segment or the first record that is torn or corrupted
+     *
+     * @return Where valid records end and why
+     */
+    private static SegmentEnd readSegment(Path segment, Consumer<ByteBuffer> consumer)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            long size = channel.size();
+            SegmentReader reader = new SegmentReader(channel);
+            if (size < Integer.BYTES) {
+                return new SegmentEnd(0, size, false, "incomplete header");
+            }
+            reader.require(Integer.BYTES);
+            if (reader.buffer.getInt() != SEGMENT_MAGIC) {
+                return new SegmentEnd(0, size, true, "invalid header");
+            }
+            reader.offset += Integer.BYTES;
+            CRC32 crc = new CRC32();
+            while (reader.offset < size) {
+                long recordOffset = reader.offset;
+                long remaining = size - recordOffset - RECORD_HEADER_BYTES;
+                if (remaining < 0) {
+                    return new SegmentEnd(recordOffset, size, false, "truncated record header");
+                }
+                reader.require(RECORD_HEADER_BYTES);
+                int payloadLength = reader.buffer.getInt();
+                int checksum = reader.buffer.getInt();
+                if (payloadLength > remaining) {
+                    return new SegmentEnd(recordOffset, size, false, "truncated record");
+                }
+                if (payloadLength <= 0) {
+                    // A crash may leave the tail of a segment zero filled
+                    return new SegmentEnd(recordOffset, size, !reader.zerosUntil(size, RECORD_HEADER_BYTES),
+                            "record with invalid length " + payloadLength);
+                }
+                reader.require(payloadLength);
+                ByteBuffer payload = reader.buffer.slice().limit(payloadLength);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    return new SegmentEnd(recordOffset, size, payloadLength < remaining, "corrupted record");
+                }
+                consumer.accept(payload);
+                reader.buffer.position(reader.buffer.position() + payloadLength);
+                reader.offset += RECORD_HEADER_BYTES + payloadLength;
+            }
+            return new SegmentEnd(size, size, false, null);
+        }
+    }
+
+    private static void decodeRecord(ByteBuffer payload, Map<CryptoEnum, List<CryptoValue>> values) {
+        byte[] code = new byte[payload.get()];
+        payload.get(code);
+        String cryptoCode = new String(code, StandardCharsets.US_ASCII);
+        int count = payload.getInt();
+        Optional<CryptoEnum> cryptoEnum = Arrays.stream(CryptoEnum.values()).filter(e -> e.getCode().equals(cryptoCode)).findFirst();
+        if (cryptoEnum.isEmpty()) {
+            logger.warn("Skipping {} logged values of non-supported crypto {}", count, cryptoCode);
+            return;
+        }
+        List<CryptoValue> cryptoValues = values.computeIfAbsent(cryptoEnum.get(), k -> new ArrayList<>());
+        for (int i = 0; i < count; i++) {
+            long timestamp = payload.getLong();
+            int scale = payload.getInt();
+            int unscaledLength = payload.get() & 0xff;
+            BigDecimal price;
+            if (unscaledLength <= Long.BYTES) {
+                long unscaled = unscaledLength == 0 ? 0 : payload.get();
+                for (int j = 1; j < unscaledLength; j++) {
+                    unscaled = (unscaled << 8) | (payload.get() & 0xff);
+                }
+                price = BigDecimal.valueOf(unscaled, scale);
+            } else {
+                byte[] unscaled = new byte[unscaledLength];
+                payload.get(unscaled);
+                price = new BigDecimal(new BigInteger(unscaled), scale);
+            }
+            cryptoValues.add(new CryptoValue(timestamp, price));
+        }
+    }
+
+    /**
+     * Reads a segment sequentially into a heap buffer, so that no mapping of the segment outlives recovery
+     */
+    private static class SegmentReader {
+
+        private final FileChannel channel;
+
+        private ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES).limit(0);
+
+        /**
+         * Offset in the segment of the next unconsumed byte
+         */
+        private long offset;
+
+        private SegmentReader(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Ensures that the buffer holds the next bytes of the segment, growing it for larger records. The caller
+         * checked the segment has them
+         */
+        private void require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            if (buffer.capacity() < bytes) {
+                buffer = ByteBuffer.allocate(bytes).put(buffer);
+            } else {
+                buffer.compact();
+            }
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Segment ended while reading " + bytes + " bytes at offset " + offset);
+                }
+            }
+            buffer.flip();
+        }
+
+        /**
+         * @return True if every byte from the next unconsumed one on, skipping the specified ones already consumed,
+         * is zero
+         */
+        private boolean zerosUntil(long size, int consumed) throws IOException {
+            ByteBuffer chunk = ByteBuffer.allocate(READ_BUFFER_BYTES);
+            long position = offset + consumed;
+            while (position < size) {
+                chunk.clear();
+                int read = channel.read(chunk, position);
+                if (read < 0) {
+                    return true;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (chunk.get(i) != 0) {
+                        return false;
+                    }
+                }
+                position += read;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Where the valid records of a segment end, and the problem found there if the segment continues
+     */
+    private static class SegmentEnd {
+
+        private final long validBytes;
+
+        private final long size;
+
+        /**
+         * Whether further bytes follow the invalid record, so that it is not a torn tail
+         */
+        private final boolean corrupted;
+
+        private final String problem;
+
+        private SegmentEnd(long validBytes, long size, boolean corrupted, String problem) {
+            this.validBytes = validBytes;
+            this.size = size;
+            this.corrupted = corrupted;
+            this.problem = problem;
+        }
+
+        private boolean isComplete() {
+            return validBytes == size;
+        }
+    }
+
+    /**
+     * An encoded batch waiting for the group commit that makes it durable
+     */
+    private static class PendingBatch {
+
+        private final byte[] record;
+
+        private final CompletableFuture<Void> committed = new CompletableFuture<>();
+
+        private PendingBatch(byte[] record) {
+            this.record = record;
+        }
+    }
+}
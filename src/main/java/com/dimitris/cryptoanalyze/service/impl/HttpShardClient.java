@@ -0,0 +1,156 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.controller.RequestDeadlineResolver;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricDto;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsDto;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsListDto;
+import com.dimitris.cryptoanalyze.controller.dto.TimePeriodRequestDto;
+import com.dimitris.cryptoanalyze.service.ShardClient;
+import com.dimitris.cryptoanalyze.service.exception.CryptoDeadlineExceededException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.model.Deadline;
+import com.dimitris.cryptoanalyze.service.util.VirtualThreads;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Service for querying the shards of a sharded deployment over HTTP, through the endpoints of
+ * {@link com.dimitris.cryptoanalyze.controller.CryptoShardController}. The timeout of each query in millis is set
+ * by the system property &quot;shard.request.timeout.millis&quot; (default 2000)
+ */
+@Service
+public class HttpShardClient implements ShardClient {
+
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final ShardTopology shardTopology;
+
+    private final ObjectMapper objectMapper;
+
+    private final Duration requestTimeout;
+
+    private final HttpClient httpClient;
+
+    /**
+     * @param shardTopology The topology of the deployment, resolving shard indexes to urls
+     * @param objectMapper  The mapper used for parsing responses
+     */
+    @Autowired
+    public HttpShardClient(ShardTopology shardTopology, ObjectMapper objectMapper) {
+        this.shardTopology = shardTopology;
+        this.objectMapper = objectMapper;
+        this.requestTimeout = Duration.ofMillis(Long.parseLong(System.getProperty("shard.request.timeout.millis", "2000")));
+        HttpClient.Builder httpClientBuilder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(requestTimeout);
+        if (VirtualThreads.isEnabled()) {
+            httpClientBuilder.executor(VirtualThreads.newThreadPerTaskExecutor("shard-client-"));
+        }
+        this.httpClient = httpClientBuilder.build();
+    }
+
+    @Override
+    public CompletableFuture<CryptoMetricsListDto> getCryptosSortedByNormalizedRangeDesc(
+            int shard, Optional<TimePeriodRequestDto> timePeriodRequestDto, int limit) {
+        String path = "/api/crypto/shard/sort/by/normalized/desc" + (limit < Integer.MAX_VALUE ? "?limit=" + limit : "");
+        return post(shard, path, timePeriodRequestDto).thenApply(json -> {
+            List<CryptoMetricDto> cryptos = new ArrayList<>();
+            for (JsonNode crypto : json.path("cryptos")) {
+                cryptos.add(new CryptoMetricDto(crypto.path("crypto").asText(), crypto.path("value").decimalValue()));
+            }
+            return new CryptoMetricsListDto(cryptos);
+        });
+    }
+
+    @Override
+    public CompletableFuture<CryptoMetricsDto> getMetricsForCrypto(
+            int shard, Optional<TimePeriodRequestDto> timePeriodRequestDto, String crypto) {
+        return post(shard, "/api/crypto/shard/metrics/" + crypto, timePeriodRequestDto).thenApply(json -> {
+            Map<String, BigDecimal> metrics = new HashMap<>();
+            json.path("metrics").fields().forEachRemaining(metric ->
+                    metrics.put(metric.getKey(), metric.getValue().decimalValue()));
+            return new CryptoMetricsDto(metrics);
+        });
+    }
+
+    /**
+     * Posts a time period to an endpoint of a shard and parses the JSON response. Responses with status 404 complete
+     * with a {@link CryptoNotFoundException}, responses with status 504 with a
+     * {@link CryptoDeadlineExceededException} and any other failure with a {@link CryptoInternalException}. The
+     * deadline of the current thread is forwarded to the shard and bounds the timeout of the query
+     */
+    private CompletableFuture<JsonNode> post(int shard, String path, Optional<TimePeriodRequestDto> timePeriodRequestDto) {
+        Deadline deadline = Deadline.current();
+        if (deadline.isExceeded()) {
+            return CompletableFuture.failedFuture(deadline.newExceededException());
+        }
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(URI.create(shardTopology.getNode(shard) + path))
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(toJson(timePeriodRequestDto)));
+        if (!deadline.isUnbounded()) {
+            long remainingMillis = Math.max(1, deadline.remainingMillis());
+            requestBuilder.timeout(Duration.ofMillis(Math.min(remainingMillis, requestTimeout.toMillis())))
+                    .header(RequestDeadlineResolver.TIMEOUT_HEADER, Long.toString(remainingMillis));
+        }
+        HttpRequest request = requestBuilder.build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .handle((response, throwable) -> {
+                    if (throwable != null) {
+                        throw new CompletionException(new CryptoInternalException("Error querying shard " + shard +
+                                ". " + throwable.getMessage()));
+                    }
+                    JsonNode json;
+                    try {
+                        json = objectMapper.readTree(response.body());
+                    } catch (IOException e) {
+                        throw new CompletionException(new CryptoInternalException("Error parsing response of shard " +
+                                shard + ". " + e.getMessage()));
+                    }
+                    if (response.statusCode() == 404) {
+                        throw new CompletionException(new CryptoNotFoundException(json.path("errorMessage").asText()));
+                    }
+                    if (response.statusCode() == 504) {
+                        throw new CompletionException(new CryptoDeadlineExceededException(json.path("errorMessage").asText()));
+                    }
+                    if (response.statusCode() != 200) {
+                        throw new CompletionException(new CryptoInternalException("Error querying shard " + shard +
+                                ". " + json.path("errorMessage").asText("Status " + response.statusCode())));
+                    }
+                    return json;
+                });
+    }
+
+    private static String toJson(Optional<TimePeriodRequestDto> timePeriodRequestDto) {
+        if (timePeriodRequestDto.isEmpty()) {
+            return "";
+        }
+        StringJoiner json = new StringJoiner(", ", "{", "}");
+        Optional<LocalDateTime> fromDateTime = timePeriodRequestDto.get().getFromDateTime();
+        Optional<LocalDateTime> toDateTime = timePeriodRequestDto.get().getToDateTime();
+        if (fromDateTime != null && fromDateTime.isPresent()) {
+            json.add("\"fromDateTime\": \"" + DATE_TIME_FORMATTER.format(fromDateTime.get()) + "\"");
+        }
+        if (toDateTime != null && toDateTime.isPresent()) {
+            json.add("\"toDateTime\": \"" + DATE_TIME_FORMATTER.format(toDateTime.get()) + "\"");
+        }
+        return json.toString();
+    }
+}
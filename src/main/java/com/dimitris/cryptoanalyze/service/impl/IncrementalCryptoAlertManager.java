@@ -0,0 +1,389 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.controller.dto.AlertRuleDto;
+import com.dimitris.cryptoanalyze.controller.dto.AlertRuleRequestDto;
+import com.dimitris.cryptoanalyze.service.AlertSink;
+import com.dimitris.cryptoanalyze.service.CryptoAlertManager;
+import com.dimitris.cryptoanalyze.service.CryptoValuesListener;
+import com.dimitris.cryptoanalyze.service.CryptoValuesManager;
+import com.dimitris.cryptoanalyze.service.enums.AlertDirection;
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoValidationException;
+import com.dimitris.cryptoanalyze.service.model.AlertFiring;
+import com.dimitris.cryptoanalyze.service.model.AlertRule;
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import com.dimitris.cryptoanalyze.service.model.CryptoValueSeries;
+import com.dimitris.cryptoanalyze.service.model.TrailingRangeWindow;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Service evaluating alert rules incrementally, on the thread storing values, instead of recalculating metrics.
+ * <p>
+ * Rules of the same crypto and window share a {@link TrailingRangeWindow}, which every stored value slides in amortized
+ * constant time, and are indexed by threshold. When a value changes the normalized range of the window, the rules
+ * whose threshold lies between the previous and the new range are the ones crossed, so finding them takes a lookup in
+ * the index however many rules the window has. Values older than the newest value of a window, or replacing one of its
+ * values, rebuild the window from the stored values instead.
+ * <p>
+ * Firings are handed to a single delivery thread, so that slow sinks do not slow down ingestion; firings exceeding the
+ * capacity of its queue are dropped. Unless an {@link AlertSink} bean is defined, firings are posted to the url of
+ * the system property &quot;alerts.webhook.url&quot; if set, or logged otherwise.
+ * <p>
+ * It is configured by the following system properties:
+ * <ul>
+ *     <li>&quot;alerts.webhook.url&quot;: url firings are posted to as JSON (default none, firings are logged)</li>
+ *     <li>&quot;alerts.webhook.timeout.millis&quot;: timeout of each post to the webhook (default 2000)</li>
+ *     <li>&quot;alerts.delivery.queue.capacity&quot;: firings waiting for delivery before new ones are dropped
+ *     (default 10000)</li>
+ * </ul>
+ * The number of rules and of fired and dropped firings are published as &quot;crypto.alerts.rules&quot;,
+ * &quot;crypto.alerts.fired&quot; and &quot;crypto.alerts.dropped&quot;
+ */
+@Service
+public class IncrementalCryptoAlertManager implements CryptoAlertManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(IncrementalCryptoAlertManager.class);
+
+    private final CryptoValuesManager cryptoValuesManager;
+
+    private final ShardTopology shardTopology;
+
+    private final AlertSink alertSink;
+
+    private final AtomicLong lastRuleId = new AtomicLong();
+
+    private final Map<Long, AlertRule> rules = new ConcurrentSkipListMap<>();
+
+    private final Map<CryptoEnum, Map<Long, WindowRules>> windows = new ConcurrentHashMap<>();
+
+    private final ThreadPoolExecutor deliveryExecutor;
+
+    private final Counter fired;
+
+    private final Counter dropped;
+
+    /**
+     * Creates a manager configured by system properties
+     *
+     * @param cryptoValuesManager The manager notifying stored values
+     * @param shardTopology       The topology of the deployment, deciding which cryptos are stored by this instance
+     * @param alertSinks          Provides the sink of firings, if an {@link AlertSink} bean is defined
+     * @param objectMapper        The mapper used for serializing firings posted to the webhook
+     * @param meterRegistry       A registry for the meters of the manager
+     */
+    @Autowired
+    public IncrementalCryptoAlertManager(CryptoValuesManager cryptoValuesManager, ShardTopology shardTopology,
+                                         ObjectProvider<AlertSink> alertSinks, ObjectMapper objectMapper,
+                                         MeterRegistry meterRegistry) {
+        this(cryptoValuesManager, shardTopology,
+                alertSinks.getIfAvailable(() -> configuredAlertSink(objectMapper)),
+                meterRegistry,
+                Integer.getInteger("alerts.delivery.queue.capacity", 10000));
+    }
+
+    /**
+     * @param cryptoValuesManager   The manager notifying stored values
+     * @param shardTopology         The topology of the deployment, deciding which cryptos are stored by this instance
+     * @param alertSink             The sink of firings
+     * @param meterRegistry         A registry for the meters of the manager
+     * @param deliveryQueueCapacity Firings waiting for delivery before new ones are dropped
+     */
+    public IncrementalCryptoAlertManager(CryptoValuesManager cryptoValuesManager, ShardTopology shardTopology,
+                                         AlertSink alertSink, MeterRegistry meterRegistry, int deliveryQueueCapacity) {
+        this.cryptoValuesManager = cryptoValuesManager;
+        this.shardTopology = shardTopology;
+        this.alertSink = alertSink;
+        this.deliveryExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(deliveryQueueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "alert-delivery");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("crypto.alerts.rules", rules, Map::size).register(meterRegistry);
+        this.fired = Counter.builder("crypto.alerts.fired").register(meterRegistry);
+        this.dropped = Counter.builder("crypto.alerts.dropped").register(meterRegistry);
+
+        cryptoValuesManager.addListener(new CryptoValuesListener() {
+
+            @Override
+            public void onValuesAdded(CryptoEnum cryptoEnum, Collection<CryptoValue> addedValues) {
+                IncrementalCryptoAlertManager.this.onValuesAdded(cryptoEnum, addedValues);
+            }
+
+            @Override
+            public void onValuesReplaced(CryptoEnum cryptoEnum) {
+                IncrementalCryptoAlertManager.this.onValuesReplaced(cryptoEnum);
+            }
+        });
+    }
+
+    /**
+     * Registers an alert rule. The rule fires on crossings caused by values stored after its registration
+     *
+     * @param alertRuleRequestDto The rule
+     * @return The registered rule, with its id
+     * @throws CryptoNotFoundException Crypto of the rule is not supported, or not owned by this instance
+     * @throws CryptoValidationException The rule is missing a field, or has a non positive window
+     */
+    @Override
+    public AlertRuleDto register(AlertRuleRequestDto alertRuleRequestDto) throws CryptoNotFoundException, CryptoValidationException {
+        String crypto = alertRuleRequestDto.getCrypto();
+        if (Arrays.stream(CryptoEnum.values()).noneMatch(e -> e.getCode().equals(crypto))) {
+            throw new CryptoNotFoundException("Crypto " + crypto + " not supported.");
+        }
+        if (alertRuleRequestDto.getWindowMillis() == null || alertRuleRequestDto.getWindowMillis() <= 0) {
+            throw new CryptoValidationException("Error registering alert rule. Window must be a positive number of millis");
+        }
+        if (alertRuleRequestDto.getThreshold() == null || alertRuleRequestDto.getDirection() == null) {
+            throw new CryptoValidationException("Error registering alert rule. Threshold and direction are required");
+        }
+        CryptoEnum cryptoEnum = CryptoEnum.valueOf(crypto);
+        if (!shardTopology.isOwned(cryptoEnum)) {
+            throw new CryptoNotFoundException("Crypto " + crypto + " not supported by this shard. It is owned by " +
+                    shardTopology.getNode(shardTopology.ownerOf(cryptoEnum)));
+        }
+        AlertRule rule = new AlertRule(lastRuleId.incrementAndGet(), cryptoEnum, alertRuleRequestDto.getWindowMillis(),
+                alertRuleRequestDto.getThreshold(), alertRuleRequestDto.getDirection());
+
+        Map<Long, WindowRules> cryptoWindows = windows.computeIfAbsent(cryptoEnum, key -> new ConcurrentHashMap<>());
+        while (true) {
+            WindowRules windowRules = cryptoWindows.computeIfAbsent(rule.getWindowMillis(),
+                    windowMillis -> new WindowRules(cryptoEnum, windowMillis));
+            synchronized (windowRules) {
+                // A window is detached once its last rule is removed, rules are then added to a new one
+                if (!windowRules.detached) {
+                    windowRules.add(rule);
+                    break;
+                }
+            }
+        }
+        rules.put(rule.getId(), rule);
+        logger.debug("Registered alert rule {}", rule);
+        return toDto(rule);
+    }
+
+    /**
+     * @return The registered alert rules, in registration order
+     */
+    @Override
+    public List<AlertRuleDto> getRules() {
+        return rules.values().stream().map(this::toDto).collect(Collectors.toList());
+    }
+
+    /**
+     * Removes an alert rule
+     *
+     * @param id The id of the rule
+     * @throws CryptoNotFoundException No rule with the id is registered
+     */
+    @Override
+    public void remove(long id) throws CryptoNotFoundException {
+        AlertRule rule = rules.remove(id);
+        if (rule == null) {
+            throw new CryptoNotFoundException("Alert rule " + id + " not found.");
+        }
+        Map<Long, WindowRules> cryptoWindows = windows.get(rule.getCryptoEnum());
+        WindowRules windowRules = cryptoWindows.get(rule.getWindowMillis());
+        synchronized (windowRules) {
+            windowRules.remove(rule);
+            if (windowRules.isEmpty()) {
+                windowRules.detached = true;
+                cryptoWindows.remove(rule.getWindowMillis(), windowRules);
+            }
+        }
+        logger.debug("Removed alert rule {}", rule);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        deliveryExecutor.shutdownNow();
+    }
+
+    private void onValuesAdded(CryptoEnum cryptoEnum, Collection<CryptoValue> addedValues) {
+        Map<Long, WindowRules> cryptoWindows = windows.get(cryptoEnum);
+        if (cryptoWindows == null || cryptoWindows.isEmpty() || addedValues.isEmpty()) {
+            return;
+        }
+        List<CryptoValue> sortedValues = new ArrayList<>(addedValues);
+        sortedValues.sort(Comparator.comparingLong(CryptoValue::getTimestamp));
+        for (WindowRules windowRules : cryptoWindows.values()) {
+            synchronized (windowRules) {
+                if (!windowRules.detached) {
+                    windowRules.slide(sortedValues);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the windows of a crypto from its replaced values. Rules are evaluated on the new range from then on,
+     * without firing, as replacing the values is no crossing
+     */
+    private void onValuesReplaced(CryptoEnum cryptoEnum) {
+        Map<Long, WindowRules> cryptoWindows = windows.get(cryptoEnum);
+        if (cryptoWindows == null) {
+            return;
+        }
+        for (WindowRules windowRules : cryptoWindows.values()) {
+            synchronized (windowRules) {
+                if (!windowRules.detached) {
+                    windowRules.rebuild();
+                    windowRules.normalizedRange = windowRules.window.normalizedPriceRange().orElse(null);
+                }
+            }
+        }
+    }
+
+    private void fire(AlertRule rule, BigDecimal normalizedRange, long timestamp) {
+        AlertFiring firing = new AlertFiring(rule, normalizedRange, timestamp);
+        fired.increment();
+        try {
+            deliveryExecutor.execute(() -> {
+                try {
+                    alertSink.deliver(firing);
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Error delivering firing of alert rule {}. {}", firing.getRuleId(), e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            dropped.increment();
+            logger.debug("Delivery queue full, dropped firing of alert rule {}", firing.getRuleId());
+        }
+    }
+
+    private AlertRuleDto toDto(AlertRule rule) {
+        return new AlertRuleDto(rule.getId(), rule.getCryptoEnum().getCode(), rule.getWindowMillis(),
+                rule.getThreshold(), rule.getDirection());
+    }
+
+    private static AlertSink configuredAlertSink(ObjectMapper objectMapper) {
+        String webhookUrl = System.getProperty("alerts.webhook.url");
+        if (webhookUrl == null || webhookUrl.isBlank()) {
+            return new LogAlertSink();
+        }
+        return new WebhookAlertSink(webhookUrl.trim(), objectMapper,
+                Duration.ofMillis(Long.getLong("alerts.webhook.timeout.millis", 2000)));
+    }
+
+    /**
+     * The rules of a crypto sharing a window, indexed by threshold. Guarded by its own monitor
+     */
+    private class WindowRules {
+
+        private final CryptoEnum cryptoEnum;
+
+        private final TrailingRangeWindow window;
+
+        private final TreeMap<BigDecimal, List<AlertRule>> rulesByThreshold = new TreeMap<>();
+
+        private BigDecimal normalizedRange;
+
+        private boolean built;
+
+        private boolean detached;
+
+        private WindowRules(CryptoEnum cryptoEnum, long windowMillis) {
+            this.cryptoEnum = cryptoEnum;
+            this.window = new TrailingRangeWindow(windowMillis);
+        }
+
+        private void add(AlertRule rule) {
+            if (!built) {
+                rebuild();
+                normalizedRange = window.normalizedPriceRange().orElse(null);
+            }
+            rulesByThreshold.computeIfAbsent(rule.getThreshold(), threshold -> new ArrayList<>(1)).add(rule);
+        }
+
+        private void remove(AlertRule rule) {
+            List<AlertRule> thresholdRules = rulesByThreshold.get(rule.getThreshold());
+            if (thresholdRules != null && thresholdRules.remove(rule) && thresholdRules.isEmpty()) {
+                rulesByThreshold.remove(rule.getThreshold());
+            }
+        }
+
+        private boolean isEmpty() {
+            return rulesByThreshold.isEmpty();
+        }
+
+        /**
+         * Slides the window over added values, firing the rules each value makes the normalized range cross
+         *
+         * @param sortedValues The added values in ascending timestamp order
+         */
+        private void slide(List<CryptoValue> sortedValues) {
+            for (CryptoValue value : sortedValues) {
+                if (!window.append(value)) {
+                    // Stored values already include the added ones, so one rebuild accounts for the rest of them
+                    rebuild();
+                    evaluate(window.getNewestTimestamp());
+                    return;
+                }
+                evaluate(value.getTimestamp());
+            }
+        }
+
+        /**
+         * Rebuilds the window from the stored values, leaving the normalized range rules were last evaluated on as is
+         */
+        private void rebuild() {
+            window.clear();
+            Optional<Set<CryptoValue>> storedValues = cryptoValuesManager.getValues(cryptoEnum);
+            if (storedValues.isPresent() && !storedValues.get().isEmpty()) {
+                Set<CryptoValue> values = storedValues.get();
+                if (values instanceof CryptoValueSeries) {
+                    CryptoValueSeries series = (CryptoValueSeries) values;
+                    series.tailFrom(series.last().getTimestamp() - window.getWindowMillis() + 1).forEach(window::append);
+                } else {
+                    values.stream().sorted(Comparator.comparingLong(CryptoValue::getTimestamp)).forEach(window::append);
+                }
+            }
+            built = true;
+        }
+
+        private void evaluate(long timestamp) {
+            BigDecimal previousRange = normalizedRange;
+            normalizedRange = window.normalizedPriceRange().orElse(null);
+            if (previousRange == null || normalizedRange == null) {
+                return;
+            }
+            int change = normalizedRange.compareTo(previousRange);
+            if (change > 0) {
+                fireCrossed(rulesByThreshold.subMap(previousRange, false, normalizedRange, true),
+                        AlertDirection.ABOVE, timestamp);
+            } else if (change < 0) {
+                fireCrossed(rulesByThreshold.subMap(normalizedRange, false, previousRange, true),
+                        AlertDirection.BELOW, timestamp);
+            }
+        }
+
+        private void fireCrossed(SortedMap<BigDecimal, List<AlertRule>> crossedRules, AlertDirection direction,
+                                 long timestamp) {
+            for (List<AlertRule> thresholdRules : crossedRules.values()) {
+                for (AlertRule rule : thresholdRules) {
+                    if (rule.getDirection() == direction) {
+                        fire(rule, normalizedRange, timestamp);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.service.AlertSink;
+import com.dimitris.cryptoanalyze.service.model.AlertFiring;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Alert sink logging every firing
+ */
+public class LogAlertSink implements AlertSink {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogAlertSink.class);
+
+    @Override
+    public void deliver(AlertFiring firing) {
+        logger.info("Alert rule {} fired: normalized range of {} over {} ms crossed {} {} with {} at {}",
+                firing.getRuleId(), firing.getCrypto(), firing.getWindowMillis(), firing.getDirection(),
+                firing.getThreshold(), firing.getNormalizedRange(), firing.getTimestamp());
+    }
+}
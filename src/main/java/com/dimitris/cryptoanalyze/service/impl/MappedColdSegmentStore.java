@@ -0,0 +1,476 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.service.ColdSegmentStore;
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import com.dimitris.cryptoanalyze.service.model.QuantileSketch;
+import com.dimitris.cryptoanalyze.service.model.ValueChunk;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Service sealing chunks of crypto values into immutable segment files, read through memory mappings.
+ * <p>
+ * A segment file holds the timestamps of its values in a fixed width column, followed by the offsets of their prices
+ * and the prices, so that a value is read by position and timestamps are searched without decoding prices. Segments
+ * are mapped on demand and their mappings are kept in least recently used order within a budget of resident bytes,
+ * beyond which the least recently used mappings are released. A segment file is deleted once no series holds the
+ * segment anymore, eg after its values were merged into a new chunk and every version holding it was pruned.
+ * <p>
+ * Segments are not fsync'ed and files left by a previous run are deleted on startup, since sealed values are stored
+ * values already loaded from files or recovered from the write-ahead log.
+ * <p>
+ * It is configured by the following system properties:
+ * <ul>
+ *     <li>&quot;storage.hot.window.millis&quot;: milliseconds back from the newest value of a crypto within which its
+ *     values stay on heap. If 0, the store is disabled and every value stays on heap. Default is 0</li>
+ *     <li>&quot;storage.cold.dir&quot;: directory holding the segment files. Default is a new temporary directory</li>
+ *     <li>&quot;storage.cold.resident.bytes&quot;: budget of bytes of segments kept mapped. Default is 256MB</li>
+ * </ul>
+ * Reads are published as &quot;crypto.storage.reads&quot;, tagged with the tier serving them, and accesses to segments
+ * as &quot;crypto.storage.cold.accesses&quot;, tagged with whether the segment was mapped already. The share of reads
+ * served by the hot tier, and of accesses to segments served by a mapped one, are published as
+ * &quot;crypto.storage.hit.ratio&quot; tagged with the tier
+ */
+@Service
+public class MappedColdSegmentStore implements ColdSegmentStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedColdSegmentStore.class);
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private static final int SEGMENT_MAGIC = 0x43534731;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    /**
+     * Every segment starts with the magic number and the number of values
+     */
+    private static final int HEADER_BYTES = 8;
+
+    private final Path configuredDirectory;
+
+    private final long hotWindowMillis;
+
+    private final long residentBudgetBytes;
+
+    private final AtomicLong lastSegmentId = new AtomicLong();
+
+    private final AtomicInteger segments = new AtomicInteger();
+
+    /**
+     * Mappings of segments by id, in least recently used order. Guarded by itself
+     */
+    private final LinkedHashMap<Long, MappedByteBuffer> mappings = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long residentBytes;
+
+    private Path directory;
+
+    private final Counter hotReads;
+
+    private final Counter coldReads;
+
+    private final Counter mappedAccesses;
+
+    private final Counter unmappedAccesses;
+
+    /**
+     * Creates a store configured by system properties
+     *
+     * @param meterRegistry A registry for the meters of the store
+     */
+    @Autowired
+    public MappedColdSegmentStore(MeterRegistry meterRegistry) {
+        this(System.getProperty("storage.cold.dir") != null && !System.getProperty("storage.cold.dir").isBlank() ?
+                        Paths.get(System.getProperty("storage.cold.dir")) : null,
+                Long.getLong("storage.hot.window.millis", 0L),
+                Long.getLong("storage.cold.resident.bytes", 256L * 1024 * 1024),
+                meterRegistry);
+    }
+
+    /**
+     * @param directory           Directory holding the segment files, null for a new temporary directory
+     * @param hotWindowMillis     Milliseconds back from the newest value of a crypto within which its values stay on
+     *                            heap, 0 to disable the store
+     * @param residentBudgetBytes Budget of bytes of segments kept mapped
+     * @param meterRegistry       A registry for the meters of the store
+     */
+    public MappedColdSegmentStore(Path directory, long hotWindowMillis, long residentBudgetBytes,
+                                  MeterRegistry meterRegistry) {
+        this.configuredDirectory = directory;
+        this.hotWindowMillis = hotWindowMillis;
+        this.residentBudgetBytes = residentBudgetBytes;
+        this.hotReads = Counter.builder("crypto.storage.reads").tag("tier", "hot").register(meterRegistry);
+        this.coldReads = Counter.builder("crypto.storage.reads").tag("tier", "cold").register(meterRegistry);
+        this.mappedAccesses = Counter.builder("crypto.storage.cold.accesses").tag("result", "mapped")
+                .register(meterRegistry);
+        this.unmappedAccesses = Counter.builder("crypto.storage.cold.accesses").tag("result", "unmapped")
+                .register(meterRegistry);
+        Gauge.builder("crypto.storage.hit.ratio", () -> ratio(hotReads, coldReads)).tag("tier", "hot")
+                .register(meterRegistry);
+        Gauge.builder("crypto.storage.hit.ratio", () -> ratio(mappedAccesses, unmappedAccesses)).tag("tier", "cold")
+                .register(meterRegistry);
+        Gauge.builder("crypto.storage.cold.segments", segments, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("crypto.storage.cold.resident.bytes", this, MappedColdSegmentStore::getResidentBytes)
+                .register(meterRegistry);
+    }
+
+    private static double ratio(Counter hits, Counter misses) {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return hotWindowMillis > 0;
+    }
+
+    @Override
+    public long getHotWindowMillis() {
+        return isEnabled() ? hotWindowMillis : Long.MAX_VALUE;
+    }
+
+    /**
+     * Seals a chunk into a new segment file. The chunk is kept on heap if writing the file fails
+     *
+     * @param chunk The chunk
+     * @return The sealed chunk, or the same chunk if it cannot be sealed
+     */
+    @Override
+    public ValueChunk seal(ValueChunk chunk) {
+        if (!isEnabled()) {
+            return chunk;
+        }
+        CryptoValue[] values = chunk.values();
+        byte[][] unscaledValues = new byte[values.length][];
+        int length = HEADER_BYTES + values.length * (Long.BYTES + Integer.BYTES);
+        for (int i = 0; i < values.length; i++) {
+            unscaledValues[i] = values[i].getPrice().unscaledValue().toByteArray();
+            if (unscaledValues[i].length > 0xff) {
+                return chunk;
+            }
+            length += Integer.BYTES + 1 + unscaledValues[i].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(SEGMENT_MAGIC);
+        buffer.putInt(values.length);
+        for (CryptoValue value : values) {
+            buffer.putLong(value.getTimestamp());
+        }
+        int priceOffset = HEADER_BYTES + values.length * (Long.BYTES + Integer.BYTES);
+        for (byte[] unscaledValue : unscaledValues) {
+            buffer.putInt(priceOffset);
+            priceOffset += Integer.BYTES + 1 + unscaledValue.length;
+        }
+        for (int i = 0; i < values.length; i++) {
+            buffer.putInt(values[i].getPrice().scale());
+            buffer.put((byte) unscaledValues[i].length);
+            buffer.put(unscaledValues[i]);
+        }
+        buffer.flip();
+
+        long id = lastSegmentId.incrementAndGet();
+        try {
+            Path file = directory().resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            MappedSegment segment = new MappedSegment(id, file, length, values.length,
+                    values[0].getTimestamp(), values[values.length - 1].getTimestamp());
+            segments.incrementAndGet();
+            CLEANER.register(segment, new SegmentRelease(this, id, file));
+            return segment;
+        } catch (IOException e) {
+            logger.warn("Error sealing segment {}, its values stay on heap. {}", id, e.getMessage());
+            return chunk;
+        }
+    }
+
+    @Override
+    public void recordRead(boolean hot) {
+        (hot ? hotReads : coldReads).increment();
+    }
+
+    /**
+     * @return The bytes of the segments currently mapped
+     */
+    public long getResidentBytes() {
+        synchronized (mappings) {
+            return residentBytes;
+        }
+    }
+
+    /**
+     * @return The number of segments held by series
+     */
+    public int getSegmentCount() {
+        return segments.get();
+    }
+
+    /**
+     * Releases every mapping and deletes the segment files
+     */
+    @PreDestroy
+    public void shutdown() {
+        synchronized (mappings) {
+            mappings.clear();
+            residentBytes = 0;
+        }
+        Path segmentDirectory;
+        synchronized (this) {
+            segmentDirectory = directory;
+        }
+        if (segmentDirectory != null) {
+            deleteSegmentFiles(segmentDirectory);
+        }
+    }
+
+    /**
+     * @return The directory holding the segment files, created on the first call
+     * @throws IOException Error creating the directory
+     */
+    private synchronized Path directory() throws IOException {
+        if (directory == null) {
+            if (configuredDirectory == null) {
+                directory = Files.createTempDirectory("crypto-segments-");
+            } else {
+                Files.createDirectories(configuredDirectory);
+                deleteSegmentFiles(configuredDirectory);
+                directory = configuredDirectory;
+            }
+            logger.info("Sealing values older than {} ms into segments at {}", hotWindowMillis, directory);
+        }
+        return directory;
+    }
+
+    private static void deleteSegmentFiles(Path segmentDirectory) {
+        try (Stream<Path> files = Files.list(segmentDirectory)) {
+            files.filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX) &&
+                            file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .forEach(file -> {
+                        try {
+                            Files.deleteIfExists(file);
+                        } catch (IOException e) {
+                            logger.warn("Error deleting segment {}. {}", file, e.getMessage());
+                        }
+                    });
+        } catch (IOException e) {
+            logger.warn("Error listing segments at {}. {}", segmentDirectory, e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the mapping of a segment, mapping it if it is not mapped and releasing the least recently used
+     * mappings beyond the budget
+     *
+     * @param segment The segment
+     * @return The mapping, read with absolute gets only, since it is shared by concurrent readers
+     */
+    private MappedByteBuffer mapping(MappedSegment segment) {
+        synchronized (mappings) {
+            MappedByteBuffer mapping = mappings.get(segment.id);
+            if (mapping != null) {
+                mappedAccesses.increment();
+                return mapping;
+            }
+        }
+        unmappedAccesses.increment();
+        MappedByteBuffer mapping;
+        try (FileChannel channel = FileChannel.open(segment.file, StandardOpenOption.READ)) {
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error mapping segment " + segment.file, e);
+        }
+        synchronized (mappings) {
+            if (mappings.put(segment.id, mapping) == null) {
+                residentBytes += segment.length;
+            }
+            // The released mappings are unmapped once collected
+            Iterator<Map.Entry<Long, MappedByteBuffer>> leastRecentlyUsed = mappings.entrySet().iterator();
+            while (residentBytes > residentBudgetBytes && mappings.size() > 1) {
+                Map.Entry<Long, MappedByteBuffer> released = leastRecentlyUsed.next();
+                residentBytes -= released.getValue().capacity();
+                leastRecentlyUsed.remove();
+            }
+        }
+        return mapping;
+    }
+
+    private void release(long id) {
+        synchronized (mappings) {
+            MappedByteBuffer mapping = mappings.remove(id);
+            if (mapping != null) {
+                residentBytes -= mapping.capacity();
+            }
+        }
+        segments.decrementAndGet();
+    }
+
+    /**
+     * Chunk of values held in a segment file
+     */
+    private class MappedSegment implements ValueChunk {
+
+        private final long id;
+
+        private final Path file;
+
+        private final int length;
+
+        private final int size;
+
+        private final long firstTimestamp;
+
+        private final long lastTimestamp;
+
+        /**
+         * Computed on first use, decoding the values once, racing threads computing the same sketch
+         */
+        private volatile QuantileSketch sketch;
+
+        private MappedSegment(long id, Path file, int length, int size, long firstTimestamp, long lastTimestamp) {
+            this.id = id;
+            this.file = file;
+            this.length = length;
+            this.size = size;
+            this.firstTimestamp = firstTimestamp;
+            this.lastTimestamp = lastTimestamp;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public long timestampAt(int index) {
+            // The bounds of the segment are kept on heap, so that finding the segments of a time range maps none
+            if (index == 0) {
+                return firstTimestamp;
+            }
+            if (index == size - 1) {
+                return lastTimestamp;
+            }
+            return mapping(this).getLong(HEADER_BYTES + index * Long.BYTES);
+        }
+
+        @Override
+        public CryptoValue get(int index) {
+            return read(mapping(this), index);
+        }
+
+        @Override
+        public CryptoValue[] values() {
+            MappedByteBuffer mapping = mapping(this);
+            CryptoValue[] values = new CryptoValue[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = read(mapping, i);
+            }
+            return values;
+        }
+
+        @Override
+        public QuantileSketch sketch(double relativeAccuracy) {
+            QuantileSketch cached = sketch;
+            if (cached == null || cached.getRelativeAccuracy() != relativeAccuracy) {
+                cached = QuantileSketch.of(values(), 0, size, relativeAccuracy);
+                sketch = cached;
+            }
+            return cached;
+        }
+
+        @Override
+        public boolean isOnHeap() {
+            return false;
+        }
+
+        @Override
+        public long heapBytes() {
+            // The segment itself, its path and its cleaning action, and its sketch, its values are held off heap
+            QuantileSketch cached = sketch;
+            return 256 + (cached == null ? 0 : cached.heapBytes());
+        }
+
+        private CryptoValue read(ByteBuffer mapping, int index) {
+            long timestamp = mapping.getLong(HEADER_BYTES + index * Long.BYTES);
+            int offset = mapping.getInt(HEADER_BYTES + size * Long.BYTES + index * Integer.BYTES);
+            int scale = mapping.getInt(offset);
+            int unscaledLength = mapping.get(offset + Integer.BYTES) & 0xff;
+            int unscaledOffset = offset + Integer.BYTES + 1;
+            BigDecimal price;
+            if (unscaledLength <= Long.BYTES) {
+                long unscaled = unscaledLength == 0 ? 0 : mapping.get(unscaledOffset);
+                for (int j = 1; j < unscaledLength; j++) {
+                    unscaled = (unscaled << 8) | (mapping.get(unscaledOffset + j) & 0xff);
+                }
+                price = BigDecimal.valueOf(unscaled, scale);
+            } else {
+                byte[] unscaled = new byte[unscaledLength];
+                for (int j = 0; j < unscaledLength; j++) {
+                    unscaled[j] = mapping.get(unscaledOffset + j);
+                }
+                price = new BigDecimal(new BigInteger(unscaled), scale);
+            }
+            return new CryptoValue(timestamp, price);
+        }
+    }
+
+    /**
+     * Releases the mapping and deletes the file of a segment no longer held by any series. It must not reference the
+     * segment, which would keep it reachable
+     */
+    private static class SegmentRelease implements Runnable {
+
+        private final MappedColdSegmentStore store;
+
+        private final long id;
+
+        private final Path file;
+
+        private SegmentRelease(MappedColdSegmentStore store, long id, Path file) {
+            this.store = store;
+            this.file = file;
+            this.id = id;
+        }
+
+        @Override
+        public void run() {
+            store.release(id);
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Error deleting segment {}. {}", file, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricDto;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsDto;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsListDto;
+import com.dimitris.cryptoanalyze.controller.dto.TimePeriodRequestDto;
+import com.dimitris.cryptoanalyze.service.CryptoAnalyzer;
+import com.dimitris.cryptoanalyze.service.ShardClient;
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Service routing calculations to the shards of a sharded deployment. Rankings are fanned out to every shard in
+ * parallel, each shard returning its partial top-K cryptos, and the partial results are merged. Calculations on a
+ * single crypto go directly to the shard owning it. Shards are queried through {@link ShardClient}, except for this
+ * instance, whose calculations are made locally.
+ * <p>
+ * If the application is not sharded, calculations are simply delegated to the local analyzer. Requests reach it
+ * through {@link AdmissionControlCryptoAnalyzer}
+ */
+@Service
+public class ScatterGatherCryptoAnalyzer implements CryptoAnalyzer {
+
+    /**
+     * Orders cryptos by normalized range in descending order, ties broken by crypto code so that merged results do
+     * not depend on shard response order. Shards truncate their partial lists in the same order
+     */
+    public static final Comparator<CryptoMetricDto> NORMALIZED_RANGE_DESC = Comparator
+            .comparing(CryptoMetricDto::getValue, Comparator.reverseOrder())
+            .thenComparing(CryptoMetricDto::getCrypto);
+
+    private final CryptoAnalyzer localCryptoAnalyzer;
+
+    private final ShardTopology shardTopology;
+
+    private final ShardClient shardClient;
+
+    /**
+     * @param localCryptoAnalyzer An analyzer making calculations on the data of this instance
+     * @param shardTopology       The topology of the deployment
+     * @param shardClient         A client for querying the other shards
+     */
+    @Autowired
+    public ScatterGatherCryptoAnalyzer(@Qualifier("cryptoAnalyzerImpl") CryptoAnalyzer localCryptoAnalyzer,
+                                       ShardTopology shardTopology, ShardClient shardClient) {
+        this.localCryptoAnalyzer = localCryptoAnalyzer;
+        this.shardTopology = shardTopology;
+        this.shardClient = shardClient;
+    }
+
+    /**
+     * Calculates cryptos list sorted by normalized range in descending order, by merging the sorted lists of every
+     * shard
+     *
+     * @param timePeriodRequestDto Optional time period calculation applies to. If omitted, calculation has no time
+     *                             restriction. It contains two optional fields representing start and end time points.
+     *                             If any of them is omitted, calculation will be restricted only to the
+     *                             other point in time. If both are omitted, calculation has no time restriction.
+     * @return A list of mappings between crypto and its normalized range value (no mappings exist for cryptos for
+     * which no values are found)
+     * @throws CryptoInternalException Internal error during crypto data loading, manipulations or calculations, or
+     *                                 during querying a shard
+     */
+    @Override
+    public CryptoMetricsListDto getCryptosSortedByNormalizedRangeDesc(Optional<TimePeriodRequestDto> timePeriodRequestDto)
+            throws CryptoInternalException {
+        if (!shardTopology.isSharded()) {
+            return localCryptoAnalyzer.getCryptosSortedByNormalizedRangeDesc(timePeriodRequestDto);
+        }
+        return new CryptoMetricsListDto(gatherTopK(timePeriodRequestDto, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Calculates metrics for specified crypto on the shard owning it, or for the composite index of that name on this
+     * instance
+     *
+     * @param timePeriodRequestDto Optional time period calculation applies to. If omitted, calculation has no time
+     *                             restriction. It contains two optional fields representing start and end time points.
+     *                             If any of them is omitted, calculation will be restricted only to the
+     *                             other point in time. If both are omitted, calculation has no time restriction.
+     * @param crypto               The crypto
+     * @return A mapping of each metric to corresponding value (empty map if no values found for crypto)
+     * @throws CryptoInternalException Internal error during crypto data loading, manipulations or calculations, or
+     *                                 during querying the owning shard
+     * @throws CryptoNotFoundException Requested crypto is not supported and no index of that name is defined
+     */
+    @Override
+    public CryptoMetricsDto getMetricsForCrypto(Optional<TimePeriodRequestDto> timePeriodRequestDto, String crypto)
+            throws CryptoInternalException, CryptoNotFoundException {
+        if (!shardTopology.isSharded()) {
+            return localCryptoAnalyzer.getMetricsForCrypto(timePeriodRequestDto, crypto);
+        }
+        if (Arrays.stream(CryptoEnum.values()).noneMatch(e -> e.getCode().equals(crypto))) {
+            // Composite indices are defined per instance, over cryptos it owns
+            return localCryptoAnalyzer.getMetricsForCrypto(timePeriodRequestDto, crypto);
+        }
+        int owner = shardTopology.ownerOf(CryptoEnum.valueOf(crypto));
+        if (owner == shardTopology.getSelfIndex()) {
+            return localCryptoAnalyzer.getMetricsForCrypto(timePeriodRequestDto, crypto);
+        }
+        return join(shardClient.getMetricsForCrypto(owner, timePeriodRequestDto, crypto), owner);
+    }
+
+    /**
+     * Finds crypto with highest normalized range, by merging the top crypto of every shard
+     *
+     * @param timePeriodRequestDto Optional time period calculation applies to. If omitted, calculation has no time
+     *                             restriction. It contains two optional fields representing start and end time points.
+     *                             If any of them is omitted, calculation will be restricted only to the
+     *                             other point in time. If both are omitted, calculation has no time restriction.
+     * @return A mapping of the crypto to its normalized range value (if no crypto data found, mapping contains null as values)
+     * @throws CryptoInternalException Internal error during crypto data loading, manipulations or calculations, or
+     *                                 during querying a shard
+     */
+    @Override
+    public CryptoMetricDto getCryptoWithHighestNormalizedRange(Optional<TimePeriodRequestDto> timePeriodRequestDto)
+            throws CryptoInternalException {
+        if (!shardTopology.isSharded()) {
+            return localCryptoAnalyzer.getCryptoWithHighestNormalizedRange(timePeriodRequestDto);
+        }
+        List<CryptoMetricDto> top = gatherTopK(timePeriodRequestDto, 1);
+        return top.isEmpty() ? new CryptoMetricDto(null, null) : top.get(0);
+    }
+
+    /**
+     * Queries every shard in parallel for its top-K cryptos and merges the partial lists
+     *
+     * @param timePeriodRequestDto Optional time period calculation applies to
+     * @param k                    The number of cryptos returned
+     * @return The top-K cryptos of the deployment, sorted by normalized range in descending order
+     * @throws CryptoInternalException Internal error during calculations or during querying a shard
+     */
+    private List<CryptoMetricDto> gatherTopK(Optional<TimePeriodRequestDto> timePeriodRequestDto, int k)
+            throws CryptoInternalException {
+        int self = shardTopology.getSelfIndex();
+        Map<Integer, CompletableFuture<CryptoMetricsListDto>> remoteResults = new LinkedHashMap<>();
+        for (int shard = 0; shard < shardTopology.getShardCount(); shard++) {
+            if (shard != self) {
+                remoteResults.put(shard, shardClient.getCryptosSortedByNormalizedRangeDesc(shard, timePeriodRequestDto, k));
+            }
+        }
+
+        List<List<CryptoMetricDto>> partials = new ArrayList<>();
+        partials.add(localCryptoAnalyzer.getCryptosSortedByNormalizedRangeDesc(timePeriodRequestDto).getCryptos());
+        for (Map.Entry<Integer, CompletableFuture<CryptoMetricsListDto>> remoteResult : remoteResults.entrySet()) {
+            try {
+                partials.add(join(remoteResult.getValue(), remoteResult.getKey()).getCryptos());
+            } catch (CryptoNotFoundException e) {
+                throw new CryptoInternalException("Error querying shard " + remoteResult.getKey() + ". " + e.getMessage());
+            }
+        }
+        return mergeTopK(partials, k);
+    }
+
+    /**
+     * Merges lists sorted by normalized range in descending order into the first K entries of their sorted union.
+     * Shards may order cryptos with equal ranges arbitrarily, so each list is first re-sorted with ties broken by
+     * crypto code
+     *
+     * @param partials The sorted lists
+     * @param k        The maximum number of entries returned
+     * @return The merged list
+     */
+    static List<CryptoMetricDto> mergeTopK(List<List<CryptoMetricDto>> partials, int k) {
+        PriorityQueue<PeekingIterator> heads = new PriorityQueue<>(
+                Comparator.comparing(PeekingIterator::peek, NORMALIZED_RANGE_DESC));
+        for (List<CryptoMetricDto> partial : partials) {
+            if (!partial.isEmpty()) {
+                List<CryptoMetricDto> sortedPartial = new ArrayList<>(partial);
+                sortedPartial.sort(NORMALIZED_RANGE_DESC);
+                heads.add(new PeekingIterator(sortedPartial.iterator()));
+            }
+        }
+        List<CryptoMetricDto> merged = new ArrayList<>();
+        while (merged.size() < k && !heads.isEmpty()) {
+            PeekingIterator head = heads.poll();
+            merged.add(head.next());
+            if (head.peek() != null) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    private static <T> T join(CompletableFuture<T> result, int shard) throws CryptoInternalException, CryptoNotFoundException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CryptoInternalException("Error querying shard " + shard + ". Interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CryptoInternalException) {
+                throw (CryptoInternalException) e.getCause();
+            }
+            if (e.getCause() instanceof CryptoNotFoundException) {
+                throw (CryptoNotFoundException) e.getCause();
+            }
+            throw new CryptoInternalException("Error querying shard " + shard + ". " + e.getCause().getMessage());
+        }
+    }
+
+    private static class PeekingIterator {
+
+        private final Iterator<CryptoMetricDto> iterator;
+
+        private CryptoMetricDto next;
+
+        private PeekingIterator(Iterator<CryptoMetricDto> iterator) {
+            this.iterator = iterator;
+            this.next = iterator.next();
+        }
+
+        private CryptoMetricDto peek() {
+            return next;
+        }
+
+        private CryptoMetricDto next() {
+            CryptoMetricDto current = next;
+            next = iterator.hasNext() ? iterator.next() : null;
+            return current;
+        }
+    }
+}
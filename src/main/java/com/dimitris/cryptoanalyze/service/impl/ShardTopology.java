@@ -0,0 +1,107 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Topology of a sharded deployment, in which each application instance owns a hash-partitioned subset of cryptos.
+ * It is configured by the following system properties:
+ * <ul>
+ *     <li>&quot;shard.nodes&quot;: comma separated base urls of every instance, eg
+ *     http://host1:8080,http://host2:8080. If omitted, the application runs as a single instance owning every
+ *     crypto</li>
+ *     <li>&quot;shard.index&quot;: index of this instance in &quot;shard.nodes&quot;</li>
+ * </ul>
+ * Every instance must be given the same list of nodes, so that all of them agree on the owner of each crypto
+ */
+@Component
+public class ShardTopology {
+
+    private final List<String> nodes;
+
+    private final int selfIndex;
+
+    /**
+     * Creates the topology configured by system properties
+     */
+    @Autowired
+    public ShardTopology() {
+        this(parseNodes(System.getProperty("shard.nodes")),
+                Integer.parseInt(System.getProperty("shard.index", "0").trim()));
+    }
+
+    /**
+     * @param nodes     Base urls of every instance, a single instance if empty
+     * @param selfIndex Index of this instance in nodes
+     */
+    public ShardTopology(List<String> nodes, int selfIndex) {
+        if (!nodes.isEmpty() && (selfIndex < 0 || selfIndex >= nodes.size())) {
+            throw new IllegalArgumentException("Shard index " + selfIndex + " out of range of " + nodes.size() + " nodes");
+        }
+        this.nodes = List.copyOf(nodes);
+        this.selfIndex = nodes.isEmpty() ? 0 : selfIndex;
+    }
+
+    /**
+     * @return True if the application runs as one of several shards
+     */
+    public boolean isSharded() {
+        return nodes.size() > 1;
+    }
+
+    /**
+     * @return The number of shards, 1 if not sharded
+     */
+    public int getShardCount() {
+        return Math.max(nodes.size(), 1);
+    }
+
+    /**
+     * @return The index of this instance
+     */
+    public int getSelfIndex() {
+        return selfIndex;
+    }
+
+    /**
+     * @param shard The index of a shard
+     * @return The base url of the shard
+     */
+    public String getNode(int shard) {
+        return nodes.get(shard);
+    }
+
+    /**
+     * Returns the shard owning a crypto. Ownership depends only on the crypto code and the number of shards
+     *
+     * @param cryptoEnum The crypto
+     * @return The index of the owning shard
+     */
+    public int ownerOf(CryptoEnum cryptoEnum) {
+        return Math.floorMod(cryptoEnum.getCode().hashCode(), getShardCount());
+    }
+
+    /**
+     * @param cryptoEnum The crypto
+     * @return True if this instance owns the crypto
+     */
+    public boolean isOwned(CryptoEnum cryptoEnum) {
+        return ownerOf(cryptoEnum) == selfIndex;
+    }
+
+    private static List<String> parseNodes(String nodes) {
+        if (nodes == null || nodes.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(nodes.split(","))
+                .map(String::trim)
+                .filter(node -> !node.isEmpty())
+                .map(node -> node.endsWith("/") ? node.substring(0, node.length() - 1) : node)
+                .collect(Collectors.toList());
+    }
+}
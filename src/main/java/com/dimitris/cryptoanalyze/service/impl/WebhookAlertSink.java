@@ -0,0 +1,60 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.service.AlertSink;
+import com.dimitris.cryptoanalyze.service.model.AlertFiring;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Alert sink posting every firing as JSON to a webhook url. Responses with a status other than 2xx fail the delivery
+ */
+public class WebhookAlertSink implements AlertSink {
+
+    private final URI url;
+
+    private final ObjectMapper objectMapper;
+
+    private final Duration requestTimeout;
+
+    private final HttpClient httpClient;
+
+    /**
+     * @param url            The webhook url
+     * @param objectMapper   The mapper used for serializing firings
+     * @param requestTimeout Timeout of each request
+     */
+    public WebhookAlertSink(String url, ObjectMapper objectMapper, Duration requestTimeout) {
+        this.url = URI.create(url);
+        this.objectMapper = objectMapper;
+        this.requestTimeout = requestTimeout;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(requestTimeout)
+                .build();
+    }
+
+    @Override
+    public void deliver(AlertFiring firing) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(url)
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(firing)))
+                .build();
+        HttpResponse<Void> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted posting alert firing to " + url, e);
+        }
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("Webhook " + url + " responded with status " + response.statusCode());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.dimitris.cryptoanalyze.service.model;
+
+import com.dimitris.cryptoanalyze.service.enums.AlertDirection;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Represents the firing of an alert rule. It consists of the rule, the normalized price range that crossed its
+ * threshold and the timestamp in Epoch millis of the value that made the range cross it
+ */
+public class AlertFiring {
+
+    private final long ruleId;
+
+    private final String crypto;
+
+    private final long windowMillis;
+
+    private final BigDecimal threshold;
+
+    private final AlertDirection direction;
+
+    private final BigDecimal normalizedRange;
+
+    private final long timestamp;
+
+    public AlertFiring(AlertRule rule, BigDecimal normalizedRange, long timestamp) {
+        this.ruleId = rule.getId();
+        this.crypto = rule.getCryptoEnum().getCode();
+        this.windowMillis = rule.getWindowMillis();
+        this.threshold = rule.getThreshold();
+        this.direction = rule.getDirection();
+        this.normalizedRange = normalizedRange;
+        this.timestamp = timestamp;
+    }
+
+    public long getRuleId() {
+        return ruleId;
+    }
+
+    public String getCrypto() {
+        return crypto;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public BigDecimal getThreshold() {
+        return threshold;
+    }
+
+    public AlertDirection getDirection() {
+        return direction;
+    }
+
+    public BigDecimal getNormalizedRange() {
+        return normalizedRange;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AlertFiring that = (AlertFiring) o;
+        return ruleId == that.ruleId && windowMillis == that.windowMillis && timestamp == that.timestamp &&
+                Objects.equals(crypto, that.crypto) && Objects.equals(threshold, that.threshold) &&
+                direction == that.direction && Objects.equals(normalizedRange, that.normalizedRange);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(ruleId, crypto, windowMillis, threshold, direction, normalizedRange, timestamp);
+    }
+
+    @Override
+    public String toString() {
+        return "AlertFiring{" +
+                "ruleId=" + ruleId +
+                ", crypto='" + crypto + '\'' +
+                ", windowMillis=" + windowMillis +
+                ", threshold=" + threshold +
+                ", direction=" + direction +
+                ", normalizedRange=" + normalizedRange +
+                ", timestamp=" + timestamp +
+                '}';
+    }
+}
@@ -0,0 +1,77 @@
+package com.dimitris.cryptoanalyze.service.model;
+
+import com.dimitris.cryptoanalyze.service.enums.AlertDirection;
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Represents an alert rule, firing when the normalized price range of a crypto over a trailing window crosses a
+ * threshold in a direction
+ */
+public class AlertRule {
+
+    private final long id;
+
+    private final CryptoEnum cryptoEnum;
+
+    private final long windowMillis;
+
+    private final BigDecimal threshold;
+
+    private final AlertDirection direction;
+
+    public AlertRule(long id, CryptoEnum cryptoEnum, long windowMillis, BigDecimal threshold, AlertDirection direction) {
+        this.id = id;
+        this.cryptoEnum = cryptoEnum;
+        this.windowMillis = windowMillis;
+        this.threshold = threshold;
+        this.direction = direction;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public CryptoEnum getCryptoEnum() {
+        return cryptoEnum;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public BigDecimal getThreshold() {
+        return threshold;
+    }
+
+    public AlertDirection getDirection() {
+        return direction;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AlertRule alertRule = (AlertRule) o;
+        return id == alertRule.id && windowMillis == alertRule.windowMillis && cryptoEnum == alertRule.cryptoEnum &&
+                Objects.equals(threshold, alertRule.threshold) && direction == alertRule.direction;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, cryptoEnum, windowMillis, threshold, direction);
+    }
+
+    @Override
+    public String toString() {
+        return "AlertRule{" +
+                "id=" + id +
+                ", cryptoEnum=" + cryptoEnum +
+                ", windowMillis=" + windowMillis +
+                ", threshold=" + threshold +
+                ", direction=" + direction +
+                '}';
+    }
+}
@@ -0,0 +1,88 @@
+package com.dimitris.cryptoanalyze.service.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * As-of join of the series of several cryptos, whose values are not aligned in time. The series are walked in one
+ * pass by a merging cursor, holding one iterator per series and advancing, at each step, every iterator whose next
+ * value has the oldest timestamp among them. A row is emitted at each timestamp at which any crypto has a value,
+ * holding for every crypto its newest value at or before that timestamp, ie its last known price. The
+ * {@link Deadline} attached to the calling thread is checked before each row, throwing
+ * {@link Deadline.ScanAbortedException} once it is exceeded
+ */
+public final class AsOfJoin {
+
+    private AsOfJoin() {
+    }
+
+    /**
+     * Joins the values of several series with timestamps in a range. The first row also holds, for each series, its
+     * newest value before the range, found by binary search
+     *
+     * @param series        The series, in the order of the values of each row
+     * @param fromTimestamp Timestamp in Epoch millis of the start of the range, inclusive
+     * @param toTimestamp   Timestamp in Epoch millis of the end of the range, exclusive, or {@link Long#MAX_VALUE} for
+     *                      a range without end
+     * @param rowConsumer   Consumes the rows in ascending timestamp order
+     * @throws IOException Thrown by the row consumer
+     */
+    public static void join(List<CryptoValueSeries> series, long fromTimestamp, long toTimestamp,
+                            RowConsumer rowConsumer) throws IOException {
+        int count = series.size();
+        CryptoValue[] row = new CryptoValue[count];
+        List<Iterator<CryptoValue>> cursors = new ArrayList<>(count);
+        CryptoValue[] next = new CryptoValue[count];
+        for (int i = 0; i < count; i++) {
+            CryptoValueSeries values = series.get(i);
+            row[i] = fromTimestamp == Long.MIN_VALUE ? null : values.valueAsOf(fromTimestamp - 1).orElse(null);
+            cursors.add(values.tailFrom(fromTimestamp).iterator());
+            next[i] = advance(cursors.get(i), toTimestamp);
+        }
+        Deadline deadline = Deadline.current();
+        while (true) {
+            long timestamp = Long.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                if (next[i] != null && next[i].getTimestamp() < timestamp) {
+                    timestamp = next[i].getTimestamp();
+                }
+            }
+            if (timestamp == Long.MAX_VALUE) {
+                return;
+            }
+            deadline.checkScan();
+            for (int i = 0; i < count; i++) {
+                if (next[i] != null && next[i].getTimestamp() == timestamp) {
+                    row[i] = next[i];
+                    next[i] = advance(cursors.get(i), toTimestamp);
+                }
+            }
+            rowConsumer.accept(timestamp, row);
+        }
+    }
+
+    private static CryptoValue advance(Iterator<CryptoValue> cursor, long toTimestamp) {
+        if (!cursor.hasNext()) {
+            return null;
+        }
+        CryptoValue value = cursor.next();
+        return value.getTimestamp() < toTimestamp ? value : null;
+    }
+
+    /**
+     * Consumer of the rows of a join
+     */
+    @FunctionalInterface
+    public interface RowConsumer {
+
+        /**
+         * @param timestamp Timestamp in Epoch millis of the row
+         * @param values    The newest value of each series at or before the timestamp, null for a series without one.
+         *                  The array is reused for the next row, so it is only valid during the call
+         * @throws IOException Error consuming the row
+         */
+        void accept(long timestamp, CryptoValue[] values) throws IOException;
+    }
+}
@@ -0,0 +1,263 @@
+package com.dimitris.cryptoanalyze.service.model;
+
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Levels of a composite index on a time grid, maintained as values of its cryptos are stored. The level at each point
+ * of the grid is the sum of the weighted prices of the cryptos, the price of a crypto at a point being the price of
+ * its newest value at or before it. The grid starts at the first point at which every crypto has a price, and ends at
+ * the last point at or before the newest value of any crypto.
+ * <p>
+ * Prices are held in one primitive column per crypto, aligned on the grid, and levels are computed a column at a time
+ * over a range of points, in loops simple enough for the JIT to compile to vector instructions. Values stored for a
+ * crypto refill its column from the first point at or after the oldest of them, and the levels from that point on,
+ * which for appended values are the few newest points only. The levels are published as a {@link CryptoValueSeries}
+ * into which only the changed levels are merged. Values older than the first point of the grid, or replacing the
+ * values of a crypto, rebuild the index from the stored values.
+ * <p>
+ * Not thread safe, except for {@link #getLevels()}, which returns the levels last published
+ */
+public final class CompositeIndex {
+
+    /**
+     * Levels are rounded, since they are sums of products of floating point prices and weights
+     */
+    private static final MathContext LEVEL_MATH_CONTEXT = new MathContext(10, RoundingMode.HALF_UP);
+
+    private final String name;
+
+    private final Map<CryptoEnum, BigDecimal> weightsPerCrypto;
+
+    private final CryptoEnum[] cryptos;
+
+    private final double[] weights;
+
+    private final long gridMillis;
+
+    /**
+     * Whether every crypto had values when the index was last built, so that the grid has a first point
+     */
+    private boolean built;
+
+    /**
+     * Timestamp of the first point of the grid
+     */
+    private long firstPoint;
+
+    /**
+     * Timestamp of the newest value of any crypto
+     */
+    private long newestTimestamp;
+
+    /**
+     * Number of points of the grid
+     */
+    private int size;
+
+    /**
+     * Price of each crypto, in the order of the cryptos, at each point of the grid
+     */
+    private double[][] prices;
+
+    /**
+     * Level at each point of the grid
+     */
+    private double[] levels;
+
+    private volatile CryptoValueSeries levelSeries = CryptoValueSeries.empty();
+
+    /**
+     * @param name             The name of the index
+     * @param weightsPerCrypto The weight of each crypto of the index
+     * @param gridMillis       The interval between points of the grid
+     */
+    public CompositeIndex(String name, Map<CryptoEnum, BigDecimal> weightsPerCrypto, long gridMillis) {
+        this.name = name;
+        this.weightsPerCrypto = Collections.unmodifiableMap(new EnumMap<>(weightsPerCrypto));
+        this.cryptos = this.weightsPerCrypto.keySet().toArray(new CryptoEnum[0]);
+        this.weights = new double[cryptos.length];
+        for (int i = 0; i < cryptos.length; i++) {
+            weights[i] = this.weightsPerCrypto.get(cryptos[i]).doubleValue();
+        }
+        this.gridMillis = gridMillis;
+        this.prices = new double[cryptos.length][0];
+        this.levels = new double[0];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<CryptoEnum, BigDecimal> getWeights() {
+        return weightsPerCrypto;
+    }
+
+    public long getGridMillis() {
+        return gridMillis;
+    }
+
+    /**
+     * @return The levels last published, one value per point of the grid
+     */
+    public CryptoValueSeries getLevels() {
+        return levelSeries;
+    }
+
+    /**
+     * @param cryptoEnum The crypto
+     * @return True if the crypto is one of the index
+     */
+    public boolean contains(CryptoEnum cryptoEnum) {
+        return weightsPerCrypto.containsKey(cryptoEnum);
+    }
+
+    /**
+     * Builds the index from the stored values of its cryptos, discarding its levels
+     *
+     * @param storedValues Provides the stored values of a crypto
+     */
+    public void rebuild(Function<CryptoEnum, CryptoValueSeries> storedValues) {
+        CryptoValueSeries[] series = new CryptoValueSeries[cryptos.length];
+        long newestFirstTimestamp = Long.MIN_VALUE;
+        long newest = Long.MIN_VALUE;
+        for (int i = 0; i < cryptos.length; i++) {
+            series[i] = storedValues.apply(cryptos[i]);
+            if (series[i].isEmpty()) {
+                built = false;
+                size = 0;
+                levelSeries = CryptoValueSeries.empty();
+                return;
+            }
+            newestFirstTimestamp = Math.max(newestFirstTimestamp, series[i].first().getTimestamp());
+            newest = Math.max(newest, series[i].last().getTimestamp());
+        }
+        built = true;
+        firstPoint = Math.floorDiv(newestFirstTimestamp + gridMillis - 1, gridMillis) * gridMillis;
+        newestTimestamp = newest;
+        size = 0;
+        int newSize = pointsUntil(newest);
+        ensureCapacity(newSize);
+        for (int i = 0; i < cryptos.length; i++) {
+            fillPrices(prices[i], 0, newSize, series[i]);
+        }
+        computeLevels(0, newSize);
+        size = newSize;
+        levelSeries = CryptoValueSeries.of(levelValues(0, newSize));
+    }
+
+    /**
+     * Updates the index with values stored for one of its cryptos
+     *
+     * @param cryptoEnum   The crypto
+     * @param addedValues  The added values, in any order, already stored
+     * @param storedValues Provides the stored values of a crypto
+     */
+    public void update(CryptoEnum cryptoEnum, Collection<CryptoValue> addedValues,
+                       Function<CryptoEnum, CryptoValueSeries> storedValues) {
+        if (addedValues.isEmpty()) {
+            return;
+        }
+        long oldest = Long.MAX_VALUE;
+        long newest = newestTimestamp;
+        for (CryptoValue value : addedValues) {
+            oldest = Math.min(oldest, value.getTimestamp());
+            newest = Math.max(newest, value.getTimestamp());
+        }
+        if (!built || oldest < firstPoint) {
+            rebuild(storedValues);
+            return;
+        }
+        newestTimestamp = newest;
+        int newSize = pointsUntil(newest);
+        // The first point at or after the oldest added value, as points before it keep their prices
+        int changedFrom = (int) Math.min(Math.floorDiv(oldest - firstPoint + gridMillis - 1, gridMillis), size);
+        if (changedFrom >= newSize) {
+            return;
+        }
+        ensureCapacity(newSize);
+        for (int i = 0; i < cryptos.length; i++) {
+            int from = cryptos[i] == cryptoEnum ? changedFrom : size;
+            if (from < newSize) {
+                fillPrices(prices[i], from, newSize, storedValues.apply(cryptos[i]));
+            }
+        }
+        computeLevels(changedFrom, newSize);
+        size = newSize;
+        levelSeries = levelSeries.merge(levelValues(changedFrom, newSize));
+    }
+
+    /**
+     * @return The number of points of the grid from its first point up to the specified timestamp
+     */
+    private int pointsUntil(long timestamp) {
+        return timestamp < firstPoint ? 0 : Math.toIntExact(Math.floorDiv(timestamp - firstPoint, gridMillis) + 1);
+    }
+
+    private long pointTimestamp(int point) {
+        return firstPoint + point * gridMillis;
+    }
+
+    private void ensureCapacity(int points) {
+        if (points <= levels.length) {
+            return;
+        }
+        int capacity = Math.max(points, Math.max(16, levels.length * 2));
+        for (int i = 0; i < cryptos.length; i++) {
+            prices[i] = Arrays.copyOf(prices[i], capacity);
+        }
+        levels = Arrays.copyOf(levels, capacity);
+    }
+
+    /**
+     * Fills the prices of a crypto at points of the grid in a range, from its values in one pass
+     *
+     * @param column The prices of the crypto
+     * @param from   The first point of the range, whose previous point, if any, holds its price already
+     * @param to     The point after the last point of the range
+     * @param series The stored values of the crypto
+     */
+    private void fillPrices(double[] column, int from, int to, CryptoValueSeries series) {
+        double price = from > 0 ? column[from - 1] : Double.NaN;
+        int point = from;
+        for (CryptoValue value : series.tailFrom(from > 0 ? pointTimestamp(from - 1) + 1 : Long.MIN_VALUE)) {
+            while (point < to && pointTimestamp(point) < value.getTimestamp()) {
+                column[point++] = price;
+            }
+            if (point == to) {
+                break;
+            }
+            price = value.getPrice().doubleValue();
+        }
+        while (point < to) {
+            column[point++] = price;
+        }
+    }
+
+    /**
+     * Computes the levels at points of the grid in a range, as the sum of the weighted price columns
+     */
+    private void computeLevels(int from, int to) {
+        Arrays.fill(levels, from, to, 0);
+        for (int i = 0; i < cryptos.length; i++) {
+            double weight = weights[i];
+            double[] column = prices[i];
+            for (int point = from; point < to; point++) {
+                levels[point] += weight * column[point];
+            }
+        }
+    }
+
+    private List<CryptoValue> levelValues(int from, int to) {
+        List<CryptoValue> values = new ArrayList<>(to - from);
+        for (int point = from; point < to; point++) {
+            values.add(new CryptoValue(pointTimestamp(point), new BigDecimal(levels[point], LEVEL_MATH_CONTEXT)));
+        }
+        return values;
+    }
+}
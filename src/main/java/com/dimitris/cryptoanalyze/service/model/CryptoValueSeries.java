@@ -0,0 +1,687 @@
+package com.dimitris.cryptoanalyze.service.model;
+
+import java.util.*;
+import java.util.function.UnaryOperator;
+
+/**
+ * Immutable series of crypto values sorted by timestamp, holding at most one value per timestamp. It is exposed as a
+ * {@link Set} of {@link CryptoValue}, iterated in timestamp order.
+ * <p>
+ * New values are merged by sorting them by timestamp and merging them with the series in linear time, without
+ * hashing any value. When several values share a timestamp, the one added last wins: a merged value replaces the
+ * value of the series at its timestamp, and among merged values with the same timestamp the last one in iteration
+ * order of the merged collection is kept.
+ * <p>
+ * Values are held in {@link ValueChunk}s of at most {@value #MAX_CHUNK_SIZE} values. Merging copies only the chunks
+ * the merged values fall into, and shares every other chunk with the series it was merged into, so appending values
+ * to a long series copies at most its last chunk, and the series before and after the merge cost little more memory
+ * than one. Chunks of older values can be sealed off heap, see {@link #seal(long, UnaryOperator)}, and are read back
+ * transparently.
+ * <p>
+ * The {@link PriceSummary} of every chunk is computed once, when the chunk is created, and shared along with the chunk,
+ * so that the summary of the whole series, see {@link #summary()}, is maintained as values are merged without
+ * rescanning the values of unchanged chunks. The summary of each UTC day, see {@link #summaryOfDay(long)}, is
+ * maintained too, reading only the values merged into a day, or rescanning the day if they fall before its newest
+ * value. The summary of any other range, see {@link #summarize(long, long)}, is composed from the summaries of
+ * the chunks it covers, scanning only the values of the chunks at its edges. Price quantiles of a range are estimated
+ * the same way, see {@link #sketch(long, long, double)}, from the {@link QuantileSketch} each chunk caches
+ */
+public final class CryptoValueSeries extends AbstractSet<CryptoValue> {
+
+    static final int MAX_CHUNK_SIZE = 4096;
+
+    private static final CryptoValueSeries EMPTY =
+            new CryptoValueSeries(new ValueChunk[0], new int[0], new PriceSummary[0], null, DailyIndex.empty());
+
+    private static final Comparator<CryptoValue> BY_TIMESTAMP = Comparator.comparingLong(CryptoValue::getTimestamp);
+
+    /**
+     * Non empty chunks of values, the values of all chunks in strictly ascending timestamp order
+     */
+    private final ValueChunk[] chunks;
+
+    /**
+     * Position in the series after the last value of each chunk
+     */
+    private final int[] chunkEnds;
+
+    /**
+     * Summary of the values of each chunk
+     */
+    private final PriceSummary[] chunkSummaries;
+
+    /**
+     * Summary of all values, null if there are none
+     */
+    private final PriceSummary summary;
+
+    /**
+     * Summary of the values of each UTC day holding values, set by the operation creating the series from another
+     * one, or computed from the values on first use, racing threads computing the same summaries
+     */
+    private DailyIndex<PriceSummary> dailySummaries;
+
+    private CryptoValueSeries(ValueChunk[] chunks, int[] chunkEnds, PriceSummary[] chunkSummaries,
+                              PriceSummary summary, DailyIndex<PriceSummary> dailySummaries) {
+        this.chunks = chunks;
+        this.chunkEnds = chunkEnds;
+        this.chunkSummaries = chunkSummaries;
+        this.summary = summary;
+        this.dailySummaries = dailySummaries;
+    }
+
+    /**
+     * @return A series without values
+     */
+    public static CryptoValueSeries empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @param values Crypto values in any order
+     * @return A series of the specified values
+     */
+    public static CryptoValueSeries of(Collection<CryptoValue> values) {
+        return EMPTY.merge(values);
+    }
+
+    /**
+     * Merges values into a new series, this one is left unchanged
+     *
+     * @param newValues Crypto values in any order
+     * @return A series of the values of this series and the specified ones
+     */
+    public CryptoValueSeries merge(Collection<CryptoValue> newValues) {
+        if (newValues.isEmpty()) {
+            return this;
+        }
+        CryptoValue[] batch = newValues.toArray(new CryptoValue[0]);
+        // Stable sort, so that values with the same timestamp keep their order
+        Arrays.sort(batch, BY_TIMESTAMP);
+
+        List<ValueChunk> mergedChunks = new ArrayList<>(chunks.length + 1);
+        List<PriceSummary> mergedSummaries = new ArrayList<>(chunks.length + 1);
+        int j = 0;
+        for (int chunk = 0; chunk < chunks.length; chunk++) {
+            ValueChunk values = chunks[chunk];
+            // Values newer than the whole series are merged into the last chunk, unless it is full
+            boolean open = chunk == chunks.length - 1 && values.size() < MAX_CHUNK_SIZE;
+            long lastTimestamp = open ? Long.MAX_VALUE : values.timestampAt(values.size() - 1);
+            int batchEnd = j;
+            while (batchEnd < batch.length && batch[batchEnd].getTimestamp() <= lastTimestamp) {
+                batchEnd++;
+            }
+            if (batchEnd == j) {
+                mergedChunks.add(values);
+                mergedSummaries.add(chunkSummaries[chunk]);
+            } else {
+                split(mergeSorted(values.values(), batch, j, batchEnd), mergedChunks, mergedSummaries);
+                j = batchEnd;
+            }
+        }
+        if (j < batch.length) {
+            split(mergeSorted(new CryptoValue[0], batch, j, batch.length), mergedChunks, mergedSummaries);
+        }
+
+        CryptoValueSeries merged = ofChunks(mergedChunks, mergedSummaries, null);
+        DailyIndex<PriceSummary> daily = dailySummaries();
+        NavigableMap<Long, PriceSummary> changedDays = new TreeMap<>();
+        int dayStart = 0;
+        while (dayStart < batch.length) {
+            long day = DailyIndex.epochDayOf(batch[dayStart].getTimestamp());
+            long firstTimestamp = batch[dayStart].getTimestamp();
+            while (dayStart < batch.length && DailyIndex.epochDayOf(batch[dayStart].getTimestamp()) == day) {
+                dayStart++;
+            }
+            PriceSummary stored = daily.get(day);
+            long dayEnd = DailyIndex.startOf(day + 1);
+            changedDays.put(day, stored != null && firstTimestamp > stored.getNewest().getTimestamp()
+                    // Appended to the day, so only the merged values are read
+                    ? stored.combine(merged.summaryBetween(firstTimestamp, dayEnd))
+                    : merged.summaryBetween(DailyIndex.startOf(day), dayEnd));
+        }
+        merged.dailySummaries = daily.withAll(changedDays);
+        return merged;
+    }
+
+    /**
+     * @param chunks         Chunks, the values of all of them in strictly ascending timestamp order
+     * @param chunkSummaries Summary of the values of each chunk
+     * @param dailySummaries Summary of the values of each UTC day, null to compute them on first use
+     * @return A series of the chunks
+     */
+    private static CryptoValueSeries ofChunks(List<ValueChunk> chunks, List<PriceSummary> chunkSummaries,
+                                              DailyIndex<PriceSummary> dailySummaries) {
+        ValueChunk[] chunkArray = chunks.toArray(new ValueChunk[0]);
+        PriceSummary[] summaryArray = chunkSummaries.toArray(new PriceSummary[0]);
+        int[] chunkEnds = new int[chunkArray.length];
+        int end = 0;
+        PriceSummary summary = null;
+        for (int chunk = 0; chunk < chunkArray.length; chunk++) {
+            end += chunkArray[chunk].size();
+            chunkEnds[chunk] = end;
+            summary = summary == null ? summaryArray[chunk] : summary.combine(summaryArray[chunk]);
+        }
+        return new CryptoValueSeries(chunkArray, chunkEnds, summaryArray, summary, dailySummaries);
+    }
+
+    /**
+     * @return The summary of all values of this series, or empty if it has none. It is maintained as values are
+     * merged, sealed or evicted, so it is returned without reading any value
+     */
+    public Optional<PriceSummary> summary() {
+        return Optional.ofNullable(summary);
+    }
+
+    /**
+     * @param epochDay Epoch day of a UTC day, see {@link DailyIndex#epochDayOf(long)}
+     * @return The summary of the values of this series with timestamps in the day, or empty if it has none. It is
+     * maintained as values are merged, so it is returned without reading any value
+     */
+    public Optional<PriceSummary> summaryOfDay(long epochDay) {
+        return Optional.ofNullable(dailySummaries().get(epochDay));
+    }
+
+    /**
+     * @return The summary of the values of each UTC day holding values
+     */
+    DailyIndex<PriceSummary> dailySummaries() {
+        DailyIndex<PriceSummary> daily = dailySummaries;
+        if (daily == null) {
+            NavigableMap<Long, PriceSummary> days = new TreeMap<>();
+            for (ValueChunk chunk : chunks) {
+                CryptoValue[] values = chunk.values();
+                int start = 0;
+                while (start < values.length) {
+                    long day = DailyIndex.epochDayOf(values[start].getTimestamp());
+                    int end = start;
+                    while (end < values.length && DailyIndex.epochDayOf(values[end].getTimestamp()) == day) {
+                        end++;
+                    }
+                    days.merge(day, PriceSummary.of(values, start, end), PriceSummary::combine);
+                    start = end;
+                }
+            }
+            daily = DailyIndex.<PriceSummary>empty().withAll(days);
+            dailySummaries = daily;
+        }
+        return daily;
+    }
+
+    /**
+     * @return The summary of the values with timestamps from the first, inclusive, to the second one, exclusive,
+     * read without a deadline, or null if there are none
+     */
+    private PriceSummary summaryBetween(long fromTimestamp, long toTimestamp) {
+        int from = lowerBound(fromTimestamp);
+        int to = lowerBound(toTimestamp);
+        return from < to ? summarize(from, to, Deadline.none()) : null;
+    }
+
+    /**
+     * Seals the chunks of older values of this series into a new series, this one is left unchanged. Every chunk but
+     * the last one, which is still appended to, is sealed if it is held on heap and its values are older than the
+     * specified timestamp
+     *
+     * @param sealBefore Timestamp in Epoch millis
+     * @param sealer     Seals a chunk, returning the sealed chunk or the same one if it cannot be sealed
+     * @return A series of the sealed chunks and the chunks of this series that are not sealed
+     */
+    public CryptoValueSeries seal(long sealBefore, UnaryOperator<ValueChunk> sealer) {
+        List<ValueChunk> sealedChunks = null;
+        for (int chunk = 0; chunk < chunks.length - 1; chunk++) {
+            ValueChunk values = chunks[chunk];
+            if (!values.isOnHeap() || values.timestampAt(values.size() - 1) >= sealBefore) {
+                continue;
+            }
+            ValueChunk sealed = sealer.apply(values);
+            if (sealed != values) {
+                if (sealedChunks == null) {
+                    sealedChunks = new ArrayList<>(Arrays.asList(chunks));
+                }
+                sealedChunks.set(chunk, sealed);
+            }
+        }
+        return sealedChunks == null ? this
+                : ofChunks(sealedChunks, Arrays.asList(chunkSummaries), dailySummaries);
+    }
+
+    /**
+     * @param fromTimestamp Timestamp in Epoch millis
+     * @param toTimestamp   Timestamp in Epoch millis
+     * @return A series of the chunks holding values with timestamps from the first up to the second one, inclusive.
+     * It holds every value of this series in that range, and possibly values of the same chunks outside it
+     */
+    public CryptoValueSeries chunksCovering(long fromTimestamp, long toTimestamp) {
+        int first = 0;
+        while (first < chunks.length && chunks[first].timestampAt(chunks[first].size() - 1) < fromTimestamp) {
+            first++;
+        }
+        int last = chunks.length - 1;
+        while (last >= first && chunks[last].timestampAt(0) > toTimestamp) {
+            last--;
+        }
+        if (first == 0 && last == chunks.length - 1) {
+            return this;
+        }
+        return first > last ? EMPTY : ofChunks(Arrays.asList(chunks).subList(first, last + 1),
+                Arrays.asList(chunkSummaries).subList(first, last + 1), null);
+    }
+
+    /**
+     * Summarizes the values with timestamps in a range in one pass. The summaries of the chunks whose values are all
+     * in the range are combined as they are, so that only the values of the chunks at the edges of the range are
+     * scanned, whatever the length of the range. The {@link Deadline} attached to the calling thread is checked before
+     * each chunk, throwing {@link Deadline.ScanAbortedException} once it is exceeded
+     *
+     * @param fromTimestamp Timestamp in Epoch millis of the start of the range, inclusive
+     * @param toTimestamp   Timestamp in Epoch millis of the end of the range, exclusive, or {@link Long#MAX_VALUE} for
+     *                      a range without end
+     * @return The summary of the range, or empty if no value is in the range
+     */
+    public Optional<PriceSummary> summarize(long fromTimestamp, long toTimestamp) {
+        int from = lowerBound(fromTimestamp);
+        int to = toTimestamp == Long.MAX_VALUE ? size() : lowerBound(toTimestamp);
+        if (from >= to) {
+            return Optional.empty();
+        }
+        return Optional.of(summarize(from, to, Deadline.current()));
+    }
+
+    /**
+     * Summarizes the values at positions in a range, chunk by chunk, using the summary of each chunk whose values are
+     * all in the range
+     */
+    private PriceSummary summarize(int from, int to, Deadline deadline) {
+        PriceSummary summary = null;
+        int chunk = chunkOf(from);
+        while (from < to) {
+            deadline.checkScan();
+            int chunkStart = chunkStart(chunk);
+            int chunkTo = Math.min(to, chunkEnds[chunk]);
+            // Decoded once per partly covered chunk, since chunks held off heap decode their values on every read
+            PriceSummary chunkSummary = from == chunkStart && chunkTo == chunkEnds[chunk] ? chunkSummaries[chunk]
+                    : PriceSummary.of(chunks[chunk].values(), from - chunkStart, chunkTo - chunkStart);
+            summary = summary == null ? chunkSummary : summary.combine(chunkSummary);
+            from = chunkTo;
+            chunk++;
+        }
+        return summary;
+    }
+
+    /**
+     * Sketches the prices of the values with timestamps in a range. The sketches cached by the chunks whose values are
+     * all in the range are merged as they are, so that only the values of the chunks at the edges of the range are
+     * read, and a merge of values leaves the sketches of the chunks it does not copy to be reused. The
+     * {@link Deadline} attached to the calling thread is checked before each chunk, throwing
+     * {@link Deadline.ScanAbortedException} once it is exceeded
+     *
+     * @param fromTimestamp    Timestamp in Epoch millis of the start of the range, inclusive
+     * @param toTimestamp      Timestamp in Epoch millis of the end of the range, exclusive, or {@link Long#MAX_VALUE}
+     *                         for a range without end
+     * @param relativeAccuracy The relative error bound of the sketch, in (0, 1)
+     * @return A new sketch of the prices of the range, empty if no value is in the range
+     */
+    public QuantileSketch sketch(long fromTimestamp, long toTimestamp, double relativeAccuracy) {
+        QuantileSketch sketch = new QuantileSketch(relativeAccuracy);
+        int from = lowerBound(fromTimestamp);
+        int to = toTimestamp == Long.MAX_VALUE ? size() : lowerBound(toTimestamp);
+        Deadline deadline = Deadline.current();
+        int chunk = from < to ? chunkOf(from) : chunks.length;
+        while (from < to) {
+            deadline.checkScan();
+            int chunkStart = chunkStart(chunk);
+            int chunkTo = Math.min(to, chunkEnds[chunk]);
+            if (from == chunkStart && chunkTo == chunkEnds[chunk]) {
+                sketch.merge(chunks[chunk].sketch(relativeAccuracy));
+            } else {
+                // Decoded once per partly covered chunk, since chunks held off heap decode their values on every read
+                sketch.merge(QuantileSketch.of(chunks[chunk].values(), from - chunkStart, chunkTo - chunkStart,
+                        relativeAccuracy));
+            }
+            from = chunkTo;
+            chunk++;
+        }
+        return sketch;
+    }
+
+    /**
+     * Drops the oldest values of this series, in whole chunks, keeping at least the chunk of its newest value
+     *
+     * @param heapBytes Bytes of heap to free
+     * @return A series without the oldest chunks retaining the specified bytes on heap, or fewer if only the chunk of
+     * the newest value would be left, or this series if it holds a single chunk
+     */
+    public CryptoValueSeries evictOldest(long heapBytes) {
+        int evicted = 0;
+        long freed = 0;
+        while (freed < heapBytes && evicted < chunks.length - 1) {
+            freed += chunks[evicted].heapBytes();
+            evicted++;
+        }
+        if (evicted == 0) {
+            return this;
+        }
+        CryptoValueSeries evictedSeries = ofChunks(Arrays.asList(chunks).subList(evicted, chunks.length),
+                Arrays.asList(chunkSummaries).subList(evicted, chunks.length), null);
+        // Only the day of the oldest value left may have lost some of its values
+        long firstDay = DailyIndex.epochDayOf(evictedSeries.first().getTimestamp());
+        NavigableMap<Long, PriceSummary> changedDays = new TreeMap<>();
+        changedDays.put(firstDay, evictedSeries.summaryBetween(DailyIndex.startOf(firstDay), DailyIndex.startOf(firstDay + 1)));
+        evictedSeries.dailySummaries = dailySummaries().from(firstDay).withAll(changedDays);
+        return evictedSeries;
+    }
+
+    /**
+     * @return The approximate number of bytes this series retains on heap, including the chunks it shares with
+     * other series
+     */
+    public long heapBytes() {
+        long bytes = 0;
+        for (ValueChunk chunk : chunks) {
+            bytes += chunk.heapBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * @param counted Identity set of the chunks already counted, to which the chunks of this series are added
+     * @return The approximate number of bytes the chunks of this series not already counted retain on heap
+     */
+    public long heapBytesNotIn(Set<ValueChunk> counted) {
+        long bytes = 0;
+        for (ValueChunk chunk : chunks) {
+            if (counted.add(chunk)) {
+                bytes += chunk.heapBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return True if every chunk of this series is held on heap
+     */
+    public boolean isOnHeap() {
+        for (ValueChunk chunk : chunks) {
+            if (!chunk.isOnHeap()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Merges a range of sorted values into sorted values holding one value per timestamp
+     *
+     * @return The merged values, the last value merged at a timestamp replacing the others
+     */
+    private static CryptoValue[] mergeSorted(CryptoValue[] values, CryptoValue[] batch, int from, int to) {
+        CryptoValue[] merged = new CryptoValue[values.length + to - from];
+        int size = 0;
+        int i = 0;
+        int j = from;
+        while (i < values.length || j < to) {
+            CryptoValue next;
+            if (j == to || (i < values.length && values[i].getTimestamp() < batch[j].getTimestamp())) {
+                next = values[i++];
+            } else {
+                if (i < values.length && values[i].getTimestamp() == batch[j].getTimestamp()) {
+                    i++;
+                }
+                next = batch[j++];
+            }
+            if (size > 0 && merged[size - 1].getTimestamp() == next.getTimestamp()) {
+                merged[size - 1] = next;
+            } else {
+                merged[size++] = next;
+            }
+        }
+        return size == merged.length ? merged : Arrays.copyOf(merged, size);
+    }
+
+    /**
+     * Adds values to a list of chunks, in as many full chunks as they fill followed by one holding the rest, and the
+     * summaries of the added chunks to a list of summaries
+     */
+    private static void split(CryptoValue[] values, List<ValueChunk> chunks, List<PriceSummary> summaries) {
+        if (values.length <= MAX_CHUNK_SIZE) {
+            chunks.add(ValueChunk.onHeap(values));
+            summaries.add(PriceSummary.of(values, 0, values.length));
+            return;
+        }
+        for (int from = 0; from < values.length; from += MAX_CHUNK_SIZE) {
+            CryptoValue[] chunkValues = Arrays.copyOfRange(values, from, Math.min(from + MAX_CHUNK_SIZE, values.length));
+            chunks.add(ValueChunk.onHeap(chunkValues));
+            summaries.add(PriceSummary.of(chunkValues, 0, chunkValues.length));
+        }
+    }
+
+    /**
+     * @return The value with the earliest timestamp
+     * @throws NoSuchElementException The series is empty
+     */
+    public CryptoValue first() {
+        if (chunks.length == 0) {
+            throw new NoSuchElementException();
+        }
+        return chunks[0].get(0);
+    }
+
+    /**
+     * @return The value with the latest timestamp
+     * @throws NoSuchElementException The series is empty
+     */
+    public CryptoValue last() {
+        if (chunks.length == 0) {
+            throw new NoSuchElementException();
+        }
+        ValueChunk lastChunk = chunks[chunks.length - 1];
+        return lastChunk.get(lastChunk.size() - 1);
+    }
+
+    /**
+     * @param fromTimestamp Timestamp in Epoch millis
+     * @return An unmodifiable view of the values with timestamps at or after the specified one, in timestamp order
+     */
+    public List<CryptoValue> tailFrom(long fromTimestamp) {
+        int from = lowerBound(fromTimestamp);
+        return new AbstractList<>() {
+
+            @Override
+            public CryptoValue get(int index) {
+                Objects.checkIndex(index, size());
+                return CryptoValueSeries.this.get(from + index);
+            }
+
+            @Override
+            public Iterator<CryptoValue> iterator() {
+                return new ChunkIterator(from);
+            }
+
+            @Override
+            public int size() {
+                return CryptoValueSeries.this.size() - from;
+            }
+        };
+    }
+
+    /**
+     * @param timestamp Timestamp in Epoch millis
+     * @return The newest value with a timestamp at or before the specified one, found by binary search, or empty if
+     * there is none
+     */
+    public Optional<CryptoValue> valueAsOf(long timestamp) {
+        int index = (timestamp == Long.MAX_VALUE ? size() : lowerBound(timestamp + 1)) - 1;
+        return index < 0 ? Optional.empty() : Optional.of(get(index));
+    }
+
+    /**
+     * @param other Another series
+     * @return The number of chunks of this series also held by the other one, ie not copied by the merges between them
+     */
+    int sharedChunks(CryptoValueSeries other) {
+        Set<ValueChunk> otherChunks = Collections.newSetFromMap(new IdentityHashMap<>());
+        otherChunks.addAll(Arrays.asList(other.chunks));
+        int shared = 0;
+        for (ValueChunk chunk : chunks) {
+            if (otherChunks.contains(chunk)) {
+                shared++;
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * @return The number of chunks holding the values
+     */
+    int chunkCount() {
+        return chunks.length;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof CryptoValue)) {
+            return false;
+        }
+        CryptoValue value = (CryptoValue) o;
+        int index = indexOf(value.getTimestamp());
+        return index >= 0 && get(index).equals(value);
+    }
+
+    @Override
+    public Iterator<CryptoValue> iterator() {
+        return new ChunkIterator(0);
+    }
+
+    @Override
+    public int size() {
+        return chunkEnds.length == 0 ? 0 : chunkEnds[chunkEnds.length - 1];
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] values = new Object[size()];
+        int position = 0;
+        for (ValueChunk chunk : chunks) {
+            System.arraycopy(chunk.values(), 0, values, position, chunk.size());
+            position += chunk.size();
+        }
+        return values;
+    }
+
+    /**
+     * @return The value at the specified position of the series
+     */
+    private CryptoValue get(int index) {
+        int chunk = chunkOf(index);
+        return chunks[chunk].get(index - chunkStart(chunk));
+    }
+
+    /**
+     * @return The timestamp of the value at the specified position of the series
+     */
+    private long timestampAt(int index) {
+        int chunk = chunkOf(index);
+        return chunks[chunk].timestampAt(index - chunkStart(chunk));
+    }
+
+    /**
+     * @return The chunk holding the value at the specified position of the series
+     */
+    private int chunkOf(int index) {
+        int low = 0;
+        int high = chunkEnds.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (chunkEnds[middle] <= index) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int chunkStart(int chunk) {
+        return chunk == 0 ? 0 : chunkEnds[chunk - 1];
+    }
+
+    /**
+     * @return The position of the first value with a timestamp at or after the specified one, or the size of the
+     * series if there is none
+     */
+    private int lowerBound(long timestamp) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestampAt(middle) < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return The position of the value with the specified timestamp, or a negative number if there is none
+     */
+    private int indexOf(long timestamp) {
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleTimestamp = timestampAt(middle);
+            if (middleTimestamp < timestamp) {
+                low = middle + 1;
+            } else if (middleTimestamp > timestamp) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Iterates over the values from a position of the series to its end, chunk by chunk, reading the values of each
+     * chunk once
+     */
+    private class ChunkIterator implements Iterator<CryptoValue> {
+
+        private int chunk;
+
+        private int index;
+
+        private CryptoValue[] chunkValues;
+
+        private ChunkIterator(int from) {
+            if (from < size()) {
+                chunk = chunkOf(from);
+                index = from - chunkStart(chunk);
+                chunkValues = chunks[chunk].values();
+            } else {
+                chunk = chunks.length;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return chunk < chunks.length;
+        }
+
+        @Override
+        public CryptoValue next() {
+            if (chunk >= chunks.length) {
+                throw new NoSuchElementException();
+            }
+            CryptoValue value = chunkValues[index];
+            if (++index == chunkValues.length) {
+                index = 0;
+                chunkValues = ++chunk < chunks.length ? chunks[chunk].values() : null;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.dimitris.cryptoanalyze.service.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable index of entries by UTC calendar day, a day being identified by its Epoch day, see
+ * {@link #epochDayOf(long)}. Updates return a new index in time linear in the number of indexed days, copying the
+ * references to the entries of unchanged days, and this one is left unchanged
+ *
+ * @param <T> The type of the entries
+ */
+public final class DailyIndex<T> {
+
+    public static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private static final DailyIndex<?> EMPTY = new DailyIndex<>(new long[0], new Object[0]);
+
+    /**
+     * Indexed days in ascending order
+     */
+    private final long[] days;
+
+    /**
+     * Entry of each indexed day
+     */
+    private final Object[] entries;
+
+    private DailyIndex(long[] days, Object[] entries) {
+        this.days = days;
+        this.entries = entries;
+    }
+
+    /**
+     * @return An index without entries
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> DailyIndex<T> empty() {
+        return (DailyIndex<T>) EMPTY;
+    }
+
+    /**
+     * @param timestamp Timestamp in Epoch millis
+     * @return The Epoch day of the UTC day of the timestamp
+     */
+    public static long epochDayOf(long timestamp) {
+        return Math.floorDiv(timestamp, MILLIS_PER_DAY);
+    }
+
+    /**
+     * @param epochDay Epoch day
+     * @return The timestamp in Epoch millis of the start of the day
+     */
+    public static long startOf(long epochDay) {
+        return epochDay * MILLIS_PER_DAY;
+    }
+
+    /**
+     * @param epochDay Epoch day
+     * @return The entry of the day, null if it has none
+     */
+    @SuppressWarnings("unchecked")
+    public T get(long epochDay) {
+        int index = Arrays.binarySearch(days, epochDay);
+        return index >= 0 ? (T) entries[index] : null;
+    }
+
+    /**
+     * @param changes New entries by Epoch day, a null entry removing the entry of its day
+     * @return An index with the entries of this one, replaced, added or removed by the changes
+     */
+    public DailyIndex<T> withAll(NavigableMap<Long, T> changes) {
+        if (changes.isEmpty()) {
+            return this;
+        }
+        long[] nextDays = new long[days.length + changes.size()];
+        Object[] nextEntries = new Object[days.length + changes.size()];
+        int size = 0;
+        int i = 0;
+        for (Map.Entry<Long, T> change : changes.entrySet()) {
+            while (i < days.length && days[i] < change.getKey()) {
+                nextDays[size] = days[i];
+                nextEntries[size++] = entries[i++];
+            }
+            if (i < days.length && days[i] == change.getKey()) {
+                i++;
+            }
+            if (change.getValue() != null) {
+                nextDays[size] = change.getKey();
+                nextEntries[size++] = change.getValue();
+            }
+        }
+        while (i < days.length) {
+            nextDays[size] = days[i];
+            nextEntries[size++] = entries[i++];
+        }
+        return new DailyIndex<>(Arrays.copyOf(nextDays, size), Arrays.copyOf(nextEntries, size));
+    }
+
+    /**
+     * @param epochDay Epoch day
+     * @return An index with the entries of this one of the specified day and later ones
+     */
+    public DailyIndex<T> from(long epochDay) {
+        int index = Arrays.binarySearch(days, epochDay);
+        int first = index >= 0 ? index : -index - 1;
+        return first == 0 ? this : new DailyIndex<>(Arrays.copyOfRange(days, first, days.length),
+                Arrays.copyOfRange(entries, first, entries.length));
+    }
+
+    /**
+     * Calls a consumer for every day whose entry in another index is not the same instance as in this one
+     *
+     * @param other    Another index
+     * @param consumer Called with the Epoch day and the entry of the other index, null if it has none, in ascending
+     *                 day order
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachChange(DailyIndex<T> other, BiConsumer<Long, T> consumer) {
+        int i = 0;
+        int j = 0;
+        while (i < days.length || j < other.days.length) {
+            if (j == other.days.length || (i < days.length && days[i] < other.days[j])) {
+                consumer.accept(days[i++], null);
+            } else if (i == days.length || other.days[j] < days[i]) {
+                consumer.accept(other.days[j], (T) other.entries[j++]);
+            } else {
+                if (entries[i] != other.entries[j]) {
+                    consumer.accept(other.days[j], (T) other.entries[j]);
+                }
+                i++;
+                j++;
+            }
+        }
+    }
+
+    /**
+     * @return The number of indexed days
+     */
+    public int size() {
+        return days.length;
+    }
+
+    @Override
+    public String toString() {
+        return "DailyIndex{" +
+                "days=" + days.length +
+                '}';
+    }
+}
@@ -0,0 +1,164 @@
+package com.dimitris.cryptoanalyze.service.model;
+
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Immutable version of the stored data, mapping each crypto to its {@link CryptoValueSeries}. Every addition of
+ * values publishes a new snapshot with the next version, which shares the series of every other crypto, and the
+ * unchanged chunks of the changed one, with the snapshot before it. It also holds the {@link NormalizedRangeRanking}
+ * of its series, over all their values and over the values of each UTC day, updated with the changed series only,
+ * and for the days whose values changed only.
+ * <p>
+ * The snapshot a request is calculated on is attached to the thread processing it, see {@link #attach(DataSnapshot)},
+ * so that every value read by the calculation comes from the same version. Code moving work to another thread
+ * attaches the snapshot there too
+ */
+public final class DataSnapshot {
+
+    private static final ThreadLocal<DataSnapshot> ATTACHED = new ThreadLocal<>();
+
+    private final long version;
+
+    private final long createdMillis;
+
+    private final Map<CryptoEnum, CryptoValueSeries> series;
+
+    private final NormalizedRangeRanking normalizedRangeRanking;
+
+    private final DailyIndex<NormalizedRangeRanking> dailyRankings;
+
+    private DataSnapshot(long version, long createdMillis, Map<CryptoEnum, CryptoValueSeries> series,
+                         NormalizedRangeRanking normalizedRangeRanking,
+                         DailyIndex<NormalizedRangeRanking> dailyRankings) {
+        this.version = version;
+        this.createdMillis = createdMillis;
+        this.series = series;
+        this.normalizedRangeRanking = normalizedRangeRanking;
+        this.dailyRankings = dailyRankings;
+    }
+
+    /**
+     * @param createdMillis Creation time in Epoch millis
+     * @return The snapshot with version 0, holding no values
+     */
+    public static DataSnapshot initial(long createdMillis) {
+        return new DataSnapshot(0, createdMillis, Collections.emptyMap(), NormalizedRangeRanking.empty(),
+                DailyIndex.empty());
+    }
+
+    /**
+     * @return The snapshot attached to the current thread, null if none is attached
+     */
+    public static DataSnapshot attached() {
+        return ATTACHED.get();
+    }
+
+    /**
+     * Attaches a snapshot to the current thread until the returned scope is closed, which restores the snapshot
+     * attached before
+     *
+     * @param snapshot The snapshot, null to detach any snapshot for the scope
+     * @return The scope of the attachment
+     */
+    public static Scope attach(DataSnapshot snapshot) {
+        DataSnapshot previous = ATTACHED.get();
+        ATTACHED.set(snapshot);
+        return () -> ATTACHED.set(previous);
+    }
+
+    /**
+     * @param cryptoEnum    The crypto
+     * @param cryptoSeries  The new series of the crypto
+     * @param createdMillis Creation time of the new snapshot in Epoch millis
+     * @return A snapshot with the next version, holding the specified series for the crypto and the series of this
+     * one for every other crypto
+     */
+    public DataSnapshot with(CryptoEnum cryptoEnum, CryptoValueSeries cryptoSeries, long createdMillis) {
+        Map<CryptoEnum, CryptoValueSeries> nextSeries = new EnumMap<>(CryptoEnum.class);
+        nextSeries.putAll(series);
+        CryptoValueSeries previousSeries = nextSeries.put(cryptoEnum, cryptoSeries);
+
+        // Days whose summary is shared with the previous series are ranked as before
+        NavigableMap<Long, NormalizedRangeRanking> changedRankings = new TreeMap<>();
+        DailyIndex<PriceSummary> previousDailySummaries =
+                previousSeries == null ? DailyIndex.empty() : previousSeries.dailySummaries();
+        previousDailySummaries.forEachChange(cryptoSeries.dailySummaries(), (day, summary) -> {
+            NormalizedRangeRanking ranking = getNormalizedRangeRanking(day)
+                    .with(cryptoEnum, Optional.ofNullable(summary));
+            changedRankings.put(day, ranking.entries().isEmpty() ? null : ranking);
+        });
+        return new DataSnapshot(version + 1, createdMillis, Collections.unmodifiableMap(nextSeries),
+                normalizedRangeRanking.with(cryptoEnum, cryptoSeries.summary()),
+                dailyRankings.withAll(changedRankings));
+    }
+
+    /**
+     * @param replacement   A snapshot holding the series replacing every series of this one
+     * @param createdMillis Creation time of the new snapshot in Epoch millis
+     * @return A snapshot with the next version, holding the series and rankings of the replacement
+     */
+    public DataSnapshot replacedBy(DataSnapshot replacement, long createdMillis) {
+        return new DataSnapshot(version + 1, createdMillis, replacement.series, replacement.normalizedRangeRanking,
+                replacement.dailyRankings);
+    }
+
+    /**
+     * @param cryptoEnum The crypto
+     * @return The series of the crypto, empty if no values of it were added up to this version
+     */
+    public Optional<CryptoValueSeries> getValues(CryptoEnum cryptoEnum) {
+        return Optional.ofNullable(series.get(cryptoEnum));
+    }
+
+    /**
+     * @return The ranking of the cryptos by the normalized range of all their values in this version
+     */
+    public NormalizedRangeRanking getNormalizedRangeRanking() {
+        return normalizedRangeRanking;
+    }
+
+    /**
+     * @param epochDay Epoch day of a UTC day, see {@link DailyIndex#epochDayOf(long)}
+     * @return The ranking of the cryptos by the normalized range of their values in the day in this version
+     */
+    public NormalizedRangeRanking getNormalizedRangeRanking(long epochDay) {
+        NormalizedRangeRanking ranking = dailyRankings.get(epochDay);
+        return ranking != null ? ranking : NormalizedRangeRanking.empty();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return Creation time in Epoch millis
+     */
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "DataSnapshot{" +
+                "version=" + version +
+                ", createdMillis=" + createdMillis +
+                '}';
+    }
+
+    /**
+     * Scope of attaching a snapshot to a thread
+     */
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,196 @@
+package com.dimitris.cryptoanalyze.service.model;
+
+import com.dimitris.cryptoanalyze.service.exception.CryptoDeadlineExceededException;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Represents the point in time by which a request must be answered. Work done for the request checks its deadline
+ * at chunk boundaries and gives up once it is exceeded or cancelled, eg because the client disconnected.
+ * <p>
+ * The deadline of the request being processed by a thread is attached to it, see {@link #attach()}, so that it
+ * reaches calculations without being passed through every call. Code moving work to another thread attaches the
+ * deadline there too
+ */
+public class Deadline {
+
+    private static final Deadline NONE = new Deadline(Long.MAX_VALUE);
+
+    private static final ThreadLocal<Deadline> CURRENT = ThreadLocal.withInitial(() -> NONE);
+
+    /**
+     * Number of values scanned between two checks of a deadline
+     */
+    private static final int CHECK_INTERVAL = 4096;
+
+    private final long deadlineNanos;
+
+    private final List<Runnable> cancellationListeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean cancelled;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * @return A deadline that is never exceeded and cannot be cancelled
+     */
+    public static Deadline none() {
+        return NONE;
+    }
+
+    /**
+     * @param millis Milliseconds from now
+     * @return A deadline exceeded after the specified milliseconds
+     */
+    public static Deadline afterMillis(long millis) {
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * @return The deadline attached to the current thread, {@link #none()} if no deadline is attached
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Attaches this deadline to the current thread until the returned scope is closed, which restores the deadline
+     * attached before
+     *
+     * @return The scope of the attachment
+     */
+    public Scope attach() {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> CURRENT.set(previous);
+    }
+
+    /**
+     * Cancels the work done for the request, eg after the client disconnected. Has no effect on {@link #none()}
+     */
+    public void cancel() {
+        if (this == NONE || cancelled) {
+            return;
+        }
+        cancelled = true;
+        cancellationListeners.forEach(Runnable::run);
+    }
+
+    /**
+     * Registers code to run when this deadline is cancelled. Runs it immediately if it is already cancelled
+     *
+     * @param listener The code to run
+     */
+    public void onCancel(Runnable listener) {
+        if (this == NONE) {
+            return;
+        }
+        cancellationListeners.add(listener);
+        if (cancelled) {
+            listener.run();
+        }
+    }
+
+    /**
+     * @return True if the deadline has no end
+     */
+    public boolean isUnbounded() {
+        return deadlineNanos == Long.MAX_VALUE;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return True if the deadline is cancelled or its time has passed
+     */
+    public boolean isExceeded() {
+        return cancelled || (!isUnbounded() && System.nanoTime() - deadlineNanos >= 0);
+    }
+
+    /**
+     * @return Milliseconds left until the deadline, zero if it is exceeded and {@link Long#MAX_VALUE} if it is unbounded
+     */
+    public long remainingMillis() {
+        if (isUnbounded()) {
+            return Long.MAX_VALUE;
+        }
+        return cancelled ? 0 : Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+    }
+
+    /**
+     * Checks the deadline at a chunk boundary of some work
+     *
+     * @throws CryptoDeadlineExceededException The deadline is exceeded or cancelled
+     */
+    public void check() throws CryptoDeadlineExceededException {
+        if (isExceeded()) {
+            throw newExceededException();
+        }
+    }
+
+    /**
+     * Returns an action to peek at each value of a scan, checking the deadline once every few thousand values. It
+     * throws {@link ScanAbortedException}, since scans run in lambdas which cannot throw checked exceptions
+     *
+     * @param <T> The type of scanned values
+     * @return The action, which must not be shared between scans
+     */
+    public <T> Consumer<T> checkpoint() {
+        if (this == NONE) {
+            return value -> { };
+        }
+        int[] scanned = new int[1];
+        return value -> {
+            if (++scanned[0] % CHECK_INTERVAL == 0 && isExceeded()) {
+                throw new ScanAbortedException();
+            }
+        };
+    }
+
+    /**
+     * Checks the deadline at a chunk boundary of a scan which cannot throw checked exceptions
+     *
+     * @throws ScanAbortedException The deadline is exceeded or cancelled
+     */
+    public void checkScan() {
+        if (isExceeded()) {
+            throw new ScanAbortedException();
+        }
+    }
+
+    /**
+     * @return The exception reporting that this deadline is exceeded or cancelled
+     */
+    public CryptoDeadlineExceededException newExceededException() {
+        return new CryptoDeadlineExceededException(cancelled ? "Request cancelled before its calculation completed"
+                : "Request deadline exceeded before its calculation completed");
+    }
+
+    /**
+     * Scope of attaching a deadline to a thread
+     */
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    /**
+     * Thrown by {@link #checkpoint()} and {@link #checkScan()} to abort a scan. Code starting the scan translates it to
+     * {@link CryptoDeadlineExceededException}
+     */
+    public static class ScanAbortedException extends RuntimeException {
+
+        private ScanAbortedException() {
+            super(null, null, false, false);
+        }
+    }
+}
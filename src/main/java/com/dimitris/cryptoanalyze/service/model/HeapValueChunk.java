@@ -0,0 +1,93 @@
+package com.dimitris.cryptoanalyze.service.model;
+
+/**
+ * Chunk holding its values in an array on heap
+ */
+final class HeapValueChunk implements ValueChunk {
+
+    /**
+     * Bytes of the chunk and of its array, besides the references to the values
+     */
+    private static final int CHUNK_BYTES = 16 + 16;
+
+    /**
+     * Bytes of a value, of its price and of the reference to it, if the unscaled price fits in a long
+     */
+    private static final int VALUE_BYTES = 24 + 40 + 4;
+
+    /**
+     * Bytes of the unscaled price of a value, besides its magnitude, if it does not fit in a long
+     */
+    private static final int UNSCALED_BYTES = 40 + 16;
+
+    private final CryptoValue[] values;
+
+    /**
+     * Bytes of the values, estimated on first use and cached, racing threads computing the same estimate
+     */
+    private long valuesHeapBytes;
+
+    /**
+     * Computed on first use, racing threads computing the same sketch
+     */
+    private volatile QuantileSketch sketch;
+
+    HeapValueChunk(CryptoValue[] values) {
+        this.values = values;
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public long timestampAt(int index) {
+        return values[index].getTimestamp();
+    }
+
+    @Override
+    public CryptoValue get(int index) {
+        return values[index];
+    }
+
+    @Override
+    public CryptoValue[] values() {
+        return values;
+    }
+
+    @Override
+    public QuantileSketch sketch(double relativeAccuracy) {
+        QuantileSketch cached = sketch;
+        if (cached == null || cached.getRelativeAccuracy() != relativeAccuracy) {
+            cached = QuantileSketch.of(values, 0, values.length, relativeAccuracy);
+            sketch = cached;
+        }
+        return cached;
+    }
+
+    @Override
+    public boolean isOnHeap() {
+        return true;
+    }
+
+    @Override
+    public long heapBytes() {
+        QuantileSketch cached = sketch;
+        return valuesHeapBytes() + (cached == null ? 0 : cached.heapBytes());
+    }
+
+    private long valuesHeapBytes() {
+        if (valuesHeapBytes == 0) {
+            long bytes = CHUNK_BYTES + (long) VALUE_BYTES * values.length;
+            for (CryptoValue value : values) {
+                // Prices of up to 18 digits keep their unscaled value in a long field
+                if (value.getPrice().precision() > 18) {
+                    bytes += UNSCALED_BYTES + value.getPrice().unscaledValue().bitLength() / 8;
+                }
+            }
+            valuesHeapBytes = bytes;
+        }
+        return valuesHeapBytes;
+    }
+}
@@ -0,0 +1,148 @@
+package com.dimitris.cryptoanalyze.service.model;
+
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.util.CryptoMetricsUtil;
+
+import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Immutable ranking of cryptos by the normalized range of all their values, in descending order, cryptos with equal
+ * ranges in declaration order. Each {@link DataSnapshot} holds the ranking of its series, derived from the ranking of
+ * the snapshot before it by moving the entry of the changed crypto only, so that calculations on all values are
+ * answered by reading the ranking instead of scanning the values of every crypto.
+ * <p>
+ * Cryptos without values, and cryptos with a min price of zero, for which no normalized range exists, are not ranked
+ */
+public final class NormalizedRangeRanking {
+
+    /**
+     * Ranking order of mappings of cryptos to metric values: values in descending order, cryptos with equal values in
+     * declaration order. Cryptos sorted by any metric without reading a ranking are sorted in this order too, so that
+     * ties are ordered the same either way
+     */
+    public static final Comparator<Map.Entry<CryptoEnum, BigDecimal>> RANKING_ORDER =
+            Map.Entry.<CryptoEnum, BigDecimal>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.comparingByKey());
+
+    private static final NormalizedRangeRanking EMPTY = new NormalizedRangeRanking(new CryptoEnum[0], new BigDecimal[0]);
+
+    /**
+     * Ranked cryptos, in ranking order
+     */
+    private final CryptoEnum[] cryptos;
+
+    /**
+     * Normalized range of each ranked crypto
+     */
+    private final BigDecimal[] ranges;
+
+    private NormalizedRangeRanking(CryptoEnum[] cryptos, BigDecimal[] ranges) {
+        this.cryptos = cryptos;
+        this.ranges = ranges;
+    }
+
+    /**
+     * @return A ranking of no crypto
+     */
+    public static NormalizedRangeRanking empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @param cryptoEnum The crypto
+     * @param summary    The summary of all values of the crypto, empty if it has none
+     * @return A ranking with the crypto ranked by the normalized range of the summary, and every other crypto ranked
+     * as in this one. This one is left unchanged
+     */
+    public NormalizedRangeRanking with(CryptoEnum cryptoEnum, Optional<PriceSummary> summary) {
+        BigDecimal range = summary
+                .filter(priceSummary -> priceSummary.getMin().getPrice().signum() != 0)
+                .map(priceSummary -> CryptoMetricsUtil.normalizedPriceRange(
+                        priceSummary.getMin().getPrice(), priceSummary.getMax().getPrice()))
+                .orElse(null);
+        int current = indexOf(cryptoEnum);
+        if (current >= 0 ? ranges[current].equals(range) : range == null) {
+            return this;
+        }
+
+        int size = cryptos.length - (current >= 0 ? 1 : 0) + (range != null ? 1 : 0);
+        CryptoEnum[] rankedCryptos = new CryptoEnum[size];
+        BigDecimal[] rankedRanges = new BigDecimal[size];
+        int ranked = 0;
+        boolean inserted = range == null;
+        for (int i = 0; i < cryptos.length; i++) {
+            if (i == current) {
+                continue;
+            }
+            if (!inserted && ranksBefore(cryptoEnum, range, cryptos[i], ranges[i])) {
+                rankedCryptos[ranked] = cryptoEnum;
+                rankedRanges[ranked++] = range;
+                inserted = true;
+            }
+            rankedCryptos[ranked] = cryptos[i];
+            rankedRanges[ranked++] = ranges[i];
+        }
+        if (!inserted) {
+            rankedCryptos[ranked] = cryptoEnum;
+            rankedRanges[ranked] = range;
+        }
+        return new NormalizedRangeRanking(rankedCryptos, rankedRanges);
+    }
+
+    /**
+     * @param cryptoEnum The crypto
+     * @return True if the crypto is ranked
+     */
+    public boolean contains(CryptoEnum cryptoEnum) {
+        return indexOf(cryptoEnum) >= 0;
+    }
+
+    /**
+     * @return An unmodifiable view of the mappings of the ranked cryptos to their normalized ranges, in ranking order
+     */
+    public List<Map.Entry<CryptoEnum, BigDecimal>> entries() {
+        return new AbstractList<>() {
+
+            @Override
+            public Map.Entry<CryptoEnum, BigDecimal> get(int index) {
+                Objects.checkIndex(index, cryptos.length);
+                return new AbstractMap.SimpleImmutableEntry<>(cryptos[index], ranges[index]);
+            }
+
+            @Override
+            public int size() {
+                return cryptos.length;
+            }
+        };
+    }
+
+    private int indexOf(CryptoEnum cryptoEnum) {
+        for (int i = 0; i < cryptos.length; i++) {
+            if (cryptos[i] == cryptoEnum) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean ranksBefore(CryptoEnum crypto, BigDecimal range, CryptoEnum other, BigDecimal otherRange) {
+        return RANKING_ORDER.compare(new AbstractMap.SimpleImmutableEntry<>(crypto, range),
+                new AbstractMap.SimpleImmutableEntry<>(other, otherRange)) < 0;
+    }
+
+    @Override
+    public String toString() {
+        return "NormalizedRangeRanking{" +
+                "cryptos=" + Arrays.toString(cryptos) +
+                ", ranges=" + Arrays.toString(ranges) +
+                '}';
+    }
+}
@@ -0,0 +1,86 @@
+package com.dimitris.cryptoanalyze.service.model;
+
+/**
+ * Summary of a non empty range of time sorted crypto values: its oldest and newest values, and its values with the
+ * minimum and maximum price. Among values with equal prices, the oldest one is kept, as a sequential scan keeps the
+ * first one it meets. Summaries of adjacent ranges are combined into the summary of their union, so that a range can
+ * be summarized in parts, see {@link CryptoValueSeries#summarize(long, long)}
+ */
+public final class PriceSummary {
+
+    private final CryptoValue oldest;
+
+    private final CryptoValue newest;
+
+    private final CryptoValue min;
+
+    private final CryptoValue max;
+
+    private PriceSummary(CryptoValue oldest, CryptoValue newest, CryptoValue min, CryptoValue max) {
+        this.oldest = oldest;
+        this.newest = newest;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Summarizes a range of values in one pass
+     *
+     * @param values Values in ascending timestamp order
+     * @param from   Position of the first value of the range
+     * @param to     Position after the last value of the range, greater than from
+     * @return The summary of the range
+     */
+    static PriceSummary of(CryptoValue[] values, int from, int to) {
+        CryptoValue min = values[from];
+        CryptoValue max = values[from];
+        for (int i = from + 1; i < to; i++) {
+            CryptoValue value = values[i];
+            if (value.getPrice().compareTo(min.getPrice()) < 0) {
+                min = value;
+            } else if (value.getPrice().compareTo(max.getPrice()) > 0) {
+                max = value;
+            }
+        }
+        return new PriceSummary(values[from], values[to - 1], min, max);
+    }
+
+    /**
+     * @param later Summary of the range following the range of this summary, null for an empty range
+     * @return The summary of both ranges
+     */
+    PriceSummary combine(PriceSummary later) {
+        if (later == null) {
+            return this;
+        }
+        return new PriceSummary(oldest, later.newest,
+                later.min.getPrice().compareTo(min.getPrice()) < 0 ? later.min : min,
+                later.max.getPrice().compareTo(max.getPrice()) > 0 ? later.max : max);
+    }
+
+    public CryptoValue getOldest() {
+        return oldest;
+    }
+
+    public CryptoValue getNewest() {
+        return newest;
+    }
+
+    public CryptoValue getMin() {
+        return min;
+    }
+
+    public CryptoValue getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "PriceSummary{" +
+                "oldest=" + oldest +
+                ", newest=" + newest +
+                ", min=" + min +
+                ", max=" + max +
+                '}';
+    }
+}
@@ -0,0 +1,191 @@
+package com.dimitris.cryptoanalyze.service.model;
+
+import java.util.Arrays;
+import java.util.OptionalDouble;
+
+/**
+ * Mergeable sketch of a distribution of non-negative values, estimating quantiles with a bounded relative error
+ * (DDSketch). Values are counted in logarithmically sized bins, bin i holding the values in (gamma^(i-1), gamma^i]
+ * where gamma = (1 + a) / (1 - a) for relative accuracy a. Every estimated quantile is then within a relative
+ * distance a of the exact one, and two sketches of the same accuracy are merged by adding their bin counts.
+ * <p>
+ * Exact quantile q of n values is taken to be the value at position floor(q * (n - 1)) of the sorted values.
+ * Instances are not thread safe
+ */
+public class QuantileSketch {
+
+    private final double relativeAccuracy;
+
+    private final double gamma;
+
+    private final double logGamma;
+
+    /**
+     * Counts of bins with indexes starting at offset
+     */
+    private long[] counts = new long[0];
+
+    private int offset;
+
+    private long zeroCount;
+
+    private long count;
+
+    /**
+     * @param relativeAccuracy The relative error bound of quantile estimates, in (0, 1)
+     */
+    public QuantileSketch(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("Relative accuracy must be in (0, 1), found " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    /**
+     * @param values           Crypto values
+     * @param from             Position of the first value added, inclusive
+     * @param to               Position of the last value added, exclusive
+     * @param relativeAccuracy The relative error bound of quantile estimates, in (0, 1)
+     * @return A sketch of the prices of the values in the range
+     */
+    public static QuantileSketch of(CryptoValue[] values, int from, int to, double relativeAccuracy) {
+        QuantileSketch sketch = new QuantileSketch(relativeAccuracy);
+        for (int i = from; i < to; i++) {
+            sketch.add(values[i].getPrice().doubleValue());
+        }
+        return sketch;
+    }
+
+    /**
+     * @param value A non-negative value
+     */
+    public void add(double value) {
+        if (!(value >= 0) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("Only non-negative finite values can be added, found " + value);
+        }
+        count++;
+        if (value == 0) {
+            zeroCount++;
+            return;
+        }
+        int index = (int) Math.ceil(Math.log(value) / logGamma);
+        ensureCapacity(index, index);
+        counts[index - offset]++;
+    }
+
+    /**
+     * Adds the values counted by another sketch to this one
+     *
+     * @param other A sketch of the same relative accuracy
+     */
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Sketches of different relative accuracy cannot be merged");
+        }
+        if (other.count == 0) {
+            return;
+        }
+        count += other.count;
+        zeroCount += other.zeroCount;
+        if (other.counts.length == 0) {
+            return;
+        }
+        ensureCapacity(other.offset, other.offset + other.counts.length - 1);
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[other.offset + i - offset] += other.counts[i];
+        }
+    }
+
+    /**
+     * Estimates a quantile of the values added
+     *
+     * @param quantile The quantile, in [0, 1]
+     * @return The estimate, empty if no values were added
+     */
+    public OptionalDouble getQuantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantile must be in [0, 1], found " + quantile);
+        }
+        if (count == 0) {
+            return OptionalDouble.empty();
+        }
+        double rank = quantile * (count - 1);
+        long cumulativeCount = zeroCount;
+        if (cumulativeCount > rank) {
+            return OptionalDouble.of(0);
+        }
+        for (int i = 0; i < counts.length; i++) {
+            cumulativeCount += counts[i];
+            if (cumulativeCount > rank) {
+                return OptionalDouble.of(2 * Math.pow(gamma, offset + i) / (gamma + 1));
+            }
+        }
+        throw new IllegalStateException("Sketch counts are inconsistent");
+    }
+
+    /**
+     * @return The number of values added
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return The relative error bound of quantile estimates
+     */
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * @return The approximate number of bytes the sketch retains on heap, assuming compressed object pointers
+     */
+    public long heapBytes() {
+        return 64 + 16 + (long) Long.BYTES * counts.length;
+    }
+
+    /**
+     * @return A new sketch counting the same values as this one
+     */
+    public QuantileSketch copy() {
+        QuantileSketch copy = new QuantileSketch(relativeAccuracy);
+        copy.counts = counts.clone();
+        copy.offset = offset;
+        copy.zeroCount = zeroCount;
+        copy.count = count;
+        return copy;
+    }
+
+    /**
+     * Grows the bins so that they cover the indexes from minIndex to maxIndex
+     */
+    private void ensureCapacity(int minIndex, int maxIndex) {
+        if (counts.length == 0) {
+            counts = new long[maxIndex - minIndex + 1];
+            offset = minIndex;
+            return;
+        }
+        int newOffset = Math.min(offset, minIndex);
+        int newEnd = Math.max(offset + counts.length - 1, maxIndex);
+        if (newOffset == offset && newEnd == offset + counts.length - 1) {
+            return;
+        }
+        long[] newCounts = new long[newEnd - newOffset + 1];
+        System.arraycopy(counts, 0, newCounts, offset - newOffset, counts.length);
+        counts = newCounts;
+        offset = newOffset;
+    }
+
+    @Override
+    public String toString() {
+        return "QuantileSketch{" +
+                "relativeAccuracy=" + relativeAccuracy +
+                ", count=" + count +
+                ", zeroCount=" + zeroCount +
+                ", offset=" + offset +
+                ", counts=" + Arrays.toString(counts) +
+                '}';
+    }
+}
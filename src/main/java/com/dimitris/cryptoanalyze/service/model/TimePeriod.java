@@ -1,6 +1,10 @@
 package com.dimitris.cryptoanalyze.service.model;
 
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -26,6 +30,45 @@ public class TimePeriod {
         return toDateTime;
     }
 
+    /**
+     * @return The earliest Epoch millis at or after the start point, in UTC, or {@link Long#MIN_VALUE} if it is
+     * omitted. Timestamps in the period are the ones at or after it
+     */
+    public long getFromTimestamp() {
+        return fromDateTime.map(TimePeriod::toCeilingEpochMilli).orElse(Long.MIN_VALUE);
+    }
+
+    /**
+     * @return The earliest Epoch millis at or after the end point, in UTC, or {@link Long#MAX_VALUE} if it is
+     * omitted. Timestamps in the period are the ones before it
+     */
+    public long getToTimestamp() {
+        return toDateTime.map(TimePeriod::toCeilingEpochMilli).orElse(Long.MAX_VALUE);
+    }
+
+    /**
+     * @return True if both points are omitted, so that the period has no time restriction
+     */
+    public boolean isUnbounded() {
+        return fromDateTime.isEmpty() && toDateTime.isEmpty();
+    }
+
+    /**
+     * @return The UTC day the period spans, if it starts at the start of a day and ends at the start of the next one
+     */
+    public Optional<LocalDate> getDay() {
+        if (fromDateTime.isEmpty() || toDateTime.isEmpty() || !fromDateTime.get().toLocalTime().equals(LocalTime.MIDNIGHT) ||
+                !toDateTime.get().equals(fromDateTime.get().plusDays(1))) {
+            return Optional.empty();
+        }
+        return Optional.of(fromDateTime.get().toLocalDate());
+    }
+
+    private static long toCeilingEpochMilli(LocalDateTime dateTime) {
+        Instant instant = dateTime.toInstant(ZoneOffset.UTC);
+        return instant.toEpochMilli() + (instant.getNano() % 1_000_000 == 0 ? 0 : 1);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
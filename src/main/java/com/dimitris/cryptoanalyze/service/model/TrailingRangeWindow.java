@@ -0,0 +1,113 @@
+package com.dimitris.cryptoanalyze.service.model;
+
+import com.dimitris.cryptoanalyze.service.util.CryptoMetricsUtil;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.Optional;
+
+/**
+ * Window over the values of a crypto with timestamps within a fixed duration of the newest value, tracking their min
+ * and max prices. Values are appended in ascending timestamp order and the window slides with them in amortized
+ * constant time per value, without rescanning the values it holds: two monotonic deques keep only the values that
+ * can still become the min or the max once older values leave the window.
+ * <p>
+ * It is not thread safe
+ */
+public final class TrailingRangeWindow {
+
+    private final long windowMillis;
+
+    /**
+     * Values in ascending timestamp and strictly ascending price order, the first one holding the min price
+     */
+    private final ArrayDeque<CryptoValue> minCandidates = new ArrayDeque<>();
+
+    /**
+     * Values in ascending timestamp and strictly descending price order, the first one holding the max price
+     */
+    private final ArrayDeque<CryptoValue> maxCandidates = new ArrayDeque<>();
+
+    private long newestTimestamp = Long.MIN_VALUE;
+
+    /**
+     * @param windowMillis Duration of the window. It holds the values with timestamps greater than the timestamp of
+     *                     the newest value minus the duration
+     */
+    public TrailingRangeWindow(long windowMillis) {
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("Window duration must be positive, was " + windowMillis);
+        }
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Appends a value, sliding the window to end at its timestamp
+     *
+     * @param value A value newer than every appended one
+     * @return False if the value is not newer than every appended one, in which case it is not appended and the
+     * window has to be rebuilt
+     */
+    public boolean append(CryptoValue value) {
+        if (value.getTimestamp() <= newestTimestamp) {
+            return false;
+        }
+        newestTimestamp = value.getTimestamp();
+        BigDecimal price = value.getPrice();
+        while (!minCandidates.isEmpty() && minCandidates.peekLast().getPrice().compareTo(price) >= 0) {
+            minCandidates.pollLast();
+        }
+        minCandidates.addLast(value);
+        while (!maxCandidates.isEmpty() && maxCandidates.peekLast().getPrice().compareTo(price) <= 0) {
+            maxCandidates.pollLast();
+        }
+        maxCandidates.addLast(value);
+
+        long expiredUntil = newestTimestamp - windowMillis;
+        while (minCandidates.peekFirst().getTimestamp() <= expiredUntil) {
+            minCandidates.pollFirst();
+        }
+        while (maxCandidates.peekFirst().getTimestamp() <= expiredUntil) {
+            maxCandidates.pollFirst();
+        }
+        return true;
+    }
+
+    /**
+     * Removes every value
+     */
+    public void clear() {
+        minCandidates.clear();
+        maxCandidates.clear();
+        newestTimestamp = Long.MIN_VALUE;
+    }
+
+    /**
+     * @return The duration of the window
+     */
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * @return The timestamp of the newest value, {@link Long#MIN_VALUE} if no value is appended
+     */
+    public long getNewestTimestamp() {
+        return newestTimestamp;
+    }
+
+    /**
+     * @return The normalized price range of the values in the window, empty if there is none or the min price is not
+     * positive
+     */
+    public Optional<BigDecimal> normalizedPriceRange() {
+        if (minCandidates.isEmpty()) {
+            return Optional.empty();
+        }
+        BigDecimal min = minCandidates.peekFirst().getPrice();
+        if (min.signum() <= 0) {
+            return Optional.empty();
+        }
+        return Optional.of(CryptoMetricsUtil.normalizedPriceRange(min, maxCandidates.peekFirst().getPrice()));
+    }
+}
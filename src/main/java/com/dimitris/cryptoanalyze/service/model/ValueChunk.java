@@ -0,0 +1,57 @@
+package com.dimitris.cryptoanalyze.service.model;
+
+/**
+ * Immutable chunk of crypto values in strictly ascending timestamp order, the unit in which a
+ * {@link CryptoValueSeries} holds its values. A chunk is held on heap, or sealed into a segment stored off heap, see
+ * {@link com.dimitris.cryptoanalyze.service.ColdSegmentStore}
+ */
+public interface ValueChunk {
+
+    /**
+     * @param values Values in strictly ascending timestamp order, never modified afterwards
+     * @return A chunk holding the values on heap
+     */
+    static ValueChunk onHeap(CryptoValue[] values) {
+        return new HeapValueChunk(values);
+    }
+
+    /**
+     * @return The number of values
+     */
+    int size();
+
+    /**
+     * @param index Position of a value in the chunk
+     * @return The timestamp of the value, read without reading its price
+     */
+    long timestampAt(int index);
+
+    /**
+     * @param index Position of a value in the chunk
+     * @return The value
+     */
+    CryptoValue get(int index);
+
+    /**
+     * @return The values, which must not be modified. Chunks held off heap decode them on every call
+     */
+    CryptoValue[] values();
+
+    /**
+     * @param relativeAccuracy The relative error bound of the sketch, in (0, 1)
+     * @return A sketch of the prices of the chunk, computed on first use and cached with the chunk, so that it is
+     * shared by every series holding the chunk. It must not be modified
+     */
+    QuantileSketch sketch(double relativeAccuracy);
+
+    /**
+     * @return True if the values are held on heap
+     */
+    boolean isOnHeap();
+
+    /**
+     * @return The approximate number of bytes the chunk retains on heap, assuming compressed object pointers,
+     * including its cached sketch if any
+     */
+    long heapBytes();
+}
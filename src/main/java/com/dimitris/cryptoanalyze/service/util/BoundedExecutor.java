@@ -0,0 +1,155 @@
+package com.dimitris.cryptoanalyze.service.util;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor running at most a fixed number of tasks at once, with a bounded number of further tasks waiting to run.
+ * Tasks submitted beyond that are rejected with {@link RejectedExecutionException}.
+ * <p>
+ * With platform threads, tasks run on a fixed pool of threads and wait in a bounded queue. With virtual threads, see
+ * {@link VirtualThreads}, pooling threads gains nothing, so every task starts its own virtual thread, which waits for
+ * a permit of a semaphore bounding the tasks running
+ */
+public class BoundedExecutor extends AbstractExecutorService {
+
+    private final ThreadPoolExecutor pool;
+
+    private final ExecutorService threadPerTask;
+
+    /**
+     * Bounds the tasks either running or waiting, in virtual mode
+     */
+    private final Semaphore admitted;
+
+    /**
+     * Bounds the tasks running, in virtual mode
+     */
+    private final Semaphore running;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    /**
+     * Creates an executor running virtual threads if they are enabled, platform threads otherwise
+     *
+     * @param prefix        Prefix of the thread names
+     * @param threads       Number of tasks running at once
+     * @param queueCapacity Number of tasks that may wait to run
+     */
+    public BoundedExecutor(String prefix, int threads, int queueCapacity) {
+        this(prefix, threads, queueCapacity, VirtualThreads.isEnabled());
+    }
+
+    /**
+     * @param prefix        Prefix of the thread names
+     * @param threads       Number of tasks running at once
+     * @param queueCapacity Number of tasks that may wait to run
+     * @param virtual       True to run every task on its own virtual thread
+     */
+    public BoundedExecutor(String prefix, int threads, int queueCapacity, boolean virtual) {
+        if (threads <= 0 || queueCapacity < 0) {
+            throw new IllegalArgumentException("Executor " + prefix + " needs positive threads and non negative " +
+                    "queue capacity, found " + threads + " and " + queueCapacity);
+        }
+        if (virtual) {
+            this.pool = null;
+            this.threadPerTask = VirtualThreads.newThreadPerTaskExecutor(prefix);
+            this.admitted = new Semaphore(threads + queueCapacity);
+            this.running = new Semaphore(threads);
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            BlockingQueue<Runnable> queue = queueCapacity == 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(queueCapacity);
+            this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue, runnable -> {
+                Thread thread = new Thread(runnable, prefix + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+            this.threadPerTask = null;
+            this.admitted = null;
+            this.running = null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (pool != null) {
+            pool.execute(task);
+            return;
+        }
+        if (!admitted.tryAcquire()) {
+            throw new RejectedExecutionException("Executor saturated, " + getActiveCount() + " tasks running and " +
+                    getQueueSize() + " waiting");
+        }
+        waiting.incrementAndGet();
+        try {
+            threadPerTask.execute(() -> {
+                try {
+                    running.acquire();
+                } catch (InterruptedException e) {
+                    waiting.decrementAndGet();
+                    admitted.release();
+                    return;
+                }
+                waiting.decrementAndGet();
+                active.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    active.decrementAndGet();
+                    running.release();
+                    admitted.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            waiting.decrementAndGet();
+            admitted.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Number of tasks waiting to run
+     */
+    public int getQueueSize() {
+        return pool != null ? pool.getQueue().size() : waiting.get();
+    }
+
+    /**
+     * @return Number of tasks running
+     */
+    public int getActiveCount() {
+        return pool != null ? pool.getActiveCount() : active.get();
+    }
+
+    @Override
+    public void shutdown() {
+        delegate().shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate().shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate().isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate().isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate().awaitTermination(timeout, unit);
+    }
+
+    private ExecutorService delegate() {
+        return pool != null ? pool : threadPerTask;
+    }
+}
@@ -1,6 +1,9 @@
 package com.dimitris.cryptoanalyze.service.util;
 
 import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import com.dimitris.cryptoanalyze.service.model.CryptoValueSeries;
+import com.dimitris.cryptoanalyze.service.model.Deadline;
+import com.dimitris.cryptoanalyze.service.model.PriceSummary;
 import com.dimitris.cryptoanalyze.service.model.TimePeriod;
 
 import java.math.BigDecimal;
@@ -13,7 +16,8 @@ import java.util.Set;
 import java.util.stream.Stream;
 
 /**
- * Utility class providing metric calculations on crypto price values
+ * Utility class providing metric calculations on crypto price values. Oldest, newest, minimum and maximum prices of a
+ * {@link CryptoValueSeries} are calculated by {@link CryptoValueSeries#summarize(long, long)}
  */
 public class CryptoMetricsUtil {
 
@@ -26,6 +30,9 @@ public class CryptoMetricsUtil {
      * @return
      */
     public static Optional<BigDecimal> calculateOldestPrice(Set<CryptoValue> values, TimePeriod timePeriod) {
+        if (values instanceof CryptoValueSeries) {
+            return summarize((CryptoValueSeries) values, timePeriod).map(summary -> summary.getOldest().getPrice());
+        }
         Stream<CryptoValue> stream = getValuesStreamInPeriod(values, timePeriod);
         Optional<CryptoValue> cryptoValue = stream.min(Comparator.comparingLong(CryptoValue::getTimestamp));
         return cryptoValue.isPresent() ? Optional.of(cryptoValue.get().getPrice()) : Optional.empty();
@@ -40,6 +47,9 @@ public class CryptoMetricsUtil {
      * @return
      */
     public static Optional<BigDecimal> calculateNewestPrice(Set<CryptoValue> values, TimePeriod timePeriod) {
+        if (values instanceof CryptoValueSeries) {
+            return summarize((CryptoValueSeries) values, timePeriod).map(summary -> summary.getNewest().getPrice());
+        }
         Stream<CryptoValue> stream = getValuesStreamInPeriod(values, timePeriod);
         Optional<CryptoValue> cryptoValue = stream.max(Comparator.comparingLong(CryptoValue::getTimestamp));
         return cryptoValue.isPresent() ? Optional.of(cryptoValue.get().getPrice()) : Optional.empty();
@@ -54,6 +64,9 @@ public class CryptoMetricsUtil {
      * @return
      */
     public static Optional<BigDecimal> calculateMinPrice(Set<CryptoValue> values, TimePeriod timePeriod) {
+        if (values instanceof CryptoValueSeries) {
+            return summarize((CryptoValueSeries) values, timePeriod).map(summary -> summary.getMin().getPrice());
+        }
         Stream<CryptoValue> stream = getValuesStreamInPeriod(values, timePeriod);
         Optional<CryptoValue> cryptoValue = stream.min(Comparator.comparing(CryptoValue::getPrice));
         return cryptoValue.isPresent() ? Optional.of(cryptoValue.get().getPrice()) : Optional.empty();
@@ -68,6 +81,9 @@ public class CryptoMetricsUtil {
      * @return
      */
     public static Optional<BigDecimal> calculateMaxPrice(Set<CryptoValue> values, TimePeriod timePeriod) {
+        if (values instanceof CryptoValueSeries) {
+            return summarize((CryptoValueSeries) values, timePeriod).map(summary -> summary.getMax().getPrice());
+        }
         Stream<CryptoValue> stream = getValuesStreamInPeriod(values, timePeriod);
         Optional<CryptoValue> cryptoValue = stream.max(Comparator.comparing(CryptoValue::getPrice));
         return cryptoValue.isPresent() ? Optional.of(cryptoValue.get().getPrice()) : Optional.empty();
@@ -82,6 +98,10 @@ public class CryptoMetricsUtil {
      * @return
      */
     public static Optional<BigDecimal> calculateNormalizedPriceRange(Set<CryptoValue> values, TimePeriod timePeriod) {
+        if (values instanceof CryptoValueSeries) {
+            return summarize((CryptoValueSeries) values, timePeriod)
+                    .map(summary -> normalizedPriceRange(summary.getMin().getPrice(), summary.getMax().getPrice()));
+        }
         Stream<CryptoValue> stream = getValuesStreamInPeriod(values, timePeriod);
         Optional<CryptoValue> cryptoValueWithMinPrice = stream.min(Comparator.comparing(CryptoValue::getPrice));
 
@@ -91,15 +111,29 @@ public class CryptoMetricsUtil {
         if (cryptoValueWithMinPrice.isEmpty() || cryptoValueWithMaxPrice.isEmpty()) {
             return Optional.empty();
         }
-        BigDecimal min = cryptoValueWithMinPrice.get().getPrice();
-        BigDecimal max = cryptoValueWithMaxPrice.get().getPrice();
-        BigDecimal normalized = max.subtract(min).divide(min, new MathContext(5, RoundingMode.HALF_UP));
-        return Optional.of(normalized);
+        return Optional.of(normalizedPriceRange(cryptoValueWithMinPrice.get().getPrice(),
+                cryptoValueWithMaxPrice.get().getPrice()));
+    }
+
+    /**
+     * Calculates normalized price range from the min and max prices
+     * @param min The min price
+     * @param max The max price
+     * @return (max-min)/min, rounded to five significant digits
+     */
+    public static BigDecimal normalizedPriceRange(BigDecimal min, BigDecimal max) {
+        return max.subtract(min).divide(min, new MathContext(5, RoundingMode.HALF_UP));
+    }
+
+    private static Optional<PriceSummary> summarize(CryptoValueSeries series, TimePeriod timePeriod) {
+        return series.summarize(timePeriod.getFromTimestamp(), timePeriod.getToTimestamp());
     }
 
     /**
      * Create and return a new {@link Stream} of {@link CryptoValue} values filtered by a specified time period
-     * Used by calculation methods as a starting point on which to execute further calculations
+     * Used by calculation methods as a starting point on which to execute further calculations. The stream checks
+     * the deadline attached to the current thread while it is consumed, and throws
+     * {@link Deadline.ScanAbortedException} once it is exceeded.
      * @param values A set of crypto price values provided
      * @param timePeriod Time period calculation applies to. It contains two optional fields representing start and end
      *                   time points. If any of them is omitted, calculation will be restricted only to the other point
@@ -107,7 +141,7 @@ public class CryptoMetricsUtil {
      * @return
      */
     private static Stream<CryptoValue> getValuesStreamInPeriod(Set<CryptoValue> values, TimePeriod timePeriod) {
-        Stream<CryptoValue> stream = values.stream();
+        Stream<CryptoValue> stream = values.stream().peek(Deadline.current().checkpoint());
         Optional<LocalDateTime> fromDateTime = timePeriod.getFromDateTime();
         Optional<LocalDateTime> toDateTime = timePeriod.getToDateTime();
         if (fromDateTime.isPresent() && toDateTime.isPresent()) {
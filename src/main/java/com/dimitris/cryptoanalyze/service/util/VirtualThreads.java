@@ -0,0 +1,123 @@
+package com.dimitris.cryptoanalyze.service.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Utility class providing virtual threads, on JDKs supporting them, while the application targets Java 11. They are
+ * looked up by reflection, so that the application still builds and runs on older JDKs.
+ * <p>
+ * Virtual threads are used to handle requests, read data files and fan out calculations when the system property
+ * &quot;threads.virtual&quot; is true (default false) and the JDK supports them. Otherwise platform threads are used,
+ * as they are by default
+ */
+public class VirtualThreads {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreads.class);
+
+    /**
+     * Thread.ofVirtual(), null if the JDK does not support virtual threads
+     */
+    private static final Method OF_VIRTUAL;
+
+    /**
+     * Thread.Builder.name(String, long) and Thread.Builder.factory()
+     */
+    private static final Method NAME;
+
+    private static final Method FACTORY;
+
+    /**
+     * Executors.newThreadPerTaskExecutor(ThreadFactory)
+     */
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    private static final AtomicBoolean unsupportedLogged = new AtomicBoolean();
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        Method newThreadPerTaskExecutor = null;
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builderClass.getMethod("name", String.class, long.class);
+            factory = builderClass.getMethod("factory");
+            newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            // Virtual threads are a preview feature on some JDKs, failing here unless previews are enabled
+            ofVirtual.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+    }
+
+    /**
+     * @return True if the JDK supports virtual threads
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Returns whether virtual threads are used. Requesting them on a JDK not supporting them is logged once, and
+     * platform threads are used
+     *
+     * @return True if virtual threads are requested and supported
+     */
+    public static boolean isEnabled() {
+        if (!Boolean.getBoolean("threads.virtual")) {
+            return false;
+        }
+        if (!isSupported()) {
+            if (unsupportedLogged.compareAndSet(false, true)) {
+                logger.warn("Virtual threads requested but not supported by JDK {}, using platform threads",
+                        System.getProperty("java.version"));
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param prefix Prefix of the thread names, followed by a counter
+     * @return A factory of virtual threads
+     * @throws UnsupportedOperationException The JDK does not support virtual threads
+     */
+    public static ThreadFactory factory(String prefix) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Virtual threads not supported by JDK " +
+                    System.getProperty("java.version"));
+        }
+        try {
+            Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 0L);
+            return (ThreadFactory) FACTORY.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Error creating virtual thread factory", e);
+        }
+    }
+
+    /**
+     * @param prefix Prefix of the thread names, followed by a counter
+     * @return An executor starting a new virtual thread for every task
+     * @throws UnsupportedOperationException The JDK does not support virtual threads
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String prefix) {
+        ThreadFactory factory = factory(prefix);
+        try {
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Error creating virtual thread executor", e);
+        }
+    }
+}
@@ -6,7 +6,11 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -45,13 +49,12 @@ public class CryptoAnalyzerApplicationE2ETest {
                 "  \"toDateTime\": \"2022-01-02 00:00:00\"\n" +
                 "}";
 
-        mockMvc
-                .perform(
-                        post("/api/crypto/analyze/sort/by/normalized/desc")
-                                .content(requestAsJsonString)
-                                .contentType(MediaType.APPLICATION_JSON)
-                                .accept(MediaType.APPLICATION_JSON)
-                )
+        performAsync(
+                post("/api/crypto/analyze/sort/by/normalized/desc")
+                        .content(requestAsJsonString)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+        )
                 .andExpect(
                         status().isOk()
                 )
@@ -83,12 +86,11 @@ public class CryptoAnalyzerApplicationE2ETest {
 
     @Test
     void test_getMetricsForCrypto() throws Exception {
-        mockMvc
-                .perform(
-                        post("/api/crypto/analyze/metrics/btc")
-                                .contentType(MediaType.APPLICATION_JSON)
-                                .accept(MediaType.APPLICATION_JSON)
-                )
+        performAsync(
+                post("/api/crypto/analyze/metrics/btc")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+        )
                 .andExpect(
                         status().isOk()
                 )
@@ -99,12 +101,11 @@ public class CryptoAnalyzerApplicationE2ETest {
 
     @Test
     void test_getMetricsForCrypto_cryptoNotSupported() throws Exception {
-        mockMvc
-                .perform(
-                        post("/api/crypto/analyze/metrics/ttt")
-                                .contentType(MediaType.APPLICATION_JSON)
-                                .accept(MediaType.APPLICATION_JSON)
-                )
+        performAsync(
+                post("/api/crypto/analyze/metrics/ttt")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+        )
                 .andExpect(
                         status().isNotFound()
                 )
@@ -117,12 +118,11 @@ public class CryptoAnalyzerApplicationE2ETest {
 
     @Test
     void test_getCryptoWithHighestNormalizedRange() throws Exception {
-        mockMvc
-                .perform(
-                        post("/api/crypto/analyze/crypto/with/highest/normalized")
-                                .contentType(MediaType.APPLICATION_JSON)
-                                .accept(MediaType.APPLICATION_JSON)
-                )
+        performAsync(
+                post("/api/crypto/analyze/crypto/with/highest/normalized")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+        )
                 .andExpect(
                         status().isOk()
                 )
@@ -134,4 +134,14 @@ public class CryptoAnalyzerApplicationE2ETest {
                         jsonPath("$.value").exists()
                 );
     }
+
+    /**
+     * Performs a request, whose response is calculated asynchronously, and dispatches it back once calculated
+     */
+    private ResultActions performAsync(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(mvcResult));
+    }
 }
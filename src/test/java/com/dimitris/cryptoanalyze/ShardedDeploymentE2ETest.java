@@ -0,0 +1,125 @@
+package com.dimitris.cryptoanalyze;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Starts a sharded deployment of two instances on localhost and checks that every instance answers as a single
+ * instance holding every crypto would. With two shards, xrp is owned by shard 0 and every other crypto by shard 1
+ */
+public class ShardedDeploymentE2ETest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    private static final List<ConfigurableApplicationContext> shards = new ArrayList<>();
+
+    private static final List<String> nodes = new ArrayList<>();
+
+    @BeforeAll
+    static void startShards() throws IOException {
+        System.setProperty("data.file.path.property.format", "data.file.path");
+        System.setProperty("data.file.path.btc", "prices\\BTC_values_test.csv");
+        System.setProperty("data.file.path.doge", "prices\\DOGE_values_test.csv");
+        System.setProperty("data.file.path.eth", "prices\\ETH_values_test.csv");
+        System.setProperty("data.file.path.ltc", "prices\\LTC_values_test.csv");
+        System.setProperty("data.file.path.xrp", "prices\\XRP_values_test.csv");
+        List<Integer> ports = List.of(freePort(), freePort());
+        for (int port : ports) {
+            nodes.add("http://localhost:" + port);
+        }
+        System.setProperty("shard.nodes", String.join(",", nodes));
+        try {
+            for (int shard = 0; shard < ports.size(); shard++) {
+                System.setProperty("shard.index", Integer.toString(shard));
+                shards.add(new SpringApplicationBuilder(CryptoAnalyzerApplication.class)
+                        .run("--server.port=" + ports.get(shard)));
+            }
+        } finally {
+            System.clearProperty("shard.nodes");
+            System.clearProperty("shard.index");
+        }
+    }
+
+    @AfterAll
+    static void stopShards() {
+        shards.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    void test_sortCryptosByNormalizedRangeDesc_mergedFromEveryShard() throws Exception {
+        JsonNode fromShard0 = post(nodes.get(0), "/api/crypto/analyze/sort/by/normalized/desc", "");
+        JsonNode fromShard1 = post(nodes.get(1), "/api/crypto/analyze/sort/by/normalized/desc", "");
+
+        assertEquals(5, fromShard0.path("cryptos").size());
+        assertEquals(fromShard0, fromShard1);
+        for (int i = 1; i < fromShard0.path("cryptos").size(); i++) {
+            assertTrue(fromShard0.path("cryptos").get(i - 1).path("value").decimalValue()
+                    .compareTo(fromShard0.path("cryptos").get(i).path("value").decimalValue()) >= 0);
+        }
+    }
+
+    @Test
+    void test_getCryptoWithHighestNormalizedRange_sameOnEveryShard() throws Exception {
+        String timePeriod = "{\"fromDateTime\": \"2022-01-01 00:00:00\", \"toDateTime\": \"2022-01-15 00:00:00\"}";
+        JsonNode sorted = post(nodes.get(1), "/api/crypto/analyze/sort/by/normalized/desc", timePeriod);
+
+        for (String node : nodes) {
+            assertEquals(sorted.path("cryptos").get(0),
+                    post(node, "/api/crypto/analyze/crypto/with/highest/normalized", timePeriod));
+        }
+    }
+
+    @Test
+    void test_getMetricsForCrypto_routedToOwner() throws Exception {
+        JsonNode fromOwner = post(nodes.get(1), "/api/crypto/analyze/metrics/btc", "");
+        JsonNode fromOtherShard = post(nodes.get(0), "/api/crypto/analyze/metrics/btc", "");
+
+        assertEquals(8, fromOwner.path("metrics").size());
+        assertEquals(fromOwner, fromOtherShard);
+    }
+
+    @Test
+    void test_shardEndpoint_onlyOwnedCryptos() throws Exception {
+        JsonNode partial = post(nodes.get(0), "/api/crypto/shard/sort/by/normalized/desc", "");
+        JsonNode limited = post(nodes.get(1), "/api/crypto/shard/sort/by/normalized/desc?limit=2", "");
+
+        assertEquals(1, partial.path("cryptos").size());
+        assertEquals("xrp", partial.path("cryptos").get(0).path("crypto").asText());
+        assertEquals(2, limited.path("cryptos").size());
+    }
+
+    private static JsonNode post(String node, String path, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(node + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode(), response.body());
+        return objectMapper.readTree(response.body());
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.dimitris.cryptoanalyze.benchmark;
+
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import com.dimitris.cryptoanalyze.service.model.CryptoValueSeries;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares deduplication of a batch of loaded values against the values already stored for a crypto: hashing into
+ * sets, as values used to be stored, and sort-merging into a {@link CryptoValueSeries}. The batch is in file order
+ * (ascending timestamps) and a part of it is already stored, as when the write-ahead log is replayed over the files
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DedupeBenchmark {
+
+    /**
+     * Number of values in the batch, and in the stored values
+     */
+    @Param({"100000", "1000000"})
+    public int size;
+
+    /**
+     * Fraction of the batch that is already stored
+     */
+    @Param({"0.1"})
+    public double overlap;
+
+    private List<CryptoValue> batch;
+
+    private Set<CryptoValue> storedSet;
+
+    private CryptoValueSeries storedSeries;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        int overlapStart = (int) (size * (1 - overlap));
+        List<CryptoValue> stored = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            stored.add(new CryptoValue(i * 1000L, price(random)));
+        }
+        batch = new ArrayList<>(stored.subList(overlapStart, size));
+        for (int i = size; batch.size() < size; i++) {
+            batch.add(new CryptoValue(i * 1000L, price(random)));
+        }
+        storedSet = Collections.unmodifiableSet(new HashSet<>(stored));
+        storedSeries = CryptoValueSeries.of(stored);
+    }
+
+    @Benchmark
+    public Set<CryptoValue> hashSetDedupe() {
+        Set<CryptoValue> newValues = batch.stream().collect(Collectors.toSet());
+        Set<CryptoValue> mergedValues = new HashSet<>(storedSet);
+        mergedValues.addAll(newValues);
+        return Collections.unmodifiableSet(mergedValues);
+    }
+
+    @Benchmark
+    public Set<CryptoValue> sortMergeDedupe() {
+        return storedSeries.merge(batch);
+    }
+
+    private static BigDecimal price(Random random) {
+        return BigDecimal.valueOf(random.nextInt(10_000_000), 4);
+    }
+}
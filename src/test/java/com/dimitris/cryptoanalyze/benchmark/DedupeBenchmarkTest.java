@@ -0,0 +1,36 @@
+package com.dimitris.cryptoanalyze.benchmark;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Runs {@link DedupeBenchmark} and writes its results as JSON to target/benchmark-dedupe.json. It is skipped unless
+ * -Dbenchmark=true is passed, eg through argLine. -Dbenchmark.forks sets the number of forked JVMs (default 1, 0 runs
+ * in the test JVM)
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class DedupeBenchmarkTest {
+
+    @Test
+    void test_dedupeBenchmark() throws RunnerException {
+        File resultFile = new File("target/benchmark-dedupe.json");
+        resultFile.getParentFile().mkdirs();
+        Options options = new OptionsBuilder()
+                .include(DedupeBenchmark.class.getName())
+                .forks(Integer.getInteger("benchmark.forks", 1))
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile.getPath())
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,76 @@
+package com.dimitris.cryptoanalyze.benchmark;
+
+import com.dimitris.cryptoanalyze.controller.ResponseEncodings;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricDto;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsListDto;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding a {@link CryptoMetricsListDto} and decoding it on the client side, as a tree like
+ * {@link com.dimitris.cryptoanalyze.service.impl.HttpShardClient} does, in each of the {@link ResponseEncodings}.
+ * Payload sizes are reported by {@link EncodingBenchmarkTest}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EncodingBenchmark {
+
+    /**
+     * Number of cryptos in the list
+     */
+    @Param({"1000", "100000"})
+    public int symbols;
+
+    @Param({"application/json", "application/cbor", "application/x-jackson-smile"})
+    public String encoding;
+
+    private ObjectMapper objectMapper;
+
+    private CryptoMetricsListDto response;
+
+    private byte[] encodedResponse;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = new ResponseEncodings(Jackson2ObjectMapperBuilder::json)
+                .objectMapperFor(MediaType.parseMediaType(encoding));
+        response = response(symbols);
+        encodedResponse = objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public JsonNode decode() throws IOException {
+        return objectMapper.readTree(encodedResponse);
+    }
+
+    /**
+     * @param symbols Number of cryptos in the list
+     * @return A list of cryptos with normalized ranges of five significant digits, as the calculator returns them
+     */
+    static CryptoMetricsListDto response(int symbols) {
+        Random random = new Random(1);
+        List<CryptoMetricDto> cryptos = new ArrayList<>(symbols);
+        for (int i = 0; i < symbols; i++) {
+            BigDecimal range = BigDecimal.valueOf(random.nextDouble() * 3).round(new MathContext(5));
+            cryptos.add(new CryptoMetricDto("sym" + i, range));
+        }
+        return new CryptoMetricsListDto(cryptos);
+    }
+}
@@ -0,0 +1,50 @@
+package com.dimitris.cryptoanalyze.benchmark;
+
+import com.dimitris.cryptoanalyze.controller.ResponseEncodings;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Runs {@link EncodingBenchmark} and writes its results as JSON to target/benchmark-encoding.json, after printing the
+ * payload size of each encoding. It is skipped unless -Dbenchmark=true is passed, eg through argLine.
+ * -Dbenchmark.forks sets the number of forked JVMs (default 1, 0 runs in the test JVM)
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class EncodingBenchmarkTest {
+
+    @Test
+    void test_encodingBenchmark() throws RunnerException, JsonProcessingException {
+        ResponseEncodings encodings = new ResponseEncodings(Jackson2ObjectMapperBuilder::json);
+        for (int symbols : List.of(1000, 100000)) {
+            for (MediaType mediaType : List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR,
+                    ResponseEncodings.APPLICATION_SMILE)) {
+                int size = encodings.objectMapperFor(mediaType).writeValueAsBytes(EncodingBenchmark.response(symbols)).length;
+                System.out.printf("Payload of %d symbols as %s: %d bytes%n", symbols, mediaType, size);
+            }
+        }
+
+        File resultFile = new File("target/benchmark-encoding.json");
+        resultFile.getParentFile().mkdirs();
+        Options options = new OptionsBuilder()
+                .include(EncodingBenchmark.class.getName())
+                .forks(Integer.getInteger("benchmark.forks", 1))
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile.getPath())
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,164 @@
+package com.dimitris.cryptoanalyze.benchmark;
+
+import com.dimitris.cryptoanalyze.controller.VirtualThreadsTomcatCustomizer;
+import com.dimitris.cryptoanalyze.service.util.VirtualThreads;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServer;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares request handling on the Tomcat thread pool with request handling on virtual threads, see
+ * {@link VirtualThreadsTomcatCustomizer}, under many concurrent slow clients. Each client uploads its request body in
+ * chunks with pauses in between, holding the thread handling its request while the body is read, the way a slow
+ * client of the ingest endpoint does. Latency is measured from connecting until the whole response is read.
+ * <p>
+ * Results are printed and written as JSON to target/benchmark-slow-clients.json. It is skipped unless
+ * -Dbenchmark=true is passed, eg through argLine. Virtual threads are measured only on a JDK supporting them, eg
+ * JAVA_HOME pointing at JDK 21. The load is set by:
+ * <ul>
+ *     <li>&quot;benchmark.clients&quot;: concurrent clients (default 2000)</li>
+ *     <li>&quot;benchmark.body.chunks&quot;: chunks each body is uploaded in (default 4)</li>
+ *     <li>&quot;benchmark.chunk.pause.millis&quot;: pause before each chunk (default 50)</li>
+ * </ul>
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class SlowClientsBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(SlowClientsBenchmarkTest.class);
+
+    private static final int CLIENTS = Integer.getInteger("benchmark.clients", 2000);
+
+    private static final int BODY_CHUNKS = Integer.getInteger("benchmark.body.chunks", 4);
+
+    private static final long CHUNK_PAUSE_MILLIS = Long.getLong("benchmark.chunk.pause.millis", 50);
+
+    private static final byte[] CHUNK = "{\"timestamp\": 1641009600000, \"price\": 46813.21}\n"
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void test_slowClientsBenchmark() throws Exception {
+        Map<String, Map<String, Object>> results = new LinkedHashMap<>();
+        results.put("platform", run(false));
+        if (VirtualThreads.isSupported()) {
+            results.put("virtual", run(true));
+        } else {
+            logger.info("Virtual threads not supported by JDK {}, measuring platform threads only",
+                    System.getProperty("java.version"));
+        }
+
+        File resultFile = new File("target/benchmark-slow-clients.json");
+        resultFile.getParentFile().mkdirs();
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(resultFile, results);
+    }
+
+    private static Map<String, Object> run(boolean virtualThreads) throws Exception {
+        String previous = System.setProperty("threads.virtual", String.valueOf(virtualThreads));
+        TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory(0);
+        factory.addProtocolHandlerCustomizers(new VirtualThreadsTomcatCustomizer());
+        WebServer server = factory.getWebServer(servletContext ->
+                servletContext.addServlet("upload", new UploadServlet()).addMapping("/*"));
+        server.start();
+        restore(previous);
+
+        ExecutorService clients = VirtualThreads.isSupported() ? VirtualThreads.newThreadPerTaskExecutor("client-")
+                : Executors.newFixedThreadPool(CLIENTS);
+        AtomicInteger errors = new AtomicInteger();
+        long[] latencies = new long[CLIENTS];
+        try {
+            List<Future<?>> requests = new ArrayList<>(CLIENTS);
+            long started = System.nanoTime();
+            for (int i = 0; i < CLIENTS; i++) {
+                int client = i;
+                requests.add(clients.submit(() -> {
+                    long requestStarted = System.nanoTime();
+                    try {
+                        upload(server.getPort());
+                    } catch (IOException | InterruptedException e) {
+                        errors.incrementAndGet();
+                    }
+                    latencies[client] = System.nanoTime() - requestStarted;
+                }));
+            }
+            for (Future<?> request : requests) {
+                request.get();
+            }
+            long wallNanos = System.nanoTime() - started;
+
+            Arrays.sort(latencies);
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("clients", CLIENTS);
+            result.put("errors", errors.get());
+            result.put("wallMillis", wallNanos / 1_000_000);
+            result.put("requestsPerSecond", CLIENTS * 1_000_000_000L / wallNanos);
+            result.put("p50Millis", latencies[CLIENTS / 2] / 1_000_000);
+            result.put("p99Millis", latencies[CLIENTS * 99 / 100] / 1_000_000);
+            result.put("maxMillis", latencies[CLIENTS - 1] / 1_000_000);
+            logger.info("{} threads: {}", virtualThreads ? "Virtual" : "Platform", result);
+            return result;
+        } finally {
+            clients.shutdownNow();
+            server.stop();
+        }
+    }
+
+    private static void restore(String previous) {
+        if (previous == null) {
+            System.clearProperty("threads.virtual");
+        } else {
+            System.setProperty("threads.virtual", previous);
+        }
+    }
+
+    private static void upload(int port) throws IOException, InterruptedException {
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("POST /upload HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\n" +
+                    "Content-Length: " + BODY_CHUNKS * CHUNK.length + "\r\nConnection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            for (int i = 0; i < BODY_CHUNKS; i++) {
+                Thread.sleep(CHUNK_PAUSE_MILLIS);
+                out.write(CHUNK);
+                out.flush();
+            }
+            InputStream in = socket.getInputStream();
+            byte[] response = in.readAllBytes();
+            if (!new String(response, 0, Math.min(12, response.length), StandardCharsets.US_ASCII).endsWith("200")) {
+                throw new IOException("Unexpected response");
+            }
+        }
+    }
+
+    /**
+     * Reads the whole body with blocking reads, as request body deserialization does, and answers its length
+     */
+    private static class UploadServlet extends HttpServlet {
+
+        @Override
+        protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            int length = request.getInputStream().readAllBytes().length;
+            response.setContentType("text/plain");
+            response.getWriter().print(length);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.dimitris.cryptoanalyze.controller;
+
+import com.dimitris.cryptoanalyze.controller.dto.AlertRuleDto;
+import com.dimitris.cryptoanalyze.controller.dto.AlertRuleRequestDto;
+import com.dimitris.cryptoanalyze.service.CryptoAlertManager;
+import com.dimitris.cryptoanalyze.service.enums.AlertDirection;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(CryptoAlertController.class)
+public class CryptoAlertControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CryptoAlertManager alertManager;
+
+    @Test
+    void test_registerRule() throws Exception {
+        AlertRuleRequestDto request = new AlertRuleRequestDto();
+        request.setCrypto("btc");
+        request.setWindowMillis(86400000L);
+        request.setThreshold(new BigDecimal("0.05"));
+        request.setDirection(AlertDirection.ABOVE);
+        when(alertManager.register(request))
+                .thenReturn(new AlertRuleDto(1, "btc", 86400000L, new BigDecimal("0.05"), AlertDirection.ABOVE));
+
+        mockMvc
+                .perform(
+                        post("/api/crypto/alerts")
+                                .content("{\"crypto\": \"btc\", \"windowMillis\": 86400000, \"threshold\": 0.05, " +
+                                        "\"direction\": \"ABOVE\"}")
+                                .contentType(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isCreated())
+                .andExpect(content().json("{\"id\": 1, \"crypto\": \"btc\", \"windowMillis\": 86400000, " +
+                        "\"threshold\": 0.05, \"direction\": \"ABOVE\"}"));
+    }
+
+    @Test
+    void test_registerRule_cryptoNotSupported() throws Exception {
+        when(alertManager.register(any())).thenThrow(new CryptoNotFoundException("Crypto abc not supported."));
+
+        mockMvc
+                .perform(
+                        post("/api/crypto/alerts")
+                                .content("{\"crypto\": \"abc\", \"windowMillis\": 1000, \"threshold\": 0.05, " +
+                                        "\"direction\": \"BELOW\"}")
+                                .contentType(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.errorMessage").value("Crypto abc not supported."));
+    }
+
+    @Test
+    void test_getRules() throws Exception {
+        when(alertManager.getRules()).thenReturn(List.of(
+                new AlertRuleDto(1, "btc", 1000, new BigDecimal("0.05"), AlertDirection.ABOVE),
+                new AlertRuleDto(2, "eth", 2000, new BigDecimal("0.1"), AlertDirection.BELOW)));
+
+        mockMvc
+                .perform(get("/api/crypto/alerts"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[1].crypto").value("eth"))
+                .andExpect(jsonPath("$[1].direction").value("BELOW"));
+    }
+
+    @Test
+    void test_removeRule() throws Exception {
+        mockMvc
+                .perform(delete("/api/crypto/alerts/1"))
+                .andExpect(status().isNoContent());
+
+        verify(alertManager).remove(1);
+    }
+
+    @Test
+    void test_removeRule_notFound() throws Exception {
+        doThrow(new CryptoNotFoundException("Alert rule 5 not found.")).when(alertManager).remove(5);
+
+        mockMvc
+                .perform(delete("/api/crypto/alerts/5"))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -3,37 +3,88 @@ package com.dimitris.cryptoanalyze.controller;
 import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricDto;
 import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsDto;
 import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsListDto;
+import com.dimitris.cryptoanalyze.controller.dto.TimePeriodRequestDto;
 import com.dimitris.cryptoanalyze.service.CryptoAnalyzer;
+import com.dimitris.cryptoanalyze.service.CryptoValuesManager;
+import com.dimitris.cryptoanalyze.service.DataLoader;
 import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
 import com.dimitris.cryptoanalyze.service.enums.CryptoMetricEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoDeadlineExceededException;
 import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
 import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoOverloadedException;
+import com.dimitris.cryptoanalyze.service.impl.ShardTopology;
+import com.dimitris.cryptoanalyze.service.model.CryptoValueSeries;
+import com.dimitris.cryptoanalyze.service.model.DataSnapshot;
+import com.dimitris.cryptoanalyze.service.model.Deadline;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.web.servlet.MockMvc;
-
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@WebMvcTest
+@WebMvcTest(CryptoAnalyzerController.class)
+@Import({CryptoResponseCache.class, ShardTopology.class, RequestDeadlineResolver.class, DataVersionResolver.class})
 public class CryptoAnalyzerContollerTest {
 
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private CryptoResponseCache responseCache;
+
+    @Autowired
+    private ResponseEncodings responseEncodings;
+
     @MockBean
     private CryptoAnalyzer analyzer;
 
+    @MockBean
+    private CryptoValuesManager manager;
+
+    @MockBean
+    private DataLoader dataLoader;
+
+    @BeforeEach
+    void setUp() {
+        responseCache.invalidateAll();
+    }
+
     @Test
     void test_sortCryptosByNormalizedRangeDesc_timePeriodProvided() throws Exception {
         String requestAsJsonString = "{\n" +
@@ -51,13 +102,12 @@ public class CryptoAnalyzerContollerTest {
 
         when(analyzer.getCryptosSortedByNormalizedRangeDesc(any())).thenReturn(expectedResponse);
 
-        mockMvc
-                .perform(
-                        post("/api/crypto/analyze/sort/by/normalized/desc")
-                                .content(requestAsJsonString)
-                                .contentType(MediaType.APPLICATION_JSON)
-                                .accept(MediaType.APPLICATION_JSON)
-                )
+        performAsync(
+                post("/api/crypto/analyze/sort/by/normalized/desc")
+                        .content(requestAsJsonString)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+        )
                 .andExpect(
                         status().isOk()
                 )
@@ -102,12 +152,11 @@ public class CryptoAnalyzerContollerTest {
 
         when(analyzer.getCryptosSortedByNormalizedRangeDesc(any())).thenReturn(expectedResponse);
 
-        mockMvc
-                .perform(
-                        post("/api/crypto/analyze/sort/by/normalized/desc")
-                                .contentType(MediaType.APPLICATION_JSON)
-                                .accept(MediaType.APPLICATION_JSON)
-                )
+        performAsync(
+                post("/api/crypto/analyze/sort/by/normalized/desc")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+        )
                 .andExpect(
                         status().isOk()
                 )
@@ -157,13 +206,12 @@ public class CryptoAnalyzerContollerTest {
 
         when(analyzer.getCryptosSortedByNormalizedRangeDesc(any())).thenReturn(expectedResponse);
 
-        mockMvc
-                .perform(
-                        post("/api/crypto/analyze/sort/by/normalized/desc")
-                                .content(requestAsJsonString)
-                                .contentType(MediaType.APPLICATION_JSON)
-                                .accept(MediaType.APPLICATION_JSON)
-                )
+        performAsync(
+                post("/api/crypto/analyze/sort/by/normalized/desc")
+                        .content(requestAsJsonString)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+        )
                 .andExpect(
                         status().isOk()
                 )
@@ -213,13 +261,12 @@ public class CryptoAnalyzerContollerTest {
 
         when(analyzer.getCryptosSortedByNormalizedRangeDesc(any())).thenReturn(expectedResponse);
 
-        mockMvc
-                .perform(
-                        post("/api/crypto/analyze/sort/by/normalized/desc")
-                                .content(requestAsJsonString)
-                                .contentType(MediaType.APPLICATION_JSON)
-                                .accept(MediaType.APPLICATION_JSON)
-                )
+        performAsync(
+                post("/api/crypto/analyze/sort/by/normalized/desc")
+                        .content(requestAsJsonString)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+        )
                 .andExpect(
                         status().isOk()
                 )
@@ -269,13 +316,12 @@ public class CryptoAnalyzerContollerTest {
 
         when(analyzer.getCryptosSortedByNormalizedRangeDesc(any())).thenReturn(expectedResponse);
 
-        mockMvc
-                .perform(
-                        post("/api/crypto/analyze/sort/by/normalized/desc")
-                                .content(requestAsJsonString)
-                                .contentType(MediaType.APPLICATION_JSON)
-                                .accept(MediaType.APPLICATION_JSON)
-                )
+        performAsync(
+                post("/api/crypto/analyze/sort/by/normalized/desc")
+                        .content(requestAsJsonString)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+        )
                 .andExpect(
                         status().isOk()
                 )
@@ -324,12 +370,11 @@ public class CryptoAnalyzerContollerTest {
 
         when(analyzer.getMetricsForCrypto(any(), anyString())).thenReturn(expectedResponse);
 
-        mockMvc
-                .perform(
-                        post("/api/crypto/analyze/metrics/btc")
-                                .contentType(MediaType.APPLICATION_JSON)
-                                .accept(MediaType.APPLICATION_JSON)
-                )
+        performAsync(
+                post("/api/crypto/analyze/metrics/btc")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+        )
                 .andExpect(
                         status().isOk()
                 )
@@ -345,12 +390,11 @@ public class CryptoAnalyzerContollerTest {
     void test_getMetricsForCrypto_cryptoNotSupported() throws Exception {
         when(analyzer.getMetricsForCrypto(any(), anyString())).thenThrow(new CryptoNotFoundException("Crypto not found"));
 
-        mockMvc
-                .perform(
-                        post("/api/crypto/analyze/metrics/ttt")
-                                .contentType(MediaType.APPLICATION_JSON)
-                                .accept(MediaType.APPLICATION_JSON)
-                )
+        performAsync(
+                post("/api/crypto/analyze/metrics/ttt")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+        )
                 .andExpect(
                         status().isNotFound()
                 )
@@ -369,12 +413,11 @@ public class CryptoAnalyzerContollerTest {
         CryptoMetricDto expectedResponse = new CryptoMetricDto("btc", new BigDecimal("124"));
         when(analyzer.getCryptoWithHighestNormalizedRange(any())).thenReturn(expectedResponse);
 
-        mockMvc
-                .perform(
-                        post("/api/crypto/analyze/crypto/with/highest/normalized")
-                                .contentType(MediaType.APPLICATION_JSON)
-                                .accept(MediaType.APPLICATION_JSON)
-                )
+        performAsync(
+                post("/api/crypto/analyze/crypto/with/highest/normalized")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+        )
                 .andExpect(
                         status().isOk()
                 )
@@ -394,12 +437,11 @@ public class CryptoAnalyzerContollerTest {
     void test_getCryptoWithHighestNormalizedRange_internalError() throws Exception {
         when(analyzer.getCryptoWithHighestNormalizedRange(any())).thenThrow(new CryptoInternalException("Internal error"));
 
-        mockMvc
-                .perform(
-                        post("/api/crypto/analyze/crypto/with/highest/normalized")
-                                .contentType(MediaType.APPLICATION_JSON)
-                                .accept(MediaType.APPLICATION_JSON)
-                )
+        performAsync(
+                post("/api/crypto/analyze/crypto/with/highest/normalized")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+        )
                 .andExpect(
                         status().isInternalServerError()
                 )
@@ -412,4 +454,378 @@ public class CryptoAnalyzerContollerTest {
         verify(analyzer).getCryptoWithHighestNormalizedRange(any());
         verifyNoMoreInteractions(analyzer);
     }
+
+    @Test
+    void test_getCryptoWithHighestNormalizedRange_overloaded() throws Exception {
+        when(analyzer.getCryptoWithHighestNormalizedRange(any()))
+                .thenThrow(new CryptoOverloadedException("Too many requests, expensive request pool is saturated", 3));
+
+        performAsync(
+                post("/api/crypto/analyze/crypto/with/highest/normalized")
+                        .content("{\"fromDateTime\": \"2022-01-01 00:00:00\"}")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+        )
+                .andExpect(
+                        status().isTooManyRequests()
+                )
+                .andExpect(
+                        header().string(HttpHeaders.RETRY_AFTER, "3")
+                ).andExpect(
+                        jsonPath("$.errorMessage").value("Too many requests, expensive request pool is saturated")
+                );
+    }
+
+    @Test
+    void test_getCryptoWithHighestNormalizedRange_timePeriodNotProvided_eTagReturned() throws Exception {
+        when(manager.getDataVersion()).thenReturn(7L);
+        when(analyzer.getCryptoWithHighestNormalizedRange(any())).thenReturn(new CryptoMetricDto("btc", new BigDecimal("124")));
+
+        String eTag = performAsync(
+                post("/api/crypto/analyze/crypto/with/highest/normalized")
+                        .accept(MediaType.APPLICATION_JSON)
+        )
+                .andExpect(
+                        status().isOk()
+                ).andExpect(
+                        header().exists(HttpHeaders.ETAG)
+                ).andExpect(
+                        jsonPath("$.crypto").value("btc")
+                )
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        performAsync(
+                post("/api/crypto/analyze/crypto/with/highest/normalized")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag)
+        )
+                .andExpect(
+                        status().isNotModified()
+                ).andExpect(
+                        header().string(HttpHeaders.ETAG, eTag)
+                ).andExpect(
+                        content().bytes(new byte[0])
+                );
+
+        verify(analyzer, times(1)).getCryptoWithHighestNormalizedRange(any());
+        verifyNoMoreInteractions(analyzer);
+    }
+
+    @Test
+    void test_getMetricsForCrypto_timePeriodNotProvided_dataVersionChanged() throws Exception {
+        when(manager.getDataVersion()).thenReturn(7L, 8L);
+        when(analyzer.getMetricsForCrypto(any(), anyString()))
+                .thenReturn(new CryptoMetricsDto(Map.of("min", new BigDecimal("14"))))
+                .thenReturn(new CryptoMetricsDto(Map.of("min", new BigDecimal("13"))));
+
+        String eTag = performAsync(
+                post("/api/crypto/analyze/metrics/btc")
+                        .accept(MediaType.APPLICATION_JSON)
+        )
+                .andExpect(
+                        jsonPath("$.metrics.min").value("14")
+                )
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        performAsync(
+                post("/api/crypto/analyze/metrics/btc")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag)
+        )
+                .andExpect(
+                        status().isOk()
+                ).andExpect(
+                        jsonPath("$.metrics.min").value("13")
+                );
+
+        verify(analyzer, times(2)).getMetricsForCrypto(any(), anyString());
+        verifyNoMoreInteractions(analyzer);
+    }
+
+    @Test
+    void test_sortCryptosByNormalizedRangeDesc_timePeriodProvided_notCached() throws Exception {
+        String requestAsJsonString = "{\n" +
+                "  \"fromDateTime\": \"2022-01-01 00:00:00\"\n" +
+                "}";
+        when(analyzer.getCryptosSortedByNormalizedRangeDesc(any())).thenReturn(new CryptoMetricsListDto(List.of()));
+
+        for (int i = 0; i < 2; i++) {
+            performAsync(
+                    post("/api/crypto/analyze/sort/by/normalized/desc")
+                            .content(requestAsJsonString)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .accept(MediaType.APPLICATION_JSON)
+            )
+                    .andExpect(
+                            status().isOk()
+                    ).andExpect(
+                            header().doesNotExist(HttpHeaders.ETAG)
+                    );
+        }
+
+        verify(analyzer, times(2)).getCryptosSortedByNormalizedRangeDesc(any());
+        verifyNoMoreInteractions(analyzer);
+    }
+
+    @Test
+    void test_getMetricsForCrypto_timeoutHeaderProvided_deadlineAttached() throws Exception {
+        long[] remainingMillis = new long[1];
+        when(analyzer.getMetricsForCrypto(any(), eq("btc"))).thenAnswer(invocation -> {
+            remainingMillis[0] = Deadline.current().remainingMillis();
+            return new CryptoMetricsDto(Map.of("min", new BigDecimal("14")));
+        });
+
+        performAsync(
+                post("/api/crypto/analyze/metrics/btc")
+                        .header(RequestDeadlineResolver.TIMEOUT_HEADER, "5000")
+                        .accept(MediaType.APPLICATION_JSON)
+        )
+                .andExpect(
+                        status().isOk()
+                );
+
+        assertTrue(remainingMillis[0] > 0 && remainingMillis[0] <= 5000, "Remaining " + remainingMillis[0]);
+    }
+
+    @Test
+    void test_getMetricsForCrypto_dataVersionHeader() throws Exception {
+        when(manager.getDataVersion()).thenReturn(42L);
+        when(analyzer.getMetricsForCrypto(any(), eq("btc"))).thenReturn(new CryptoMetricsDto(Map.of("min", new BigDecimal("14"))));
+
+        performAsync(
+                post("/api/crypto/analyze/metrics/btc")
+                        .content("{\"fromDateTime\": \"2022-01-01 00:00:00\"}")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+        )
+                .andExpect(
+                        status().isOk()
+                ).andExpect(
+                        header().string(DataVersionResolver.VERSION_HEADER, "42")
+                );
+    }
+
+    @Test
+    void test_getMetricsForCrypto_asOfVersion_snapshotAttached() throws Exception {
+        DataSnapshot snapshot = DataSnapshot.initial(0).with(CryptoEnum.btc, CryptoValueSeries.empty(), 0);
+        when(manager.getSnapshot(1)).thenReturn(snapshot);
+        DataSnapshot[] attached = new DataSnapshot[1];
+        when(analyzer.getMetricsForCrypto(any(), eq("btc"))).thenAnswer(invocation -> {
+            attached[0] = DataSnapshot.attached();
+            return new CryptoMetricsDto(Map.of("min", new BigDecimal("14")));
+        });
+
+        performAsync(
+                post("/api/crypto/analyze/metrics/btc")
+                        .param(DataVersionResolver.AS_OF_VERSION_PARAM, "1")
+                        .accept(MediaType.APPLICATION_JSON)
+        )
+                .andExpect(
+                        status().isOk()
+                );
+
+        assertSame(snapshot, attached[0]);
+    }
+
+    @Test
+    void test_sortCryptosByNormalizedRangeDesc_fullyLoaded_latestSnapshotAttached() throws Exception {
+        DataSnapshot snapshot = DataSnapshot.initial(0);
+        when(dataLoader.isFullyLoaded()).thenReturn(true);
+        when(manager.getSnapshot()).thenReturn(snapshot);
+        DataSnapshot[] attached = new DataSnapshot[1];
+        when(analyzer.getCryptosSortedByNormalizedRangeDesc(any())).thenAnswer(invocation -> {
+            attached[0] = DataSnapshot.attached();
+            return new CryptoMetricsListDto(List.of());
+        });
+
+        performAsync(
+                post("/api/crypto/analyze/sort/by/normalized/desc")
+                        .accept(MediaType.APPLICATION_JSON)
+        )
+                .andExpect(
+                        status().isOk()
+                );
+
+        assertSame(snapshot, attached[0]);
+    }
+
+    @Test
+    void test_getCryptoWithHighestNormalizedRange_asOfVersionNotRetained() throws Exception {
+        when(manager.getSnapshot(5)).thenThrow(new CryptoNotFoundException("Data version 5 not retained. Retained versions are 8 to 9."));
+
+        mockMvc.perform(
+                post("/api/crypto/analyze/crypto/with/highest/normalized")
+                        .param(DataVersionResolver.AS_OF_VERSION_PARAM, "5")
+                        .accept(MediaType.APPLICATION_JSON)
+        )
+                .andExpect(
+                        status().isNotFound()
+                ).andExpect(
+                        jsonPath("$.errorMessage").value("Data version 5 not retained. Retained versions are 8 to 9.")
+                );
+        verifyNoInteractions(analyzer);
+    }
+
+    @Test
+    void test_sortCryptosByNormalizedRangeDesc_deadlineExceeded() throws Exception {
+        when(analyzer.getCryptosSortedByNormalizedRangeDesc(any()))
+                .thenThrow(new CryptoDeadlineExceededException("Request deadline exceeded before its calculation completed"));
+
+        performAsync(
+                post("/api/crypto/analyze/sort/by/normalized/desc")
+                        .param(RequestDeadlineResolver.TIMEOUT_PARAM, "1000")
+                        .content("{\"fromDateTime\": \"2022-01-01 00:00:00\"}")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+        )
+                .andExpect(
+                        status().isGatewayTimeout()
+                ).andExpect(
+                        jsonPath("$.errorMessage").value("Request deadline exceeded before its calculation completed")
+                );
+    }
+
+    @Test
+    void test_sortCryptosByNormalizedRangeDesc_connectionError_calculationCancelledAndErrorKept() throws Exception {
+        CountDownLatch calculating = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        when(analyzer.getCryptosSortedByNormalizedRangeDesc(any())).thenAnswer(invocation -> {
+            Deadline.current().onCancel(cancelled::countDown);
+            calculating.countDown();
+            cancelled.await(5, TimeUnit.SECONDS);
+            throw Deadline.current().newExceededException();
+        });
+
+        MvcResult mvcResult = mockMvc.perform(
+                post("/api/crypto/analyze/sort/by/normalized/desc")
+                        .param(RequestDeadlineResolver.TIMEOUT_PARAM, "10000")
+                        .accept(MediaType.APPLICATION_JSON)
+        ).andExpect(request().asyncStarted()).andReturn();
+        assertTrue(calculating.await(5, TimeUnit.SECONDS));
+
+        IOException disconnected = new IOException("Broken pipe");
+        MockAsyncContext asyncContext = (MockAsyncContext) mvcResult.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onError(new AsyncEvent(asyncContext, disconnected));
+        }
+
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+        // The error dispatched, not the result of the cancelled calculation recorded by MockMvc
+        assertSame(disconnected, WebAsyncUtils.getAsyncManager(mvcResult.getRequest()).getConcurrentResult());
+    }
+
+    @Test
+    void test_sortCryptosByNormalizedRangeDesc_cborAccepted() throws Exception {
+        when(analyzer.getCryptosSortedByNormalizedRangeDesc(any())).thenReturn(new CryptoMetricsListDto(List.of(
+                new CryptoMetricDto(CryptoEnum.xrp.getCode(), new BigDecimal("1.75")),
+                new CryptoMetricDto(CryptoEnum.btc.getCode(), new BigDecimal("0.57143")))));
+
+        byte[] body = performAsync(
+                post("/api/crypto/analyze/sort/by/normalized/desc")
+                        .content("{\"fromDateTime\": \"2022-01-01 00:00:00\"}")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_CBOR)
+        )
+                .andExpect(
+                        status().isOk()
+                ).andExpect(
+                        content().contentType(MediaType.APPLICATION_CBOR)
+                )
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode response = responseEncodings.objectMapperFor(MediaType.APPLICATION_CBOR).readTree(body);
+        assertEquals("xrp", response.path("cryptos").path(0).path("crypto").asText());
+        assertEquals(new BigDecimal("1.75"), response.path("cryptos").path(0).path("value").decimalValue());
+        assertEquals("btc", response.path("cryptos").path(1).path("crypto").asText());
+        assertEquals(new BigDecimal("0.57143"), response.path("cryptos").path(1).path("value").decimalValue());
+    }
+
+    @Test
+    void test_getCryptoWithHighestNormalizedRange_timePeriodNotProvided_smileAccepted() throws Exception {
+        when(manager.getDataVersion()).thenReturn(7L);
+        when(analyzer.getCryptoWithHighestNormalizedRange(any())).thenReturn(new CryptoMetricDto("btc", new BigDecimal("124")));
+
+        MockHttpServletResponse smileResponse = performAsync(
+                post("/api/crypto/analyze/crypto/with/highest/normalized")
+                        .accept(ResponseEncodings.APPLICATION_SMILE)
+        )
+                .andExpect(
+                        status().isOk()
+                ).andExpect(
+                        content().contentType(ResponseEncodings.APPLICATION_SMILE)
+                ).andExpect(
+                        header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                )
+                .andReturn().getResponse();
+        String jsonETag = performAsync(
+                post("/api/crypto/analyze/crypto/with/highest/normalized")
+                        .accept(MediaType.APPLICATION_JSON)
+        )
+                .andExpect(
+                        jsonPath("$.crypto").value("btc")
+                )
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        JsonNode response = responseEncodings.objectMapperFor(ResponseEncodings.APPLICATION_SMILE)
+                .readTree(smileResponse.getContentAsByteArray());
+        assertEquals("btc", response.path("crypto").asText());
+        assertEquals(new BigDecimal("124"), response.path("value").decimalValue());
+        assertNotEquals(jsonETag, smileResponse.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void test_getCryptoWithHighestNormalizedRangeOnDay_dayPeriodCalculated() throws Exception {
+        when(analyzer.getCryptoWithHighestNormalizedRange(any())).thenReturn(new CryptoMetricDto("eth", new BigDecimal("0.05")));
+
+        performAsync(
+                get("/api/crypto/analyze/crypto/with/highest/normalized/on/2022-01-31")
+                        .accept(MediaType.APPLICATION_JSON)
+        )
+                .andExpect(
+                        status().isOk()
+                ).andExpect(
+                        jsonPath("$.crypto").value("eth")
+                ).andExpect(
+                        jsonPath("$.value").value("0.05")
+                );
+
+        TimePeriodRequestDto expectedTimePeriod = new TimePeriodRequestDto();
+        expectedTimePeriod.setFromDateTime(Optional.of(LocalDateTime.of(2022, 1, 31, 0, 0)));
+        expectedTimePeriod.setToDateTime(Optional.of(LocalDateTime.of(2022, 2, 1, 0, 0)));
+        verify(analyzer).getCryptoWithHighestNormalizedRange(Optional.of(expectedTimePeriod));
+    }
+
+    @Test
+    void test_sortCryptosByNormalizedRangeDescOnDay() throws Exception {
+        when(analyzer.getCryptosSortedByNormalizedRangeDesc(any())).thenReturn(new CryptoMetricsListDto(List.of(
+                new CryptoMetricDto("eth", new BigDecimal("0.05")), new CryptoMetricDto("btc", new BigDecimal("0.02")))));
+
+        performAsync(
+                get("/api/crypto/analyze/sort/by/normalized/desc/on/2022-01-31")
+                        .accept(MediaType.APPLICATION_JSON)
+        )
+                .andExpect(
+                        status().isOk()
+                ).andExpect(
+                        jsonPath("$.cryptos[1].crypto").value("btc")
+                );
+    }
+
+    @Test
+    void test_getCryptoWithHighestNormalizedRangeOnDay_invalidDay() throws Exception {
+        mockMvc.perform(get("/api/crypto/analyze/crypto/with/highest/normalized/on/31-01-2022"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(analyzer);
+    }
+
+    /**
+     * Performs a request, whose response is calculated asynchronously, and dispatches it back once calculated
+     */
+    private ResultActions performAsync(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(mvcResult));
+    }
 }
@@ -0,0 +1,166 @@
+package com.dimitris.cryptoanalyze.controller;
+
+import com.dimitris.cryptoanalyze.controller.dto.AsOfPricesDto;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoPriceDto;
+import com.dimitris.cryptoanalyze.service.CryptoPriceAligner;
+import com.dimitris.cryptoanalyze.service.CryptoValuesManager;
+import com.dimitris.cryptoanalyze.service.DataLoader;
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoOverloadedException;
+import com.dimitris.cryptoanalyze.service.impl.ShardTopology;
+import com.dimitris.cryptoanalyze.service.model.CryptoValueSeries;
+import com.dimitris.cryptoanalyze.service.model.DataSnapshot;
+import com.dimitris.cryptoanalyze.service.model.Deadline;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(CryptoAsOfController.class)
+@Import({ShardTopology.class, RequestDeadlineResolver.class, DataVersionResolver.class})
+public class CryptoAsOfControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CryptoPriceAligner cryptoPriceAligner;
+
+    @MockBean
+    private CryptoValuesManager manager;
+
+    @MockBean
+    private DataLoader dataLoader;
+
+    @Test
+    void test_getPricesAsOf() throws Exception {
+        when(cryptoPriceAligner.getPricesAsOf(1641009600000L)).thenReturn(new AsOfPricesDto(1641009600000L, 3,
+                Map.of("btc", new CryptoPriceDto(1641009540000L, new BigDecimal("46813.21")))));
+
+        mockMvc
+                .perform(get("/api/crypto/asof/prices").param("timestamp", "1641009600000"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"timestamp\": 1641009600000, \"dataVersion\": 3, \"prices\": " +
+                        "{\"btc\": {\"timestamp\": 1641009540000, \"price\": 46813.21}}}"));
+    }
+
+    @Test
+    void test_exportAligned() throws Exception {
+        when(cryptoPriceAligner.exportAligned(Optional.of(List.of("btc", "eth")), 1000L, 3000L))
+                .thenReturn(writer -> writer.write("timestamp,btc,eth\n2000,100,20\n"));
+
+        MvcResult result = mockMvc
+                .perform(get("/api/crypto/asof/matrix").param("from", "1000").param("to", "3000")
+                        .param("cryptos", "btc", "eth"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc
+                .perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(CryptoAsOfController.TEXT_CSV))
+                .andExpect(content().string("timestamp,btc,eth\n2000,100,20\n"));
+    }
+
+    @Test
+    void test_getPricesAsOf_asOfVersion_snapshotAttached() throws Exception {
+        DataSnapshot snapshot = DataSnapshot.initial(0).with(CryptoEnum.btc, CryptoValueSeries.empty(), 0);
+        when(manager.getSnapshot(1)).thenReturn(snapshot);
+        when(manager.getDataVersion()).thenReturn(1L);
+        DataSnapshot[] attached = new DataSnapshot[1];
+        when(cryptoPriceAligner.getPricesAsOf(1641009600000L)).thenAnswer(invocation -> {
+            attached[0] = DataSnapshot.attached();
+            return new AsOfPricesDto(1641009600000L, 1, Map.of());
+        });
+
+        mockMvc
+                .perform(get("/api/crypto/asof/prices").param("timestamp", "1641009600000")
+                        .param(DataVersionResolver.AS_OF_VERSION_PARAM, "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(DataVersionResolver.VERSION_HEADER, "1"));
+
+        assertSame(snapshot, attached[0]);
+    }
+
+    @Test
+    void test_exportAligned_deadlineAndSnapshotAttached() throws Exception {
+        DataSnapshot snapshot = DataSnapshot.initial(0).with(CryptoEnum.btc, CryptoValueSeries.empty(), 0);
+        when(manager.getSnapshot(1)).thenReturn(snapshot);
+        when(manager.getDataVersion()).thenReturn(1L);
+        DataSnapshot[] attached = new DataSnapshot[2];
+        long[] remainingMillis = new long[1];
+        when(cryptoPriceAligner.exportAligned(Optional.empty(), 1000L, 3000L)).thenAnswer(invocation -> {
+            attached[0] = DataSnapshot.attached();
+            return (CryptoPriceAligner.AlignedExport) writer -> {
+                attached[1] = DataSnapshot.attached();
+                remainingMillis[0] = Deadline.current().remainingMillis();
+                writer.write("timestamp,btc\n");
+            };
+        });
+
+        MvcResult result = mockMvc
+                .perform(get("/api/crypto/asof/matrix").param("from", "1000").param("to", "3000")
+                        .param(DataVersionResolver.AS_OF_VERSION_PARAM, "1")
+                        .header(RequestDeadlineResolver.TIMEOUT_HEADER, "5000"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc
+                .perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string(DataVersionResolver.VERSION_HEADER, "1"))
+                .andExpect(content().string("timestamp,btc\n"));
+        assertSame(snapshot, attached[0]);
+        assertSame(snapshot, attached[1]);
+        assertTrue(remainingMillis[0] > 0 && remainingMillis[0] <= 5000, "Remaining " + remainingMillis[0]);
+    }
+
+    @Test
+    void test_exportAligned_poolSaturated() throws Exception {
+        when(cryptoPriceAligner.exportAligned(Optional.empty(), 1000L, 3000L)).thenReturn(writer -> {
+            throw new CryptoOverloadedException("Too many requests, expensive request pool is saturated", 3);
+        });
+
+        MvcResult result = mockMvc
+                .perform(get("/api/crypto/asof/matrix").param("from", "1000").param("to", "3000"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc
+                .perform(asyncDispatch(result))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "3"))
+                .andExpect(jsonPath("$.errorMessage").value("Too many requests, expensive request pool is saturated"));
+    }
+
+    @Test
+    void test_exportAligned_cryptoNotSupported() throws Exception {
+        when(cryptoPriceAligner.exportAligned(eq(Optional.of(List.of("abc"))), anyLong(), anyLong()))
+                .thenThrow(new CryptoNotFoundException("Crypto abc not supported."));
+
+        mockMvc
+                .perform(get("/api/crypto/asof/matrix").param("from", "1000").param("to", "3000")
+                        .param("cryptos", "abc"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.errorMessage").value("Crypto abc not supported."));
+    }
+}
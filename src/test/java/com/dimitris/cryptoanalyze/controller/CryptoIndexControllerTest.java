@@ -0,0 +1,91 @@
+package com.dimitris.cryptoanalyze.controller;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoIndexDto;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoIndexRequestDto;
+import com.dimitris.cryptoanalyze.service.CryptoIndexManager;
+import com.dimitris.cryptoanalyze.service.exception.CryptoValidationException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(CryptoIndexController.class)
+public class CryptoIndexControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CryptoIndexManager indexManager;
+
+    @Test
+    void test_defineIndex() throws Exception {
+        CryptoIndexRequestDto request = new CryptoIndexRequestDto();
+        request.setName("majors");
+        request.setWeights(Map.of("btc", new BigDecimal("0.6"), "eth", new BigDecimal("8")));
+        request.setGridMillis(3600000L);
+        when(indexManager.define(request)).thenReturn(new CryptoIndexDto("majors",
+                Map.of("btc", new BigDecimal("0.6"), "eth", new BigDecimal("8")), 3600000L, 24));
+
+        mockMvc
+                .perform(
+                        post("/api/crypto/indices")
+                                .content("{\"name\": \"majors\", \"weights\": {\"btc\": 0.6, \"eth\": 8}, " +
+                                        "\"gridMillis\": 3600000}")
+                                .contentType(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isCreated())
+                .andExpect(content().json("{\"name\": \"majors\", \"weights\": {\"btc\": 0.6, \"eth\": 8}, " +
+                        "\"gridMillis\": 3600000, \"levels\": 24}"));
+    }
+
+    @Test
+    void test_defineIndex_invalid() throws Exception {
+        when(indexManager.define(any())).thenThrow(
+                new CryptoValidationException("Error defining index. Name btc is the code of a crypto"));
+
+        mockMvc
+                .perform(
+                        post("/api/crypto/indices")
+                                .content("{\"name\": \"btc\", \"weights\": {\"btc\": 1}}")
+                                .contentType(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorMessage").value("Error defining index. Name btc is the code of a crypto"));
+    }
+
+    @Test
+    void test_getIndices() throws Exception {
+        when(indexManager.getIndices()).thenReturn(List.of(
+                new CryptoIndexDto("alts", Map.of("ltc", BigDecimal.ONE), 60000L, 0),
+                new CryptoIndexDto("majors", Map.of("btc", BigDecimal.ONE), 60000L, 10)));
+
+        mockMvc
+                .perform(get("/api/crypto/indices"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("alts"))
+                .andExpect(jsonPath("$[1].weights.btc").value(1))
+                .andExpect(jsonPath("$[1].levels").value(10));
+    }
+
+    @Test
+    void test_removeIndex_notFound() throws Exception {
+        doThrow(new CryptoNotFoundException("Index abc not found.")).when(indexManager).remove("abc");
+
+        mockMvc
+                .perform(delete("/api/crypto/indices/abc"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.errorMessage").value("Index abc not found."));
+    }
+}
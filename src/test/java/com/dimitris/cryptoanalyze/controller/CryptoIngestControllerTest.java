@@ -0,0 +1,95 @@
+package com.dimitris.cryptoanalyze.controller;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoValueRequestDto;
+import com.dimitris.cryptoanalyze.service.CryptoValuesIngestor;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoValidationException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(CryptoIngestController.class)
+public class CryptoIngestControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CryptoValuesIngestor ingestor;
+
+    @Test
+    void test_ingestValues() throws Exception {
+        String requestAsJsonString = "[\n" +
+                "  {\"timestamp\": 1641009600000, \"price\": 46813.21},\n" +
+                "  {\"timestamp\": 1641020400000, \"price\": 46979.61}\n" +
+                "]";
+
+        mockMvc
+                .perform(
+                        post("/api/crypto/ingest/btc")
+                                .content(requestAsJsonString)
+                                .contentType(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(
+                        status().isNoContent()
+                );
+
+        CryptoValueRequestDto value1 = new CryptoValueRequestDto();
+        value1.setTimestamp(1641009600000L);
+        value1.setPrice(new BigDecimal("46813.21"));
+        CryptoValueRequestDto value2 = new CryptoValueRequestDto();
+        value2.setTimestamp(1641020400000L);
+        value2.setPrice(new BigDecimal("46979.61"));
+        verify(ingestor).ingest("btc", List.of(value1, value2));
+        verifyNoMoreInteractions(ingestor);
+    }
+
+    @Test
+    void test_ingestValues_cryptoNotSupported() throws Exception {
+        doThrow(new CryptoNotFoundException("Crypto not found")).when(ingestor).ingest(anyString(), anyList());
+
+        mockMvc
+                .perform(
+                        post("/api/crypto/ingest/ttt")
+                                .content("[]")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(
+                        status().isNotFound()
+                ).andExpect(
+                        jsonPath("$.errorMessage").value("Crypto not found")
+                );
+    }
+
+    @Test
+    void test_ingestValues_priceMissing() throws Exception {
+        doThrow(new CryptoValidationException("Error ingesting crypto values. Entries with missing price found"))
+                .when(ingestor).ingest(anyString(), anyList());
+
+        mockMvc
+                .perform(
+                        post("/api/crypto/ingest/btc")
+                                .content("[{\"timestamp\": 1641009600000}]")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(
+                        status().isBadRequest()
+                ).andExpect(
+                        jsonPath("$.errorMessage").value("Error ingesting crypto values. Entries with missing price found")
+                );
+    }
+}
@@ -0,0 +1,144 @@
+package com.dimitris.cryptoanalyze.controller;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricDto;
+import com.dimitris.cryptoanalyze.service.CryptoValuesManager;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class CryptoResponseCacheTest {
+
+    @Mock
+    private CryptoValuesManager manager;
+
+    private ResponseEncodings encodings;
+
+    private CryptoResponseCache cache;
+
+    private final AtomicInteger calculations = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() {
+        encodings = new ResponseEncodings(Jackson2ObjectMapperBuilder::json);
+        cache = new CryptoResponseCache(manager, encodings);
+    }
+
+    @Test
+    public void test_getOrCalculate_sameDataVersion_cachedResponseReturned() throws CryptoInternalException, CryptoNotFoundException {
+        when(manager.getDataVersion()).thenReturn(3L);
+
+        CryptoResponseCache.CachedResponse first = cache.getOrCalculate("key", this::calculate);
+        CryptoResponseCache.CachedResponse second = cache.getOrCalculate("key", this::calculate);
+
+        assertSame(first, second);
+        assertEquals(1, calculations.get());
+        assertEquals("{\"crypto\":\"btc\",\"value\":1}", new String(first.getBody()));
+        assertEquals(3L, first.getDataVersion());
+    }
+
+    @Test
+    public void test_getOrCalculate_dataVersionChanged_responseRecalculated() throws CryptoInternalException, CryptoNotFoundException {
+        when(manager.getDataVersion()).thenReturn(3L, 4L);
+
+        CryptoResponseCache.CachedResponse first = cache.getOrCalculate("key", this::calculate);
+        CryptoResponseCache.CachedResponse second = cache.getOrCalculate("key", this::calculate);
+
+        assertEquals(2, calculations.get());
+        assertNotEquals(first.getETag(), second.getETag());
+        assertEquals("{\"crypto\":\"btc\",\"value\":2}", new String(second.getBody()));
+    }
+
+    @Test
+    public void test_getOrCalculate_differentKeys() throws CryptoInternalException, CryptoNotFoundException {
+        when(manager.getDataVersion()).thenReturn(3L);
+
+        cache.getOrCalculate("key1", this::calculate);
+        cache.getOrCalculate("key2", this::calculate);
+
+        assertEquals(2, calculations.get());
+    }
+
+    @Test
+    public void test_getOrCalculate_binaryEncodings_cachedPerEncoding() throws CryptoInternalException, CryptoNotFoundException, IOException {
+        when(manager.getDataVersion()).thenReturn(3L);
+
+        CryptoResponseCache.CachedResponse json = cache.getOrCalculate("key", MediaType.APPLICATION_JSON, this::calculate);
+        CryptoResponseCache.CachedResponse cbor = cache.getOrCalculate("key", MediaType.APPLICATION_CBOR, this::calculate);
+        CryptoResponseCache.CachedResponse smile = cache.getOrCalculate("key", ResponseEncodings.APPLICATION_SMILE, this::calculate);
+
+        assertEquals(3, calculations.get());
+        assertSame(cbor, cache.getOrCalculate("key", MediaType.APPLICATION_CBOR, this::calculate));
+        assertEquals(MediaType.APPLICATION_CBOR, cbor.getMediaType());
+        assertEquals(3, Set.of(json.getETag(), cbor.getETag(), smile.getETag()).size());
+        JsonNode cborBody = encodings.objectMapperFor(MediaType.APPLICATION_CBOR).readTree(cbor.getBody());
+        JsonNode smileBody = encodings.objectMapperFor(ResponseEncodings.APPLICATION_SMILE).readTree(smile.getBody());
+        assertEquals("btc", cborBody.path("crypto").asText());
+        assertEquals(new BigDecimal("2"), cborBody.path("value").decimalValue());
+        assertEquals("btc", smileBody.path("crypto").asText());
+        assertEquals(new BigDecimal("3"), smileBody.path("value").decimalValue());
+    }
+
+    @Test
+    public void test_negotiate() {
+        assertEquals(MediaType.APPLICATION_JSON, encodings.negotiate(null));
+        assertEquals(MediaType.APPLICATION_JSON, encodings.negotiate("*/*"));
+        assertEquals(MediaType.APPLICATION_JSON, encodings.negotiate("text/html"));
+        assertEquals(MediaType.APPLICATION_JSON, encodings.negotiate("not a media type"));
+        assertEquals(MediaType.APPLICATION_CBOR, encodings.negotiate("application/cbor"));
+        assertEquals(ResponseEncodings.APPLICATION_SMILE, encodings.negotiate("application/json;q=0.5, application/x-jackson-smile"));
+        assertEquals(MediaType.APPLICATION_JSON, encodings.negotiate("application/cbor;q=0.2, application/json"));
+    }
+
+    @Test
+    public void test_getOrCalculate_calculationFails_nothingCached() {
+        when(manager.getDataVersion()).thenReturn(3L);
+
+        assertThrows(CryptoNotFoundException.class, () -> cache.getOrCalculate("key", () -> {
+            throw new CryptoNotFoundException("Crypto ttt not supported.");
+        }));
+        assertThrows(CryptoNotFoundException.class, () -> cache.getOrCalculate("key", () -> {
+            throw new CryptoNotFoundException("Crypto ttt not supported.");
+        }));
+    }
+
+    @Test
+    public void test_invalidateAll() throws CryptoInternalException, CryptoNotFoundException {
+        when(manager.getDataVersion()).thenReturn(3L);
+
+        cache.getOrCalculate("key", this::calculate);
+        cache.invalidateAll();
+        cache.getOrCalculate("key", this::calculate);
+
+        assertEquals(2, calculations.get());
+    }
+
+    @Test
+    public void test_matches() {
+        assertFalse(CryptoResponseCache.matches(null, "\"a-1\""));
+        assertTrue(CryptoResponseCache.matches("\"a-1\"", "\"a-1\""));
+        assertTrue(CryptoResponseCache.matches("\"a-0\", \"a-1\"", "\"a-1\""));
+        assertTrue(CryptoResponseCache.matches("*", "\"a-1\""));
+        assertFalse(CryptoResponseCache.matches("W/\"a-1\"", "\"a-1\""));
+        assertFalse(CryptoResponseCache.matches("\"a-2\"", "\"a-1\""));
+    }
+
+    private CryptoMetricDto calculate() {
+        return new CryptoMetricDto("btc", BigDecimal.valueOf(calculations.incrementAndGet()));
+    }
+}
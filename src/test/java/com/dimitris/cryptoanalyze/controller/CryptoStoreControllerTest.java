@@ -0,0 +1,70 @@
+package com.dimitris.cryptoanalyze.controller;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoStoreUsageDto;
+import com.dimitris.cryptoanalyze.controller.dto.StoreReloadDto;
+import com.dimitris.cryptoanalyze.controller.dto.StoreUsageDto;
+import com.dimitris.cryptoanalyze.service.CryptoValuesManager;
+import com.dimitris.cryptoanalyze.service.DataLoader;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(CryptoStoreController.class)
+public class CryptoStoreControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CryptoValuesManager valuesManager;
+
+    @MockBean
+    private DataLoader dataLoader;
+
+    @Test
+    void test_getUsage() throws Exception {
+        when(valuesManager.getUsage()).thenReturn(new StoreUsageDto(2048, 3072, 4096, 3, List.of(
+                new CryptoStoreUsageDto("btc", 10, 2048, 1641009600000L, 1641020400000L, 5),
+                new CryptoStoreUsageDto("eth", 0, 0, null, null, 0))));
+
+        mockMvc
+                .perform(get("/api/crypto/store/usage"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"heapBytes\": 2048, \"retainedHeapBytes\": 3072, \"heapBudgetBytes\": 4096, \"retainedVersions\": 3, " +
+                        "\"cryptos\": [{\"crypto\": \"btc\", \"values\": 10, \"heapBytes\": 2048, " +
+                        "\"oldestTimestamp\": 1641009600000, \"lastQueriedMillis\": 1641020400000, \"evictedValues\": 5}, " +
+                        "{\"crypto\": \"eth\", \"values\": 0, \"heapBytes\": 0, \"oldestTimestamp\": null, " +
+                        "\"lastQueriedMillis\": null, \"evictedValues\": 0}]}"));
+    }
+
+    @Test
+    void test_reload() throws Exception {
+        when(dataLoader.reloadData()).thenReturn(new StoreReloadDto(42, 1000, 150));
+
+        mockMvc
+                .perform(post("/api/crypto/store/reload"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"dataVersion\": 42, \"values\": 1000, \"reloadMillis\": 150}"));
+    }
+
+    @Test
+    void test_reload_invalidData() throws Exception {
+        when(dataLoader.reloadData()).thenThrow(
+                new CryptoInternalException("Error reloading data. No values read for crypto eth"));
+
+        mockMvc
+                .perform(post("/api/crypto/store/reload"))
+                .andExpect(status().isInternalServerError());
+    }
+}
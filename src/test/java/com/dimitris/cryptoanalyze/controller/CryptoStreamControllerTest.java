@@ -0,0 +1,97 @@
+package com.dimitris.cryptoanalyze.controller;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsDto;
+import com.dimitris.cryptoanalyze.controller.dto.TimePeriodRequestDto;
+import com.dimitris.cryptoanalyze.service.CryptoMetricsStream;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(CryptoStreamController.class)
+public class CryptoStreamControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CryptoMetricsStream cryptoMetricsStream;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void test_streamMetricsForCrypto() throws Exception {
+        CryptoMetricsStream.Subscription subscription = mock(CryptoMetricsStream.Subscription.class);
+        ArgumentCaptor<Optional<TimePeriodRequestDto>> timePeriod = ArgumentCaptor.forClass(Optional.class);
+        ArgumentCaptor<CryptoMetricsStream.MetricsConsumer> consumer =
+                ArgumentCaptor.forClass(CryptoMetricsStream.MetricsConsumer.class);
+        when(cryptoMetricsStream.subscribe(eq("btc"), timePeriod.capture(), consumer.capture(), any())).thenReturn(subscription);
+
+        MvcResult mvcResult = mockMvc
+                .perform(get("/api/crypto/stream/metrics/btc").param("fromDateTime", "2022-01-01 00:00:00"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        consumer.getValue().accept(new CryptoMetricsDto(Map.of("max", new BigDecimal("46813.21"))));
+
+        assertEquals(Optional.of(LocalDateTime.of(2022, 1, 1, 0, 0)), timePeriod.getValue().get().getFromDateTime());
+        assertEquals(Optional.empty(), timePeriod.getValue().get().getToDateTime());
+        String content = mvcResult.getResponse().getContentAsString();
+        assertTrue(content.startsWith("event:metrics\ndata:{\"metrics\":{\"max\":46813.21}}"), content);
+        assertTrue(mvcResult.getResponse().getContentType().startsWith("text/event-stream"));
+    }
+
+    @Test
+    void test_streamMetricsForCrypto_subscriptionDropped_streamCompleted() throws Exception {
+        ArgumentCaptor<Runnable> onDropped = ArgumentCaptor.forClass(Runnable.class);
+        when(cryptoMetricsStream.subscribe(eq("btc"), eq(Optional.empty()), any(), onDropped.capture()))
+                .thenReturn(mock(CryptoMetricsStream.Subscription.class));
+        MvcResult mvcResult = mockMvc
+                .perform(get("/api/crypto/stream/metrics/btc"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        onDropped.getValue().run();
+
+        mockMvc.perform(asyncDispatch(mvcResult)).andExpect(status().isOk());
+    }
+
+    @Test
+    void test_streamMetricsForCrypto_timePeriodNotProvided() throws Exception {
+        when(cryptoMetricsStream.subscribe(eq("btc"), eq(Optional.empty()), any(), any()))
+                .thenReturn(mock(CryptoMetricsStream.Subscription.class));
+
+        mockMvc
+                .perform(get("/api/crypto/stream/metrics/btc"))
+                .andExpect(request().asyncStarted());
+
+        verify(cryptoMetricsStream).subscribe(eq("btc"), eq(Optional.empty()), any(), any());
+    }
+
+    @Test
+    void test_streamMetricsForCrypto_cryptoNotSupported() throws Exception {
+        when(cryptoMetricsStream.subscribe(eq("abc"), any(), any(), any()))
+                .thenThrow(new CryptoNotFoundException("Crypto abc not supported."));
+
+        mockMvc
+                .perform(get("/api/crypto/stream/metrics/abc"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.errorMessage").value("Crypto abc not supported."));
+    }
+}
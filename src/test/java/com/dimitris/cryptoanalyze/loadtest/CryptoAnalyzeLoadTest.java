@@ -0,0 +1,60 @@
+package com.dimitris.cryptoanalyze.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives the analyze endpoints of a locally started application at a fixed arrival rate and writes a latency and
+ * throughput report. It is skipped unless -Dloadtest=true is passed, eg through argLine. See {@link LoadTestConfig}
+ * for the load parameters
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+public class CryptoAnalyzeLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(CryptoAnalyzeLoadTest.class);
+
+    static {
+        System.setProperty("data.file.path.property.format", "data.file.path");
+        System.setProperty("data.file.path.btc", "prices\\BTC_values_test.csv");
+        System.setProperty("data.file.path.doge", "prices\\DOGE_values_test.csv");
+        System.setProperty("data.file.path.eth", "prices\\ETH_values_test.csv");
+        System.setProperty("data.file.path.ltc", "prices\\LTC_values_test.csv");
+        System.setProperty("data.file.path.xrp", "prices\\XRP_values_test.csv");
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void test_analyzeEndpoints_underLoad() throws Exception {
+        LoadTestConfig config = LoadTestConfig.fromSystemProperties();
+
+        LoadTestReport report = new LoadGenerator(config).run("http://localhost:" + port);
+
+        File reportFile = new File(config.getReportPath());
+        if (reportFile.getParentFile() != null) {
+            reportFile.getParentFile().mkdirs();
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(reportFile, report);
+        logger.info("Load test report written to {}", reportFile.getAbsolutePath());
+
+        LoadTestReport.EndpointStats overall = report.getOverall();
+        assertTrue(overall.getErrors() + report.getDropped() <= config.getMaxErrorRatio() * overall.getCount(),
+                "Failed requests: " + overall.getErrors() + ", dropped: " + report.getDropped());
+        if (config.getMaxP99Millis() != null) {
+            assertTrue(overall.getP99() <= config.getMaxP99Millis(),
+                    "p99 latency " + overall.getP99() + " ms exceeds " + config.getMaxP99Millis() + " ms");
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.dimitris.cryptoanalyze.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop HTTP load generator for the analyze endpoints. Requests are sent at a fixed arrival rate regardless of
+ * how fast responses come back, and each latency is measured from the time its request was scheduled to be sent, so
+ * that a stalled server is not hidden by the generator slowing down (coordinated omission).
+ * <p>
+ * Each request picks an endpoint according to the configured weights, and a crypto and a time period at random from
+ * the configured ones. Latencies are recorded per endpoint into HdrHistograms
+ */
+public class LoadGenerator {
+
+    /**
+     * The analyze endpoints driven by the generator
+     */
+    public enum Endpoint {
+        sort, metrics, highest;
+
+        private String path(String crypto) {
+            switch (this) {
+                case sort:
+                    return "/api/crypto/analyze/sort/by/normalized/desc";
+                case metrics:
+                    return "/api/crypto/analyze/metrics/" + crypto;
+                default:
+                    return "/api/crypto/analyze/crypto/with/highest/normalized";
+            }
+        }
+    }
+
+    private static final long HIGHEST_TRACKABLE_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final LoadTestConfig config;
+
+    private final HttpClient httpClient;
+
+    private final Random random = new Random(42);
+
+    private final Map<Endpoint, Histogram> histograms = new EnumMap<>(Endpoint.class);
+
+    private final Map<Endpoint, AtomicLong> errors = new EnumMap<>(Endpoint.class);
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param config The load configuration
+     */
+    public LoadGenerator(LoadTestConfig config) {
+        this.config = config;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(config.getClientThreads(), runnable -> {
+                    Thread thread = new Thread(runnable, "load-generator-client");
+                    thread.setDaemon(true);
+                    return thread;
+                }))
+                .build();
+        for (Endpoint endpoint : Endpoint.values()) {
+            histograms.put(endpoint, new ConcurrentHistogram(HIGHEST_TRACKABLE_LATENCY_NANOS, 3));
+            errors.put(endpoint, new AtomicLong());
+        }
+    }
+
+    /**
+     * Runs a warmup phase whose results are discarded, followed by the measured phase
+     *
+     * @param baseUrl The base url of the application, eg http://localhost:8080
+     * @return The report of the measured phase
+     * @throws InterruptedException The generator was interrupted while waiting for responses
+     */
+    public LoadTestReport run(String baseUrl) throws InterruptedException {
+        if (config.getWarmupSeconds() > 0) {
+            drive(baseUrl, config.getWarmupSeconds());
+            histograms.values().forEach(Histogram::reset);
+            errors.values().forEach(count -> count.set(0));
+            dropped.set(0);
+        }
+        long measuredNanos = drive(baseUrl, config.getDurationSeconds());
+        return LoadTestReport.of(config, histograms, errors, dropped.get(), measuredNanos);
+    }
+
+    /**
+     * Sends requests at the configured rate for the specified duration and waits for all of them to complete
+     *
+     * @return The time elapsed from the first scheduled send until the last response
+     */
+    private long drive(String baseUrl, int seconds) throws InterruptedException {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / config.getRequestsPerSecond();
+        long totalRequests = (long) config.getRequestsPerSecond() * seconds;
+        List<CompletableFuture<?>> inFlight = new ArrayList<>();
+        long start = System.nanoTime();
+        for (long i = 0; i < totalRequests; i++) {
+            long intendedStart = start + i * intervalNanos;
+            long wait;
+            while ((wait = intendedStart - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            inFlight.add(send(baseUrl, intendedStart));
+            if (inFlight.size() >= 10_000) {
+                inFlight.removeIf(CompletableFuture::isDone);
+            }
+        }
+        try {
+            CompletableFuture.allOf(inFlight.toArray(new CompletableFuture[0]))
+                    .get(config.getRequestTimeoutSeconds() + 5L, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            // Failures and timeouts are already counted per request
+        }
+        return System.nanoTime() - start;
+    }
+
+    private CompletableFuture<?> send(String baseUrl, long intendedStart) {
+        Endpoint endpoint = pickEndpoint();
+        String crypto = config.getCryptos().get(random.nextInt(config.getCryptos().size()));
+        String period = config.getPeriods().get(random.nextInt(config.getPeriods().size()));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + endpoint.path(crypto)))
+                .timeout(Duration.ofSeconds(config.getRequestTimeoutSeconds()))
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(period))
+                .build();
+        try {
+            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, throwable) -> {
+                        histograms.get(endpoint).recordValue(
+                                Math.min(System.nanoTime() - intendedStart, HIGHEST_TRACKABLE_LATENCY_NANOS));
+                        if (throwable != null || response.statusCode() >= 400) {
+                            errors.get(endpoint).incrementAndGet();
+                        }
+                    });
+        } catch (RuntimeException e) {
+            dropped.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private Endpoint pickEndpoint() {
+        int pick = random.nextInt(config.getTotalWeight());
+        for (Map.Entry<Endpoint, Integer> weight : config.getEndpointWeights().entrySet()) {
+            pick -= weight.getValue();
+            if (pick < 0) {
+                return weight.getKey();
+            }
+        }
+        throw new IllegalStateException("Endpoint weights changed while running");
+    }
+}
@@ -0,0 +1,150 @@
+package com.dimitris.cryptoanalyze.loadtest;
+
+import java.util.*;
+
+/**
+ * Configuration of a load test run, read from the following system properties:
+ * <ul>
+ *     <li>loadtest.rate: requests per second sent to the application (default 200)</li>
+ *     <li>loadtest.duration.seconds: duration of the measured phase (default 30)</li>
+ *     <li>loadtest.warmup.seconds: duration of the warmup phase preceding it (default 10)</li>
+ *     <li>loadtest.mix: endpoint weights, eg sort:1,metrics:3,highest:1 (default)</li>
+ *     <li>loadtest.cryptos: cryptos requested from the metrics endpoint (default btc,doge,eth,ltc,xrp)</li>
+ *     <li>loadtest.periods: time periods sent as request bodies, separated by ';'. Each one is either "none" or
+ *     "from/to" with "yyyy-MM-dd HH:mm:ss" points in time, any of which can be empty (default none)</li>
+ *     <li>loadtest.client.threads: threads of the HTTP client (default 8)</li>
+ *     <li>loadtest.request.timeout.seconds: timeout of each request (default 10)</li>
+ *     <li>loadtest.report.path: path of the JSON report (default target/loadtest-report.json)</li>
+ *     <li>loadtest.max.p99.millis: if set, the run fails when the overall p99 latency exceeds it</li>
+ *     <li>loadtest.max.error.ratio: the run fails when the ratio of failed requests exceeds it (default 0)</li>
+ * </ul>
+ */
+public class LoadTestConfig {
+
+    private final int requestsPerSecond;
+
+    private final int durationSeconds;
+
+    private final int warmupSeconds;
+
+    private final Map<LoadGenerator.Endpoint, Integer> endpointWeights;
+
+    private final int totalWeight;
+
+    private final List<String> cryptos;
+
+    private final List<String> periods;
+
+    private final int clientThreads;
+
+    private final int requestTimeoutSeconds;
+
+    private final String reportPath;
+
+    private final Double maxP99Millis;
+
+    private final double maxErrorRatio;
+
+    private LoadTestConfig() {
+        requestsPerSecond = Integer.parseInt(System.getProperty("loadtest.rate", "200"));
+        durationSeconds = Integer.parseInt(System.getProperty("loadtest.duration.seconds", "30"));
+        warmupSeconds = Integer.parseInt(System.getProperty("loadtest.warmup.seconds", "10"));
+        endpointWeights = parseMix(System.getProperty("loadtest.mix", "sort:1,metrics:3,highest:1"));
+        totalWeight = endpointWeights.values().stream().mapToInt(Integer::intValue).sum();
+        cryptos = List.of(System.getProperty("loadtest.cryptos", "btc,doge,eth,ltc,xrp").split(","));
+        periods = parsePeriods(System.getProperty("loadtest.periods", "none"));
+        clientThreads = Integer.parseInt(System.getProperty("loadtest.client.threads", "8"));
+        requestTimeoutSeconds = Integer.parseInt(System.getProperty("loadtest.request.timeout.seconds", "10"));
+        reportPath = System.getProperty("loadtest.report.path", "target/loadtest-report.json");
+        String maxP99 = System.getProperty("loadtest.max.p99.millis");
+        maxP99Millis = maxP99 == null ? null : Double.valueOf(maxP99);
+        maxErrorRatio = Double.parseDouble(System.getProperty("loadtest.max.error.ratio", "0"));
+        if (requestsPerSecond <= 0 || totalWeight <= 0) {
+            throw new IllegalArgumentException("Load test rate and endpoint weights must be positive");
+        }
+    }
+
+    /**
+     * @return The configuration defined by the current system properties
+     */
+    public static LoadTestConfig fromSystemProperties() {
+        return new LoadTestConfig();
+    }
+
+    private static Map<LoadGenerator.Endpoint, Integer> parseMix(String mix) {
+        Map<LoadGenerator.Endpoint, Integer> weights = new EnumMap<>(LoadGenerator.Endpoint.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            weights.put(LoadGenerator.Endpoint.valueOf(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+        }
+        return Collections.unmodifiableMap(weights);
+    }
+
+    private static List<String> parsePeriods(String periods) {
+        List<String> bodies = new ArrayList<>();
+        for (String period : periods.split(";")) {
+            if (period.trim().equals("none")) {
+                bodies.add("");
+                continue;
+            }
+            String[] points = period.split("/", -1);
+            StringJoiner body = new StringJoiner(", ", "{", "}");
+            if (!points[0].isBlank()) {
+                body.add("\"fromDateTime\": \"" + points[0].trim() + "\"");
+            }
+            if (points.length > 1 && !points[1].isBlank()) {
+                body.add("\"toDateTime\": \"" + points[1].trim() + "\"");
+            }
+            bodies.add(body.toString());
+        }
+        return Collections.unmodifiableList(bodies);
+    }
+
+    public int getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public Map<LoadGenerator.Endpoint, Integer> getEndpointWeights() {
+        return endpointWeights;
+    }
+
+    public int getTotalWeight() {
+        return totalWeight;
+    }
+
+    public List<String> getCryptos() {
+        return cryptos;
+    }
+
+    public List<String> getPeriods() {
+        return periods;
+    }
+
+    public int getClientThreads() {
+        return clientThreads;
+    }
+
+    public int getRequestTimeoutSeconds() {
+        return requestTimeoutSeconds;
+    }
+
+    public String getReportPath() {
+        return reportPath;
+    }
+
+    public Double getMaxP99Millis() {
+        return maxP99Millis;
+    }
+
+    public double getMaxErrorRatio() {
+        return maxErrorRatio;
+    }
+}
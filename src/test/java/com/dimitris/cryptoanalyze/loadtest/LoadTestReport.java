@@ -0,0 +1,155 @@
+package com.dimitris.cryptoanalyze.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Machine readable result of a load test run, serialized as JSON. Latencies are in milliseconds and throughput in
+ * completed requests per second
+ */
+public class LoadTestReport {
+
+    private final int targetRate;
+
+    private final int durationSeconds;
+
+    private final Map<LoadGenerator.Endpoint, Integer> mix;
+
+    private final long dropped;
+
+    private final EndpointStats overall;
+
+    private final Map<LoadGenerator.Endpoint, EndpointStats> endpoints;
+
+    private LoadTestReport(int targetRate, int durationSeconds, Map<LoadGenerator.Endpoint, Integer> mix, long dropped,
+                           EndpointStats overall, Map<LoadGenerator.Endpoint, EndpointStats> endpoints) {
+        this.targetRate = targetRate;
+        this.durationSeconds = durationSeconds;
+        this.mix = mix;
+        this.dropped = dropped;
+        this.overall = overall;
+        this.endpoints = endpoints;
+    }
+
+    static LoadTestReport of(LoadTestConfig config, Map<LoadGenerator.Endpoint, Histogram> histograms,
+                             Map<LoadGenerator.Endpoint, AtomicLong> errors, long dropped, long elapsedNanos) {
+        double elapsedSeconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        Histogram total = new Histogram(3);
+        long totalErrors = 0;
+        Map<LoadGenerator.Endpoint, EndpointStats> endpoints = new EnumMap<>(LoadGenerator.Endpoint.class);
+        for (Map.Entry<LoadGenerator.Endpoint, Histogram> entry : histograms.entrySet()) {
+            long endpointErrors = errors.get(entry.getKey()).get();
+            if (entry.getValue().getTotalCount() > 0) {
+                endpoints.put(entry.getKey(), new EndpointStats(entry.getValue(), endpointErrors, elapsedSeconds));
+            }
+            total.add(entry.getValue());
+            totalErrors += endpointErrors;
+        }
+        return new LoadTestReport(config.getRequestsPerSecond(), config.getDurationSeconds(),
+                config.getEndpointWeights(), dropped, new EndpointStats(total, totalErrors, elapsedSeconds), endpoints);
+    }
+
+    public int getTargetRate() {
+        return targetRate;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public Map<LoadGenerator.Endpoint, Integer> getMix() {
+        return mix;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    public EndpointStats getOverall() {
+        return overall;
+    }
+
+    public Map<LoadGenerator.Endpoint, EndpointStats> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * Latency percentiles and throughput of the requests sent to one endpoint, or to all of them
+     */
+    public static class EndpointStats {
+
+        private final long count;
+
+        private final long errors;
+
+        private final double throughput;
+
+        private final double mean;
+
+        private final double p50;
+
+        private final double p90;
+
+        private final double p99;
+
+        private final double p999;
+
+        private final double max;
+
+        private EndpointStats(Histogram histogram, long errors, double elapsedSeconds) {
+            this.count = histogram.getTotalCount();
+            this.errors = errors;
+            this.throughput = count / elapsedSeconds;
+            this.mean = toMillis(histogram.getMean());
+            this.p50 = toMillis(histogram.getValueAtPercentile(50));
+            this.p90 = toMillis(histogram.getValueAtPercentile(90));
+            this.p99 = toMillis(histogram.getValueAtPercentile(99));
+            this.p999 = toMillis(histogram.getValueAtPercentile(99.9));
+            this.max = toMillis(histogram.getMaxValue());
+        }
+
+        private static double toMillis(double nanos) {
+            return Math.round(nanos / 1_000) / 1_000.0;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public double getThroughput() {
+            return throughput;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public double getP50() {
+            return p50;
+        }
+
+        public double getP90() {
+            return p90;
+        }
+
+        public double getP99() {
+            return p99;
+        }
+
+        public double getP999() {
+            return p999;
+        }
+
+        public double getMax() {
+            return max;
+        }
+    }
+}
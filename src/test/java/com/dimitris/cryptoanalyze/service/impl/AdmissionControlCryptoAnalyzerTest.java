@@ -0,0 +1,231 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricDto;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsDto;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsListDto;
+import com.dimitris.cryptoanalyze.controller.dto.TimePeriodRequestDto;
+import com.dimitris.cryptoanalyze.service.CryptoAnalyzer;
+import com.dimitris.cryptoanalyze.service.exception.CryptoDeadlineExceededException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoOverloadedException;
+import com.dimitris.cryptoanalyze.service.model.DataSnapshot;
+import com.dimitris.cryptoanalyze.service.model.Deadline;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AdmissionControlCryptoAnalyzerTest {
+
+    @Mock
+    private CryptoAnalyzer delegate;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private AdmissionControl admissionControl;
+
+    private AdmissionControlCryptoAnalyzer analyzer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        admissionControl = new AdmissionControl(
+                new Bulkhead("cheap", 2, 10, meterRegistry),
+                new Bulkhead("expensive", 1, 1, meterRegistry),
+                400, 365);
+        analyzer = new AdmissionControlCryptoAnalyzer(delegate, admissionControl);
+    }
+
+    @AfterEach
+    void tearDown() {
+        admissionControl.shutdown();
+    }
+
+    @Test
+    public void test_estimateCost() {
+        assertEquals(5 * 365, admissionControl.estimateCost(5, Optional.empty()));
+        assertEquals(5 * 30, admissionControl.estimateCost(5, Optional.of(timePeriod(
+                LocalDateTime.of(2022, 1, 1, 0, 0), LocalDateTime.of(2022, 1, 31, 0, 0)))));
+        assertEquals(2, admissionControl.estimateCost(1, Optional.of(timePeriod(
+                LocalDateTime.of(2022, 1, 1, 0, 0), LocalDateTime.of(2022, 1, 2, 1, 0)))));
+        assertEquals(365, admissionControl.estimateCost(1, Optional.of(timePeriod(
+                LocalDateTime.of(2022, 1, 1, 0, 0), null))));
+        assertEquals(0, admissionControl.estimateCost(5, Optional.of(timePeriod(
+                LocalDateTime.of(2022, 1, 31, 0, 0), LocalDateTime.of(2022, 1, 1, 0, 0)))));
+        assertEquals(5 * 30, admissionControl.estimateCost(5, 0, TimeUnit.DAYS.toMillis(30)));
+        assertEquals(2, admissionControl.estimateCost(1, 0, TimeUnit.HOURS.toMillis(25)));
+        assertEquals(0, admissionControl.estimateCost(5, 1000, 1000));
+        assertTrue(admissionControl.estimateCost(1, Long.MIN_VALUE, Long.MAX_VALUE) > 400);
+    }
+
+    @Test
+    public void test_requestsRoutedByCost() throws CryptoInternalException, CryptoNotFoundException {
+        when(delegate.getCryptosSortedByNormalizedRangeDesc(any())).thenAnswer(invocation ->
+                new CryptoMetricsListDto(List.of(new CryptoMetricDto(Thread.currentThread().getName(), BigDecimal.ONE))));
+        when(delegate.getMetricsForCrypto(any(), eq("btc"))).thenAnswer(invocation ->
+                new CryptoMetricsDto(Map.of(Thread.currentThread().getName(), BigDecimal.ONE)));
+        Optional<TimePeriodRequestDto> week = Optional.of(timePeriod(
+                LocalDateTime.of(2022, 1, 1, 0, 0), LocalDateTime.of(2022, 1, 8, 0, 0)));
+
+        String unrestrictedSortThread = analyzer.getCryptosSortedByNormalizedRangeDesc(Optional.empty())
+                .getCryptos().get(0).getCrypto();
+        String weekSortThread = analyzer.getCryptosSortedByNormalizedRangeDesc(week).getCryptos().get(0).getCrypto();
+        String metricsThread = analyzer.getMetricsForCrypto(Optional.empty(), "btc").getMetrics().keySet()
+                .iterator().next();
+
+        assertTrue(unrestrictedSortThread.startsWith("admission-expensive-"), unrestrictedSortThread);
+        assertTrue(weekSortThread.startsWith("admission-cheap-"), weekSortThread);
+        assertTrue(metricsThread.startsWith("admission-cheap-"), metricsThread);
+    }
+
+    @Test
+    public void test_expensivePoolSaturated_rejectedWhileCheapServed() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(1);
+        when(delegate.getCryptoWithHighestNormalizedRange(Optional.empty())).thenAnswer(invocation -> {
+            running.countDown();
+            release.await();
+            return new CryptoMetricDto("btc", BigDecimal.ONE);
+        });
+        CryptoMetricsDto metrics = new CryptoMetricsDto(Map.of("max", BigDecimal.TEN));
+        when(delegate.getMetricsForCrypto(Optional.empty(), "btc")).thenReturn(metrics);
+
+        // One calculation runs and one waits in the queue, filling the expensive pool
+        CompletableFuture<CryptoMetricDto> first = CompletableFuture.supplyAsync(() -> highestNormalizedRange());
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        CompletableFuture<CryptoMetricDto> queued = CompletableFuture.supplyAsync(() -> highestNormalizedRange());
+        awaitQueueDepth("expensive", 1);
+
+        CryptoOverloadedException exception = assertThrows(CryptoOverloadedException.class,
+                () -> analyzer.getCryptoWithHighestNormalizedRange(Optional.empty()));
+        assertEquals("Too many requests, expensive request pool is saturated", exception.getMessage());
+        assertTrue(exception.getRetryAfterSeconds() >= 1);
+        assertEquals(metrics, analyzer.getMetricsForCrypto(Optional.empty(), "btc"));
+
+        release.countDown();
+        assertEquals(new CryptoMetricDto("btc", BigDecimal.ONE), first.get(5, TimeUnit.SECONDS));
+        assertEquals(new CryptoMetricDto("btc", BigDecimal.ONE), queued.get(5, TimeUnit.SECONDS));
+        assertEquals(1, meterRegistry.get("crypto.admission.rejected").tag("pool", "expensive").counter().count());
+        assertEquals(0, meterRegistry.get("crypto.admission.rejected").tag("pool", "cheap").counter().count());
+        assertEquals(2, meterRegistry.get("crypto.admission.wait").tag("pool", "expensive").timer().count());
+    }
+
+    @Test
+    public void test_deadlineCancelled_calculationInterrupted() throws Exception {
+        Deadline deadline = Deadline.afterMillis(60000);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(delegate.getMetricsForCrypto(Optional.empty(), "btc")).thenAnswer(invocation -> {
+            assertSame(deadline, Deadline.current());
+            running.countDown();
+            try {
+                Thread.sleep(60000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return new CryptoMetricsDto(Map.of());
+        });
+
+        CompletableFuture<Throwable> failure = CompletableFuture.supplyAsync(() -> {
+            try (Deadline.Scope ignored = deadline.attach()) {
+                analyzer.getMetricsForCrypto(Optional.empty(), "btc");
+                return null;
+            } catch (Exception e) {
+                return e;
+            }
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        deadline.cancel();
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        Throwable throwable = failure.get(5, TimeUnit.SECONDS);
+        assertInstanceOf(CryptoDeadlineExceededException.class, throwable);
+        assertEquals("Request cancelled before its calculation completed", throwable.getMessage());
+    }
+
+    @Test
+    public void test_deadlineExceeded_callerStopsWaiting() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.getCryptoWithHighestNormalizedRange(Optional.empty())).thenAnswer(invocation -> {
+            release.await();
+            return new CryptoMetricDto("btc", BigDecimal.ONE);
+        });
+
+        try (Deadline.Scope ignored = Deadline.afterMillis(50).attach()) {
+            Throwable throwable = assertThrows(CryptoDeadlineExceededException.class,
+                    () -> analyzer.getCryptoWithHighestNormalizedRange(Optional.empty()));
+            assertEquals("Request deadline exceeded before its calculation completed", throwable.getMessage());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void test_dataSnapshotAttachedToPoolThread() throws Exception {
+        DataSnapshot snapshot = DataSnapshot.initial(0);
+        when(delegate.getCryptoWithHighestNormalizedRange(Optional.empty())).thenAnswer(invocation -> {
+            assertSame(snapshot, DataSnapshot.attached());
+            return new CryptoMetricDto("btc", BigDecimal.ONE);
+        });
+
+        try (DataSnapshot.Scope ignored = DataSnapshot.attach(snapshot)) {
+            assertEquals("btc", analyzer.getCryptoWithHighestNormalizedRange(Optional.empty()).getCrypto());
+        }
+    }
+
+    @Test
+    public void test_exceptionsPropagated() throws CryptoInternalException, CryptoNotFoundException {
+        when(delegate.getMetricsForCrypto(Optional.empty(), "ttt"))
+                .thenThrow(new CryptoNotFoundException("Crypto ttt not supported."));
+        when(delegate.getCryptosSortedByNormalizedRangeDesc(Optional.empty()))
+                .thenThrow(new CryptoInternalException("Internal error"));
+
+        Throwable notFound = assertThrows(CryptoNotFoundException.class,
+                () -> analyzer.getMetricsForCrypto(Optional.empty(), "ttt"));
+        Throwable internal = assertThrows(CryptoInternalException.class,
+                () -> analyzer.getCryptosSortedByNormalizedRangeDesc(Optional.empty()));
+
+        assertEquals("Crypto ttt not supported.", notFound.getMessage());
+        assertEquals("Internal error", internal.getMessage());
+    }
+
+    private CryptoMetricDto highestNormalizedRange() {
+        try {
+            return analyzer.getCryptoWithHighestNormalizedRange(Optional.empty());
+        } catch (CryptoInternalException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void awaitQueueDepth(String pool, double depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("crypto.admission.queue.depth").tag("pool", pool).gauge().value() != depth) {
+            assertTrue(System.nanoTime() < deadline, "Queue depth of pool " + pool + " did not reach " + depth);
+            Thread.sleep(10);
+        }
+    }
+
+    private static TimePeriodRequestDto timePeriod(LocalDateTime from, LocalDateTime to) {
+        TimePeriodRequestDto timePeriod = new TimePeriodRequestDto();
+        timePeriod.setFromDateTime(Optional.ofNullable(from));
+        timePeriod.setToDateTime(Optional.ofNullable(to));
+        return timePeriod;
+    }
+}
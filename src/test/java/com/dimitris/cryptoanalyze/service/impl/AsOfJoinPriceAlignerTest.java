@@ -0,0 +1,206 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.controller.dto.AsOfPricesDto;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoPriceDto;
+import com.dimitris.cryptoanalyze.service.CryptoPriceAligner;
+import com.dimitris.cryptoanalyze.service.DataLoader;
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoDeadlineExceededException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoOverloadedException;
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import com.dimitris.cryptoanalyze.service.model.DataSnapshot;
+import com.dimitris.cryptoanalyze.service.model.Deadline;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AsOfJoinPriceAlignerTest {
+
+    @Mock
+    private DataLoader dataLoader;
+
+    private CryptoValuesInMemManager valuesManager;
+
+    private AdmissionControl admissionControl;
+
+    private AsOfJoinPriceAligner aligner;
+
+    @BeforeEach
+    void setUp() {
+        valuesManager = new CryptoValuesInMemManager();
+        valuesManager.addValues(CryptoEnum.btc, List.of(value(1000, "100"), value(3000, "300")));
+        valuesManager.addValues(CryptoEnum.eth, List.of(value(2000, "20"), value(3000, "30"), value(5000, "50")));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        admissionControl = new AdmissionControl(new Bulkhead("cheap", 1, 0, meterRegistry),
+                new Bulkhead("expensive", 1, 0, meterRegistry), 400, 365);
+        aligner = new AsOfJoinPriceAligner(valuesManager, dataLoader, new ShardTopology(List.of(), 0), admissionControl);
+    }
+
+    @AfterEach
+    void tearDown() {
+        admissionControl.shutdown();
+    }
+
+    @Test
+    void test_getPricesAsOf() throws Exception {
+        AsOfPricesDto prices = aligner.getPricesAsOf(2500);
+
+        assertEquals(new AsOfPricesDto(2500, valuesManager.getDataVersion(), Map.of(
+                "btc", new CryptoPriceDto(1000, new BigDecimal("100")),
+                "eth", new CryptoPriceDto(2000, new BigDecimal("20")))), prices);
+        assertEquals(Map.of("btc", new CryptoPriceDto(1000, new BigDecimal("100"))),
+                aligner.getPricesAsOf(1999).getPrices());
+        assertTrue(aligner.getPricesAsOf(999).getPrices().isEmpty());
+        verify(dataLoader, atLeastOnce()).ensureLoaded(CryptoEnum.doge);
+    }
+
+    @Test
+    void test_exportAligned() throws Exception {
+        CryptoPriceAligner.AlignedExport export = aligner.exportAligned(Optional.of(List.of("eth", "btc")), 1500, 5000);
+        // Values added after the export is prepared are not exported
+        valuesManager.addValues(CryptoEnum.btc, List.of(value(4000, "400")));
+
+        StringWriter writer = new StringWriter();
+        export.writeTo(writer);
+
+        assertEquals("timestamp,eth,btc\n" +
+                "2000,20,100\n" +
+                "3000,30,300\n", writer.toString());
+        verify(dataLoader).ensureLoaded(CryptoEnum.btc);
+        verify(dataLoader).ensureLoaded(CryptoEnum.eth);
+    }
+
+    @Test
+    void test_exportAligned_attachedSnapshot() throws Exception {
+        DataSnapshot snapshot = valuesManager.getSnapshot();
+        valuesManager.addValues(CryptoEnum.btc, List.of(value(2000, "200")));
+
+        CryptoPriceAligner.AlignedExport export;
+        try (DataSnapshot.Scope ignored = DataSnapshot.attach(snapshot)) {
+            export = aligner.exportAligned(Optional.of(List.of("btc")), 1500, 5000);
+            assertEquals(snapshot.getVersion(), aligner.getPricesAsOf(2500).getDataVersion());
+        }
+        StringWriter writer = new StringWriter();
+        export.writeTo(writer);
+
+        assertEquals("timestamp,btc\n" +
+                "3000,300\n", writer.toString());
+        verifyNoInteractions(dataLoader);
+    }
+
+    @Test
+    void test_exportAligned_writtenOnAdmissionThread() throws Exception {
+        String[] thread = new String[1];
+        Writer writer = new StringWriter() {
+            @Override
+            public void write(String str) {
+                thread[0] = Thread.currentThread().getName();
+                super.write(str);
+            }
+        };
+
+        aligner.exportAligned(Optional.of(List.of("btc")), 1000, 2000).writeTo(writer);
+
+        assertTrue(thread[0].startsWith("admission-cheap-"), thread[0]);
+    }
+
+    @Test
+    void test_exportAligned_deadlineExceeded() throws Exception {
+        CryptoPriceAligner.AlignedExport export = aligner.exportAligned(Optional.empty(), 0, 5000);
+        Deadline deadline = Deadline.afterMillis(60000);
+        deadline.cancel();
+
+        try (Deadline.Scope ignored = deadline.attach()) {
+            assertThrows(CryptoDeadlineExceededException.class, () -> export.writeTo(new StringWriter()));
+        }
+    }
+
+    @Test
+    void test_exportAligned_poolSaturated() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Writer blockingWriter = new StringWriter() {
+            @Override
+            public void write(String str) {
+                writing.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.write(str);
+            }
+        };
+        CryptoPriceAligner.AlignedExport export = aligner.exportAligned(Optional.of(List.of("btc")), 1000, 2000);
+        CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> {
+            try {
+                export.writeTo(blockingWriter);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        });
+        try {
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+            assertThrows(CryptoOverloadedException.class, () -> export.writeTo(new StringWriter()));
+        } finally {
+            release.countDown();
+        }
+        blocked.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void test_exportAligned_allCryptos() throws Exception {
+        StringWriter writer = new StringWriter();
+
+        aligner.exportAligned(Optional.empty(), 0, 2001).writeTo(writer);
+
+        assertEquals("timestamp,btc,doge,eth,ltc,xrp\n" +
+                "1000,100,,,,\n" +
+                "2000,100,,20,,\n", writer.toString());
+    }
+
+    @Test
+    void test_exportAligned_invalid() {
+        assertThrows(CryptoNotFoundException.class,
+                () -> aligner.exportAligned(Optional.of(List.of("btc", "abc")), 0, 1000));
+        assertThrows(CryptoInternalException.class,
+                () -> aligner.exportAligned(Optional.empty(), 1000, 1000));
+    }
+
+    @Test
+    void test_exportAligned_cryptoNotOwned() {
+        ShardTopology shardTopology = new ShardTopology(List.of("http://node0:8080", "http://node1:8080"), 0);
+        AsOfJoinPriceAligner shardAligner = new AsOfJoinPriceAligner(valuesManager, dataLoader, shardTopology,
+                admissionControl);
+        CryptoEnum notOwned = Arrays.stream(CryptoEnum.values())
+                .filter(cryptoEnum -> !shardTopology.isOwned(cryptoEnum))
+                .findFirst().orElseThrow();
+
+        CryptoNotFoundException e = assertThrows(CryptoNotFoundException.class,
+                () -> shardAligner.exportAligned(Optional.of(List.of(notOwned.getCode())), 0, 1000));
+        assertTrue(e.getMessage().endsWith("It is owned by http://node1:8080"));
+    }
+
+    private static CryptoValue value(long timestamp, String price) {
+        return new CryptoValue(timestamp, new BigDecimal(price));
+    }
+}
@@ -0,0 +1,177 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import com.dimitris.cryptoanalyze.service.model.CryptoValueSeries;
+import com.dimitris.cryptoanalyze.service.model.QuantileSketch;
+import com.dimitris.cryptoanalyze.service.model.TimePeriod;
+import com.dimitris.cryptoanalyze.service.util.TimeTestUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BucketedQuantileIndexTest {
+
+    private static final long DAY_MILLIS = 86400000L;
+
+    private static final double[] QUANTILES = {0, 0.05, 0.25, 0.5, 0.75, 0.95, 1};
+
+    @ParameterizedTest
+    @ValueSource(doubles = {0.01, 0.001})
+    public void test_estimateQuantile_withinRelativeAccuracy(double relativeAccuracy) throws CryptoInternalException {
+        Set<CryptoValue> values = randomValues(new Random(42), 5000);
+        BucketedQuantileIndex index = new BucketedQuantileIndex(relativeAccuracy);
+
+        for (TimePeriod timePeriod : timePeriods()) {
+            for (double quantile : QUANTILES) {
+                Optional<BigDecimal> exact = exactQuantile(values, quantile, timePeriod);
+                Optional<BigDecimal> estimate = index.estimateQuantile(CryptoEnum.btc, values, quantile, timePeriod);
+
+                assertEquals(exact.isPresent(), estimate.isPresent(), timePeriod + " q=" + quantile);
+                if (exact.isPresent()) {
+                    double error = Math.abs(estimate.get().doubleValue() - exact.get().doubleValue())
+                            / exact.get().doubleValue();
+                    // Estimates are rounded to 8 significant digits, hence the small slack
+                    assertTrue(error <= relativeAccuracy + 1e-7,
+                            timePeriod + " q=" + quantile + " exact=" + exact.get() + " estimate=" + estimate.get());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test_estimateQuantile_rebuiltOnValuesChange() throws CryptoInternalException {
+        BucketedQuantileIndex index = new BucketedQuantileIndex(0.01);
+        TimePeriod timePeriod = new TimePeriod(Optional.empty(), Optional.empty());
+        Set<CryptoValue> values = new HashSet<>(Set.of(
+                new CryptoValue(TimeTestUtil.toEpochMilli("2022-01-01 00:00:05"), new BigDecimal("10")),
+                new CryptoValue(TimeTestUtil.toEpochMilli("2022-01-02 00:00:05"), new BigDecimal("10"))));
+        Optional<BigDecimal> before = index.estimateQuantile(CryptoEnum.btc, Set.copyOf(values), 1, timePeriod);
+
+        values.add(new CryptoValue(TimeTestUtil.toEpochMilli("2022-01-03 00:00:05"), new BigDecimal("100")));
+        Optional<BigDecimal> after = index.estimateQuantile(CryptoEnum.btc, Set.copyOf(values), 1, timePeriod);
+
+        assertEquals(10, before.get().doubleValue(), 0.1);
+        assertEquals(100, after.get().doubleValue(), 1);
+    }
+
+    @ParameterizedTest
+    @ValueSource(doubles = {0.01, 0.001})
+    public void test_estimateQuantile_storedSeries_withinRelativeAccuracy(double relativeAccuracy)
+            throws CryptoInternalException {
+        Set<CryptoValue> values = randomValues(new Random(43), 20000);
+        CryptoValueSeries series = CryptoValueSeries.of(values);
+        BucketedQuantileIndex index = new BucketedQuantileIndex(relativeAccuracy);
+
+        for (TimePeriod timePeriod : timePeriods()) {
+            for (double quantile : QUANTILES) {
+                Optional<BigDecimal> exact = exactQuantile(values, quantile, timePeriod);
+                Optional<BigDecimal> estimate = index.estimateQuantile(CryptoEnum.btc, series, quantile, timePeriod);
+
+                assertEquals(exact.isPresent(), estimate.isPresent(), timePeriod + " q=" + quantile);
+                if (exact.isPresent()) {
+                    double error = Math.abs(estimate.get().doubleValue() - exact.get().doubleValue())
+                            / exact.get().doubleValue();
+                    assertTrue(error <= relativeAccuracy + 1e-7,
+                            timePeriod + " q=" + quantile + " exact=" + exact.get() + " estimate=" + estimate.get());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test_estimateQuantile_noValues() throws CryptoInternalException {
+        BucketedQuantileIndex index = new BucketedQuantileIndex(0.01);
+
+        assertEquals(Optional.empty(), index.estimateQuantile(CryptoEnum.btc, Set.of(), 0.5,
+                new TimePeriod(Optional.empty(), Optional.empty())));
+    }
+
+    @Test
+    public void test_estimateQuantile_invalidQuantile() {
+        BucketedQuantileIndex index = new BucketedQuantileIndex(0.01);
+        Set<CryptoValue> values = Set.of(new CryptoValue(0, BigDecimal.ONE));
+
+        Throwable throwable = assertThrows(CryptoInternalException.class, () -> index.estimateQuantile(CryptoEnum.btc,
+                values, 1.5, new TimePeriod(Optional.empty(), Optional.empty())));
+        assertEquals("Error estimating quantile. Quantile must be in [0, 1], found 1.5", throwable.getMessage());
+    }
+
+    @Test
+    public void test_sketchMerge_sameAsSingleSketch() {
+        Random random = new Random(7);
+        QuantileSketch single = new QuantileSketch(0.01);
+        QuantileSketch first = new QuantileSketch(0.01);
+        QuantileSketch second = new QuantileSketch(0.01);
+        for (int i = 0; i < 1000; i++) {
+            double value = random.nextDouble() * 1000;
+            single.add(value);
+            (i % 2 == 0 ? first : second).add(value);
+        }
+        first.merge(second);
+
+        assertEquals(single.getCount(), first.getCount());
+        for (double quantile : QUANTILES) {
+            assertEquals(single.getQuantile(quantile), first.getQuantile(quantile));
+        }
+    }
+
+    @Test
+    public void test_sketch_invalidRelativeAccuracy() {
+        assertThrows(IllegalArgumentException.class, () -> new QuantileSketch(0));
+        assertThrows(IllegalArgumentException.class, () -> new BucketedQuantileIndex(1));
+    }
+
+    /**
+     * Values spread over a month, with prices drawn log-uniformly so that several orders of magnitude are covered
+     */
+    private static Set<CryptoValue> randomValues(Random random, int count) {
+        long start = TimeTestUtil.toEpochMilli("2022-01-01 00:00:00");
+        Set<CryptoValue> values = new HashSet<>();
+        while (values.size() < count) {
+            long timestamp = start + (long) (random.nextDouble() * 31 * DAY_MILLIS);
+            BigDecimal price = BigDecimal.valueOf(Math.exp(random.nextDouble() * 12 - 4)).setScale(6,
+                    RoundingMode.HALF_UP).add(new BigDecimal("0.000001"));
+            values.add(new CryptoValue(timestamp, price));
+        }
+        return values;
+    }
+
+    private static List<TimePeriod> timePeriods() {
+        return List.of(
+                new TimePeriod(Optional.empty(), Optional.empty()),
+                new TimePeriod(Optional.of(LocalDateTime.of(2022, 1, 5, 0, 0)), Optional.of(LocalDateTime.of(2022, 1, 20, 0, 0))),
+                new TimePeriod(Optional.of(LocalDateTime.of(2022, 1, 5, 7, 13)), Optional.of(LocalDateTime.of(2022, 1, 20, 18, 2))),
+                new TimePeriod(Optional.of(LocalDateTime.of(2022, 1, 9, 3, 0)), Optional.of(LocalDateTime.of(2022, 1, 9, 21, 0))),
+                new TimePeriod(Optional.of(LocalDateTime.of(2022, 1, 12, 12, 0)), Optional.empty()),
+                new TimePeriod(Optional.empty(), Optional.of(LocalDateTime.of(2022, 1, 3, 6, 0))),
+                new TimePeriod(Optional.of(LocalDateTime.of(2022, 3, 1, 0, 0)), Optional.empty()));
+    }
+
+    private static Optional<BigDecimal> exactQuantile(Set<CryptoValue> values, double quantile, TimePeriod timePeriod) {
+        long from = timePeriod.getFromDateTime().map(dateTime -> dateTime.toInstant(ZoneOffset.UTC).toEpochMilli())
+                .orElse(Long.MIN_VALUE);
+        long to = timePeriod.getToDateTime().map(dateTime -> dateTime.toInstant(ZoneOffset.UTC).toEpochMilli())
+                .orElse(Long.MAX_VALUE);
+        List<BigDecimal> prices = new ArrayList<>();
+        for (CryptoValue value : values) {
+            if (value.getTimestamp() >= from && value.getTimestamp() < to) {
+                prices.add(value.getPrice());
+            }
+        }
+        if (prices.isEmpty()) {
+            return Optional.empty();
+        }
+        Collections.sort(prices);
+        return Optional.of(prices.get((int) Math.floor(quantile * (prices.size() - 1))));
+    }
+}
@@ -0,0 +1,191 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsDto;
+import com.dimitris.cryptoanalyze.controller.dto.TimePeriodRequestDto;
+import com.dimitris.cryptoanalyze.service.CryptoAnalyzer;
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoDeadlineExceededException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import com.dimitris.cryptoanalyze.service.model.DataSnapshot;
+import com.dimitris.cryptoanalyze.service.model.Deadline;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CoalescingCryptoAnalyzerTest {
+
+    @Mock
+    private CryptoAnalyzer delegate;
+
+    private CryptoValuesInMemManager valuesManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private CoalescingCryptoAnalyzer analyzer;
+
+    @BeforeEach
+    void setUp() {
+        valuesManager = new CryptoValuesInMemManager();
+        meterRegistry = new SimpleMeterRegistry();
+        analyzer = new CoalescingCryptoAnalyzer(delegate, valuesManager, meterRegistry);
+    }
+
+    @Test
+    public void test_identicalConcurrentRequests_calculatedOnce() throws Exception {
+        CryptoMetricsDto metrics = new CryptoMetricsDto(Map.of());
+        CountDownLatch calculating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.getMetricsForCrypto(any(), eq("btc"))).thenAnswer(invocation -> {
+            calculating.countDown();
+            release.await();
+            return metrics;
+        });
+
+        CompletableFuture<CryptoMetricsDto> first = CompletableFuture.supplyAsync(() -> getMetrics(Optional.empty()));
+        assertTrue(calculating.await(5, TimeUnit.SECONDS));
+        // A time period without fields is the same query as no time period
+        CompletableFuture<CryptoMetricsDto> second = CompletableFuture.supplyAsync(() ->
+                getMetrics(Optional.of(new TimePeriodRequestDto())));
+        awaitCoalesced(second);
+        release.countDown();
+
+        assertSame(metrics, first.get(5, TimeUnit.SECONDS));
+        assertSame(metrics, second.get(5, TimeUnit.SECONDS));
+        verify(delegate, times(1)).getMetricsForCrypto(any(), eq("btc"));
+        assertEquals(1, meterRegistry.get("crypto.coalescing.calculations").counter().count());
+        assertEquals(1, meterRegistry.get("crypto.coalescing.coalesced").counter().count());
+        assertEquals(0, meterRegistry.get("crypto.coalescing.in.flight").gauge().value());
+    }
+
+    @Test
+    public void test_calculationFails_exceptionPropagatedToWaitingRequests() throws Exception {
+        CountDownLatch calculating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.getMetricsForCrypto(any(), eq("abc"))).thenAnswer(invocation -> {
+            calculating.countDown();
+            release.await();
+            throw new CryptoNotFoundException("Crypto abc not supported.");
+        });
+
+        CompletableFuture<Throwable> first = CompletableFuture.supplyAsync(() -> getMetricsFailure("abc"));
+        assertTrue(calculating.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Throwable> second = CompletableFuture.supplyAsync(() -> getMetricsFailure("abc"));
+        awaitCoalesced(second);
+        release.countDown();
+
+        assertInstanceOf(CryptoNotFoundException.class, first.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(CryptoNotFoundException.class, second.get(5, TimeUnit.SECONDS));
+        verify(delegate, times(1)).getMetricsForCrypto(any(), eq("abc"));
+        assertEquals(0, meterRegistry.get("crypto.coalescing.in.flight").gauge().value());
+    }
+
+    @Test
+    public void test_calculatingRequestExceedsItsDeadline_waitingRequestCalculatesAgain() throws Exception {
+        CryptoMetricsDto metrics = new CryptoMetricsDto(Map.of());
+        CountDownLatch calculating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.getMetricsForCrypto(any(), eq("btc")))
+                .thenAnswer(invocation -> {
+                    calculating.countDown();
+                    release.await();
+                    throw Deadline.current().newExceededException();
+                })
+                .thenReturn(metrics);
+        Deadline shortDeadline = Deadline.afterMillis(50);
+
+        CompletableFuture<Throwable> first = CompletableFuture.supplyAsync(() -> {
+            try (Deadline.Scope ignored = shortDeadline.attach()) {
+                analyzer.getMetricsForCrypto(Optional.empty(), "btc");
+                return null;
+            } catch (CryptoInternalException | CryptoNotFoundException e) {
+                return e;
+            }
+        });
+        assertTrue(calculating.await(5, TimeUnit.SECONDS));
+        CompletableFuture<CryptoMetricsDto> second = CompletableFuture.supplyAsync(() -> getMetrics(Optional.empty()));
+        awaitCoalesced(second);
+        release.countDown();
+
+        assertInstanceOf(CryptoDeadlineExceededException.class, first.get(5, TimeUnit.SECONDS));
+        assertSame(metrics, second.get(5, TimeUnit.SECONDS));
+        verify(delegate, times(2)).getMetricsForCrypto(any(), eq("btc"));
+    }
+
+    @Test
+    public void test_differentQueriesOrVersions_notCoalesced() throws Exception {
+        TimePeriodRequestDto timePeriod = new TimePeriodRequestDto();
+        timePeriod.setFromDateTime(Optional.of(LocalDateTime.of(2022, 1, 1, 0, 0)));
+        timePeriod.setToDateTime(Optional.empty());
+        AtomicLong calculatedOnVersion = new AtomicLong(-1);
+        when(delegate.getMetricsForCrypto(any(), eq("btc"))).thenAnswer(invocation -> {
+            calculatedOnVersion.set(valuesManager.getDataVersion());
+            return new CryptoMetricsDto(Map.of());
+        });
+
+        analyzer.getMetricsForCrypto(Optional.empty(), "btc");
+        analyzer.getMetricsForCrypto(Optional.of(timePeriod), "btc");
+        valuesManager.addValues(CryptoEnum.btc, List.of(new CryptoValue(1234L, new BigDecimal("1300"))));
+        DataSnapshot snapshot = valuesManager.getSnapshot();
+        analyzer.getMetricsForCrypto(Optional.empty(), "btc");
+
+        verify(delegate, times(3)).getMetricsForCrypto(any(), eq("btc"));
+        assertEquals(snapshot.getVersion(), calculatedOnVersion.get());
+        assertEquals(0, meterRegistry.get("crypto.coalescing.coalesced").counter().count());
+    }
+
+    private CryptoMetricsDto getMetrics(Optional<TimePeriodRequestDto> timePeriodRequestDto) {
+        try {
+            return analyzer.getMetricsForCrypto(timePeriodRequestDto, "btc");
+        } catch (CryptoInternalException | CryptoNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Throwable getMetricsFailure(String crypto) {
+        try {
+            analyzer.getMetricsForCrypto(Optional.empty(), crypto);
+            return null;
+        } catch (CryptoInternalException | CryptoNotFoundException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Waits until a request is waiting for the calculation of another one, while holding the calculation back
+     */
+    private void awaitCoalesced(CompletableFuture<?> request) throws InterruptedException {
+        long waitUntil = System.currentTimeMillis() + 5000;
+        while (!isWaitingForCalculation() && !request.isDone() && System.currentTimeMillis() < waitUntil) {
+            Thread.sleep(5);
+        }
+        assertFalse(request.isDone());
+    }
+
+    private static boolean isWaitingForCalculation() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getState() == Thread.State.WAITING)
+                .flatMap(thread -> Arrays.stream(thread.getStackTrace()))
+                .anyMatch(element -> element.getClassName().equals(CoalescingCryptoAnalyzer.class.getName()) &&
+                        element.getMethodName().equals("await"));
+    }
+}
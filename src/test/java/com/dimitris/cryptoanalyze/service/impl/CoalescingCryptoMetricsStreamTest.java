@@ -0,0 +1,363 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsDto;
+import com.dimitris.cryptoanalyze.controller.dto.TimePeriodRequestDto;
+import com.dimitris.cryptoanalyze.service.CryptoAnalyzer;
+import com.dimitris.cryptoanalyze.service.CryptoMetricsStream;
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CoalescingCryptoMetricsStreamTest {
+
+    private static final CryptoMetricsDto METRICS_1 = new CryptoMetricsDto(Map.of("max", new BigDecimal("100")));
+
+    private static final CryptoMetricsDto METRICS_2 = new CryptoMetricsDto(Map.of("max", new BigDecimal("200")));
+
+    @Mock
+    private CryptoAnalyzer analyzer;
+
+    private CryptoValuesInMemManager manager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private CoalescingCryptoMetricsStream stream;
+
+    private final AtomicInteger dropped = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        manager = new CryptoValuesInMemManager();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (stream != null) {
+            stream.shutdown();
+        }
+    }
+
+    @Test
+    void test_subscribe_currentMetricsDelivered() throws Exception {
+        stream = newStream(10, 0);
+        when(analyzer.getMetricsForCrypto(Optional.empty(), "btc")).thenReturn(METRICS_1);
+        BlockingQueue<CryptoMetricsDto> delivered = new LinkedBlockingQueue<>();
+
+        stream.subscribe("btc", Optional.empty(), delivered::add, dropped::incrementAndGet);
+
+        assertEquals(METRICS_1, delivered.poll(5, TimeUnit.SECONDS));
+        assertEquals(1, meterRegistry.get("crypto.stream.subscribers").gauge().value());
+    }
+
+    @Test
+    void test_valuesAdded_changedMetricsDelivered() throws Exception {
+        stream = newStream(10, 0);
+        when(analyzer.getMetricsForCrypto(Optional.empty(), "btc")).thenReturn(METRICS_1, METRICS_2);
+        BlockingQueue<CryptoMetricsDto> delivered = new LinkedBlockingQueue<>();
+        stream.subscribe("btc", Optional.empty(), delivered::add, dropped::incrementAndGet);
+        assertEquals(METRICS_1, delivered.poll(5, TimeUnit.SECONDS));
+
+        manager.addValues(CryptoEnum.btc, List.of(new CryptoValue(1000L, new BigDecimal("200"))));
+
+        assertEquals(METRICS_2, delivered.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void test_valuesAdded_unchangedMetricsNotDelivered() throws Exception {
+        stream = newStream(10, 0);
+        when(analyzer.getMetricsForCrypto(Optional.empty(), "btc")).thenReturn(METRICS_1);
+        BlockingQueue<CryptoMetricsDto> delivered = new LinkedBlockingQueue<>();
+        stream.subscribe("btc", Optional.empty(), delivered::add, dropped::incrementAndGet);
+        assertEquals(METRICS_1, delivered.poll(5, TimeUnit.SECONDS));
+
+        manager.addValues(CryptoEnum.btc, List.of(new CryptoValue(1000L, new BigDecimal("50"))));
+
+        verify(analyzer, timeout(5000).times(2)).getMetricsForCrypto(Optional.empty(), "btc");
+        assertNull(delivered.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void test_valuesAdded_otherCryptoOrOutsideTimePeriod_ignored() throws Exception {
+        stream = newStream(10, 0);
+        Optional<TimePeriodRequestDto> timePeriod = timePeriod(LocalDateTime.of(2022, 1, 1, 0, 0),
+                LocalDateTime.of(2022, 1, 2, 0, 0));
+        when(analyzer.getMetricsForCrypto(timePeriod, "btc")).thenReturn(METRICS_1);
+        BlockingQueue<CryptoMetricsDto> delivered = new LinkedBlockingQueue<>();
+        stream.subscribe("btc", timePeriod, delivered::add, dropped::incrementAndGet);
+        assertEquals(METRICS_1, delivered.poll(5, TimeUnit.SECONDS));
+
+        manager.addValues(CryptoEnum.btc, List.of(
+                new CryptoValue(toEpochMilli(LocalDateTime.of(2022, 1, 2, 0, 0)), new BigDecimal("200")),
+                new CryptoValue(toEpochMilli(LocalDateTime.of(2021, 12, 31, 23, 59)), new BigDecimal("200"))));
+        manager.addValues(CryptoEnum.eth, List.of(
+                new CryptoValue(toEpochMilli(LocalDateTime.of(2022, 1, 1, 12, 0)), new BigDecimal("200"))));
+
+        Thread.sleep(200);
+        verify(analyzer, times(1)).getMetricsForCrypto(any(), any());
+    }
+
+    @Test
+    void test_valuesAdded_burst_coalesced() throws Exception {
+        stream = newStream(10, 500);
+        when(analyzer.getMetricsForCrypto(Optional.empty(), "btc")).thenReturn(METRICS_1, METRICS_2);
+        BlockingQueue<CryptoMetricsDto> delivered = new LinkedBlockingQueue<>();
+        stream.subscribe("btc", Optional.empty(), delivered::add, dropped::incrementAndGet);
+        assertEquals(METRICS_1, delivered.poll(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 50; i++) {
+            manager.addValues(CryptoEnum.btc, List.of(new CryptoValue(1000L + i, new BigDecimal("200"))));
+        }
+
+        assertEquals(METRICS_2, delivered.poll(5, TimeUnit.SECONDS));
+        assertNull(delivered.poll(100, TimeUnit.MILLISECONDS));
+        verify(analyzer, times(2)).getMetricsForCrypto(Optional.empty(), "btc");
+    }
+
+    @Test
+    void test_subscribersOfSameTimePeriod_calculatedOnce() throws Exception {
+        stream = newStream(200, 0);
+        when(analyzer.getMetricsForCrypto(Optional.empty(), "btc")).thenReturn(METRICS_1);
+        BlockingQueue<CryptoMetricsDto> delivered = new LinkedBlockingQueue<>();
+
+        stream.subscribe("btc", Optional.empty(), delivered::add, dropped::incrementAndGet);
+        stream.subscribe("btc", Optional.empty(), delivered::add, dropped::incrementAndGet);
+
+        assertEquals(METRICS_1, delivered.poll(5, TimeUnit.SECONDS));
+        assertEquals(METRICS_1, delivered.poll(5, TimeUnit.SECONDS));
+        verify(analyzer, times(1)).getMetricsForCrypto(Optional.empty(), "btc");
+    }
+
+    @Test
+    void test_cancel_noMoreDeliveries() throws Exception {
+        stream = newStream(10, 0);
+        when(analyzer.getMetricsForCrypto(Optional.empty(), "btc")).thenReturn(METRICS_1, METRICS_2);
+        BlockingQueue<CryptoMetricsDto> delivered = new LinkedBlockingQueue<>();
+        CryptoMetricsStream.Subscription subscription = stream.subscribe("btc", Optional.empty(), delivered::add, dropped::incrementAndGet);
+        assertEquals(METRICS_1, delivered.poll(5, TimeUnit.SECONDS));
+
+        subscription.cancel();
+        manager.addValues(CryptoEnum.btc, List.of(new CryptoValue(1000L, new BigDecimal("200"))));
+
+        assertNull(delivered.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(0, meterRegistry.get("crypto.stream.subscribers").gauge().value());
+    }
+
+    @Test
+    void test_deliveryFails_subscriptionCancelled() throws Exception {
+        stream = newStream(10, 0);
+        when(analyzer.getMetricsForCrypto(Optional.empty(), "btc")).thenReturn(METRICS_1);
+
+        stream.subscribe("btc", Optional.empty(), metrics -> {
+            throw new IOException("Broken pipe");
+        }, dropped::incrementAndGet);
+
+        verify(analyzer, timeout(5000)).getMetricsForCrypto(Optional.empty(), "btc");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get("crypto.stream.subscribers").gauge().value() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, meterRegistry.get("crypto.stream.subscribers").gauge().value());
+        assertEquals(0, meterRegistry.get("crypto.stream.updates").counter().count());
+        assertEquals(1, dropped.get());
+    }
+
+    @Test
+    void test_slowSubscribers_otherSubscribersServed() throws Exception {
+        stream = newStream(10, 0);
+        when(analyzer.getMetricsForCrypto(Optional.empty(), "btc")).thenReturn(METRICS_1, METRICS_2);
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingQueue<CryptoMetricsDto> slowDelivered = new LinkedBlockingQueue<>();
+        // More stalled subscribers of the same crypto and time period than fan-out threads
+        for (int i = 0; i < 3; i++) {
+            stream.subscribe("btc", Optional.empty(), metrics -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                slowDelivered.add(metrics);
+            }, dropped::incrementAndGet);
+        }
+        BlockingQueue<CryptoMetricsDto> delivered = new LinkedBlockingQueue<>();
+        stream.subscribe("btc", Optional.empty(), delivered::add, dropped::incrementAndGet);
+        assertEquals(METRICS_1, delivered.poll(5, TimeUnit.SECONDS));
+
+        manager.addValues(CryptoEnum.btc, List.of(new CryptoValue(1000L, new BigDecimal("200"))));
+
+        assertEquals(METRICS_2, delivered.poll(5, TimeUnit.SECONDS));
+        // Slow subscribers receive only the latest metrics once they keep up again, those whose first write had not
+        // started yet skipping the first metrics
+        release.countDown();
+        int latestDelivered = 0;
+        while (latestDelivered < 3) {
+            CryptoMetricsDto metrics = slowDelivered.poll(5, TimeUnit.SECONDS);
+            if (METRICS_2.equals(metrics)) {
+                latestDelivered++;
+            } else {
+                assertEquals(METRICS_1, metrics);
+            }
+        }
+        assertNull(slowDelivered.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void test_writeTimesOut_subscriptionCancelledAndDropped() throws Exception {
+        stream = newStream(10, 0, 100);
+        when(analyzer.getMetricsForCrypto(Optional.empty(), "btc")).thenReturn(METRICS_1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CountDownLatch droppedAfterWrite = new CountDownLatch(1);
+        BlockingQueue<CryptoMetricsDto> delivered = new LinkedBlockingQueue<>();
+        stream.subscribe("btc", Optional.empty(), metrics -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw new InterruptedIOException("Write interrupted");
+            }
+        }, () -> {
+            // Only once the write has returned, so that closing the stream is not blocked by it
+            if (interrupted.getCount() == 0) {
+                droppedAfterWrite.countDown();
+            }
+        });
+        stream.subscribe("btc", Optional.empty(), delivered::add, dropped::incrementAndGet);
+        assertEquals(METRICS_1, delivered.poll(5, TimeUnit.SECONDS));
+
+        awaitSubscribers(meterRegistry, 1);
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertTrue(droppedAfterWrite.await(5, TimeUnit.SECONDS));
+        assertEquals(0, dropped.get());
+    }
+
+    @Test
+    void test_senderPoolSaturated_outboxDeliveredOnLaterTick() throws Exception {
+        stream = new CoalescingCryptoMetricsStream(analyzer, manager, new ShardTopology(List.of(), 0), meterRegistry,
+                2, 10, 10, 0, 10000, 1, 0);
+        when(analyzer.getMetricsForCrypto(Optional.empty(), "btc")).thenReturn(METRICS_1);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        stream.subscribe("btc", Optional.empty(), metrics -> {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, dropped::incrementAndGet);
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        // The only sender thread is busy and nothing may wait for it
+        BlockingQueue<CryptoMetricsDto> delivered = new LinkedBlockingQueue<>();
+        stream.subscribe("btc", Optional.empty(), delivered::add, dropped::incrementAndGet);
+        assertNull(delivered.poll(100, TimeUnit.MILLISECONDS));
+        release.countDown();
+
+        assertEquals(METRICS_1, delivered.poll(5, TimeUnit.SECONDS));
+        assertEquals(0, dropped.get());
+    }
+
+    @Test
+    void test_fanOutQueueFull_groupDeliveredOnLaterTick() throws Exception {
+        stream = new CoalescingCryptoMetricsStream(analyzer, manager, new ShardTopology(List.of(), 0), meterRegistry,
+                1, 0, 10, 0, 10000, 4, 10);
+        CountDownLatch calculating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(analyzer.getMetricsForCrypto(Optional.empty(), "btc")).thenAnswer(invocation -> {
+            calculating.countDown();
+            release.await();
+            return METRICS_1;
+        });
+        when(analyzer.getMetricsForCrypto(Optional.empty(), "eth")).thenReturn(METRICS_2);
+        BlockingQueue<CryptoMetricsDto> btcDelivered = new LinkedBlockingQueue<>();
+        stream.subscribe("btc", Optional.empty(), btcDelivered::add, dropped::incrementAndGet);
+        assertTrue(calculating.await(5, TimeUnit.SECONDS));
+
+        // The only fan-out thread is busy and nothing may wait for it
+        BlockingQueue<CryptoMetricsDto> ethDelivered = new LinkedBlockingQueue<>();
+        stream.subscribe("eth", Optional.empty(), ethDelivered::add, dropped::incrementAndGet);
+        assertNull(ethDelivered.poll(100, TimeUnit.MILLISECONDS));
+        release.countDown();
+
+        assertEquals(METRICS_1, btcDelivered.poll(5, TimeUnit.SECONDS));
+        assertEquals(METRICS_2, ethDelivered.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void test_subscribe_cryptoNotSupported() {
+        stream = newStream(10, 0);
+        assertThrows(CryptoNotFoundException.class, () -> stream.subscribe("abc", Optional.empty(), metrics -> {
+        }, dropped::incrementAndGet));
+    }
+
+    @Test
+    void test_subscribe_cryptoOwnedByOtherShard() throws Exception {
+        ShardTopology shardTopology = new ShardTopology(List.of("http://a", "http://b"), 0);
+        CryptoEnum notOwned = List.of(CryptoEnum.values()).stream()
+                .filter(cryptoEnum -> !shardTopology.isOwned(cryptoEnum))
+                .findFirst()
+                .orElseThrow();
+        stream = new CoalescingCryptoMetricsStream(analyzer, manager, shardTopology, meterRegistry, 1, 10, 10, 0, 10000, 4, 10);
+
+        assertThrows(CryptoNotFoundException.class, () -> stream.subscribe(notOwned.getCode(), Optional.empty(),
+                metrics -> {
+                }, dropped::incrementAndGet));
+        verify(analyzer, never()).getMetricsForCrypto(any(), eq(notOwned.getCode()));
+    }
+
+    private CoalescingCryptoMetricsStream newStream(long tickMillis, long minUpdateIntervalMillis) {
+        return newStream(tickMillis, minUpdateIntervalMillis, 10000);
+    }
+
+    private CoalescingCryptoMetricsStream newStream(long tickMillis, long minUpdateIntervalMillis, long sendTimeoutMillis) {
+        return new CoalescingCryptoMetricsStream(analyzer, manager, new ShardTopology(List.of(), 0), meterRegistry,
+                2, 10, tickMillis, minUpdateIntervalMillis, sendTimeoutMillis, 4, 10);
+    }
+
+    private static void awaitSubscribers(SimpleMeterRegistry meterRegistry, int subscribers) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get("crypto.stream.subscribers").gauge().value() != subscribers && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(subscribers, meterRegistry.get("crypto.stream.subscribers").gauge().value());
+    }
+
+    private static Optional<TimePeriodRequestDto> timePeriod(LocalDateTime from, LocalDateTime to) {
+        TimePeriodRequestDto timePeriodRequestDto = new TimePeriodRequestDto();
+        timePeriodRequestDto.setFromDateTime(Optional.of(from));
+        timePeriodRequestDto.setToDateTime(Optional.of(to));
+        return Optional.of(timePeriodRequestDto);
+    }
+
+    private static long toEpochMilli(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
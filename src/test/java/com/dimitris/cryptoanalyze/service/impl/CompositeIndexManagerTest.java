@@ -0,0 +1,153 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoIndexDto;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoIndexRequestDto;
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoValidationException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompositeIndexManagerTest {
+
+    private static final long GRID = 60000L;
+
+    private CryptoValuesInMemManager valuesManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private CompositeIndexManager indexManager;
+
+    @BeforeEach
+    void setUp() {
+        valuesManager = new CryptoValuesInMemManager();
+        meterRegistry = new SimpleMeterRegistry();
+        indexManager = new CompositeIndexManager(valuesManager, new ShardTopology(List.of(), 0), meterRegistry, GRID);
+    }
+
+    @Test
+    void test_define_levelsOfStoredValues() throws Exception {
+        valuesManager.addValues(CryptoEnum.btc, List.of(value(10000, "100"), value(130000, "110")));
+        valuesManager.addValues(CryptoEnum.eth, List.of(value(50000, "10"), value(190000, "12")));
+
+        CryptoIndexDto index = indexManager.define(request("majors", Map.of("btc", "0.5", "eth", "2"), null));
+
+        assertEquals(new CryptoIndexDto("majors", Map.of("btc", new BigDecimal("0.5"), "eth", new BigDecimal("2")),
+                GRID, 3), index);
+        // The grid starts at the first point at which both cryptos have a price, and ends at the newest value
+        assertEquals(List.of(level(60000, "70"), level(120000, "70"), level(180000, "75")),
+                new ArrayList<>(indexManager.getLevels("majors").orElseThrow()));
+        assertEquals(List.of(index), indexManager.getIndices());
+        assertEquals(1, meterRegistry.get("crypto.indices").gauge().value());
+    }
+
+    @Test
+    void test_valuesAdded_levelsMatchRecalculation() throws Exception {
+        Random random = new Random(7);
+        Map<String, String> weights = Map.of("btc", "0.25", "eth", "3", "ltc", "40");
+        indexManager.define(request("basket", weights, null));
+        assertTrue(indexManager.getLevels("basket").orElseThrow().isEmpty());
+
+        Map<CryptoEnum, TreeMap<Long, CryptoValue>> stored = new EnumMap<>(CryptoEnum.class);
+        for (int batch = 0; batch < 200; batch++) {
+            CryptoEnum cryptoEnum = List.of(CryptoEnum.btc, CryptoEnum.eth, CryptoEnum.ltc).get(random.nextInt(3));
+            List<CryptoValue> values = new ArrayList<>();
+            for (int i = 0; i < 1 + random.nextInt(20); i++) {
+                // Mostly appends, with some values falling before or replacing stored ones
+                long timestamp = random.nextInt(8) == 0 ? random.nextInt(batch * 30000 + 1)
+                        : batch * 30000L + random.nextInt(30000);
+                values.add(new CryptoValue(timestamp, BigDecimal.valueOf(1000 + random.nextInt(1000), 1)));
+            }
+            valuesManager.addValues(cryptoEnum, values);
+            values.forEach(value -> stored.computeIfAbsent(cryptoEnum, key -> new TreeMap<>()).put(value.getTimestamp(), value));
+
+            assertEquals(expectedLevels(stored, weights), new ArrayList<>(indexManager.getLevels("basket").orElseThrow()));
+        }
+        assertTrue(indexManager.getLevels("basket").orElseThrow().size() > 90);
+    }
+
+    @Test
+    void test_define_invalid() {
+        assertThrows(CryptoValidationException.class, () -> indexManager.define(request("Majors!", Map.of("btc", "1"), null)));
+        assertThrows(CryptoValidationException.class, () -> indexManager.define(request("btc", Map.of("btc", "1"), null)));
+        assertThrows(CryptoValidationException.class, () -> indexManager.define(request("majors", Map.of(), null)));
+        assertThrows(CryptoValidationException.class, () -> indexManager.define(request("majors", Map.of("btc", "0"), null)));
+        assertThrows(CryptoValidationException.class, () -> indexManager.define(request("majors", Map.of("btc", "1"), 999L)));
+        assertThrows(CryptoNotFoundException.class, () -> indexManager.define(request("majors", Map.of("abc", "1"), null)));
+        assertTrue(indexManager.getIndices().isEmpty());
+    }
+
+    @Test
+    void test_define_cryptoNotOwned() {
+        ShardTopology shardTopology = new ShardTopology(List.of("http://node0:8080", "http://node1:8080"), 0);
+        CompositeIndexManager shardIndexManager = new CompositeIndexManager(valuesManager, shardTopology, meterRegistry, GRID);
+        CryptoEnum notOwned = Arrays.stream(CryptoEnum.values())
+                .filter(cryptoEnum -> !shardTopology.isOwned(cryptoEnum))
+                .findFirst().orElseThrow();
+
+        assertThrows(CryptoNotFoundException.class,
+                () -> shardIndexManager.define(request("majors", Map.of(notOwned.getCode(), "1"), null)));
+    }
+
+    @Test
+    void test_remove() throws Exception {
+        indexManager.define(request("majors", Map.of("btc", "1"), null));
+
+        indexManager.remove("majors");
+
+        assertTrue(indexManager.getLevels("majors").isEmpty());
+        assertThrows(CryptoNotFoundException.class, () -> indexManager.remove("majors"));
+    }
+
+    /**
+     * Recalculates the levels of an index from scratch, adding weighted prices in the order of the cryptos
+     */
+    private static List<CryptoValue> expectedLevels(Map<CryptoEnum, TreeMap<Long, CryptoValue>> stored,
+                                                    Map<String, String> weights) {
+        List<CryptoEnum> cryptos = new ArrayList<>();
+        weights.keySet().forEach(crypto -> cryptos.add(CryptoEnum.valueOf(crypto)));
+        Collections.sort(cryptos);
+        if (!stored.keySet().containsAll(cryptos)) {
+            return List.of();
+        }
+        long firstTimestamp = cryptos.stream().mapToLong(cryptoEnum -> stored.get(cryptoEnum).firstKey()).max().orElseThrow();
+        long newestTimestamp = cryptos.stream().mapToLong(cryptoEnum -> stored.get(cryptoEnum).lastKey()).max().orElseThrow();
+        List<CryptoValue> levels = new ArrayList<>();
+        for (long point = Math.floorDiv(firstTimestamp + GRID - 1, GRID) * GRID; point <= newestTimestamp; point += GRID) {
+            double level = 0;
+            for (CryptoEnum cryptoEnum : cryptos) {
+                double price = stored.get(cryptoEnum).floorEntry(point).getValue().getPrice().doubleValue();
+                level += new BigDecimal(weights.get(cryptoEnum.getCode())).doubleValue() * price;
+            }
+            levels.add(new CryptoValue(point, new BigDecimal(level, new MathContext(10, RoundingMode.HALF_UP))));
+        }
+        return levels;
+    }
+
+    private static CryptoIndexRequestDto request(String name, Map<String, String> weights, Long gridMillis) {
+        CryptoIndexRequestDto request = new CryptoIndexRequestDto();
+        request.setName(name);
+        Map<String, BigDecimal> decimalWeights = new HashMap<>();
+        weights.forEach((crypto, weight) -> decimalWeights.put(crypto, new BigDecimal(weight)));
+        request.setWeights(decimalWeights);
+        request.setGridMillis(gridMillis);
+        return request;
+    }
+
+    private static CryptoValue value(long timestamp, String price) {
+        return new CryptoValue(timestamp, new BigDecimal(price));
+    }
+
+    private static CryptoValue level(long timestamp, String level) {
+        return new CryptoValue(timestamp, new BigDecimal(level).round(new MathContext(10)));
+    }
+}
@@ -4,12 +4,15 @@ import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricDto;
 import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsDto;
 import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsListDto;
 import com.dimitris.cryptoanalyze.controller.dto.TimePeriodRequestDto;
+import com.dimitris.cryptoanalyze.service.CryptoIndexManager;
 import com.dimitris.cryptoanalyze.service.CryptoMetricsCalculator;
 import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
 import com.dimitris.cryptoanalyze.service.enums.CryptoMetricEnum;
 import com.dimitris.cryptoanalyze.service.enums.SortOrder;
 import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
 import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import com.dimitris.cryptoanalyze.service.model.CryptoValueSeries;
 import com.dimitris.cryptoanalyze.service.model.TimePeriod;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -30,6 +33,9 @@ public class CryptoAnalyzerImplTest {
     @Mock
     private CryptoMetricsCalculator calculator;
 
+    @Mock
+    private CryptoIndexManager indexManager;
+
     @InjectMocks
     private CryptoAnalyzerImpl analyzer;
 
@@ -97,6 +103,25 @@ public class CryptoAnalyzerImplTest {
         assertEquals(response, expectedResponse);
     }
 
+    @Test
+    public void test_getMetricsForCrypto_index() throws CryptoInternalException, CryptoNotFoundException {
+        TimePeriod timePeriod = new TimePeriod(Optional.empty(), Optional.empty());
+        CryptoValueSeries levels = CryptoValueSeries.of(List.of(new CryptoValue(60000L, new BigDecimal("70")),
+                new CryptoValue(120000L, new BigDecimal("75"))));
+        Map<CryptoMetricEnum, BigDecimal> metrics = new HashMap<>();
+        metrics.put(CryptoMetricEnum.MIN_PRICE, new BigDecimal("70"));
+        metrics.put(CryptoMetricEnum.NORMALIZED_PRICE_RANGE, new BigDecimal("0.071429"));
+        when(indexManager.getLevels("majors")).thenReturn(Optional.of(levels));
+        when(calculator.calculatePriceMetrics(levels, timePeriod)).thenReturn(metrics);
+
+        CryptoMetricsDto response = analyzer.getMetricsForCrypto(Optional.empty(), "majors");
+
+        assertEquals(new CryptoMetricsDto(Map.of("min", new BigDecimal("70"), "normalized range", new BigDecimal("0.071429"))),
+                response);
+        verify(calculator).calculatePriceMetrics(levels, timePeriod);
+        verifyNoMoreInteractions(calculator);
+    }
+
     @Test
     public void test_getMetricsForCrypto_crypto_not_supported() {
         String crypto = "non-existent-crypto";
@@ -1,11 +1,17 @@
 package com.dimitris.cryptoanalyze.service.impl;
 
+import com.dimitris.cryptoanalyze.service.ColdSegmentStore;
+import com.dimitris.cryptoanalyze.service.CryptoQuantileIndex;
 import com.dimitris.cryptoanalyze.service.CryptoValuesManager;
+import com.dimitris.cryptoanalyze.service.DataLoader;
 import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
 import com.dimitris.cryptoanalyze.service.enums.CryptoMetricEnum;
 import com.dimitris.cryptoanalyze.service.enums.SortOrder;
+import com.dimitris.cryptoanalyze.service.exception.CryptoDeadlineExceededException;
 import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
 import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import com.dimitris.cryptoanalyze.service.model.CryptoValueSeries;
+import com.dimitris.cryptoanalyze.service.model.Deadline;
 import com.dimitris.cryptoanalyze.service.model.TimePeriod;
 import com.dimitris.cryptoanalyze.service.util.TimeTestUtil;
 import org.junit.jupiter.api.Test;
@@ -13,13 +19,16 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -70,6 +79,18 @@ public class CryptoMetricsCalculatorImplTest {
     @Mock
     private CryptoValuesManager manager;
 
+    @Mock
+    private DataLoader dataLoader;
+
+    @Spy
+    private ShardTopology shardTopology = new ShardTopology(List.of(), 0);
+
+    @Mock
+    private CryptoQuantileIndex quantileIndex;
+
+    @Mock
+    private ColdSegmentStore coldSegmentStore;
+
     @InjectMocks
     private CryptoMetricsCalculatorImpl calculator;
 
@@ -94,6 +115,51 @@ public class CryptoMetricsCalculatorImplTest {
         assertEquals(metric, expectedMetric);
     }
 
+    @Test
+    public void test_calculatePriceMetrics_withoutQuantiles() throws CryptoInternalException {
+        Map<CryptoMetricEnum, BigDecimal> metrics = calculator.calculatePriceMetrics(
+                CryptoValueSeries.of(cryptoValues.get()), new TimePeriod(Optional.empty(), Optional.empty()));
+
+        assertEquals(Map.of(CryptoMetricEnum.OLDEST_PRICE, new BigDecimal("17.12345678"),
+                CryptoMetricEnum.NEWEST_PRICE, new BigDecimal("22"),
+                CryptoMetricEnum.MIN_PRICE, new BigDecimal("14"),
+                CryptoMetricEnum.MAX_PRICE, new BigDecimal("22"),
+                CryptoMetricEnum.NORMALIZED_PRICE_RANGE, new BigDecimal("0.57143")), metrics);
+        verifyNoInteractions(manager, quantileIndex);
+    }
+
+    @Test
+    public void test_calculateMetric_quantilesEstimatedByIndex() throws CryptoInternalException {
+        TimePeriod timePeriod = new TimePeriod(Optional.of(TimeTestUtil.toLtd("2022-01-02 00:00:00")), Optional.empty());
+        when(manager.getValues(CryptoEnum.btc)).thenReturn(cryptoValues);
+        when(quantileIndex.estimateQuantile(CryptoEnum.btc, cryptoValues.get(), 0.95, timePeriod))
+                .thenReturn(Optional.of(new BigDecimal("21.053")));
+
+        Optional<BigDecimal> metric = calculator.calculateMetric(CryptoEnum.btc, CryptoMetricEnum.P95_PRICE, timePeriod);
+
+        assertEquals(Optional.of(new BigDecimal("21.053")), metric);
+        verify(quantileIndex).estimateQuantile(CryptoEnum.btc, cryptoValues.get(), 0.95, timePeriod);
+    }
+
+    @Test
+    public void test_calculateMetric_cryptoLoadedBeforeValuesRetrieved() throws CryptoInternalException {
+        when(manager.getValues(CryptoEnum.btc)).thenReturn(cryptoValues);
+        calculator.calculateMetric(CryptoEnum.btc, CryptoMetricEnum.MIN_PRICE, new TimePeriod(Optional.empty(), Optional.empty()));
+
+        InOrder inOrder = inOrder(dataLoader, manager);
+        inOrder.verify(dataLoader).ensureLoaded(CryptoEnum.btc);
+        inOrder.verify(manager).getValues(CryptoEnum.btc);
+    }
+
+    @Test
+    public void test_calculateMetric_loadFails() throws CryptoInternalException {
+        doThrow(new CryptoInternalException("Error loading")).when(dataLoader).ensureLoaded(CryptoEnum.btc);
+        Throwable throwable = assertThrows(CryptoInternalException.class,
+                () -> calculator.calculateMetric(CryptoEnum.btc, CryptoMetricEnum.MIN_PRICE, new TimePeriod(Optional.empty(), Optional.empty())));
+        assertEquals(throwable.getMessage(), "Error loading");
+        verifyNoInteractions(manager);
+    }
+
     @Test
     public void test_calculateMetric_valuesDoNotExist() {
         when(manager.getValues(CryptoEnum.btc)).thenReturn(Optional.empty());
@@ -102,18 +168,57 @@ public class CryptoMetricsCalculatorImplTest {
         assertEquals(throwable.getMessage(), "Error calculating metric. No values found for crypto");
     }
 
+    @Test
+    public void test_calculateMetric_deadlineExceeded() {
+        Deadline deadline = Deadline.afterMillis(0);
+        try (Deadline.Scope ignored = deadline.attach()) {
+            Throwable throwable = assertThrows(CryptoDeadlineExceededException.class,
+                    () -> calculator.calculateMetric(CryptoEnum.btc, CryptoMetricEnum.MIN_PRICE, new TimePeriod(Optional.empty(), Optional.empty())));
+            assertEquals("Request deadline exceeded before its calculation completed", throwable.getMessage());
+        }
+        verifyNoInteractions(manager);
+    }
+
+    @Test
+    public void test_calculateMetric_cancelledDuringScan() {
+        Deadline deadline = Deadline.afterMillis(60000);
+        Set<CryptoValue> manyValues = LongStream.range(0, 10000)
+                .mapToObj(i -> new CryptoValue(i, BigDecimal.valueOf(i + 1)))
+                .collect(Collectors.toSet());
+        when(manager.getValues(CryptoEnum.btc)).thenAnswer(invocation -> {
+            deadline.cancel();
+            return Optional.of(manyValues);
+        });
+        try (Deadline.Scope ignored = deadline.attach()) {
+            Throwable throwable = assertThrows(CryptoDeadlineExceededException.class,
+                    () -> calculator.calculateMetric(CryptoEnum.btc, CryptoMetricEnum.MAX_PRICE, new TimePeriod(Optional.empty(), Optional.empty())));
+            assertEquals("Request cancelled before its calculation completed", throwable.getMessage());
+        }
+    }
+
     @Test
     public void test_calculateMetrics_valuesExist() throws CryptoInternalException {
         when(manager.getValues(CryptoEnum.btc)).thenReturn(cryptoValues);
 
+        TimePeriod timePeriod = new TimePeriod(Optional.empty(), Optional.empty());
+        when(quantileIndex.estimateQuantile(CryptoEnum.btc, cryptoValues.get(), 0.5, timePeriod))
+                .thenReturn(Optional.of(new BigDecimal("19.002")));
+        when(quantileIndex.estimateQuantile(CryptoEnum.btc, cryptoValues.get(), 0.05, timePeriod))
+                .thenReturn(Optional.of(new BigDecimal("14.009")));
+        when(quantileIndex.estimateQuantile(CryptoEnum.btc, cryptoValues.get(), 0.95, timePeriod))
+                .thenReturn(Optional.of(new BigDecimal("21.053")));
+
         Map<CryptoMetricEnum, BigDecimal> expectedMetrics = new HashMap<>();
         expectedMetrics.put(CryptoMetricEnum.OLDEST_PRICE, new BigDecimal("17.12345678"));
         expectedMetrics.put(CryptoMetricEnum.NEWEST_PRICE, new BigDecimal("22"));
         expectedMetrics.put(CryptoMetricEnum.MIN_PRICE, new BigDecimal("14"));
         expectedMetrics.put(CryptoMetricEnum.MAX_PRICE, new BigDecimal("22"));
         expectedMetrics.put(CryptoMetricEnum.NORMALIZED_PRICE_RANGE, new BigDecimal("0.57143"));
+        expectedMetrics.put(CryptoMetricEnum.MEDIAN_PRICE, new BigDecimal("19.002"));
+        expectedMetrics.put(CryptoMetricEnum.P5_PRICE, new BigDecimal("14.009"));
+        expectedMetrics.put(CryptoMetricEnum.P95_PRICE, new BigDecimal("21.053"));
 
-        Map<CryptoMetricEnum, BigDecimal> metrics = calculator.calculateMetrics(CryptoEnum.btc, new TimePeriod(Optional.empty(), Optional.empty()));
+        Map<CryptoMetricEnum, BigDecimal> metrics = calculator.calculateMetrics(CryptoEnum.btc, timePeriod);
         assertEquals(metrics, expectedMetrics);
     }
 
@@ -172,6 +277,104 @@ public class CryptoMetricsCalculatorImplTest {
         assertEquals(cryptos.stream().collect(Collectors.toSet()), expectedCryptos.stream().collect(Collectors.toSet()));
     }
 
+    @Test
+    public void test_sortCryptosByMetric_unboundedNormalized_readsRankingOfStoredValues() throws CryptoInternalException {
+        CryptoValuesInMemManager inMemManager = new CryptoValuesInMemManager();
+        inMemManager.addValues(CryptoEnum.btc, cryptoValues.get());
+        inMemManager.addValues(CryptoEnum.doge, cryptoValues2.get());
+        inMemManager.addValues(CryptoEnum.eth, cryptoValues3.get());
+        inMemManager.addValues(CryptoEnum.ltc, cryptoValues4.get());
+        inMemManager.addValues(CryptoEnum.xrp, cryptoValues5.get());
+        CryptoMetricsCalculatorImpl storeCalculator = new CryptoMetricsCalculatorImpl(
+                inMemManager, dataLoader, new ShardTopology(List.of(), 0), quantileIndex, coldSegmentStore);
+        TimePeriod unbounded = new TimePeriod(Optional.empty(), Optional.empty());
+        // A period holding every value, calculated by scanning them
+        TimePeriod bounded = new TimePeriod(Optional.of(TimeTestUtil.toLtd("2021-01-01 00:00:00")), Optional.empty());
+
+        for (SortOrder sortOrder : SortOrder.values()) {
+            List<Map.Entry<CryptoEnum, BigDecimal>> ranked = storeCalculator.sortCryptosByMetric(
+                    CryptoMetricEnum.NORMALIZED_PRICE_RANGE, sortOrder, unbounded);
+            assertEquals(storeCalculator.sortCryptosByMetric(CryptoMetricEnum.NORMALIZED_PRICE_RANGE, sortOrder, bounded),
+                    ranked);
+        }
+        clearInvocations(coldSegmentStore);
+        assertEquals(CryptoEnum.xrp, storeCalculator.findCryptoWithHighestNormalizedRange(unbounded).get().getKey());
+
+        // Updated as values are added
+        inMemManager.addValues(CryptoEnum.ltc, List.of(
+                new CryptoValue(TimeTestUtil.toEpochMilli("2022-01-04 00:00:00"), new BigDecimal("400"))));
+        assertEquals(Map.entry(CryptoEnum.ltc, new BigDecimal("2.9604")),
+                storeCalculator.findCryptoWithHighestNormalizedRange(unbounded).get());
+        // Read from the ranking, without reading values
+        verifyNoInteractions(coldSegmentStore);
+    }
+
+    @Test
+    public void test_sortCryptosByMetric_equalNormalizedRanges_tiesOrderedAsInRanking() throws CryptoInternalException {
+        CryptoValuesInMemManager inMemManager = new CryptoValuesInMemManager();
+        for (CryptoEnum cryptoEnum : CryptoEnum.values()) {
+            inMemManager.addValues(cryptoEnum, cryptoValues2.get());
+        }
+        CryptoMetricsCalculatorImpl storeCalculator = new CryptoMetricsCalculatorImpl(
+                inMemManager, dataLoader, new ShardTopology(List.of(), 0), quantileIndex, coldSegmentStore);
+        TimePeriod unbounded = new TimePeriod(Optional.empty(), Optional.empty());
+        TimePeriod bounded = new TimePeriod(Optional.of(TimeTestUtil.toLtd("2021-01-01 00:00:00")), Optional.empty());
+
+        List<CryptoEnum> declarationOrder = List.of(CryptoEnum.values());
+        List<CryptoEnum> reversedOrder = new ArrayList<>(declarationOrder);
+        Collections.reverse(reversedOrder);
+        for (TimePeriod timePeriod : List.of(unbounded, bounded)) {
+            assertEquals(declarationOrder, storeCalculator.sortCryptosByMetric(
+                    CryptoMetricEnum.NORMALIZED_PRICE_RANGE, SortOrder.DESC, timePeriod)
+                    .stream().map(Map.Entry::getKey).collect(Collectors.toList()));
+            assertEquals(reversedOrder, storeCalculator.sortCryptosByMetric(
+                    CryptoMetricEnum.NORMALIZED_PRICE_RANGE, SortOrder.ASC, timePeriod)
+                    .stream().map(Map.Entry::getKey).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void test_sortCryptosByMetric_dayNormalized_readsRankingOfDay() throws CryptoInternalException {
+        CryptoValuesInMemManager inMemManager = new CryptoValuesInMemManager();
+        inMemManager.addValues(CryptoEnum.btc, cryptoValues.get());
+        inMemManager.addValues(CryptoEnum.doge, cryptoValues2.get());
+        inMemManager.addValues(CryptoEnum.xrp, cryptoValues5.get());
+        for (CryptoEnum cryptoEnum : List.of(CryptoEnum.eth, CryptoEnum.ltc)) {
+            inMemManager.addValues(cryptoEnum, List.of());
+        }
+        CryptoMetricsCalculatorImpl storeCalculator = new CryptoMetricsCalculatorImpl(
+                inMemManager, dataLoader, new ShardTopology(List.of(), 0), quantileIndex, coldSegmentStore);
+
+        for (String day : List.of("2022-01-01", "2022-01-02", "2022-01-03", "2022-01-04")) {
+            TimePeriod dayPeriod = new TimePeriod(Optional.of(TimeTestUtil.toLtd(day + " 00:00:00")),
+                    Optional.of(TimeTestUtil.toLtd(day + " 00:00:00").plusDays(1)));
+            // The same values, calculated by scanning them
+            TimePeriod scannedPeriod = new TimePeriod(dayPeriod.getFromDateTime(),
+                    Optional.of(dayPeriod.getToDateTime().get().minusNanos(1)));
+            for (SortOrder sortOrder : SortOrder.values()) {
+                assertEquals(storeCalculator.sortCryptosByMetric(CryptoMetricEnum.NORMALIZED_PRICE_RANGE, sortOrder, scannedPeriod),
+                        storeCalculator.sortCryptosByMetric(CryptoMetricEnum.NORMALIZED_PRICE_RANGE, sortOrder, dayPeriod));
+            }
+        }
+        clearInvocations(coldSegmentStore);
+
+        TimePeriod secondDay = new TimePeriod(Optional.of(TimeTestUtil.toLtd("2022-01-02 00:00:00")),
+                Optional.of(TimeTestUtil.toLtd("2022-01-03 00:00:00")));
+        // Only btc has values in the second day
+        assertEquals(List.of(Map.entry(CryptoEnum.btc, new BigDecimal("0.50001"))), storeCalculator.sortCryptosByMetric(
+                CryptoMetricEnum.NORMALIZED_PRICE_RANGE, SortOrder.DESC, secondDay));
+        inMemManager.addValues(CryptoEnum.doge, List.of(
+                new CryptoValue(TimeTestUtil.toEpochMilli("2022-01-02 10:00:00"), new BigDecimal("10")),
+                new CryptoValue(TimeTestUtil.toEpochMilli("2022-01-02 11:00:00"), new BigDecimal("20"))));
+        assertEquals(Map.entry(CryptoEnum.doge, new BigDecimal("1")),
+                storeCalculator.findCryptoWithHighestNormalizedRange(secondDay).get());
+        assertTrue(storeCalculator.findCryptoWithHighestNormalizedRange(new TimePeriod(
+                Optional.of(TimeTestUtil.toLtd("2022-02-01 00:00:00")),
+                Optional.of(TimeTestUtil.toLtd("2022-02-02 00:00:00")))).isEmpty());
+        // Read from the rankings, without reading values
+        verifyNoInteractions(coldSegmentStore);
+    }
+
     @Test
     public void test_findCryptoWithHighestNormalizedRange() throws CryptoInternalException {
         when(manager.getValues(CryptoEnum.btc)).thenReturn(cryptoValues);
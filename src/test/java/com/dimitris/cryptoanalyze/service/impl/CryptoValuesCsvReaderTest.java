@@ -51,4 +51,11 @@ public class CryptoValuesCsvReaderTest {
                 () -> reader.read(CryptoEnum.btc, "prices\\test_column_value_blank.csv"));
         assertEquals(throwable.getMessage(), "Error reading csv file. Entries with missing columns found");
     }
+
+    @Test
+    public void test_read_symbol_mismatch() throws CryptoInternalException {
+        Throwable throwable = assertThrows(CryptoInternalException.class,
+                () -> reader.read(CryptoEnum.btc, "prices\\test_symbol_mismatch.csv"));
+        assertEquals(throwable.getMessage(), "Error reading csv file. Entries with symbol ETH found in file of crypto btc");
+    }
 }
@@ -1,18 +1,48 @@
 package com.dimitris.cryptoanalyze.service.impl;
 
+import com.dimitris.cryptoanalyze.controller.dto.CryptoStoreUsageDto;
+import com.dimitris.cryptoanalyze.controller.dto.StoreUsageDto;
+import com.dimitris.cryptoanalyze.service.ColdSegmentStore;
+import com.dimitris.cryptoanalyze.service.CryptoValuesListener;
+import com.dimitris.cryptoanalyze.service.CryptoValuesManager;
 import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
 import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import com.dimitris.cryptoanalyze.service.model.CryptoValueSeries;
+import com.dimitris.cryptoanalyze.service.model.DataSnapshot;
+import com.dimitris.cryptoanalyze.service.model.ValueChunk;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class CryptoValuesInMemManagerTest {
 
+    @TempDir
+    Path segmentDir;
+
     @Test
     public void test_initialization() {
         CryptoValuesInMemManager manager = new CryptoValuesInMemManager();
@@ -53,6 +83,30 @@ public class CryptoValuesInMemManagerTest {
         assertEquals(manager.getValues(CryptoEnum.btc).get(), cryptoValues1);
     }
 
+    @Test
+    public void test_addValues_sameTimestampDifferentPrice_lastAddedWins() {
+        CryptoValuesInMemManager manager = new CryptoValuesInMemManager();
+
+        manager.addValues(CryptoEnum.btc, List.of(new CryptoValue(1234L, new BigDecimal("1300")),
+                new CryptoValue(5678L, new BigDecimal("1900"))));
+        manager.addValues(CryptoEnum.btc, List.of(new CryptoValue(5678L, new BigDecimal("2000")),
+                new CryptoValue(9012L, new BigDecimal("2100")), new CryptoValue(5678L, new BigDecimal("2050"))));
+
+        assertEquals(Set.of(new CryptoValue(1234L, new BigDecimal("1300")), new CryptoValue(5678L, new BigDecimal("2050")),
+                new CryptoValue(9012L, new BigDecimal("2100"))), manager.getValues(CryptoEnum.btc).get());
+    }
+
+    @Test
+    public void test_getValues_orderedByTimestamp() {
+        CryptoValuesInMemManager manager = new CryptoValuesInMemManager();
+        manager.addValues(CryptoEnum.btc, List.of(new CryptoValue(5678L, new BigDecimal("1900")),
+                new CryptoValue(1234L, new BigDecimal("1300"))));
+        manager.addValues(CryptoEnum.btc, List.of(new CryptoValue(3456L, new BigDecimal("1500"))));
+
+        assertEquals(List.of(new CryptoValue(1234L, new BigDecimal("1300")), new CryptoValue(3456L, new BigDecimal("1500")),
+                new CryptoValue(5678L, new BigDecimal("1900"))), new ArrayList<>(manager.getValues(CryptoEnum.btc).get()));
+    }
+
     @Test
     public void test_getValues() {
         CryptoValuesInMemManager manager = new CryptoValuesInMemManager();
@@ -60,4 +114,329 @@ public class CryptoValuesInMemManagerTest {
             assertTrue(manager.getValues(cryptoEnum).isEmpty());
         }
     }
+
+    @Test
+    public void test_getDataVersion_changesOnAddValues() {
+        CryptoValuesInMemManager manager = new CryptoValuesInMemManager();
+        long initialVersion = manager.getDataVersion();
+
+        manager.addValues(CryptoEnum.btc, Set.of(new CryptoValue(1234L, new BigDecimal("1300"))));
+        long version = manager.getDataVersion();
+
+        assertNotEquals(initialVersion, version);
+        assertEquals(version, manager.getDataVersion());
+    }
+
+    @Test
+    public void test_attachedSnapshot_readsValuesOfItsVersion() throws Exception {
+        CryptoValuesInMemManager manager = new CryptoValuesInMemManager();
+        manager.addValues(CryptoEnum.btc, List.of(new CryptoValue(1234L, new BigDecimal("1300"))));
+        long version = manager.getDataVersion();
+        manager.addValues(CryptoEnum.btc, List.of(new CryptoValue(5678L, new BigDecimal("1900"))));
+        manager.addValues(CryptoEnum.eth, List.of(new CryptoValue(1234L, new BigDecimal("10"))));
+
+        try (DataSnapshot.Scope ignored = DataSnapshot.attach(manager.getSnapshot(version))) {
+            assertEquals(version, manager.getDataVersion());
+            assertEquals(Set.of(new CryptoValue(1234L, new BigDecimal("1300"))), manager.getValues(CryptoEnum.btc).get());
+            assertTrue(manager.getValues(CryptoEnum.eth).isEmpty());
+        }
+        assertEquals(version + 2, manager.getDataVersion());
+        assertEquals(2, manager.getValues(CryptoEnum.btc).get().size());
+    }
+
+    @Test
+    public void test_retention_numberOfVersions() throws Exception {
+        CryptoValuesInMemManager manager = new CryptoValuesInMemManager(2, Long.MAX_VALUE);
+        for (int i = 1; i <= 5; i++) {
+            manager.addValues(CryptoEnum.btc, List.of(new CryptoValue(i, BigDecimal.valueOf(i))));
+        }
+
+        assertThrows(CryptoNotFoundException.class, () -> manager.getSnapshot(2));
+        assertEquals(3, manager.getSnapshot(3).getVersion());
+        assertEquals(manager.getSnapshot(), manager.getSnapshot(5));
+        assertThrows(CryptoNotFoundException.class, () -> manager.getSnapshot(6));
+    }
+
+    @Test
+    public void test_retention_period_latestVersionKept() throws Exception {
+        CryptoValuesInMemManager manager = new CryptoValuesInMemManager(100, 0);
+        manager.addValues(CryptoEnum.btc, List.of(new CryptoValue(1, BigDecimal.ONE)));
+        DataSnapshot superseded = manager.getSnapshot();
+        manager.addValues(CryptoEnum.btc, List.of(new CryptoValue(2, BigDecimal.TEN)));
+
+        assertThrows(CryptoNotFoundException.class, () -> manager.getSnapshot(superseded.getVersion()));
+        assertEquals(2, manager.getSnapshot(2).getVersion());
+        // A pruned snapshot stays usable by calculations holding it
+        assertEquals(1, superseded.getValues(CryptoEnum.btc).get().size());
+    }
+
+    @Test
+    public void test_addValues_sealsValuesOlderThanHotWindow() {
+        MappedColdSegmentStore store = new MappedColdSegmentStore(segmentDir, 1000, 1024 * 1024,
+                new SimpleMeterRegistry());
+        CryptoValuesInMemManager manager = new CryptoValuesInMemManager(256, 600000, 0, store);
+        List<CryptoValue> values = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            values.add(new CryptoValue(i * 10L, BigDecimal.valueOf(i, 2)));
+        }
+
+        manager.addValues(CryptoEnum.btc, values.subList(0, 5000));
+        manager.addValues(CryptoEnum.btc, values.subList(5000, 10000));
+
+        CryptoValueSeries series = (CryptoValueSeries) manager.getValues(CryptoEnum.btc).get();
+        assertFalse(series.isOnHeap());
+        assertEquals(values, new ArrayList<>(series));
+        assertTrue(store.getSegmentCount() > 0);
+        // The chunks within the hot window stay on heap
+        assertTrue(series.chunksCovering(series.last().getTimestamp() - 1000, Long.MAX_VALUE).isOnHeap());
+    }
+
+    @Test
+    public void test_heapBudget_evictsOldestChunksOfLeastRecentlyQueried() {
+        List<CryptoValue> values = new ArrayList<>();
+        for (int i = 0; i < 3 * 4096; i++) {
+            values.add(new CryptoValue(i, BigDecimal.valueOf(i, 2)));
+        }
+        // Five of the six chunks of both cryptos fit in the budget
+        long budget = CryptoValueSeries.of(values).heapBytes() * 5 / 3;
+        CryptoValuesInMemManager manager = new CryptoValuesInMemManager(256, 600000, budget,
+                ColdSegmentStore.disabled());
+        manager.addValues(CryptoEnum.btc, values);
+        manager.getValues(CryptoEnum.btc);
+
+        manager.addValues(CryptoEnum.eth, values);
+
+        assertEquals(values, new ArrayList<>(manager.getValues(CryptoEnum.btc).get()));
+        assertEquals(values.subList(4096, 3 * 4096), new ArrayList<>(manager.getValues(CryptoEnum.eth).get()));
+        StoreUsageDto usage = manager.getUsage();
+        assertEquals(budget, usage.getHeapBudgetBytes());
+        assertTrue(usage.getHeapBytes() <= budget);
+        CryptoStoreUsageDto ethUsage = usage.getCryptos().stream()
+                .filter(crypto -> crypto.getCrypto().equals("eth")).findFirst().orElseThrow();
+        assertEquals(2 * 4096, ethUsage.getValues());
+        assertEquals(4096, ethUsage.getEvictedValues());
+        assertEquals(4096L, ethUsage.getOldestTimestamp());
+    }
+
+    @Test
+    public void test_heapBudget_prunesSupersededVersionsHoldingEvictedChunks() throws CryptoNotFoundException {
+        List<CryptoValue> values = new ArrayList<>();
+        for (int i = 0; i < 3 * 4096; i++) {
+            values.add(new CryptoValue(i, BigDecimal.valueOf(i, 2)));
+        }
+        long budget = CryptoValueSeries.of(values).heapBytes() * 5 / 3;
+        CryptoValuesInMemManager manager = new CryptoValuesInMemManager(256, 600000, budget,
+                ColdSegmentStore.disabled());
+        manager.addValues(CryptoEnum.btc, values);
+        long btcVersion = manager.getDataVersion();
+        manager.getValues(CryptoEnum.btc);
+
+        manager.addValues(CryptoEnum.eth, values);
+
+        // The version holding every value of eth would keep its evicted chunk on heap
+        StoreUsageDto usage = manager.getUsage();
+        assertEquals(usage.getHeapBytes(), usage.getRetainedHeapBytes());
+        assertTrue(usage.getRetainedHeapBytes() <= budget);
+        assertEquals(2 * 4096, manager.getValues(CryptoEnum.eth).get().size());
+        assertEquals(1, usage.getRetainedVersions());
+        assertThrows(CryptoNotFoundException.class, () -> manager.getSnapshot(btcVersion));
+    }
+
+    @Test
+    public void test_heapBudget_retainsSupersededVersionsWithinBudget() throws CryptoNotFoundException {
+        List<CryptoValue> values = new ArrayList<>();
+        for (int i = 0; i < 4096; i++) {
+            values.add(new CryptoValue(i, BigDecimal.valueOf(i, 2)));
+        }
+        CryptoValuesInMemManager manager = new CryptoValuesInMemManager(256, 600000,
+                CryptoValueSeries.of(values).heapBytes() * 10, ColdSegmentStore.disabled());
+        manager.addValues(CryptoEnum.btc, values);
+        long btcVersion = manager.getDataVersion();
+
+        manager.addValues(CryptoEnum.eth, values);
+
+        StoreUsageDto usage = manager.getUsage();
+        assertEquals(usage.getHeapBytes(), usage.getRetainedHeapBytes());
+        assertEquals(3, usage.getRetainedVersions());
+        assertEquals(values, new ArrayList<>(manager.getSnapshot(btcVersion).getValues(CryptoEnum.btc).get()));
+    }
+
+    @Test
+    public void test_heapBudget_keepsNewestChunkOfEveryCrypto() {
+        CryptoValuesInMemManager manager = new CryptoValuesInMemManager(256, 600000, 1, ColdSegmentStore.disabled());
+        List<CryptoValue> values = new ArrayList<>();
+        for (int i = 0; i < 2 * 4096 + 10; i++) {
+            values.add(new CryptoValue(i, BigDecimal.valueOf(i, 2)));
+        }
+
+        manager.addValues(CryptoEnum.btc, values);
+        manager.addValues(CryptoEnum.eth, values);
+
+        assertEquals(values.subList(2 * 4096, values.size()),
+                new ArrayList<>(manager.getValues(CryptoEnum.btc).get()));
+        assertEquals(10, manager.getValues(CryptoEnum.eth).get().size());
+        assertEquals(2 * 4096, manager.getUsage().getCryptos().get(CryptoEnum.btc.ordinal()).getEvictedValues());
+    }
+
+    @Test
+    public void test_getUsage_withoutBudget() {
+        CryptoValuesInMemManager manager = new CryptoValuesInMemManager();
+        manager.addValues(CryptoEnum.btc, List.of(new CryptoValue(1234L, new BigDecimal("1300")),
+                new CryptoValue(5678L, new BigDecimal("1900"))));
+
+        StoreUsageDto usage = manager.getUsage();
+
+        assertEquals(0, usage.getHeapBudgetBytes());
+        assertEquals(CryptoEnum.values().length, usage.getCryptos().size());
+        CryptoStoreUsageDto btcUsage = usage.getCryptos().get(CryptoEnum.btc.ordinal());
+        assertEquals(2, btcUsage.getValues());
+        assertTrue(btcUsage.getHeapBytes() > 0);
+        assertEquals(btcUsage.getHeapBytes(), usage.getHeapBytes());
+        assertEquals(1234L, btcUsage.getOldestTimestamp());
+        assertNull(btcUsage.getLastQueriedMillis());
+        assertNull(usage.getCryptos().get(CryptoEnum.eth.ordinal()).getOldestTimestamp());
+    }
+
+    @Test
+    public void test_beginReplacement_publish_replacesEveryCryptoAndKeepsValuesAddedMeanwhile() {
+        CryptoValuesInMemManager manager = new CryptoValuesInMemManager();
+        List<CryptoEnum> replaced = new ArrayList<>();
+        manager.addListener(new CryptoValuesListener() {
+
+            @Override
+            public void onValuesAdded(CryptoEnum cryptoEnum, Collection<CryptoValue> addedValues) {
+            }
+
+            @Override
+            public void onValuesReplaced(CryptoEnum cryptoEnum) {
+                replaced.add(cryptoEnum);
+            }
+        });
+        manager.addValues(CryptoEnum.btc, List.of(new CryptoValue(1234L, new BigDecimal("1300"))));
+        manager.addValues(CryptoEnum.eth, List.of(new CryptoValue(1234L, new BigDecimal("10"))));
+        DataSnapshot replacedSnapshot = manager.getSnapshot();
+
+        DataSnapshot snapshot;
+        try (CryptoValuesManager.StoreReplacement replacement = manager.beginReplacement()) {
+            replacement.addValues(CryptoEnum.btc, List.of(new CryptoValue(5678L, new BigDecimal("1900")),
+                    new CryptoValue(9012L, new BigDecimal("1700"))));
+            manager.addValues(CryptoEnum.btc, List.of(new CryptoValue(9012L, new BigDecimal("2000"))));
+            assertEquals(2, manager.getValues(CryptoEnum.btc).get().size());
+
+            snapshot = replacement.publish();
+        }
+
+        assertEquals(replacedSnapshot.getVersion() + 2, snapshot.getVersion());
+        assertEquals(snapshot, manager.getSnapshot());
+        assertEquals(List.of(new CryptoValue(5678L, new BigDecimal("1900")), new CryptoValue(9012L, new BigDecimal("2000"))),
+                new ArrayList<>(manager.getValues(CryptoEnum.btc).get()));
+        assertTrue(manager.getValues(CryptoEnum.eth).isEmpty());
+        assertEquals(List.of(CryptoEnum.btc), snapshot.getNormalizedRangeRanking().entries().stream()
+                .map(Map.Entry::getKey).collect(Collectors.toList()));
+        assertEquals(List.of(CryptoEnum.values()), replaced);
+        try (DataSnapshot.Scope ignored = DataSnapshot.attach(replacedSnapshot)) {
+            assertEquals(Set.of(new CryptoValue(1234L, new BigDecimal("1300"))), manager.getValues(CryptoEnum.btc).get());
+        }
+
+        manager.addValues(CryptoEnum.eth, List.of(new CryptoValue(5678L, new BigDecimal("12"))));
+        assertEquals(1, manager.getValues(CryptoEnum.eth).get().size());
+    }
+
+    @Test
+    public void test_beginReplacement_waitsForAdditionsInProgress() throws Exception {
+        CountDownLatch merging = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // Sealing runs while the addition holds the merge lock of its crypto
+        ColdSegmentStore blockingStore = new ColdSegmentStore() {
+
+            @Override
+            public boolean isEnabled() {
+                return true;
+            }
+
+            @Override
+            public long getHotWindowMillis() {
+                return 0;
+            }
+
+            @Override
+            public ValueChunk seal(ValueChunk chunk) {
+                merging.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return chunk;
+            }
+
+            @Override
+            public void recordRead(boolean hot) {
+            }
+        };
+        CryptoValuesInMemManager manager = new CryptoValuesInMemManager(256, 600000, 0, blockingStore);
+        List<CryptoValue> values = new ArrayList<>();
+        for (int i = 0; i < 4096 + 1; i++) {
+            values.add(new CryptoValue(i, BigDecimal.valueOf(i, 2)));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> addition = executor.submit(() -> manager.addValues(CryptoEnum.btc, values));
+            assertTrue(merging.await(10, TimeUnit.SECONDS));
+
+            Future<CryptoValuesManager.StoreReplacement> replacement = executor.submit(manager::beginReplacement);
+
+            assertThrows(TimeoutException.class, () -> replacement.get(100, TimeUnit.MILLISECONDS));
+            release.countDown();
+            addition.get(10, TimeUnit.SECONDS);
+            try (CryptoValuesManager.StoreReplacement begun = replacement.get(10, TimeUnit.SECONDS)) {
+                manager.addValues(CryptoEnum.eth, List.of(new CryptoValue(1234L, new BigDecimal("10"))));
+                begun.publish();
+            }
+            assertTrue(manager.getValues(CryptoEnum.btc).isEmpty());
+            assertEquals(1, manager.getValues(CryptoEnum.eth).get().size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_beginReplacement_heapBudget_evictsFromReplacement() {
+        List<CryptoValue> values = new ArrayList<>();
+        for (int i = 0; i < 3 * 4096; i++) {
+            values.add(new CryptoValue(i, BigDecimal.valueOf(i, 2)));
+        }
+        long budget = CryptoValueSeries.of(values).heapBytes() * 2 / 3;
+        CryptoValuesInMemManager manager = new CryptoValuesInMemManager(256, 600000, budget,
+                ColdSegmentStore.disabled());
+
+        try (CryptoValuesManager.StoreReplacement replacement = manager.beginReplacement()) {
+            replacement.addValues(CryptoEnum.btc, values);
+
+            // The replacement is kept within the budget while staged
+            assertEquals(values.subList(4096, 3 * 4096), new ArrayList<>(replacement.getValues(CryptoEnum.btc).get()));
+            assertEquals(0, manager.getUsage().getCryptos().get(CryptoEnum.btc.ordinal()).getEvictedValues());
+            replacement.publish();
+        }
+
+        assertEquals(values.subList(4096, 3 * 4096), new ArrayList<>(manager.getValues(CryptoEnum.btc).get()));
+        assertEquals(4096, manager.getUsage().getCryptos().get(CryptoEnum.btc.ordinal()).getEvictedValues());
+    }
+
+    @Test
+    public void test_beginReplacement_closedUnpublished_storedValuesUnchanged() {
+        CryptoValuesInMemManager manager = new CryptoValuesInMemManager();
+        manager.addValues(CryptoEnum.btc, List.of(new CryptoValue(1234L, new BigDecimal("1300"))));
+        long version = manager.getDataVersion();
+
+        CryptoValuesManager.StoreReplacement replacement = manager.beginReplacement();
+        replacement.addValues(CryptoEnum.btc, List.of(new CryptoValue(5678L, new BigDecimal("1900"))));
+        replacement.close();
+        manager.addValues(CryptoEnum.btc, List.of(new CryptoValue(9012L, new BigDecimal("2000"))));
+
+        assertThrows(IllegalStateException.class, replacement::publish);
+        assertEquals(version + 1, manager.getDataVersion());
+        assertEquals(Set.of(new CryptoValue(1234L, new BigDecimal("1300")), new CryptoValue(9012L, new BigDecimal("2000"))),
+                manager.getValues(CryptoEnum.btc).get());
+    }
 }
@@ -0,0 +1,142 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoValueRequestDto;
+import com.dimitris.cryptoanalyze.service.CryptoValuesManager;
+import com.dimitris.cryptoanalyze.service.CryptoValuesWriteAheadLog;
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoValidationException;
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CryptoValuesIngestorImplTest {
+
+    @Mock
+    private CryptoValuesWriteAheadLog writeAheadLog;
+
+    @Mock
+    private CryptoValuesManager manager;
+
+    @Spy
+    private ShardTopology shardTopology = new ShardTopology(List.of(), 0);
+
+    @InjectMocks
+    private CryptoValuesIngestorImpl ingestor;
+
+    @Test
+    public void test_ingest_happyCase() throws Exception {
+        runBeforeStore();
+        ingestor.ingest(CryptoEnum.btc.getCode(), List.of(toDto(1234L, "1300"), toDto(5678L, "1900")));
+
+        List<CryptoValue> cryptoValues = List.of(
+                new CryptoValue(1234L, new BigDecimal("1300")), new CryptoValue(5678L, new BigDecimal("1900")));
+        InOrder inOrder = inOrder(writeAheadLog, manager);
+        inOrder.verify(manager).addValues(eq(CryptoEnum.btc), eq(cryptoValues), any());
+        inOrder.verify(writeAheadLog).append(CryptoEnum.btc, cryptoValues);
+        verifyNoMoreInteractions(writeAheadLog, manager);
+    }
+
+    @Test
+    public void test_ingest_cryptoNotSupported() {
+        Throwable throwable = assertThrows(CryptoNotFoundException.class,
+                () -> ingestor.ingest("ttt", List.of(toDto(1234L, "1300"))));
+        assertEquals(throwable.getMessage(), "Crypto ttt not supported.");
+        verifyNoInteractions(writeAheadLog, manager);
+    }
+
+    @Test
+    public void test_ingest_cryptoOwnedByOtherShard() {
+        CryptoValuesIngestorImpl shardIngestor = new CryptoValuesIngestorImpl(writeAheadLog, manager,
+                new ShardTopology(List.of("http://node0:8080", "http://node1:8080"), 0));
+
+        Throwable throwable = assertThrows(CryptoNotFoundException.class,
+                () -> shardIngestor.ingest(CryptoEnum.btc.getCode(), List.of(toDto(1234L, "1300"))));
+        assertEquals(throwable.getMessage(), "Crypto btc not supported by this shard. It is owned by http://node1:8080");
+        verifyNoInteractions(writeAheadLog, manager);
+    }
+
+    @Test
+    public void test_ingest_priceMissing() {
+        Throwable throwable = assertThrows(CryptoValidationException.class,
+                () -> ingestor.ingest(CryptoEnum.btc.getCode(), List.of(toDto(1234L, null))));
+        assertEquals(throwable.getMessage(), "Error ingesting crypto values. Entries with missing price found");
+        verifyNoInteractions(writeAheadLog, manager);
+    }
+
+    @Test
+    public void test_ingest_logFails_valuesNotStored() throws CryptoInternalException {
+        CryptoValuesInMemManager inMemManager = new CryptoValuesInMemManager();
+        CryptoValuesIngestorImpl storingIngestor = new CryptoValuesIngestorImpl(writeAheadLog, inMemManager, shardTopology);
+        doThrow(new CryptoInternalException("Disk full")).when(writeAheadLog).append(any(), any());
+
+        assertThrows(CryptoInternalException.class,
+                () -> storingIngestor.ingest(CryptoEnum.btc.getCode(), List.of(toDto(1234L, "1300"))));
+        assertEquals(Optional.empty(), inMemManager.getValues(CryptoEnum.btc));
+    }
+
+    @Test
+    public void test_ingest_concurrently_loggedInStoreOrder() throws Exception {
+        CryptoValuesInMemManager inMemManager = new CryptoValuesInMemManager();
+        CryptoValuesIngestorImpl storingIngestor = new CryptoValuesIngestorImpl(writeAheadLog, inMemManager, shardTopology);
+        List<BigDecimal> loggedPrices = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            List<CryptoValue> values = invocation.getArgument(1);
+            loggedPrices.add(values.get(0).getPrice());
+            return null;
+        }).when(writeAheadLog).append(any(), any());
+
+        // Values with the same timestamp replace each other, so the stored one must be the last one logged
+        ExecutorService ingesters = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> ingests = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                String price = String.valueOf(i);
+                ingests.add(ingesters.submit(() -> {
+                    storingIngestor.ingest(CryptoEnum.btc.getCode(), List.of(toDto(1234L, price)));
+                    return null;
+                }));
+            }
+            for (Future<?> ingest : ingests) {
+                ingest.get();
+            }
+        } finally {
+            ingesters.shutdownNow();
+        }
+
+        assertEquals(2000, loggedPrices.size());
+        assertEquals(loggedPrices.get(loggedPrices.size() - 1),
+                inMemManager.getValues(CryptoEnum.btc).orElseThrow().iterator().next().getPrice());
+    }
+
+    private void runBeforeStore() throws CryptoInternalException {
+        doAnswer(invocation -> {
+            invocation.<CryptoValuesManager.BeforeStore>getArgument(2).run();
+            return null;
+        }).when(manager).addValues(any(), any(), any());
+    }
+
+    private static CryptoValueRequestDto toDto(long timestamp, String price) {
+        CryptoValueRequestDto dto = new CryptoValueRequestDto();
+        dto.setTimestamp(timestamp);
+        dto.setPrice(price != null ? new BigDecimal(price) : null);
+        return dto;
+    }
+}
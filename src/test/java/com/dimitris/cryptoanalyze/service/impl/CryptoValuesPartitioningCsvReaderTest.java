@@ -0,0 +1,90 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CryptoValuesPartitioningCsvReaderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void test_read_rowsRoutedBySymbol() throws IOException, CryptoInternalException {
+        Path file = write("timestamp,symbol,price\n" +
+                "1641009600000,BTC,46813.21\n" +
+                "1641009600000,eth,3715.32\n" +
+                "\n" +
+                "1641020400000,BTC,46979.61\r\n" +
+                "1641020400000,Xrp,0.8");
+
+        Map<CryptoEnum, List<CryptoValue>> values = new CryptoValuesPartitioningCsvReader(1, 1).read(file.toString());
+
+        assertEquals(Map.of(
+                CryptoEnum.btc, List.of(new CryptoValue(1641009600000L, new BigDecimal("46813.21")),
+                        new CryptoValue(1641020400000L, new BigDecimal("46979.61"))),
+                CryptoEnum.eth, List.of(new CryptoValue(1641009600000L, new BigDecimal("3715.32"))),
+                CryptoEnum.xrp, List.of(new CryptoValue(1641020400000L, new BigDecimal("0.8")))), values);
+    }
+
+    @Test
+    public void test_read_parallelChunks_sameAsSingleChunk() throws IOException, CryptoInternalException {
+        Random random = new Random(11);
+        StringBuilder content = new StringBuilder("timestamp,symbol,price\n");
+        Map<CryptoEnum, List<CryptoValue>> expected = new EnumMap<>(CryptoEnum.class);
+        for (int i = 0; i < 20000; i++) {
+            CryptoEnum cryptoEnum = CryptoEnum.values()[random.nextInt(CryptoEnum.values().length)];
+            CryptoValue value = new CryptoValue(1641009600000L + i, new BigDecimal(random.nextInt(100000)).movePointLeft(2));
+            content.append(value.getTimestamp()).append(',').append(cryptoEnum.getCode().toUpperCase())
+                    .append(',').append(value.getPrice().toPlainString()).append('\n');
+            expected.computeIfAbsent(cryptoEnum, e -> new ArrayList<>()).add(value);
+        }
+        Path file = write(content.toString());
+
+        // Small chunks, so that split points land inside lines
+        for (long minChunkBytes : new long[]{1, 997, 4096, Long.MAX_VALUE}) {
+            assertEquals(expected, new CryptoValuesPartitioningCsvReader(8, minChunkBytes).read(file.toString()));
+        }
+    }
+
+    @Test
+    public void test_read_header_missing() throws IOException {
+        Path file = write("1641009600000,BTC,46813.21\n");
+
+        Throwable throwable = assertThrows(CryptoInternalException.class,
+                () -> new CryptoValuesPartitioningCsvReader(2, 1).read(file.toString()));
+        assertEquals("Error reading csv file. Header line is missing", throwable.getMessage());
+    }
+
+    @Test
+    public void test_read_symbol_not_supported() throws IOException {
+        Path file = write("timestamp,symbol,price\n1641009600000,BTC,46813.21\n1641009600000,ADA,1.37\n");
+
+        Throwable throwable = assertThrows(CryptoInternalException.class,
+                () -> new CryptoValuesPartitioningCsvReader(2, 1).read(file.toString()));
+        assertEquals("Error reading csv file. Entries with non-supported symbol ADA found", throwable.getMessage());
+    }
+
+    @Test
+    public void test_read_column_missing() throws IOException {
+        Path file = write("timestamp,symbol,price\n1641009600000,BTC,46813.21\n1641009600000,46813.21\n");
+
+        Throwable throwable = assertThrows(CryptoInternalException.class,
+                () -> new CryptoValuesPartitioningCsvReader(2, 1).read(file.toString()));
+        assertEquals("Error reading csv file. Entries with missing columns found", throwable.getMessage());
+    }
+
+    private Path write(String content) throws IOException {
+        return Files.writeString(dir.resolve("mixed.csv"), content);
+    }
+}
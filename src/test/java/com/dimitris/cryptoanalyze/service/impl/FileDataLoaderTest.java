@@ -1,23 +1,33 @@
 package com.dimitris.cryptoanalyze.service.impl;
 
+import com.dimitris.cryptoanalyze.controller.dto.StoreReloadDto;
 import com.dimitris.cryptoanalyze.service.CryptoValuesFileReader;
 import com.dimitris.cryptoanalyze.service.CryptoValuesManager;
+import com.dimitris.cryptoanalyze.service.CryptoValuesPartitioningReader;
+import com.dimitris.cryptoanalyze.service.CryptoValuesWriteAheadLog;
 import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
 import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
 import com.dimitris.cryptoanalyze.service.model.CryptoValue;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CountDownLatch;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -49,6 +59,18 @@ public class FileDataLoaderTest {
     @Mock
     private CryptoValuesManager cryptoValuesManager;
 
+    @Mock
+    private CryptoValuesWriteAheadLog writeAheadLog;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private ShardTopology shardTopology = new ShardTopology(List.of(), 0);
+
+    @Mock
+    private CryptoValuesPartitioningReader partitioningReader;
+
     @InjectMocks
     private FileDataLoader fileDataLoader;
 
@@ -57,10 +79,27 @@ public class FileDataLoaderTest {
         fileDataLoader.loadInitialData();
     }
 
+    @Test
+    public void test_loadInitialData_loggedValuesReplayedAfterFiles() throws CryptoInternalException {
+        System.setProperty(btcFilePathProperty, btcFilePath);
+        List<CryptoValue> cryptoValues = new ArrayList<>();
+        List<CryptoValue> loggedValues = List.of(new CryptoValue(1234L, new BigDecimal("1300")));
+        for (CryptoEnum cryptoEnum : CryptoEnum.values()) {
+            when(cryptoValuesReader.read(eq(cryptoEnum), anyString())).thenReturn(cryptoValues);
+        }
+        when(writeAheadLog.recover()).thenReturn(Map.of(CryptoEnum.btc, loggedValues));
+
+        fileDataLoader.loadInitialData();
+
+        InOrder inOrder = inOrder(cryptoValuesManager, writeAheadLog);
+        inOrder.verify(cryptoValuesManager).addValues(CryptoEnum.xrp, List.of());
+        inOrder.verify(writeAheadLog).recover();
+        inOrder.verify(cryptoValuesManager).addValues(CryptoEnum.btc, loggedValues);
+    }
+
     @Test
     public void test_loadData_happyCase() throws CryptoInternalException {
         List<CryptoValue> cryptoValues = new ArrayList<>();
-        Set<CryptoValue> cryptoValueSet = cryptoValues.stream().collect(Collectors.toSet());
 
         when(cryptoValuesReader.read(CryptoEnum.btc, btcFilePath)).thenReturn(cryptoValues);
         when(cryptoValuesReader.read(CryptoEnum.doge, dogeFilePath)).thenReturn(cryptoValues);
@@ -76,11 +115,11 @@ public class FileDataLoaderTest {
         verify(cryptoValuesReader).read(CryptoEnum.ltc, ltcFilePath);
         verify(cryptoValuesReader).read(CryptoEnum.xrp, xrpFilePath);
 
-        verify(cryptoValuesManager).addValues(CryptoEnum.btc, cryptoValueSet);
-        verify(cryptoValuesManager).addValues(CryptoEnum.doge, cryptoValueSet);
-        verify(cryptoValuesManager).addValues(CryptoEnum.eth, cryptoValueSet);
-        verify(cryptoValuesManager).addValues(CryptoEnum.ltc, cryptoValueSet);
-        verify(cryptoValuesManager).addValues(CryptoEnum.xrp, cryptoValueSet);
+        verify(cryptoValuesManager).addValues(CryptoEnum.btc, cryptoValues);
+        verify(cryptoValuesManager).addValues(CryptoEnum.doge, cryptoValues);
+        verify(cryptoValuesManager).addValues(CryptoEnum.eth, cryptoValues);
+        verify(cryptoValuesManager).addValues(CryptoEnum.ltc, cryptoValues);
+        verify(cryptoValuesManager).addValues(CryptoEnum.xrp, cryptoValues);
 
         verifyNoMoreInteractions(cryptoValuesReader, cryptoValuesManager);
     }
@@ -92,4 +131,236 @@ public class FileDataLoaderTest {
         assertEquals(throwable.getMessage(), "Error retrieving file path parameter for crypto " + CryptoEnum.btc.getCode());
     }
 
+    @Test
+    public void test_loadInitialData_lazy() throws Exception {
+        System.setProperty(btcFilePathProperty, btcFilePath);
+        FileDataLoader lazyDataLoader = createLazyDataLoader("xrp");
+        CountDownLatch xrpReadReleased = new CountDownLatch(1);
+        when(cryptoValuesReader.read(any(), anyString())).thenAnswer(invocation -> {
+            if (invocation.getArgument(0) == CryptoEnum.xrp) {
+                xrpReadReleased.await();
+            }
+            return List.of();
+        });
+
+        lazyDataLoader.loadInitialData();
+        assertFalse(lazyDataLoader.isFullyLoaded());
+
+        // Background loading is stuck on the priority crypto, btc is loaded on demand by the calling thread
+        lazyDataLoader.ensureLoaded(CryptoEnum.btc);
+        verify(cryptoValuesManager).addValues(CryptoEnum.btc, List.of());
+        assertFalse(lazyDataLoader.isFullyLoaded());
+        verify(eventPublisher, never()).publishEvent(any(ApplicationEvent.class));
+
+        xrpReadReleased.countDown();
+
+        verify(eventPublisher, timeout(5000)).publishEvent(argThat((ApplicationEvent event) ->
+                ((AvailabilityChangeEvent<?>) event).getState() == ReadinessState.ACCEPTING_TRAFFIC));
+        assertTrue(lazyDataLoader.isFullyLoaded());
+        verify(cryptoValuesReader, times(1)).read(CryptoEnum.btc, btcFilePath);
+        lazyDataLoader.stopBackgroundLoading();
+    }
+
+    @Test
+    public void test_ensureLoaded_lazy_loadFails_retriedOnDemand() throws Exception {
+        System.setProperty(btcFilePathProperty, btcFilePath);
+        FileDataLoader lazyDataLoader = createLazyDataLoader(null);
+        when(cryptoValuesReader.read(CryptoEnum.btc, btcFilePath))
+                .thenThrow(new CryptoInternalException("Error reading csv file"))
+                .thenReturn(List.of());
+
+        assertThrows(CryptoInternalException.class, () -> lazyDataLoader.ensureLoaded(CryptoEnum.btc));
+        lazyDataLoader.ensureLoaded(CryptoEnum.btc);
+
+        verify(cryptoValuesReader, times(2)).read(CryptoEnum.btc, btcFilePath);
+        verify(cryptoValuesManager).addValues(CryptoEnum.btc, List.of());
+    }
+
+    @Test
+    public void test_loadInitialData_lazy_loggedValuesHandedOutOnceAndDropped() throws Exception {
+        System.setProperty(btcFilePathProperty, btcFilePath);
+        FileDataLoader lazyDataLoader = createLazyDataLoader("btc");
+        CountDownLatch xrpReadReleased = new CountDownLatch(1);
+        when(cryptoValuesReader.read(any(), anyString())).thenAnswer(invocation -> {
+            if (invocation.getArgument(0) == CryptoEnum.xrp) {
+                xrpReadReleased.await();
+            }
+            return List.of();
+        });
+        when(writeAheadLog.recover()).thenReturn(Map.of(
+                CryptoEnum.btc, List.of(new CryptoValue(1L, BigDecimal.ONE)),
+                CryptoEnum.xrp, List.of(new CryptoValue(2L, BigDecimal.TEN))));
+
+        lazyDataLoader.loadInitialData();
+        verify(cryptoValuesManager, timeout(5000)).addValues(CryptoEnum.btc, List.of(new CryptoValue(1L, BigDecimal.ONE)));
+        // Only the values of the crypto not loaded yet are kept
+        assertEquals(1, lazyDataLoader.pendingLoggedCryptos());
+
+        xrpReadReleased.countDown();
+
+        verify(eventPublisher, timeout(5000)).publishEvent(argThat((ApplicationEvent event) ->
+                ((AvailabilityChangeEvent<?>) event).getState() == ReadinessState.ACCEPTING_TRAFFIC));
+        verify(cryptoValuesManager).addValues(CryptoEnum.xrp, List.of(new CryptoValue(2L, BigDecimal.TEN)));
+        verify(writeAheadLog, times(1)).recover();
+        assertEquals(0, lazyDataLoader.pendingLoggedCryptos());
+        lazyDataLoader.stopBackgroundLoading();
+    }
+
+    @Test
+    public void test_onReadinessStateChange_notFullyLoaded_refusingTrafficPublished() {
+        FileDataLoader lazyDataLoader = createLazyDataLoader(null);
+
+        lazyDataLoader.onReadinessStateChange(new AvailabilityChangeEvent<>(this, ReadinessState.ACCEPTING_TRAFFIC));
+
+        verify(eventPublisher).publishEvent(argThat((ApplicationEvent event) ->
+                ((AvailabilityChangeEvent<?>) event).getState() == ReadinessState.REFUSING_TRAFFIC));
+    }
+
+    @Test
+    public void test_onReadinessStateChange_fullyLoaded_nothingPublished() throws CryptoInternalException {
+        System.setProperty(btcFilePathProperty, btcFilePath);
+        fileDataLoader.loadInitialData();
+
+        fileDataLoader.onReadinessStateChange(new AvailabilityChangeEvent<>(this, ReadinessState.ACCEPTING_TRAFFIC));
+
+        assertTrue(fileDataLoader.isFullyLoaded());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    public void test_loadInitialData_sharded_onlyOwnedCryptosLoaded() throws CryptoInternalException {
+        System.setProperty(btcFilePathProperty, btcFilePath);
+        ShardTopology xrpShard = new ShardTopology(List.of("http://node0:8080", "http://node1:8080"), 0);
+        FileDataLoader shardDataLoader = new FileDataLoader(cryptoValuesReader, cryptoValuesManager, writeAheadLog,
+                eventPublisher, xrpShard, partitioningReader);
+        when(cryptoValuesReader.read(CryptoEnum.xrp, xrpFilePath)).thenReturn(List.of());
+        when(writeAheadLog.recover()).thenReturn(Map.of(
+                CryptoEnum.btc, List.of(new CryptoValue(1L, BigDecimal.ONE)),
+                CryptoEnum.xrp, List.of(new CryptoValue(2L, BigDecimal.TEN))));
+
+        shardDataLoader.loadInitialData();
+        shardDataLoader.ensureLoaded(CryptoEnum.btc);
+
+        verify(cryptoValuesReader).read(CryptoEnum.xrp, xrpFilePath);
+        verifyNoMoreInteractions(cryptoValuesReader);
+        verify(cryptoValuesManager).addValues(CryptoEnum.xrp, List.of());
+        verify(cryptoValuesManager).addValues(CryptoEnum.xrp, List.of(new CryptoValue(2L, BigDecimal.TEN)));
+        verifyNoMoreInteractions(cryptoValuesManager);
+    }
+
+    @Test
+    public void test_loadData_mixedFiles() throws CryptoInternalException {
+        ShardTopology xrpShard = new ShardTopology(List.of("http://node0:8080", "http://node1:8080"), 0);
+        FileDataLoader mixedDataLoader = createMixedDataLoader(xrpShard);
+        when(partitioningReader.read("day1.csv")).thenReturn(Map.of(
+                CryptoEnum.btc, List.of(new CryptoValue(1L, BigDecimal.ONE)),
+                CryptoEnum.xrp, List.of(new CryptoValue(2L, BigDecimal.TEN))));
+        when(partitioningReader.read("day2.csv")).thenReturn(Map.of(
+                CryptoEnum.xrp, List.of(new CryptoValue(3L, BigDecimal.TEN))));
+
+        mixedDataLoader.loadData();
+
+        verify(cryptoValuesManager).addValues(CryptoEnum.xrp,
+                List.of(new CryptoValue(2L, BigDecimal.TEN), new CryptoValue(3L, BigDecimal.TEN)));
+        verifyNoMoreInteractions(cryptoValuesManager);
+        verifyNoInteractions(cryptoValuesReader);
+    }
+
+    @Test
+    public void test_ensureLoaded_mixedFilesReadOnce() throws CryptoInternalException {
+        FileDataLoader mixedDataLoader = createMixedDataLoader(shardTopology);
+        when(partitioningReader.read("day1.csv")).thenReturn(Map.of(
+                CryptoEnum.btc, List.of(new CryptoValue(1L, BigDecimal.ONE)),
+                CryptoEnum.eth, List.of(new CryptoValue(2L, BigDecimal.TEN))));
+        when(partitioningReader.read("day2.csv")).thenReturn(Map.of());
+
+        mixedDataLoader.ensureLoaded(CryptoEnum.btc);
+        mixedDataLoader.ensureLoaded(CryptoEnum.eth);
+        mixedDataLoader.ensureLoaded(CryptoEnum.doge);
+
+        verify(partitioningReader).read("day1.csv");
+        verify(partitioningReader).read("day2.csv");
+        verify(cryptoValuesManager).addValues(CryptoEnum.btc, List.of(new CryptoValue(1L, BigDecimal.ONE)));
+        verify(cryptoValuesManager).addValues(CryptoEnum.eth, List.of(new CryptoValue(2L, BigDecimal.TEN)));
+        verify(cryptoValuesManager).addValues(CryptoEnum.doge, List.of());
+        verifyNoInteractions(cryptoValuesReader);
+    }
+
+    @Test
+    public void test_reloadData_replacesStoredValues() throws CryptoInternalException {
+        System.setProperty(btcFilePathProperty, btcFilePath);
+        CryptoValuesInMemManager manager = new CryptoValuesInMemManager();
+        FileDataLoader reloadingDataLoader = new FileDataLoader(cryptoValuesReader, manager, writeAheadLog,
+                eventPublisher, shardTopology, partitioningReader);
+        for (CryptoEnum cryptoEnum : CryptoEnum.values()) {
+            when(cryptoValuesReader.read(eq(cryptoEnum), anyString()))
+                    .thenReturn(List.of(new CryptoValue(1L, BigDecimal.ONE)))
+                    .thenReturn(List.of(new CryptoValue(2L, BigDecimal.TEN), new CryptoValue(3L, BigDecimal.TEN)));
+        }
+        when(writeAheadLog.recover()).thenReturn(Map.of(CryptoEnum.btc, List.of(new CryptoValue(4L, BigDecimal.ONE))));
+        reloadingDataLoader.loadInitialData();
+        long version = manager.getDataVersion();
+
+        StoreReloadDto reload = reloadingDataLoader.reloadData();
+
+        assertEquals(version + 1, reload.getDataVersion());
+        assertEquals(2L * CryptoEnum.values().length, reload.getValues());
+        assertEquals(List.of(new CryptoValue(2L, BigDecimal.TEN), new CryptoValue(3L, BigDecimal.TEN),
+                new CryptoValue(4L, BigDecimal.ONE)), new ArrayList<>(manager.getValues(CryptoEnum.btc).get()));
+        assertEquals(Set.of(new CryptoValue(2L, BigDecimal.TEN), new CryptoValue(3L, BigDecimal.TEN)),
+                manager.getValues(CryptoEnum.xrp).get());
+        reloadingDataLoader.stopBackgroundLoading();
+    }
+
+    @Test
+    public void test_reloadData_cryptoWithoutValues_storedValuesUnchanged() throws CryptoInternalException {
+        System.setProperty(btcFilePathProperty, btcFilePath);
+        CryptoValuesInMemManager manager = new CryptoValuesInMemManager();
+        FileDataLoader reloadingDataLoader = new FileDataLoader(cryptoValuesReader, manager, writeAheadLog,
+                eventPublisher, shardTopology, partitioningReader);
+        for (CryptoEnum cryptoEnum : CryptoEnum.values()) {
+            when(cryptoValuesReader.read(eq(cryptoEnum), anyString()))
+                    .thenReturn(List.of(new CryptoValue(1L, BigDecimal.ONE)))
+                    .thenReturn(cryptoEnum == CryptoEnum.eth ? List.of() : List.of(new CryptoValue(2L, BigDecimal.TEN)));
+        }
+        reloadingDataLoader.loadInitialData();
+        long version = manager.getDataVersion();
+
+        Throwable throwable = assertThrows(CryptoInternalException.class, reloadingDataLoader::reloadData);
+
+        assertEquals("Error reloading data. No values read for crypto eth", throwable.getMessage());
+        assertEquals(version, manager.getDataVersion());
+        assertEquals(Set.of(new CryptoValue(1L, BigDecimal.ONE)), manager.getValues(CryptoEnum.btc).get());
+        reloadingDataLoader.stopBackgroundLoading();
+    }
+
+    @Test
+    public void test_reloadData_initialDataNotLoaded_rejected() {
+        assertThrows(CryptoInternalException.class, fileDataLoader::reloadData);
+        verifyNoInteractions(cryptoValuesManager);
+    }
+
+    private FileDataLoader createMixedDataLoader(ShardTopology topology) {
+        System.setProperty("data.mixed.file.paths", "day1.csv, day2.csv");
+        try {
+            return new FileDataLoader(cryptoValuesReader, cryptoValuesManager, writeAheadLog, eventPublisher, topology,
+                    partitioningReader);
+        } finally {
+            System.clearProperty("data.mixed.file.paths");
+        }
+    }
+
+    private FileDataLoader createLazyDataLoader(String priority) {
+        System.setProperty("data.load.mode", "lazy");
+        if (priority != null) {
+            System.setProperty("data.load.priority", priority);
+        }
+        try {
+            return new FileDataLoader(cryptoValuesReader, cryptoValuesManager, writeAheadLog, eventPublisher, shardTopology,
+                    partitioningReader);
+        } finally {
+            System.clearProperty("data.load.mode");
+            System.clearProperty("data.load.priority");
+        }
+    }
 }
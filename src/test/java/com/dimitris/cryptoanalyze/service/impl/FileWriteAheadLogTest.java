@@ -0,0 +1,238 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileWriteAheadLogTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileWriteAheadLogTest.class);
+
+    /**
+     * Number of values logged by the recovery time test. Can be raised (eg to 100000000) through a system property
+     * to measure recovery of a production sized log, given enough disk space and heap
+     */
+    private static final int RECOVERY_TEST_VALUES = Integer.getInteger("wal.recovery.test.values", 1_000_000);
+
+    @TempDir
+    Path walDir;
+
+    @Test
+    public void test_disabled() throws CryptoInternalException {
+        FileWriteAheadLog log = new FileWriteAheadLog(null, 5, 1024, 1);
+        log.append(CryptoEnum.btc, List.of(new CryptoValue(1234L, new BigDecimal("1300"))));
+
+        assertFalse(log.isEnabled());
+        assertTrue(log.recover().isEmpty());
+    }
+
+    @Test
+    public void test_append_recover() throws CryptoInternalException {
+        List<CryptoValue> btcValues = List.of(
+                new CryptoValue(1641009600000L, new BigDecimal("46813.21")),
+                new CryptoValue(1641020400000L, new BigDecimal("-0.000001")),
+                new CryptoValue(1641031200000L, new BigDecimal("0")),
+                new CryptoValue(1641034800000L, new BigDecimal(new BigInteger("123456789012345678901234567890"), 12)));
+        List<CryptoValue> dogeValues = List.of(new CryptoValue(1641009600000L, new BigDecimal("0.1702")));
+
+        FileWriteAheadLog log = new FileWriteAheadLog(walDir, 0, 1024 * 1024, 2);
+        log.append(CryptoEnum.btc, btcValues.subList(0, 2));
+        log.append(CryptoEnum.doge, dogeValues);
+        log.append(CryptoEnum.btc, btcValues.subList(2, 4));
+        log.close();
+
+        Map<CryptoEnum, List<CryptoValue>> recovered = new FileWriteAheadLog(walDir, 0, 1024 * 1024, 2).recover();
+        assertEquals(Map.of(CryptoEnum.btc, btcValues, CryptoEnum.doge, dogeValues), recovered);
+    }
+
+    @Test
+    public void test_append_groupCommit_concurrentAppenders() throws Exception {
+        FileWriteAheadLog log = new FileWriteAheadLog(walDir, 2, 1024 * 1024, 2);
+        ExecutorService appenders = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            long timestamp = i;
+            futures.add(appenders.submit(() -> {
+                log.append(CryptoEnum.eth, List.of(new CryptoValue(timestamp, BigDecimal.valueOf(timestamp, 2))));
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        appenders.shutdown();
+        log.close();
+
+        Set<CryptoValue> recovered = new HashSet<>(new FileWriteAheadLog(walDir, 0, 1024, 1).recover().get(CryptoEnum.eth));
+        Set<CryptoValue> expected = Stream.iterate(0L, i -> i + 1).limit(400)
+                .map(i -> new CryptoValue(i, BigDecimal.valueOf(i, 2)))
+                .collect(Collectors.toSet());
+        assertEquals(expected, recovered);
+    }
+
+    @Test
+    public void test_append_segmentRolling_newSegmentPerStart() throws CryptoInternalException, IOException {
+        FileWriteAheadLog log = new FileWriteAheadLog(walDir, 0, 256, 4);
+        List<CryptoValue> expected = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            CryptoValue cryptoValue = new CryptoValue(i, new BigDecimal(i + ".5"));
+            expected.add(cryptoValue);
+            log.append(CryptoEnum.ltc, List.of(cryptoValue));
+        }
+        log.close();
+        long segmentsAfterFirstRun = countSegments();
+
+        FileWriteAheadLog restartedLog = new FileWriteAheadLog(walDir, 0, 256, 4);
+        CryptoValue cryptoValue = new CryptoValue(50, new BigDecimal("50.5"));
+        expected.add(cryptoValue);
+        restartedLog.append(CryptoEnum.ltc, List.of(cryptoValue));
+        restartedLog.close();
+
+        assertTrue(segmentsAfterFirstRun > 1);
+        assertEquals(segmentsAfterFirstRun + 1, countSegments());
+        assertEquals(Map.of(CryptoEnum.ltc, expected), new FileWriteAheadLog(walDir, 0, 256, 4).recover());
+    }
+
+    @Test
+    public void test_recover_tornTailRecordIgnored() throws CryptoInternalException, IOException {
+        FileWriteAheadLog log = new FileWriteAheadLog(walDir, 0, 1024 * 1024, 1);
+        List<CryptoValue> committed = List.of(new CryptoValue(1L, new BigDecimal("1.1")));
+        log.append(CryptoEnum.xrp, committed);
+        log.append(CryptoEnum.xrp, List.of(new CryptoValue(2L, new BigDecimal("2.2"))));
+        log.close();
+
+        Path segment;
+        try (Stream<Path> files = Files.list(walDir)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        assertEquals(Map.of(CryptoEnum.xrp, committed), new FileWriteAheadLog(walDir, 0, 1024 * 1024, 1).recover());
+    }
+
+    @Test
+    public void test_recover_corruptedRecordFollowedByRecords_fails() throws CryptoInternalException, IOException {
+        FileWriteAheadLog log = new FileWriteAheadLog(walDir, 0, 1024 * 1024, 1);
+        log.append(CryptoEnum.xrp, List.of(new CryptoValue(1L, new BigDecimal("1.1"))));
+        log.append(CryptoEnum.xrp, List.of(new CryptoValue(2L, new BigDecimal("2.2"))));
+        log.close();
+
+        Path segment;
+        try (Stream<Path> files = Files.list(walDir)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        // Flips the last byte of the payload of the first record, which starts after the segment header
+        long firstPayloadEnd;
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(Integer.BYTES);
+            firstPayloadEnd = Integer.BYTES + 8 + file.readInt();
+            file.seek(firstPayloadEnd - 1);
+            int lastByte = file.read();
+            file.seek(firstPayloadEnd - 1);
+            file.write(lastByte ^ 0xff);
+        }
+
+        Throwable throwable = assertThrows(CryptoInternalException.class,
+                () -> new FileWriteAheadLog(walDir, 0, 1024 * 1024, 1).recover());
+        assertTrue(throwable.getMessage().contains("Found corrupted record at offset " + Integer.BYTES), throwable.getMessage());
+    }
+
+    @Test
+    public void test_append_afterRestart_tornTailOfLastSegmentCutOff() throws CryptoInternalException, IOException {
+        FileWriteAheadLog log = new FileWriteAheadLog(walDir, 0, 1024 * 1024, 1);
+        List<CryptoValue> expected = new ArrayList<>(List.of(new CryptoValue(1L, new BigDecimal("1.1"))));
+        log.append(CryptoEnum.xrp, expected);
+        log.append(CryptoEnum.xrp, List.of(new CryptoValue(2L, new BigDecimal("2.2"))));
+        log.close();
+        Path segment;
+        try (Stream<Path> files = Files.list(walDir)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        long tornSize;
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.setLength(file.length() - 3);
+            tornSize = file.length();
+        }
+
+        // The torn segment is no longer the last one once the restarted log starts a new segment
+        FileWriteAheadLog restartedLog = new FileWriteAheadLog(walDir, 0, 1024 * 1024, 1);
+        CryptoValue cryptoValue = new CryptoValue(3L, new BigDecimal("3.3"));
+        expected.add(cryptoValue);
+        restartedLog.append(CryptoEnum.xrp, List.of(cryptoValue));
+        restartedLog.close();
+
+        assertEquals(2, countSegments());
+        assertTrue(Files.size(segment) < tornSize);
+        assertEquals(Map.of(CryptoEnum.xrp, expected), new FileWriteAheadLog(walDir, 0, 1024 * 1024, 1).recover());
+    }
+
+    @Test
+    public void test_append_failedWrite_laterAppendsCommitted() throws Exception {
+        Path logDir = walDir.resolve("log");
+        // A regular file in place of the directory fails the write of the first group commit
+        Files.createFile(logDir);
+        FileWriteAheadLog log = new FileWriteAheadLog(logDir, 5, 1024 * 1024, 1);
+        List<CryptoValue> failed = List.of(new CryptoValue(1641009600000L, new BigDecimal("1")));
+        List<CryptoValue> committed = List.of(new CryptoValue(1641020400000L, new BigDecimal("2")));
+
+        assertThrows(CryptoInternalException.class, () -> log.append(CryptoEnum.btc, failed));
+        Files.delete(logDir);
+        log.append(CryptoEnum.btc, committed);
+        log.close();
+
+        assertEquals(Map.of(CryptoEnum.btc, committed), new FileWriteAheadLog(logDir, 0, 1024 * 1024, 1).recover());
+    }
+
+    @Test
+    public void test_recover_recoveryTime() throws CryptoInternalException {
+        int batchSize = 10_000;
+        FileWriteAheadLog log = new FileWriteAheadLog(walDir, 0, 16L * 1024 * 1024, 1);
+        Random random = new Random(42);
+        List<CryptoValue> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < RECOVERY_TEST_VALUES; i++) {
+            batch.add(new CryptoValue(1641009600000L + i, BigDecimal.valueOf(random.nextInt(10_000_000), 2)));
+            if (batch.size() == batchSize || i == RECOVERY_TEST_VALUES - 1) {
+                log.append(CryptoEnum.values()[i % CryptoEnum.values().length], batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        log.close();
+
+        long start = System.nanoTime();
+        Map<CryptoEnum, List<CryptoValue>> recovered =
+                new FileWriteAheadLog(walDir, 0, 16L * 1024 * 1024, Runtime.getRuntime().availableProcessors()).recover();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(RECOVERY_TEST_VALUES, recovered.values().stream().mapToInt(List::size).sum());
+        logger.info("Write-ahead log recovery: {} values, {} ms, {} values/s", RECOVERY_TEST_VALUES, elapsedMillis,
+                RECOVERY_TEST_VALUES * 1000L / Math.max(1, elapsedMillis));
+    }
+
+    private long countSegments() throws IOException {
+        try (Stream<Path> files = Files.list(walDir)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricDto;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsDto;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsListDto;
+import com.dimitris.cryptoanalyze.controller.dto.TimePeriodRequestDto;
+import com.dimitris.cryptoanalyze.service.CryptoAnalyzer;
+import com.dimitris.cryptoanalyze.service.ShardClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Shard client calling the local analyzers of shards running in the same JVM, used for testing sharded
+ * deployments without HTTP
+ */
+class InProcessShardClient implements ShardClient {
+
+    private final List<CryptoAnalyzer> localCryptoAnalyzers;
+
+    /**
+     * @param localCryptoAnalyzers The local analyzer of each shard, by shard index
+     */
+    InProcessShardClient(List<CryptoAnalyzer> localCryptoAnalyzers) {
+        this.localCryptoAnalyzers = localCryptoAnalyzers;
+    }
+
+    @Override
+    public CompletableFuture<CryptoMetricsListDto> getCryptosSortedByNormalizedRangeDesc(
+            int shard, Optional<TimePeriodRequestDto> timePeriodRequestDto, int limit) {
+        CompletableFuture<CryptoMetricsListDto> result = new CompletableFuture<>();
+        CompletableFuture.runAsync(() -> {
+            try {
+                List<CryptoMetricDto> cryptos = new ArrayList<>(localCryptoAnalyzers.get(shard)
+                        .getCryptosSortedByNormalizedRangeDesc(timePeriodRequestDto).getCryptos());
+                cryptos.sort(ScatterGatherCryptoAnalyzer.NORMALIZED_RANGE_DESC);
+                result.complete(new CryptoMetricsListDto(cryptos.subList(0, Math.min(limit, cryptos.size()))));
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<CryptoMetricsDto> getMetricsForCrypto(
+            int shard, Optional<TimePeriodRequestDto> timePeriodRequestDto, String crypto) {
+        CompletableFuture<CryptoMetricsDto> result = new CompletableFuture<>();
+        CompletableFuture.runAsync(() -> {
+            try {
+                result.complete(localCryptoAnalyzers.get(shard).getMetricsForCrypto(timePeriodRequestDto, crypto));
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+}
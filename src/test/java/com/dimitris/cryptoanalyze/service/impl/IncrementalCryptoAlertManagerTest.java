@@ -0,0 +1,237 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.controller.dto.AlertRuleDto;
+import com.dimitris.cryptoanalyze.controller.dto.AlertRuleRequestDto;
+import com.dimitris.cryptoanalyze.service.enums.AlertDirection;
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoValidationException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.model.AlertFiring;
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IncrementalCryptoAlertManagerTest {
+
+    private static final long HOUR = 3600000L;
+
+    private CryptoValuesInMemManager valuesManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private BlockingQueue<AlertFiring> firings;
+
+    private IncrementalCryptoAlertManager alertManager;
+
+    @BeforeEach
+    void setUp() {
+        valuesManager = new CryptoValuesInMemManager();
+        meterRegistry = new SimpleMeterRegistry();
+        firings = new LinkedBlockingQueue<>();
+        alertManager = new IncrementalCryptoAlertManager(valuesManager, new ShardTopology(List.of(), 0),
+                firings::add, meterRegistry, 100000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        alertManager.shutdown();
+    }
+
+    @Test
+    void test_register() throws Exception {
+        AlertRuleDto rule1 = alertManager.register(request("btc", HOUR, "0.1", AlertDirection.ABOVE));
+        AlertRuleDto rule2 = alertManager.register(request("eth", 2 * HOUR, "0.2", AlertDirection.BELOW));
+
+        assertEquals(new AlertRuleDto(1, "btc", HOUR, new BigDecimal("0.1"), AlertDirection.ABOVE), rule1);
+        assertEquals(new AlertRuleDto(2, "eth", 2 * HOUR, new BigDecimal("0.2"), AlertDirection.BELOW), rule2);
+        assertEquals(List.of(rule1, rule2), alertManager.getRules());
+        assertEquals(2, meterRegistry.get("crypto.alerts.rules").gauge().value());
+    }
+
+    @Test
+    void test_register_invalidRules() {
+        assertThrows(CryptoNotFoundException.class,
+                () -> alertManager.register(request("abc", HOUR, "0.1", AlertDirection.ABOVE)));
+        assertThrows(CryptoValidationException.class,
+                () -> alertManager.register(request("btc", 0, "0.1", AlertDirection.ABOVE)));
+        assertThrows(CryptoValidationException.class,
+                () -> alertManager.register(request("btc", HOUR, null, AlertDirection.ABOVE)));
+        assertThrows(CryptoValidationException.class,
+                () -> alertManager.register(request("btc", HOUR, "0.1", null)));
+        assertTrue(alertManager.getRules().isEmpty());
+    }
+
+    @Test
+    void test_register_cryptoOwnedByOtherShard() {
+        ShardTopology shardTopology = new ShardTopology(List.of("http://a", "http://b"), 0);
+        CryptoEnum notOwned = List.of(CryptoEnum.values()).stream()
+                .filter(cryptoEnum -> !shardTopology.isOwned(cryptoEnum))
+                .findFirst()
+                .orElseThrow();
+        IncrementalCryptoAlertManager shardAlertManager = new IncrementalCryptoAlertManager(valuesManager,
+                shardTopology, firings::add, meterRegistry, 10);
+
+        assertThrows(CryptoNotFoundException.class, () -> shardAlertManager.register(
+                request(notOwned.getCode(), HOUR, "0.1", AlertDirection.ABOVE)));
+        shardAlertManager.shutdown();
+    }
+
+    @Test
+    void test_crossings_fireOncePerCrossing() throws Exception {
+        alertManager.register(request("btc", HOUR, "0.1", AlertDirection.ABOVE));
+        alertManager.register(request("btc", HOUR, "0.1", AlertDirection.BELOW));
+        alertManager.register(request("eth", HOUR, "0.1", AlertDirection.ABOVE));
+
+        add(CryptoEnum.btc, 0, "100");
+        add(CryptoEnum.btc, 1000, "105");
+        add(CryptoEnum.btc, 2000, "110");
+        add(CryptoEnum.btc, 3000, "120");
+
+        AlertFiring firing = firings.poll(5, TimeUnit.SECONDS);
+        assertEquals(1, firing.getRuleId());
+        assertEquals("btc", firing.getCrypto());
+        assertEquals(AlertDirection.ABOVE, firing.getDirection());
+        assertEquals(0, new BigDecimal("0.1").compareTo(firing.getNormalizedRange()));
+        assertEquals(2000, firing.getTimestamp());
+        assertNull(firings.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, meterRegistry.get("crypto.alerts.fired").counter().count());
+    }
+
+    @Test
+    void test_windowSlides_oldExtremesLeaveWindow() throws Exception {
+        alertManager.register(request("btc", HOUR, "0.1", AlertDirection.BELOW));
+
+        add(CryptoEnum.btc, 0, "100");
+        add(CryptoEnum.btc, HOUR / 2, "150");
+        assertNull(firings.poll(100, TimeUnit.MILLISECONDS));
+        add(CryptoEnum.btc, HOUR, "151");
+
+        // The value of 100 left the window, the range is now (151-150)/150
+        AlertFiring firing = firings.poll(5, TimeUnit.SECONDS);
+        assertNotNull(firing);
+        assertEquals(1, firing.getRuleId());
+        assertEquals(new BigDecimal("0.0066667"), firing.getNormalizedRange());
+        assertEquals(HOUR, firing.getTimestamp());
+    }
+
+    @Test
+    void test_register_windowBuiltFromStoredValues() throws Exception {
+        add(CryptoEnum.btc, 0, "100");
+        add(CryptoEnum.btc, 1000, "105");
+
+        alertManager.register(request("btc", HOUR, "0.1", AlertDirection.ABOVE));
+        assertNull(firings.poll(100, TimeUnit.MILLISECONDS));
+
+        add(CryptoEnum.btc, 2000, "111");
+        AlertFiring firing = firings.poll(5, TimeUnit.SECONDS);
+        assertEquals(new BigDecimal("0.11"), firing.getNormalizedRange());
+    }
+
+    @Test
+    void test_valuesOutOfOrder_windowRebuilt() throws Exception {
+        alertManager.register(request("btc", HOUR, "0.1", AlertDirection.ABOVE));
+        add(CryptoEnum.btc, 1000, "100");
+        add(CryptoEnum.btc, 2000, "100");
+
+        add(CryptoEnum.btc, 1500, "120");
+        AlertFiring firing = firings.poll(5, TimeUnit.SECONDS);
+        assertEquals(new BigDecimal("0.2"), firing.getNormalizedRange());
+        assertEquals(2000, firing.getTimestamp());
+
+        // Replacing the price at a stored timestamp also rebuilds the window
+        alertManager.register(request("btc", HOUR, "0.1", AlertDirection.BELOW));
+        add(CryptoEnum.btc, 1500, "101");
+        firing = firings.poll(5, TimeUnit.SECONDS);
+        assertEquals(2, firing.getRuleId());
+        assertEquals(new BigDecimal("0.01"), firing.getNormalizedRange());
+    }
+
+    @Test
+    void test_remove() throws Exception {
+        AlertRuleDto rule = alertManager.register(request("btc", HOUR, "0.1", AlertDirection.ABOVE));
+        add(CryptoEnum.btc, 0, "100");
+
+        alertManager.remove(rule.getId());
+        add(CryptoEnum.btc, 1000, "120");
+
+        assertNull(firings.poll(100, TimeUnit.MILLISECONDS));
+        assertTrue(alertManager.getRules().isEmpty());
+        assertThrows(CryptoNotFoundException.class, () -> alertManager.remove(rule.getId()));
+
+        // Rules of a removed window start over on a new one
+        alertManager.register(request("btc", HOUR, "0.3", AlertDirection.ABOVE));
+        add(CryptoEnum.btc, 2000, "130");
+        assertEquals(new BigDecimal("0.3"), firings.poll(5, TimeUnit.SECONDS).getNormalizedRange());
+    }
+
+    @Test
+    void test_manyRules_eachCrossedOnce() throws Exception {
+        int rules = 30000;
+        for (int i = 1; i <= rules; i++) {
+            // Thresholds 0.0001, 0.0002, ... 3, on three windows
+            long windowMillis = (1 + i % 3) * HOUR;
+            alertManager.register(request("btc", windowMillis, BigDecimal.valueOf(i, 4).toPlainString(), AlertDirection.ABOVE));
+        }
+        add(CryptoEnum.btc, 0, "100");
+
+        // A steadily rising price widens the range of every window, up to 2.5
+        List<CryptoValue> values = new ArrayList<>();
+        for (int i = 1; i <= 250; i++) {
+            values.add(new CryptoValue(i * 1000L, BigDecimal.valueOf(100 + i)));
+        }
+        valuesManager.addValues(CryptoEnum.btc, values);
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (firings.size() < 25000 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(25000, firings.size());
+        assertEquals(25000, meterRegistry.get("crypto.alerts.fired").counter().count());
+        assertEquals(0, meterRegistry.get("crypto.alerts.dropped").counter().count());
+    }
+
+    @Test
+    void test_deliveryQueueFull_firingsDropped() throws Exception {
+        alertManager.shutdown();
+        alertManager = new IncrementalCryptoAlertManager(valuesManager, new ShardTopology(List.of(), 0), firing -> {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, meterRegistry, 1);
+        for (int i = 1; i <= 5; i++) {
+            alertManager.register(request("btc", HOUR, BigDecimal.valueOf(i, 2).toPlainString(), AlertDirection.ABOVE));
+        }
+        add(CryptoEnum.btc, 0, "100");
+        add(CryptoEnum.btc, 1000, "110");
+
+        assertEquals(5, meterRegistry.get("crypto.alerts.fired").counter().count());
+        // One firing is being delivered and one waits in the queue
+        assertEquals(3, meterRegistry.get("crypto.alerts.dropped").counter().count());
+    }
+
+    private void add(CryptoEnum cryptoEnum, long timestamp, String price) {
+        valuesManager.addValues(cryptoEnum, List.of(new CryptoValue(timestamp, new BigDecimal(price))));
+    }
+
+    private static AlertRuleRequestDto request(String crypto, long windowMillis, String threshold, AlertDirection direction) {
+        AlertRuleRequestDto request = new AlertRuleRequestDto();
+        request.setCrypto(crypto);
+        request.setWindowMillis(windowMillis);
+        request.setThreshold(threshold != null ? new BigDecimal(threshold) : null);
+        request.setDirection(direction);
+        return request;
+    }
+}
@@ -0,0 +1,122 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import com.dimitris.cryptoanalyze.service.model.ValueChunk;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedColdSegmentStoreTest {
+
+    @TempDir
+    Path segmentDir;
+
+    @Test
+    public void test_disabled_keepsChunk() {
+        MappedColdSegmentStore store = new MappedColdSegmentStore(segmentDir, 0, 1024, new SimpleMeterRegistry());
+        ValueChunk chunk = ValueChunk.onHeap(values(0, 10));
+
+        assertFalse(store.isEnabled());
+        assertEquals(Long.MAX_VALUE, store.getHotWindowMillis());
+        assertSame(chunk, store.seal(chunk));
+    }
+
+    @Test
+    public void test_seal_readsBackValues() throws IOException {
+        CryptoValue[] values = {
+                new CryptoValue(1641009600000L, new BigDecimal("46813.21")),
+                new CryptoValue(1641020400000L, new BigDecimal("-0.000001")),
+                new CryptoValue(1641031200000L, new BigDecimal("0")),
+                new CryptoValue(1641034800000L, new BigDecimal(new BigInteger("123456789012345678901234567890"), 12))};
+        MappedColdSegmentStore store = new MappedColdSegmentStore(segmentDir, 1000, 1024 * 1024,
+                new SimpleMeterRegistry());
+
+        ValueChunk sealed = store.seal(ValueChunk.onHeap(values));
+
+        assertFalse(sealed.isOnHeap());
+        assertEquals(values.length, sealed.size());
+        assertArrayEquals(values, sealed.values());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], sealed.get(i));
+            assertEquals(values[i].getTimestamp(), sealed.timestampAt(i));
+        }
+        assertEquals(1, store.getSegmentCount());
+        try (Stream<Path> files = Files.list(segmentDir)) {
+            assertEquals(1, files.count());
+        }
+
+        store.shutdown();
+
+        try (Stream<Path> files = Files.list(segmentDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void test_residency_releasesLeastRecentlyUsed() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        MappedColdSegmentStore sizingStore = new MappedColdSegmentStore(segmentDir.resolve("sizing"), 1000,
+                Long.MAX_VALUE, new SimpleMeterRegistry());
+        sizingStore.seal(ValueChunk.onHeap(values(0, 100))).get(1);
+        long segmentBytes = sizingStore.getResidentBytes();
+        // Two of the three segments fit in the budget
+        MappedColdSegmentStore store = new MappedColdSegmentStore(segmentDir, 1000, 2 * segmentBytes, meterRegistry);
+        ValueChunk first = store.seal(ValueChunk.onHeap(values(0, 100)));
+        ValueChunk second = store.seal(ValueChunk.onHeap(values(100, 100)));
+        ValueChunk third = store.seal(ValueChunk.onHeap(values(200, 100)));
+
+        first.get(1);
+        second.get(1);
+        first.get(2);
+        third.get(1);
+        // The second segment was the least recently used one
+        first.get(3);
+        second.get(2);
+
+        assertEquals(2 * segmentBytes, store.getResidentBytes());
+        assertEquals(2, meterRegistry.get("crypto.storage.cold.accesses").tag("result", "mapped").counter().count());
+        assertEquals(4, meterRegistry.get("crypto.storage.cold.accesses").tag("result", "unmapped").counter().count());
+        assertEquals(2.0 / 6, meterRegistry.get("crypto.storage.hit.ratio").tag("tier", "cold").gauge().value(),
+                1e-9);
+        assertEquals(3, meterRegistry.get("crypto.storage.cold.segments").gauge().value());
+        // The bounds of a segment are read without mapping it
+        third.timestampAt(0);
+        third.timestampAt(99);
+        assertEquals(6, meterRegistry.get("crypto.storage.cold.accesses").counters().stream()
+                .mapToDouble(counter -> counter.count()).sum());
+    }
+
+    @Test
+    public void test_recordRead_hotRatio() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        MappedColdSegmentStore store = new MappedColdSegmentStore(segmentDir, 1000, 1024, meterRegistry);
+
+        store.recordRead(true);
+        store.recordRead(true);
+        store.recordRead(true);
+        store.recordRead(false);
+
+        assertEquals(3, meterRegistry.get("crypto.storage.reads").tag("tier", "hot").counter().count());
+        assertEquals(1, meterRegistry.get("crypto.storage.reads").tag("tier", "cold").counter().count());
+        assertEquals(0.75, meterRegistry.get("crypto.storage.hit.ratio").tag("tier", "hot").gauge().value());
+    }
+
+    private static CryptoValue[] values(long fromTimestamp, int count) {
+        CryptoValue[] values = new CryptoValue[count];
+        for (int i = 0; i < count; i++) {
+            // Prices of equal encoded length, so that segments of equal counts have equal lengths
+            values[i] = new CryptoValue(fromTimestamp + i, BigDecimal.valueOf(1000 + fromTimestamp + i, 2));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,199 @@
+package com.dimitris.cryptoanalyze.service.impl;
+
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricDto;
+import com.dimitris.cryptoanalyze.controller.dto.CryptoMetricsListDto;
+import com.dimitris.cryptoanalyze.controller.dto.TimePeriodRequestDto;
+import com.dimitris.cryptoanalyze.service.ColdSegmentStore;
+import com.dimitris.cryptoanalyze.service.CryptoAnalyzer;
+import com.dimitris.cryptoanalyze.service.DataLoader;
+import com.dimitris.cryptoanalyze.service.ShardClient;
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import com.dimitris.cryptoanalyze.service.exception.CryptoInternalException;
+import com.dimitris.cryptoanalyze.service.exception.CryptoNotFoundException;
+import com.dimitris.cryptoanalyze.service.model.CryptoValue;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ScatterGatherCryptoAnalyzerTest {
+
+    private static final int SHARD_COUNT = 3;
+
+    private static final List<String> NODES = List.of("http://node0:8080", "http://node1:8080", "http://node2:8080");
+
+    @Mock
+    private DataLoader dataLoader;
+
+    private CryptoAnalyzer singleNodeAnalyzer;
+
+    private List<CryptoAnalyzer> shardRouters;
+
+    @BeforeEach
+    void setUp() {
+        Map<CryptoEnum, Set<CryptoValue>> values = new EnumMap<>(CryptoEnum.class);
+        BigDecimal maxPrice = new BigDecimal("15");
+        for (CryptoEnum cryptoEnum : CryptoEnum.values()) {
+            Set<CryptoValue> cryptoValues = new HashSet<>();
+            for (int day = 1; day <= 10; day++) {
+                cryptoValues.add(new CryptoValue(toMillis(LocalDateTime.of(2022, 1, day, 12, 0)),
+                        new BigDecimal(10 + day % 3)));
+            }
+            // Each crypto has a different range in January, btc and doge share the same one
+            cryptoValues.add(new CryptoValue(toMillis(LocalDateTime.of(2022, 1, 3, 18, 0)), maxPrice));
+            if (cryptoEnum != CryptoEnum.btc) {
+                maxPrice = maxPrice.add(BigDecimal.ONE);
+            }
+            values.put(cryptoEnum, cryptoValues);
+        }
+
+        singleNodeAnalyzer = createLocalAnalyzer(values, new ShardTopology(List.of(), 0));
+        List<CryptoAnalyzer> localAnalyzers = new ArrayList<>();
+        for (int shard = 0; shard < SHARD_COUNT; shard++) {
+            localAnalyzers.add(createLocalAnalyzer(values, new ShardTopology(NODES, shard)));
+        }
+        ShardClient shardClient = new InProcessShardClient(localAnalyzers);
+        shardRouters = new ArrayList<>();
+        for (int shard = 0; shard < SHARD_COUNT; shard++) {
+            shardRouters.add(new ScatterGatherCryptoAnalyzer(localAnalyzers.get(shard),
+                    new ShardTopology(NODES, shard), shardClient));
+        }
+    }
+
+    @Test
+    public void test_getCryptosSortedByNormalizedRangeDesc_sameAsSingleNode() throws CryptoInternalException {
+        for (Optional<TimePeriodRequestDto> timePeriod : timePeriods()) {
+            List<CryptoMetricDto> expected = sortedSingleNodeRanking(timePeriod);
+            for (CryptoAnalyzer shardRouter : shardRouters) {
+                assertEquals(new CryptoMetricsListDto(expected), shardRouter.getCryptosSortedByNormalizedRangeDesc(timePeriod));
+            }
+        }
+    }
+
+    @Test
+    public void test_getCryptoWithHighestNormalizedRange_sameAsSingleNode() throws CryptoInternalException {
+        for (Optional<TimePeriodRequestDto> timePeriod : timePeriods()) {
+            CryptoMetricDto highest = singleNodeAnalyzer.getCryptoWithHighestNormalizedRange(timePeriod);
+            List<CryptoMetricDto> ranking = sortedSingleNodeRanking(timePeriod);
+            // Among cryptos with equal ranges, the one with the lowest code is returned
+            CryptoMetricDto expected = ranking.isEmpty() ? highest : ranking.get(0);
+            assertEquals(highest.getValue(), expected.getValue());
+            for (CryptoAnalyzer shardRouter : shardRouters) {
+                assertEquals(expected, shardRouter.getCryptoWithHighestNormalizedRange(timePeriod));
+            }
+        }
+    }
+
+    @Test
+    public void test_getMetricsForCrypto_routedToOwner() throws CryptoInternalException, CryptoNotFoundException {
+        for (Optional<TimePeriodRequestDto> timePeriod : timePeriods()) {
+            for (CryptoEnum cryptoEnum : CryptoEnum.values()) {
+                for (CryptoAnalyzer shardRouter : shardRouters) {
+                    assertEquals(singleNodeAnalyzer.getMetricsForCrypto(timePeriod, cryptoEnum.getCode()),
+                            shardRouter.getMetricsForCrypto(timePeriod, cryptoEnum.getCode()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test_getMetricsForCrypto_cryptoNotSupported() {
+        Throwable throwable = assertThrows(CryptoNotFoundException.class,
+                () -> shardRouters.get(0).getMetricsForCrypto(Optional.empty(), "ttt"));
+        assertEquals("Crypto ttt not supported.", throwable.getMessage());
+    }
+
+    @Test
+    public void test_getCryptosSortedByNormalizedRangeDesc_shardFails() throws CryptoInternalException {
+        ShardClient failingClient = mock(ShardClient.class);
+        when(failingClient.getCryptosSortedByNormalizedRangeDesc(anyInt(), any(), anyInt()))
+                .thenReturn(CompletableFuture.completedFuture(new CryptoMetricsListDto(List.of())))
+                .thenReturn(CompletableFuture.failedFuture(new CryptoInternalException("Error querying shard 2. Timeout")));
+        CryptoAnalyzer localAnalyzer = mock(CryptoAnalyzer.class);
+        when(localAnalyzer.getCryptosSortedByNormalizedRangeDesc(Optional.empty()))
+                .thenReturn(new CryptoMetricsListDto(List.of()));
+        ScatterGatherCryptoAnalyzer shardRouter = new ScatterGatherCryptoAnalyzer(localAnalyzer,
+                new ShardTopology(NODES, 0), failingClient);
+
+        Throwable throwable = assertThrows(CryptoInternalException.class,
+                () -> shardRouter.getCryptosSortedByNormalizedRangeDesc(Optional.empty()));
+        assertEquals("Error querying shard 2. Timeout", throwable.getMessage());
+    }
+
+    @Test
+    public void test_notSharded_delegatedToLocalAnalyzer() throws CryptoInternalException {
+        ShardClient shardClient = mock(ShardClient.class);
+        CryptoAnalyzer localAnalyzer = mock(CryptoAnalyzer.class);
+        CryptoMetricDto expected = new CryptoMetricDto("btc", BigDecimal.ONE);
+        when(localAnalyzer.getCryptoWithHighestNormalizedRange(Optional.empty())).thenReturn(expected);
+        ScatterGatherCryptoAnalyzer router = new ScatterGatherCryptoAnalyzer(localAnalyzer,
+                new ShardTopology(List.of(), 0), shardClient);
+
+        assertEquals(expected, router.getCryptoWithHighestNormalizedRange(Optional.empty()));
+        verifyNoInteractions(shardClient);
+    }
+
+    @Test
+    public void test_mergeTopK() {
+        List<CryptoMetricDto> merged = ScatterGatherCryptoAnalyzer.mergeTopK(List.of(
+                List.of(new CryptoMetricDto("eth", new BigDecimal("0.9")), new CryptoMetricDto("ltc", new BigDecimal("0.2"))),
+                List.of(),
+                List.of(new CryptoMetricDto("doge", new BigDecimal("0.5")), new CryptoMetricDto("btc", new BigDecimal("0.5")))
+        ), 3);
+
+        assertEquals(List.of(
+                new CryptoMetricDto("eth", new BigDecimal("0.9")),
+                new CryptoMetricDto("btc", new BigDecimal("0.5")),
+                new CryptoMetricDto("doge", new BigDecimal("0.5"))), merged);
+    }
+
+    /**
+     * Returns the ranking of the single node, with ties broken by crypto code like merged rankings
+     */
+    private List<CryptoMetricDto> sortedSingleNodeRanking(Optional<TimePeriodRequestDto> timePeriod)
+            throws CryptoInternalException {
+        List<CryptoMetricDto> ranking = new ArrayList<>(
+                singleNodeAnalyzer.getCryptosSortedByNormalizedRangeDesc(timePeriod).getCryptos());
+        ranking.sort(Comparator.comparing(CryptoMetricDto::getValue, Comparator.reverseOrder())
+                .thenComparing(CryptoMetricDto::getCrypto));
+        return ranking;
+    }
+
+    private CryptoAnalyzer createLocalAnalyzer(Map<CryptoEnum, Set<CryptoValue>> values, ShardTopology shardTopology) {
+        CryptoValuesInMemManager manager = new CryptoValuesInMemManager();
+        for (Map.Entry<CryptoEnum, Set<CryptoValue>> entry : values.entrySet()) {
+            if (shardTopology.isOwned(entry.getKey())) {
+                manager.addValues(entry.getKey(), entry.getValue());
+            }
+        }
+        return new CryptoAnalyzerImpl(new CryptoMetricsCalculatorImpl(manager, dataLoader, shardTopology,
+                new BucketedQuantileIndex(0.01), ColdSegmentStore.disabled()),
+                new CompositeIndexManager(manager, shardTopology, new SimpleMeterRegistry()));
+    }
+
+    private static List<Optional<TimePeriodRequestDto>> timePeriods() {
+        TimePeriodRequestDto afterMax = new TimePeriodRequestDto();
+        afterMax.setFromDateTime(Optional.of(LocalDateTime.of(2022, 1, 5, 0, 0)));
+        afterMax.setToDateTime(Optional.empty());
+        TimePeriodRequestDto beforeAnyValue = new TimePeriodRequestDto();
+        beforeAnyValue.setFromDateTime(Optional.empty());
+        beforeAnyValue.setToDateTime(Optional.of(LocalDateTime.of(2021, 1, 1, 0, 0)));
+        return List.of(Optional.empty(), Optional.of(afterMax), Optional.of(beforeAnyValue));
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
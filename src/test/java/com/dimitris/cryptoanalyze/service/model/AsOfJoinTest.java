@@ -0,0 +1,89 @@
+package com.dimitris.cryptoanalyze.service.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsOfJoinTest {
+
+    @Test
+    void test_join_lastKnownValues() throws Exception {
+        CryptoValueSeries first = CryptoValueSeries.of(List.of(value(10, "1"), value(20, "2"), value(40, "4")));
+        CryptoValueSeries second = CryptoValueSeries.of(List.of(value(5, "50"), value(20, "200"), value(30, "300")));
+
+        assertEquals(List.of(
+                "5:null,50",
+                "10:1,50",
+                "20:2,200",
+                "30:2,300",
+                "40:4,300"
+        ), rows(List.of(first, second), Long.MIN_VALUE, Long.MAX_VALUE));
+        // The first row of a range holds the values before it, and the end of the range is exclusive
+        assertEquals(List.of("20:2,200", "30:2,300"), rows(List.of(first, second), 11, 40));
+        assertEquals(List.of("30:2,300"), rows(List.of(first, second), 21, 40));
+        assertEquals(List.of(), rows(List.of(first, second), 41, Long.MAX_VALUE));
+        assertEquals(List.of("10:1,null"), rows(List.of(first, CryptoValueSeries.empty()), 0, 11));
+    }
+
+    @Test
+    void test_join_matchesSortedMaps() throws Exception {
+        Random random = new Random(3);
+        List<CryptoValueSeries> series = new ArrayList<>();
+        List<TreeMap<Long, CryptoValue>> expected = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            TreeMap<Long, CryptoValue> values = new TreeMap<>();
+            for (int j = 0; j < 3 * CryptoValueSeries.MAX_CHUNK_SIZE; j++) {
+                long timestamp = random.nextInt(100000);
+                values.put(timestamp, new CryptoValue(timestamp, BigDecimal.valueOf(random.nextInt(10000), 2)));
+            }
+            series.add(CryptoValueSeries.of(new ArrayList<>(values.values())));
+            expected.add(values);
+        }
+
+        TreeSet<Long> timestamps = new TreeSet<>();
+        expected.forEach(values -> timestamps.addAll(values.subMap(20000L, 70000L).keySet()));
+        List<String> expectedRows = new ArrayList<>();
+        for (long timestamp : timestamps) {
+            CryptoValue[] row = new CryptoValue[expected.size()];
+            for (int i = 0; i < row.length; i++) {
+                Map.Entry<Long, CryptoValue> entry = expected.get(i).floorEntry(timestamp);
+                row[i] = entry == null ? null : entry.getValue();
+            }
+            expectedRows.add(row(timestamp, row));
+        }
+        assertEquals(expectedRows, rows(series, 20000, 70000));
+    }
+
+    @Test
+    void test_join_deadlineExceeded_aborts() {
+        CryptoValueSeries series = CryptoValueSeries.of(List.of(value(10, "1"), value(20, "2")));
+
+        try (Deadline.Scope ignored = Deadline.afterMillis(0).attach()) {
+            assertThrows(Deadline.ScanAbortedException.class,
+                    () -> AsOfJoin.join(List.of(series), 0, Long.MAX_VALUE, (timestamp, values) -> {
+                    }));
+        }
+    }
+
+    private static List<String> rows(List<CryptoValueSeries> series, long fromTimestamp, long toTimestamp)
+            throws Exception {
+        List<String> rows = new ArrayList<>();
+        AsOfJoin.join(series, fromTimestamp, toTimestamp, (timestamp, values) -> rows.add(row(timestamp, values)));
+        return rows;
+    }
+
+    private static String row(long timestamp, CryptoValue[] values) {
+        StringJoiner joiner = new StringJoiner(",", timestamp + ":", "");
+        for (CryptoValue value : values) {
+            joiner.add(value == null ? "null" : value.getPrice().toPlainString());
+        }
+        return joiner.toString();
+    }
+
+    private static CryptoValue value(long timestamp, String price) {
+        return new CryptoValue(timestamp, new BigDecimal(price));
+    }
+}
@@ -0,0 +1,389 @@
+package com.dimitris.cryptoanalyze.service.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CryptoValueSeriesTest {
+
+    private static final int CHUNK = CryptoValueSeries.MAX_CHUNK_SIZE;
+
+    @Test
+    void test_merge_matchesSortedMapAcrossChunks() {
+        Random random = new Random(11);
+        CryptoValueSeries series = CryptoValueSeries.empty();
+        TreeMap<Long, CryptoValue> expected = new TreeMap<>();
+        for (int batch = 0; batch < 50; batch++) {
+            List<CryptoValue> values = new ArrayList<>();
+            int count = 1 + random.nextInt(1000);
+            for (int i = 0; i < count; i++) {
+                // Mostly appends, with some values replacing or falling between stored ones
+                long timestamp = random.nextInt(10) == 0 ? random.nextInt(batch * 1000 + 1) : batch * 1000L + random.nextInt(1000);
+                values.add(new CryptoValue(timestamp, BigDecimal.valueOf(random.nextInt(100000), 2)));
+            }
+            series = series.merge(values);
+            values.forEach(value -> expected.put(value.getTimestamp(), value));
+        }
+
+        assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(series));
+        assertEquals(expected.size(), series.size());
+        assertEquals(expected.firstEntry().getValue(), series.first());
+        assertEquals(expected.lastEntry().getValue(), series.last());
+        assertArrayEquals(expected.values().toArray(), series.toArray());
+        assertTrue(series.chunkCount() > 1);
+        for (CryptoValue value : expected.values()) {
+            assertTrue(series.contains(value));
+        }
+        long from = expected.keySet().stream().skip(expected.size() / 3).findFirst().orElseThrow();
+        assertEquals(new ArrayList<>(expected.tailMap(from).values()), new ArrayList<>(series.tailFrom(from)));
+        assertEquals(expected.tailMap(from).size(), series.tailFrom(from).size());
+        assertEquals(expected.get(from), series.tailFrom(from).get(0));
+    }
+
+    @Test
+    void test_merge_append_copiesOnlyLastChunk() {
+        CryptoValueSeries series = CryptoValueSeries.of(values(0, 3 * CHUNK + 10));
+        assertEquals(4, series.chunkCount());
+
+        CryptoValueSeries appended = series.merge(values(3 * CHUNK + 10, 5));
+
+        assertEquals(3 * CHUNK + 15, appended.size());
+        assertEquals(3, appended.sharedChunks(series));
+        // The merged series is not affected
+        assertEquals(3 * CHUNK + 10, series.size());
+    }
+
+    @Test
+    void test_merge_appendToFullChunk_sharesIt() {
+        CryptoValueSeries series = CryptoValueSeries.of(values(0, 2 * CHUNK));
+
+        CryptoValueSeries appended = series.merge(values(2 * CHUNK, 1));
+
+        assertEquals(3, appended.chunkCount());
+        assertEquals(2, appended.sharedChunks(series));
+    }
+
+    @Test
+    void test_merge_intoMiddleChunk_copiesOnlyThatChunk() {
+        CryptoValueSeries series = CryptoValueSeries.of(values(0, 4 * CHUNK));
+        CryptoValue replacing = new CryptoValue(CHUNK + 5, new BigDecimal("-1"));
+
+        CryptoValueSeries merged = series.merge(List.of(replacing));
+
+        assertEquals(4 * CHUNK, merged.size());
+        assertEquals(3, merged.sharedChunks(series));
+        assertTrue(merged.contains(replacing));
+        assertFalse(series.contains(replacing));
+    }
+
+    @Test
+    void test_tailFrom_pastEnd_empty() {
+        CryptoValueSeries series = CryptoValueSeries.of(values(0, 10));
+
+        assertTrue(series.tailFrom(10).isEmpty());
+        assertFalse(series.tailFrom(10).iterator().hasNext());
+        assertTrue(CryptoValueSeries.empty().tailFrom(0).isEmpty());
+    }
+
+    @Test
+    void test_valueAsOf() {
+        CryptoValueSeries series = CryptoValueSeries.of(values(0, 3 * CHUNK)).merge(values(4 * CHUNK, 10));
+
+        assertEquals(Optional.empty(), series.valueAsOf(-1));
+        assertEquals(Optional.of(series.first()), series.valueAsOf(0));
+        assertEquals(Optional.of(values(CHUNK, 1).get(0)), series.valueAsOf(CHUNK));
+        // Between stored values, the newest value before
+        assertEquals(Optional.of(values(3 * CHUNK - 1, 1).get(0)), series.valueAsOf(4 * CHUNK - 1));
+        assertEquals(Optional.of(series.last()), series.valueAsOf(Long.MAX_VALUE));
+        assertEquals(Optional.empty(), CryptoValueSeries.empty().valueAsOf(0));
+    }
+
+    @Test
+    void test_seal_olderFullChunksOnly() {
+        CryptoValueSeries series = CryptoValueSeries.of(values(0, 3 * CHUNK + 10));
+
+        CryptoValueSeries sealed = series.seal(2 * CHUNK, OffHeapChunk::new);
+
+        assertEquals(new ArrayList<>(series), new ArrayList<>(sealed));
+        assertEquals(2, sealed.sharedChunks(series));
+        assertFalse(sealed.isOnHeap());
+        assertTrue(sealed.chunksCovering(2 * CHUNK, Long.MAX_VALUE).isOnHeap());
+        // Sealed chunks are not sealed again, and the last chunk is never sealed
+        assertSame(sealed, sealed.seal(2 * CHUNK, OffHeapChunk::new));
+        assertEquals(3, series.seal(Long.MAX_VALUE, OffHeapChunk::new).chunksCovering(0, 3 * CHUNK - 1).size() / CHUNK);
+        assertTrue(series.seal(Long.MAX_VALUE, OffHeapChunk::new).chunksCovering(3 * CHUNK, Long.MAX_VALUE).isOnHeap());
+        // Merging into a sealed chunk brings its values back on heap
+        CryptoValueSeries merged = sealed.merge(List.of(new CryptoValue(5, BigDecimal.ONE)));
+        assertTrue(merged.chunksCovering(0, 5).isOnHeap());
+        assertFalse(merged.chunksCovering(CHUNK, CHUNK).isOnHeap());
+    }
+
+    @Test
+    void test_chunksCovering() {
+        CryptoValueSeries series = CryptoValueSeries.of(values(0, 3 * CHUNK));
+
+        assertSame(series, series.chunksCovering(Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(values(CHUNK, CHUNK), new ArrayList<>(series.chunksCovering(CHUNK + 1, 2 * CHUNK - 1)));
+        assertEquals(2 * CHUNK, series.chunksCovering(CHUNK - 1, CHUNK).size());
+        assertTrue(series.chunksCovering(3 * CHUNK, Long.MAX_VALUE).isEmpty());
+        assertTrue(series.chunksCovering(Long.MIN_VALUE, -1).isEmpty());
+    }
+
+    @Test
+    void test_summarize_matchesScanOfRange() {
+        Random random = new Random(5);
+        List<CryptoValue> values = new ArrayList<>();
+        for (int i = 0; i < 10 * CHUNK + 100; i++) {
+            // Few distinct prices, so that minimum and maximum prices are shared by many values
+            values.add(new CryptoValue(i * 2L, new BigDecimal(random.nextInt(50) + "." + random.nextInt(3))));
+        }
+        CryptoValueSeries series = CryptoValueSeries.of(values).seal(6 * CHUNK, OffHeapChunk::new);
+
+        for (int range = 0; range < 50; range++) {
+            long from = random.nextInt(20 * CHUNK + 300) - 50;
+            long to = from + random.nextInt(20 * CHUNK);
+            List<CryptoValue> inRange = new ArrayList<>();
+            for (CryptoValue value : values) {
+                if (value.getTimestamp() >= from && value.getTimestamp() < to) {
+                    inRange.add(value);
+                }
+            }
+            Optional<PriceSummary> summary = series.summarize(from, to);
+            if (inRange.isEmpty()) {
+                assertTrue(summary.isEmpty());
+                continue;
+            }
+            assertEquals(inRange.get(0), summary.get().getOldest());
+            assertEquals(inRange.get(inRange.size() - 1), summary.get().getNewest());
+            // The oldest value is kept among values with equal prices, as streams do
+            assertSame(inRange.stream().min(Comparator.comparing(CryptoValue::getPrice)).get(), summary.get().getMin());
+            assertSame(inRange.stream().max(Comparator.comparing(CryptoValue::getPrice)).get(), summary.get().getMax());
+        }
+        assertEquals(values.get(values.size() - 1), series.summarize(0, Long.MAX_VALUE).get().getNewest());
+    }
+
+    @Test
+    void test_summarize_decodesOnlyChunksAtEdgesOfRange() {
+        List<OffHeapChunk> sealed = new ArrayList<>();
+        CryptoValueSeries series = CryptoValueSeries.of(values(0, 10 * CHUNK)).seal(Long.MAX_VALUE, chunk -> {
+            OffHeapChunk offHeap = new OffHeapChunk(chunk);
+            sealed.add(offHeap);
+            return offHeap;
+        });
+        assertEquals(9, sealed.size());
+
+        PriceSummary summary = series.summarize(2 * CHUNK + 5, 7 * CHUNK + 5).orElseThrow();
+
+        assertEquals(2 * CHUNK + 5, summary.getOldest().getTimestamp());
+        assertEquals(7 * CHUNK + 4, summary.getNewest().getTimestamp());
+        assertEquals(2 * CHUNK + 5, summary.getMin().getTimestamp());
+        assertEquals(7 * CHUNK + 4, summary.getMax().getTimestamp());
+        // Only the chunks partly in the range are decoded
+        assertEquals(2, sealed.stream().mapToInt(chunk -> chunk.decodes).sum());
+        assertEquals(1, sealed.get(2).decodes);
+        assertEquals(1, sealed.get(7).decodes);
+
+        series.summarize(2 * CHUNK, 7 * CHUNK);
+        assertEquals(2, sealed.stream().mapToInt(chunk -> chunk.decodes).sum());
+    }
+
+    @Test
+    void test_summarize_deadlineExceeded_aborts() {
+        CryptoValueSeries series = CryptoValueSeries.of(values(0, 4 * CHUNK));
+        Deadline deadline = Deadline.afterMillis(0);
+
+        try (Deadline.Scope ignored = deadline.attach()) {
+            assertThrows(Deadline.ScanAbortedException.class, () -> series.summarize(0, Long.MAX_VALUE));
+        }
+    }
+
+    @Test
+    void test_summary_maintainedAcrossMergesSealsAndEvictions() {
+        Random random = new Random(17);
+        CryptoValueSeries series = CryptoValueSeries.empty();
+        assertTrue(series.summary().isEmpty());
+        for (int batch = 0; batch < 30; batch++) {
+            List<CryptoValue> values = new ArrayList<>();
+            for (int i = 0; i < 1 + random.nextInt(1000); i++) {
+                // Mostly appends, with some values replacing stored ones, possibly their min or max
+                long timestamp = random.nextInt(5) == 0 ? random.nextInt(batch * 1000 + 1) : batch * 1000L + random.nextInt(1000);
+                values.add(new CryptoValue(timestamp, new BigDecimal(random.nextInt(50) + "." + random.nextInt(3))));
+            }
+            series = series.merge(values);
+            assertSummaryOfAllValues(series);
+        }
+        assertSummaryOfAllValues(series.seal(Long.MAX_VALUE, OffHeapChunk::new));
+        assertSummaryOfAllValues(series.evictOldest(1));
+        assertSummaryOfAllValues(series.chunksCovering(CHUNK, 2 * CHUNK));
+    }
+
+    @Test
+    void test_summaryOfDay_maintainedAcrossMergesAndEvictions() {
+        Random random = new Random(23);
+        long hour = DailyIndex.MILLIS_PER_DAY / 24;
+        CryptoValueSeries series = CryptoValueSeries.empty();
+        for (int batch = 0; batch < 60; batch++) {
+            List<CryptoValue> values = new ArrayList<>();
+            for (int i = 0; i < 1 + random.nextInt(400); i++) {
+                // Mostly appends an hour at a time, with some values falling into earlier hours and days
+                long timestamp = random.nextInt(5) == 0 ? random.nextInt((batch + 1) * 3600) * 1000L
+                        : batch * hour + random.nextInt(3600) * 1000L;
+                values.add(new CryptoValue(timestamp, new BigDecimal(random.nextInt(50) + "." + random.nextInt(3))));
+            }
+            series = series.merge(values);
+            assertSummariesOfDays(series, 3);
+        }
+        assertSummariesOfDays(series.seal(Long.MAX_VALUE, OffHeapChunk::new), 3);
+        CryptoValueSeries evicted = series.evictOldest(1);
+        assertTrue(evicted.first().getTimestamp() % DailyIndex.MILLIS_PER_DAY != 0);
+        assertSummariesOfDays(evicted, 3);
+        assertTrue(series.chunksCovering(0, 1).summaryOfDay(2).isEmpty());
+    }
+
+    @Test
+    void test_sketch_ingestBetweenQueries_onlyChangedChunkResketched() {
+        List<OffHeapChunk> sealed = new ArrayList<>();
+        CryptoValueSeries series = CryptoValueSeries.of(values(0, 3 * CHUNK + 10)).seal(Long.MAX_VALUE, chunk -> {
+            OffHeapChunk offHeap = new OffHeapChunk(chunk);
+            sealed.add(offHeap);
+            return offHeap;
+        });
+        QuantileSketch first = series.sketch(Long.MIN_VALUE, Long.MAX_VALUE, 0.01);
+        List<QuantileSketch> chunkSketches = new ArrayList<>();
+        sealed.forEach(chunk -> chunkSketches.add(chunk.sketch(0.01)));
+
+        CryptoValueSeries ingested = series.merge(values(3 * CHUNK + 10, 5));
+        QuantileSketch second = ingested.sketch(Long.MIN_VALUE, Long.MAX_VALUE, 0.01);
+
+        assertEquals(3, sealed.size());
+        assertEquals(3 * CHUNK + 10, first.getCount());
+        assertEquals(3 * CHUNK + 15, second.getCount());
+        // The chunks the ingested values were not merged into are neither decoded nor resketched
+        for (int chunk = 0; chunk < sealed.size(); chunk++) {
+            assertEquals(0, sealed.get(chunk).decodes);
+            assertSame(chunkSketches.get(chunk), sealed.get(chunk).sketch(0.01));
+        }
+        assertEquals(sketchOf(ingested, Long.MIN_VALUE, Long.MAX_VALUE).getQuantile(0.5), second.getQuantile(0.5));
+        // Cached sketches count towards the heap of their chunks
+        CryptoValueSeries onHeap = CryptoValueSeries.of(values(0, CHUNK));
+        long valuesBytes = onHeap.heapBytes();
+        onHeap.sketch(Long.MIN_VALUE, Long.MAX_VALUE, 0.01);
+        assertTrue(onHeap.heapBytes() > valuesBytes);
+    }
+
+    @Test
+    void test_sketch_readsOnlyEdgeChunks() {
+        List<OffHeapChunk> sealed = new ArrayList<>();
+        CryptoValueSeries series = CryptoValueSeries.of(values(0, 4 * CHUNK)).seal(Long.MAX_VALUE, chunk -> {
+            OffHeapChunk offHeap = new OffHeapChunk(chunk);
+            sealed.add(offHeap);
+            return offHeap;
+        });
+
+        QuantileSketch sketch = series.sketch(CHUNK / 2, 2 * CHUNK + 5, 0.01);
+
+        assertEquals(1, sealed.get(0).decodes);
+        assertEquals(0, sealed.get(1).decodes);
+        assertEquals(1, sealed.get(2).decodes);
+        assertEquals(2 * CHUNK + 5 - CHUNK / 2, sketch.getCount());
+        QuantileSketch expected = sketchOf(series, CHUNK / 2, 2 * CHUNK + 5);
+        for (double quantile : new double[]{0, 0.05, 0.5, 0.95, 1}) {
+            assertEquals(expected.getQuantile(quantile), sketch.getQuantile(quantile));
+        }
+        assertEquals(0, series.sketch(10, 10, 0.01).getCount());
+    }
+
+    private static QuantileSketch sketchOf(CryptoValueSeries series, long fromTimestamp, long toTimestamp) {
+        QuantileSketch sketch = new QuantileSketch(0.01);
+        for (CryptoValue value : series) {
+            if (value.getTimestamp() >= fromTimestamp && value.getTimestamp() < toTimestamp) {
+                sketch.add(value.getPrice().doubleValue());
+            }
+        }
+        return sketch;
+    }
+
+    private static void assertSummariesOfDays(CryptoValueSeries series, int days) {
+        for (long day = -1; day <= days; day++) {
+            Optional<PriceSummary> expected = series.summarize(DailyIndex.startOf(day), DailyIndex.startOf(day + 1));
+            Optional<PriceSummary> summary = series.summaryOfDay(day);
+            assertEquals(expected.isPresent(), summary.isPresent());
+            if (expected.isPresent()) {
+                assertSame(expected.get().getOldest(), summary.get().getOldest());
+                assertSame(expected.get().getNewest(), summary.get().getNewest());
+                assertSame(expected.get().getMin(), summary.get().getMin());
+                assertSame(expected.get().getMax(), summary.get().getMax());
+            }
+        }
+    }
+
+    private static void assertSummaryOfAllValues(CryptoValueSeries series) {
+        PriceSummary expected = series.summarize(Long.MIN_VALUE, Long.MAX_VALUE).orElseThrow();
+        PriceSummary summary = series.summary().orElseThrow();
+        assertSame(expected.getOldest(), summary.getOldest());
+        assertSame(expected.getNewest(), summary.getNewest());
+        assertSame(expected.getMin(), summary.getMin());
+        assertSame(expected.getMax(), summary.getMax());
+    }
+
+    /**
+     * Chunk standing for a sealed one
+     */
+    private static class OffHeapChunk implements ValueChunk {
+
+        private final ValueChunk chunk;
+
+        private int decodes;
+
+        private OffHeapChunk(ValueChunk chunk) {
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int size() {
+            return chunk.size();
+        }
+
+        @Override
+        public long timestampAt(int index) {
+            return chunk.timestampAt(index);
+        }
+
+        @Override
+        public CryptoValue get(int index) {
+            return chunk.get(index);
+        }
+
+        @Override
+        public CryptoValue[] values() {
+            decodes++;
+            return chunk.values().clone();
+        }
+
+        @Override
+        public QuantileSketch sketch(double relativeAccuracy) {
+            return chunk.sketch(relativeAccuracy);
+        }
+
+        @Override
+        public boolean isOnHeap() {
+            return false;
+        }
+
+        @Override
+        public long heapBytes() {
+            return 0;
+        }
+    }
+
+    private static List<CryptoValue> values(long fromTimestamp, int count) {
+        List<CryptoValue> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(new CryptoValue(fromTimestamp + i, BigDecimal.valueOf(fromTimestamp + i)));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,55 @@
+package com.dimitris.cryptoanalyze.service.model;
+
+import com.dimitris.cryptoanalyze.service.enums.CryptoEnum;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.AbstractMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NormalizedRangeRankingTest {
+
+    @Test
+    void test_with_keepsRankingOrder() {
+        NormalizedRangeRanking ranking = NormalizedRangeRanking.empty()
+                .with(CryptoEnum.btc, summary("10", "15"))
+                .with(CryptoEnum.eth, summary("10", "20"))
+                .with(CryptoEnum.xrp, summary("4", "6"))
+                .with(CryptoEnum.doge, summary("1", "1.2"));
+
+        assertEquals(List.of(entry(CryptoEnum.eth, "1"), entry(CryptoEnum.btc, "0.5"), entry(CryptoEnum.xrp, "0.5"),
+                entry(CryptoEnum.doge, "0.2")), ranking.entries());
+
+        // Moves only the changed crypto
+        NormalizedRangeRanking changed = ranking.with(CryptoEnum.eth, summary("10", "11"));
+        assertEquals(List.of(entry(CryptoEnum.btc, "0.5"), entry(CryptoEnum.xrp, "0.5"), entry(CryptoEnum.doge, "0.2"),
+                entry(CryptoEnum.eth, "0.1")), changed.entries());
+        assertEquals(entry(CryptoEnum.eth, "1"), ranking.entries().get(0));
+        assertSame(changed, changed.with(CryptoEnum.eth, summary("20", "22")));
+    }
+
+    @Test
+    void test_with_noRange_notRanked() {
+        NormalizedRangeRanking ranking = NormalizedRangeRanking.empty()
+                .with(CryptoEnum.btc, summary("10", "15"))
+                .with(CryptoEnum.eth, summary("0", "20"));
+
+        assertTrue(ranking.contains(CryptoEnum.btc));
+        assertFalse(ranking.contains(CryptoEnum.eth));
+        assertFalse(ranking.with(CryptoEnum.btc, Optional.empty()).contains(CryptoEnum.btc));
+        assertSame(ranking, ranking.with(CryptoEnum.ltc, Optional.empty()));
+    }
+
+    private static Optional<PriceSummary> summary(String min, String max) {
+        return CryptoValueSeries.of(List.of(new CryptoValue(1, new BigDecimal(min)), new CryptoValue(2, new BigDecimal(max))))
+                .summary();
+    }
+
+    private static Map.Entry<CryptoEnum, BigDecimal> entry(CryptoEnum cryptoEnum, String range) {
+        return new AbstractMap.SimpleImmutableEntry<>(cryptoEnum, new BigDecimal(range));
+    }
+}
@@ -0,0 +1,68 @@
+package com.dimitris.cryptoanalyze.service.model;
+
+import com.dimitris.cryptoanalyze.service.util.CryptoMetricsUtil;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrailingRangeWindowTest {
+
+    @Test
+    void test_append_matchesRescanOfWindow() {
+        Random random = new Random(7);
+        long windowMillis = 10000;
+        TrailingRangeWindow window = new TrailingRangeWindow(windowMillis);
+        List<CryptoValue> appended = new ArrayList<>();
+        long timestamp = 0;
+        for (int i = 0; i < 5000; i++) {
+            timestamp += 1 + random.nextInt(2000);
+            CryptoValue value = new CryptoValue(timestamp, BigDecimal.valueOf(1 + random.nextInt(10000), 2));
+            assertTrue(window.append(value));
+            appended.add(value);
+
+            long newest = timestamp;
+            BigDecimal min = appended.stream().filter(v -> v.getTimestamp() > newest - windowMillis)
+                    .map(CryptoValue::getPrice).min(BigDecimal::compareTo).orElseThrow();
+            BigDecimal max = appended.stream().filter(v -> v.getTimestamp() > newest - windowMillis)
+                    .map(CryptoValue::getPrice).max(BigDecimal::compareTo).orElseThrow();
+            assertEquals(Optional.of(CryptoMetricsUtil.normalizedPriceRange(min, max)), window.normalizedPriceRange());
+        }
+    }
+
+    @Test
+    void test_append_notNewer_rejected() {
+        TrailingRangeWindow window = new TrailingRangeWindow(1000);
+        assertTrue(window.append(new CryptoValue(100, new BigDecimal("10"))));
+
+        assertFalse(window.append(new CryptoValue(100, new BigDecimal("20"))));
+        assertFalse(window.append(new CryptoValue(50, new BigDecimal("20"))));
+        assertEquals(100, window.getNewestTimestamp());
+        assertEquals(Optional.of(new BigDecimal("0")), window.normalizedPriceRange());
+    }
+
+    @Test
+    void test_clear() {
+        TrailingRangeWindow window = new TrailingRangeWindow(1000);
+        window.append(new CryptoValue(100, new BigDecimal("10")));
+
+        window.clear();
+
+        assertEquals(Optional.empty(), window.normalizedPriceRange());
+        assertTrue(window.append(new CryptoValue(50, new BigDecimal("20"))));
+    }
+
+    @Test
+    void test_normalizedPriceRange_zeroMinPrice() {
+        TrailingRangeWindow window = new TrailingRangeWindow(1000);
+        window.append(new CryptoValue(100, BigDecimal.ZERO));
+        window.append(new CryptoValue(200, BigDecimal.TEN));
+
+        assertEquals(Optional.empty(), window.normalizedPriceRange());
+    }
+}
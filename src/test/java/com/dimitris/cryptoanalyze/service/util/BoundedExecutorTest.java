@@ -0,0 +1,51 @@
+package com.dimitris.cryptoanalyze.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class BoundedExecutorTest {
+
+    @Test
+    void test_saturated_rejects_platformThreads() throws Exception {
+        assertSaturatedRejects(new BoundedExecutor("test-", 2, 1, false));
+    }
+
+    @Test
+    void test_saturated_rejects_virtualThreads() throws Exception {
+        assumeTrue(VirtualThreads.isSupported());
+
+        assertSaturatedRejects(new BoundedExecutor("test-", 2, 1, true));
+    }
+
+    private static void assertSaturatedRejects(BoundedExecutor executor) throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        Callable<Boolean> blocking = () -> {
+            started.countDown();
+            return release.await(10, TimeUnit.SECONDS);
+        };
+        try {
+            Future<Boolean> first = executor.submit(blocking);
+            Future<Boolean> second = executor.submit(blocking);
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            Future<Boolean> queued = executor.submit(() -> true);
+
+            assertEquals(2, executor.getActiveCount());
+            assertEquals(1, executor.getQueueSize());
+            assertThrows(RejectedExecutionException.class, () -> executor.submit(() -> true));
+
+            release.countDown();
+            assertTrue(first.get(10, TimeUnit.SECONDS));
+            assertTrue(second.get(10, TimeUnit.SECONDS));
+            assertTrue(queued.get(10, TimeUnit.SECONDS));
+            // Capacity is given back once tasks complete
+            assertTrue(executor.submit(() -> true).get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.dimitris.cryptoanalyze.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class VirtualThreadsTest {
+
+    @Test
+    void test_isEnabled_requestedAndSupported() {
+        String previous = System.getProperty("threads.virtual");
+        try {
+            System.setProperty("threads.virtual", "false");
+            assertFalse(VirtualThreads.isEnabled());
+            System.setProperty("threads.virtual", "true");
+            assertEquals(VirtualThreads.isSupported(), VirtualThreads.isEnabled());
+        } finally {
+            if (previous == null) {
+                System.clearProperty("threads.virtual");
+            } else {
+                System.setProperty("threads.virtual", previous);
+            }
+        }
+    }
+
+    @Test
+    void test_isSupported_matchesJdk() {
+        assertEquals(Runtime.version().feature() >= 21, VirtualThreads.isSupported());
+    }
+
+    @Test
+    void test_newThreadPerTaskExecutor_runsVirtualThreads() throws Exception {
+        assumeTrue(VirtualThreads.isSupported());
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("test-");
+
+        String threadName = executor.submit(() -> {
+            assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()));
+            return Thread.currentThread().getName();
+        }).get(10, TimeUnit.SECONDS);
+
+        assertTrue(threadName.startsWith("test-"));
+        executor.shutdown();
+    }
+
+    @Test
+    void test_factory_unsupported() {
+        assumeTrue(!VirtualThreads.isSupported());
+
+        assertThrows(UnsupportedOperationException.class, () -> VirtualThreads.factory("test-"));
+    }
+}